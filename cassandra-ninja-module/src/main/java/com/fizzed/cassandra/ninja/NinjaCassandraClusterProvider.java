@@ -1,6 +1,20 @@
 package com.fizzed.cassandra.ninja;
 
 import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.HostDistance;
+import com.datastax.driver.core.PoolingOptions;
+import com.datastax.driver.core.ProtocolOptions;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.QueryOptions;
+import com.datastax.driver.core.SocketOptions;
+import com.datastax.driver.core.policies.ConstantSpeculativeExecutionPolicy;
+import com.datastax.driver.core.policies.DCAwareRoundRobinPolicy;
+import com.datastax.driver.core.policies.LoadBalancingPolicy;
+import com.datastax.driver.core.policies.SpeculativeExecutionPolicy;
+import com.datastax.driver.core.policies.TokenAwarePolicy;
+import com.fizzed.cassandra.orm.LatencySpeculativeExecutionPolicy;
+import com.fizzed.cassandra.orm.codec.CqlCodecs;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
 import ninja.utils.NinjaProperties;
@@ -9,6 +23,7 @@ import javax.inject.Inject;
 import javax.inject.Provider;
 import javax.inject.Singleton;
 import java.net.InetSocketAddress;
+import static org.apache.commons.lang3.StringUtils.isEmpty;
 
 @Singleton
 public class NinjaCassandraClusterProvider implements Provider<Cluster> {
@@ -55,12 +70,205 @@ public class NinjaCassandraClusterProvider implements Provider<Cluster> {
             clusterBuilder.withCredentials(username, password);
         }
         
+        // serialize java.time & joda values straight to/from the wire format
+        if (ninjaProperties.getBooleanWithDefault("cassandra.codecs", true)) {
+            clusterBuilder.withCodecRegistry(CqlCodecs.register(new CodecRegistry()));
+        }
+        
         // disable jmx reporting?
         if (!ninjaProperties.getBooleanWithDefault("cassandra.jmx", false)) {
             clusterBuilder.withoutJMXReporting();
         }
+        
+        final String protocolVersion = ninjaProperties.get("cassandra.protocol_version");
+        if (!isEmpty(protocolVersion)) {
+            clusterBuilder.withProtocolVersion(ProtocolVersion.valueOf(protocolVersion.trim().toUpperCase()));
+        }
+        
+        // lz4 or snappy (its library must be on the classpath)
+        final String compression = ninjaProperties.get("cassandra.compression");
+        if (!isEmpty(compression)) {
+            clusterBuilder.withCompression(ProtocolOptions.Compression.valueOf(compression.trim().toUpperCase()));
+        }
+        
+        clusterBuilder.withLoadBalancingPolicy(this.createLoadBalancingPolicy());
+        final SpeculativeExecutionPolicy speculativeExecutionPolicy = this.createSpeculativeExecutionPolicy();
+        if (speculativeExecutionPolicy != null) {
+            clusterBuilder.withSpeculativeExecutionPolicy(speculativeExecutionPolicy);
+        }
+        
+        clusterBuilder.withPoolingOptions(this.createPoolingOptions());
+        clusterBuilder.withSocketOptions(this.createSocketOptions());
+        clusterBuilder.withQueryOptions(this.createQueryOptions());
+        
+        final Boolean epoll = this.getBoolean("cassandra.netty.epoll");
+        final Integer ioThreads = this.getInteger("cassandra.netty.io_threads");
+        if (epoll != null || ioThreads != null) {
+            clusterBuilder.withNettyOptions(new NinjaCassandraNettyOptions(
+                epoll != null ? epoll : true, ioThreads != null ? ioThreads : 0));
+        }
 
         return clusterBuilder;
     }
+    
+    public LoadBalancingPolicy createLoadBalancingPolicy() {
+        final DCAwareRoundRobinPolicy.Builder dcAwareBuilder = DCAwareRoundRobinPolicy.builder();
+        
+        // otherwise the dc of the first contact point to connect is the local one
+        final String localDc = ninjaProperties.get("cassandra.local_dc");
+        if (!isEmpty(localDc)) {
+            dcAwareBuilder.withLocalDc(localDc.trim());
+        }
+        
+        final DCAwareRoundRobinPolicy dcAwarePolicy = dcAwareBuilder.build();
+        
+        // route each statement with a routing key straight to one of its replicas
+        final Boolean tokenAware = this.getBoolean("cassandra.token_aware");
+        if (tokenAware != null && !tokenAware) {
+            return dcAwarePolicy;
+        }
+        
+        return new TokenAwarePolicy(dcAwarePolicy);
+    }
+    
+    /**
+     * Speculative executions are only ever sent for idempotent statements,
+     * which the ORM marks automatically (see CqlQuery.setIdempotent).
+     * 
+     * @return The policy or null for none (the default)
+     */
+    public SpeculativeExecutionPolicy createSpeculativeExecutionPolicy() {
+        final String type = ninjaProperties.get("cassandra.speculative_execution");
+        if (isEmpty(type) || type.trim().equalsIgnoreCase("none")) {
+            return null;
+        }
+        
+        final Integer maxExecutionsValue = this.getInteger("cassandra.speculative_execution.max_executions");
+        final int maxExecutions = maxExecutionsValue != null ? maxExecutionsValue : 1;
+        
+        switch (type.trim().toLowerCase()) {
+            case "constant": {
+                final Integer delayMillis = this.getInteger("cassandra.speculative_execution.delay_ms");
+                if (delayMillis == null) {
+                    throw new IllegalArgumentException("Property cassandra.speculative_execution.delay_ms is required"
+                        + " for constant speculative execution");
+                }
+                return new ConstantSpeculativeExecutionPolicy(delayMillis, maxExecutions);
+            }
+            case "percentile": {
+                final String percentile = ninjaProperties.get("cassandra.speculative_execution.percentile");
+                final LatencySpeculativeExecutionPolicy policy = new LatencySpeculativeExecutionPolicy(
+                    !isEmpty(percentile) ? Double.parseDouble(percentile.trim()) : 99.0d, maxExecutions);
+                final Integer minDelayMillis = this.getInteger("cassandra.speculative_execution.min_delay_ms");
+                if (minDelayMillis != null) {
+                    policy.setMinDelayMillis(minDelayMillis);
+                }
+                final Integer intervalMillis = this.getInteger("cassandra.speculative_execution.interval_ms");
+                if (intervalMillis != null) {
+                    policy.setIntervalMillis(intervalMillis);
+                }
+                return policy;
+            }
+            default:
+                throw new IllegalArgumentException("Property cassandra.speculative_execution must be one of"
+                    + " none, constant or percentile (not " + type + ")");
+        }
+    }
+    
+    public PoolingOptions createPoolingOptions() {
+        final PoolingOptions poolingOptions = new PoolingOptions();
+        
+        for (HostDistance distance : new HostDistance[] { HostDistance.LOCAL, HostDistance.REMOTE }) {
+            final String prefix = "cassandra.pooling." + distance.name().toLowerCase() + ".";
+            
+            final Integer core = this.getInteger(prefix + "core_connections");
+            final Integer max = this.getInteger(prefix + "max_connections");
+            if (core != null || max != null) {
+                // protocol v3+ defaults to 1 of each, set together so core <= max holds
+                final int c = core != null ? core : 1;
+                poolingOptions.setConnectionsPerHost(distance, c, max != null ? max : Math.max(c, 1));
+            }
+            
+            final Integer maxRequests = this.getInteger(prefix + "max_requests_per_connection");
+            if (maxRequests != null) {
+                poolingOptions.setMaxRequestsPerConnection(distance, maxRequests);
+            }
+        }
+        
+        final Integer poolTimeoutMillis = this.getInteger("cassandra.pooling.pool_timeout_ms");
+        if (poolTimeoutMillis != null) {
+            poolingOptions.setPoolTimeoutMillis(poolTimeoutMillis);
+        }
+        
+        final Integer maxQueueSize = this.getInteger("cassandra.pooling.max_queue_size");
+        if (maxQueueSize != null) {
+            poolingOptions.setMaxQueueSize(maxQueueSize);
+        }
+        
+        final Integer heartbeatIntervalSeconds = this.getInteger("cassandra.pooling.heartbeat_interval_s");
+        if (heartbeatIntervalSeconds != null) {
+            poolingOptions.setHeartbeatIntervalSeconds(heartbeatIntervalSeconds);
+        }
+        
+        return poolingOptions;
+    }
+    
+    public SocketOptions createSocketOptions() {
+        final SocketOptions socketOptions = new SocketOptions();
+        
+        final Integer connectTimeoutMillis = this.getInteger("cassandra.socket.connect_timeout_ms");
+        if (connectTimeoutMillis != null) {
+            socketOptions.setConnectTimeoutMillis(connectTimeoutMillis);
+        }
+        
+        final Integer readTimeoutMillis = this.getInteger("cassandra.socket.read_timeout_ms");
+        if (readTimeoutMillis != null) {
+            socketOptions.setReadTimeoutMillis(readTimeoutMillis);
+        }
+        
+        final Boolean keepAlive = this.getBoolean("cassandra.socket.keep_alive");
+        if (keepAlive != null) {
+            socketOptions.setKeepAlive(keepAlive);
+        }
+        
+        final Boolean tcpNoDelay = this.getBoolean("cassandra.socket.tcp_no_delay");
+        if (tcpNoDelay != null) {
+            socketOptions.setTcpNoDelay(tcpNoDelay);
+        }
+        
+        final Integer receiveBufferSize = this.getInteger("cassandra.socket.receive_buffer_size");
+        if (receiveBufferSize != null) {
+            socketOptions.setReceiveBufferSize(receiveBufferSize);
+        }
+        
+        final Integer sendBufferSize = this.getInteger("cassandra.socket.send_buffer_size");
+        if (sendBufferSize != null) {
+            socketOptions.setSendBufferSize(sendBufferSize);
+        }
+        
+        return socketOptions;
+    }
+    
+    public QueryOptions createQueryOptions() {
+        final QueryOptions queryOptions = new QueryOptions();
+        
+        final Integer fetchSize = this.getInteger("cassandra.fetch_size");
+        if (fetchSize != null) {
+            queryOptions.setFetchSize(fetchSize);
+        }
+        
+        return queryOptions;
+    }
+    
+    private Integer getInteger(String key) {
+        // null (rather than the default) when not set
+        final String value = ninjaProperties.get(key);
+        return !isEmpty(value) ? Integer.valueOf(value.trim()) : null;
+    }
+    
+    private Boolean getBoolean(String key) {
+        final String value = ninjaProperties.get(key);
+        return !isEmpty(value) ? Boolean.valueOf(value.trim()) : null;
+    }
 
 }
\ No newline at end of file
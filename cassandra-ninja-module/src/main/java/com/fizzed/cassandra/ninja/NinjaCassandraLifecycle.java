@@ -2,12 +2,18 @@ package com.fizzed.cassandra.ninja;
 
 import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Session;
+import com.fizzed.cassandra.orm.Cassandra;
+import com.fizzed.cassandra.orm.CqlManifest;
+import com.fizzed.cassandra.orm.CqlWarmup;
+import com.fizzed.cassandra.orm.impl.CompletableFutures;
+import java.nio.file.Paths;
 import javax.inject.Inject;
 import javax.inject.Provider;
 import javax.inject.Singleton;
 import ninja.lifecycle.Start;
 import ninja.lifecycle.Dispose;
 import ninja.utils.NinjaProperties;
+import static org.apache.commons.lang3.StringUtils.isEmpty;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -16,36 +22,71 @@ public class NinjaCassandraLifecycle {
     static private final Logger log = LoggerFactory.getLogger(NinjaCassandraLifecycle.class);
     
     private final Boolean validateAtStart;
-    private final Provider<Session> sessionProvider;
+    private final Boolean warmup;
+    private final Integer warmupConcurrency;
+    private final Integer warmupTimeoutMillis;
+    private final CqlManifest manifest;
+    private final NinjaCassandraSessionProvider sessionProvider;
+    private final Provider<Cassandra> cassandraProvider;
     
     @Inject 
     public NinjaCassandraLifecycle(
             NinjaProperties ninjaProperties,
-            Provider<Session> sessionProvider) {
+            NinjaCassandraSessionProvider sessionProvider,
+            Provider<Cassandra> cassandraProvider) {
         
         this.validateAtStart = ninjaProperties.getBooleanWithDefault("cassandra.validate_at_start", Boolean.TRUE);
+        this.warmup = ninjaProperties.getBooleanWithDefault("cassandra.warmup", this.validateAtStart);
+        this.warmupConcurrency = ninjaProperties.getIntegerWithDefault("cassandra.warmup.concurrency", CqlWarmup.DEFAULT_CONCURRENCY);
+        this.warmupTimeoutMillis = ninjaProperties.getIntegerWithDefault("cassandra.warmup.timeout_ms", (int)CqlWarmup.DEFAULT_TIMEOUT_MILLIS);
+        final String manifestFile = ninjaProperties.get("cassandra.warmup.manifest");
+        this.manifest = !isEmpty(manifestFile) ? new CqlManifest(Paths.get(manifestFile)) : null;
         this.sessionProvider = sessionProvider;
+        this.cassandraProvider = cassandraProvider;
     }
 
     @Start(order = 50)
     public void start() {
-        if (!validateAtStart) {
-            return;
+        if (validateAtStart) {
+            log.info("Starting cassandra...");
+            final long start = System.currentTimeMillis();
+            // validate once the (possibly already connecting) session is ready
+            final ResultSet rs = CompletableFutures.get(sessionProvider.connectAsync()
+                .thenCompose(session -> CompletableFutures.of(session.executeAsync("SELECT release_version FROM system.local"))));
+            log.info("Connected to cassandra {} (waited {} ms)", rs.one().getString(0), System.currentTimeMillis() - start);
         }
         
-        log.info("Starting cassandra...");
-        final Session session = sessionProvider.get();  // get but do not close
-        ResultSet rs = session.execute("SELECT release_version FROM system.local");
-        log.info("Connected to cassandra {}", rs.one().getString(0));
+        if (warmup) {
+            // models must be registered by now for their statements to be prepared
+            log.info("Warming up cassandra...");
+            final CqlWarmup.Result result = cassandraProvider.get().warmup()
+                .setManifest(this.manifest)
+                .setConcurrency(this.warmupConcurrency)
+                .setTimeoutMillis(this.warmupTimeoutMillis)
+                .execute();
+            log.info("Warmed up cassandra ({})", result);
+        }
     }
     
     @Dispose(order = 50)
     public void stop() {
         log.info("Stopping cassandra...");
+        
+        // record what this run prepared for the next start to warm up with
+        if (this.manifest != null) {
+            try {
+                final int size = this.manifest.write(cassandraProvider.get().getPreparedStatementCache().getCqls());
+                log.info("Recorded {} cql statements to {}", size, this.manifest.getFile());
+            }
+            catch (RuntimeException e) {
+                log.warn("Unable to record cql statements to {}", this.manifest.getFile(), e);
+            }
+        }
+        
         try (Session session = sessionProvider.get()) {
             session.getCluster().close();
         }
         log.info("Closed cluster connection to cassandra");
     }
     
-}
\ No newline at end of file
+}
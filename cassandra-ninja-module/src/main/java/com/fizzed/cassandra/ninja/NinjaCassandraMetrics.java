@@ -0,0 +1,292 @@
+package com.fizzed.cassandra.ninja;
+
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.Metrics;
+import com.datastax.driver.core.Session;
+import com.fizzed.cassandra.orm.Cassandra;
+import com.fizzed.cassandra.orm.CqlMetrics;
+import com.fizzed.cassandra.orm.LatencyHistogram;
+import com.fizzed.cassandra.orm.PreparedStatementCache;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import ninja.utils.NinjaProperties;
+import static org.apache.commons.lang3.StringUtils.isEmpty;
+
+/**
+ * Snapshots of the driver's metrics (hosts, connection pools, in-flight and
+ * queued requests, errors) and the ORM's (query latencies, rows, conflicts,
+ * warnings & the prepared statement cache), as JSON or the prometheus text
+ * format. A snapshot is cached for <code>cassandra.metrics.cache_ms</code>
+ * (default 5000) so however often it is scraped, the metrics are only read
+ * (and rendered) once per interval.
+ */
+@Singleton
+public class NinjaCassandraMetrics {
+
+    static public final long DEFAULT_CACHE_MILLIS = 5000L;
+
+    private final Provider<Cassandra> cassandraProvider;
+    private final long cacheMillis;
+    private volatile Cached cached;
+
+    @Inject
+    public NinjaCassandraMetrics(NinjaProperties ninjaProperties, Provider<Cassandra> cassandraProvider) {
+        this.cassandraProvider = cassandraProvider;
+        final String cacheMillis = ninjaProperties.get("cassandra.metrics.cache_ms");
+        this.cacheMillis = !isEmpty(cacheMillis) ? Long.parseLong(cacheMillis.trim()) : DEFAULT_CACHE_MILLIS;
+    }
+
+    /**
+     * @return The metrics (as maps & lists of plain values) for rendering as JSON
+     */
+    public Map<String,Object> getSnapshot() {
+        return this.cached().snapshot;
+    }
+
+    /**
+     * @return The metrics in the prometheus text exposition format
+     */
+    public String getPrometheus() {
+        return this.cached().prometheus;
+    }
+
+    private Cached cached() {
+        Cached c = this.cached;
+        if (c == null || System.currentTimeMillis() - c.at >= this.cacheMillis) {
+            synchronized (this) {
+                // another scrape may have just refreshed it
+                c = this.cached;
+                if (c == null || System.currentTimeMillis() - c.at >= this.cacheMillis) {
+                    c = this.refresh();
+                    this.cached = c;
+                }
+            }
+        }
+        return c;
+    }
+
+    Cached refresh() {
+        final Cassandra cassandra = this.cassandraProvider.get();
+        final Session session = cassandra.getSession();
+        final Prometheus prometheus = new Prometheus();
+        final Map<String,Object> snapshot = new LinkedHashMap<>();
+
+        snapshot.put("timestamp", System.currentTimeMillis());
+
+        // driver (null if the cluster was built without metrics)
+        final Metrics metrics = session.getCluster().getMetrics();
+        if (metrics != null) {
+            final Map<String,Object> driver = new LinkedHashMap<>();
+            driver.put("known_hosts", metrics.getKnownHosts().getValue());
+            driver.put("connected_hosts", metrics.getConnectedToHosts().getValue());
+            driver.put("open_connections", metrics.getOpenConnections().getValue());
+            driver.put("trashed_connections", metrics.getTrashedConnections().getValue());
+            driver.put("in_flight_requests", metrics.getInFlightRequests().getValue());
+            driver.put("request_queue_depth", metrics.getRequestQueueDepth().getValue());
+            driver.put("executor_queue_depth", metrics.getExecutorQueueDepth().getValue());
+            driver.put("blocking_executor_queue_depth", metrics.getBlockingExecutorQueueDepth().getValue());
+            for (Map.Entry<String,Object> entry : driver.entrySet()) {
+                prometheus.gauge("cassandra_driver_" + entry.getKey(), null, (Number)entry.getValue());
+            }
+
+            final Timer requests = metrics.getRequestsTimer();
+            final Snapshot requestsSnapshot = requests.getSnapshot();
+            final Map<String,Object> requestStats = new LinkedHashMap<>();
+            requestStats.put("count", requests.getCount());
+            requestStats.put("one_minute_rate", requests.getOneMinuteRate());
+            requestStats.put("mean_micros", TimeUnit.NANOSECONDS.toMicros((long)requestsSnapshot.getMean()));
+            requestStats.put("p50_micros", TimeUnit.NANOSECONDS.toMicros((long)requestsSnapshot.getMedian()));
+            requestStats.put("p99_micros", TimeUnit.NANOSECONDS.toMicros((long)requestsSnapshot.get99thPercentile()));
+            requestStats.put("max_micros", TimeUnit.NANOSECONDS.toMicros(requestsSnapshot.getMax()));
+            driver.put("requests", requestStats);
+            prometheus.counter("cassandra_driver_requests", null, requests.getCount());
+
+            final Metrics.Errors errors = metrics.getErrorMetrics();
+            final Map<String,Object> errorCounts = new LinkedHashMap<>();
+            errorCounts.put("connection_errors", errors.getConnectionErrors().getCount());
+            errorCounts.put("authentication_errors", errors.getAuthenticationErrors().getCount());
+            errorCounts.put("read_timeouts", errors.getReadTimeouts().getCount());
+            errorCounts.put("write_timeouts", errors.getWriteTimeouts().getCount());
+            errorCounts.put("unavailables", errors.getUnavailables().getCount());
+            errorCounts.put("client_timeouts", errors.getClientTimeouts().getCount());
+            errorCounts.put("others", errors.getOthers().getCount());
+            errorCounts.put("retries", errors.getRetries().getCount());
+            errorCounts.put("ignores", errors.getIgnores().getCount());
+            errorCounts.put("speculative_executions", errors.getSpeculativeExecutions().getCount());
+            driver.put("errors", errorCounts);
+            for (Map.Entry<String,Object> entry : errorCounts.entrySet()) {
+                prometheus.counter("cassandra_driver_errors", labels("type", entry.getKey()), (Number)entry.getValue());
+            }
+
+            snapshot.put("driver", driver);
+        }
+
+        // connection pool of each host
+        final Session.State state = session.getState();
+        final List<Map<String,Object>> hosts = new ArrayList<>();
+        if (state != null) {
+            for (Host host : state.getConnectedHosts()) {
+                final Map<String,Object> pool = new LinkedHashMap<>();
+                pool.put("address", String.valueOf(host.getEndPoint()));
+                pool.put("datacenter", host.getDatacenter());
+                pool.put("open_connections", state.getOpenConnections(host));
+                pool.put("trashed_connections", state.getTrashedConnections(host));
+                pool.put("in_flight_queries", state.getInFlightQueries(host));
+                hosts.add(pool);
+
+                final String hostLabels = labels("host", pool.get("address"), "datacenter", host.getDatacenter());
+                prometheus.gauge("cassandra_host_open_connections", hostLabels, state.getOpenConnections(host));
+                prometheus.gauge("cassandra_host_trashed_connections", hostLabels, state.getTrashedConnections(host));
+                prometheus.gauge("cassandra_host_in_flight_queries", hostLabels, state.getInFlightQueries(host));
+            }
+        }
+        snapshot.put("hosts", hosts);
+
+        // orm
+        final Map<String,Object> orm = new LinkedHashMap<>();
+        final CqlMetrics.Snapshot ormSnapshot = cassandra.getMetrics().snapshot();
+
+        final List<Map<String,Object>> latencies = new ArrayList<>();
+        for (CqlMetrics.Latency latency : ormSnapshot.getLatencies()) {
+            final LatencyHistogram.Snapshot histogram = latency.getHistogram();
+            final Map<String,Object> stats = new LinkedHashMap<>();
+            stats.put("table", latency.getTableName());
+            stats.put("command", latency.getCommand());
+            stats.put("success", latency.isSuccess());
+            stats.put("count", histogram.getCount());
+            stats.put("mean_micros", TimeUnit.NANOSECONDS.toMicros((long)histogram.getMean()));
+            stats.put("p50_micros", TimeUnit.NANOSECONDS.toMicros(histogram.getValueAtPercentile(50.0d)));
+            stats.put("p99_micros", TimeUnit.NANOSECONDS.toMicros(histogram.getValueAtPercentile(99.0d)));
+            stats.put("p999_micros", TimeUnit.NANOSECONDS.toMicros(histogram.getValueAtPercentile(99.9d)));
+            stats.put("max_micros", TimeUnit.NANOSECONDS.toMicros(histogram.getMax()));
+            latencies.add(stats);
+
+            final String name = "cassandra_orm_query_latency_seconds";
+            for (double quantile : new double[] { 0.5d, 0.99d, 0.999d }) {
+                prometheus.sample(name, "summary", name, labels("table", latency.getTableName(), "command", latency.getCommand(),
+                    "success", latency.isSuccess(), "quantile", quantile), seconds(histogram.getValueAtPercentile(quantile * 100.0d)));
+            }
+            final String latencyLabels = labels("table", latency.getTableName(), "command", latency.getCommand(),
+                "success", latency.isSuccess());
+            prometheus.sample(name, "summary", name + "_sum", latencyLabels, seconds(histogram.getSum()));
+            prometheus.sample(name, "summary", name + "_count", latencyLabels, histogram.getCount());
+        }
+        orm.put("latencies", latencies);
+
+        orm.put("rows", ormSnapshot.getRows());
+        for (Map.Entry<String,Long> entry : ormSnapshot.getRows().entrySet()) {
+            prometheus.counter("cassandra_orm_rows", labels("table", entry.getKey()), entry.getValue());
+        }
+
+        orm.put("conflicts", ormSnapshot.getConflicts());
+        for (Map.Entry<String,Long> entry : ormSnapshot.getConflicts().entrySet()) {
+            prometheus.counter("cassandra_orm_conflicts", labels("table", entry.getKey()), entry.getValue());
+        }
+
+        orm.put("warnings", ormSnapshot.getWarnings());
+        for (Map.Entry<String,Map<CqlMetrics.Warning,Long>> entry : ormSnapshot.getWarnings().entrySet()) {
+            for (Map.Entry<CqlMetrics.Warning,Long> warning : entry.getValue().entrySet()) {
+                prometheus.counter("cassandra_orm_warnings", labels("table", entry.getKey(), "kind", warning.getKey()), warning.getValue());
+            }
+        }
+
+        orm.put("tombstones_avoided", cassandra.getTombstonesAvoided());
+        prometheus.counter("cassandra_orm_tombstones_avoided", null, cassandra.getTombstonesAvoided());
+
+        final PreparedStatementCache preparedStatementCache = cassandra.getPreparedStatementCache();
+        final Map<String,Object> cache = new LinkedHashMap<>();
+        cache.put("size", preparedStatementCache.size());
+        cache.put("max_size", preparedStatementCache.getMaxSize());
+        cache.put("hits", preparedStatementCache.getHits());
+        cache.put("misses", preparedStatementCache.getMisses());
+        cache.put("evictions", preparedStatementCache.getEvictions());
+        orm.put("prepared_statements", cache);
+        prometheus.gauge("cassandra_orm_prepared_statements", null, preparedStatementCache.size());
+        prometheus.counter("cassandra_orm_prepared_statement_hits", null, preparedStatementCache.getHits());
+        prometheus.counter("cassandra_orm_prepared_statement_misses", null, preparedStatementCache.getMisses());
+        prometheus.counter("cassandra_orm_prepared_statement_evictions", null, preparedStatementCache.getEvictions());
+
+        snapshot.put("orm", orm);
+
+        return new Cached(System.currentTimeMillis(), Collections.unmodifiableMap(snapshot), prometheus.toString());
+    }
+
+    static private double seconds(long nanos) {
+        return nanos / 1000000000.0d;
+    }
+
+    static private String labels(Object... namesAndValues) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            sb.append(i > 0 ? "," : "")
+                .append(namesAndValues[i])
+                .append("=\"")
+                .append(String.valueOf(namesAndValues[i + 1])
+                    .replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+                .append('"');
+        }
+        return sb.toString();
+    }
+
+    static class Cached {
+
+        private final long at;
+        private final Map<String,Object> snapshot;
+        private final String prometheus;
+
+        Cached(long at, Map<String,Object> snapshot, String prometheus) {
+            this.at = at;
+            this.snapshot = snapshot;
+            this.prometheus = prometheus;
+        }
+
+    }
+
+    /**
+     * Groups the samples of each metric (the format requires them together)
+     * under its # TYPE line.
+     */
+    static private class Prometheus {
+
+        private final Map<String,StringBuilder> families = new LinkedHashMap<>();
+
+        private StringBuilder family(String family, String type) {
+            return this.families.computeIfAbsent(family,
+                k -> new StringBuilder().append("# TYPE ").append(k).append(' ').append(type).append('\n'));
+        }
+
+        void sample(String family, String type, String name, String labels, Number value) {
+            final StringBuilder sb = this.family(family, type).append(name);
+            if (labels != null) {
+                sb.append('{').append(labels).append('}');
+            }
+            sb.append(' ').append(value != null ? value : 0).append('\n');
+        }
+
+        void gauge(String name, String labels, Number value) {
+            this.sample(name, "gauge", name, labels, value);
+        }
+
+        void counter(String name, String labels, Number value) {
+            this.sample(name + "_total", "counter", name + "_total", labels, value);
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder();
+            this.families.values().forEach(sb::append);
+            return sb.toString();
+        }
+
+    }
+
+}
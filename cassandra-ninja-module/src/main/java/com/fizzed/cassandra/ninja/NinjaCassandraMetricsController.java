@@ -0,0 +1,55 @@
+package com.fizzed.cassandra.ninja;
+
+import java.nio.charset.StandardCharsets;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import ninja.Result;
+import ninja.Results;
+import ninja.Router;
+
+/**
+ * Serves the cached snapshots of {@link NinjaCassandraMetrics}. Not routed
+ * unless an application adds it to its routes, e.g.
+ * 
+ * <pre>
+ * NinjaCassandraMetricsController.routes(router, "/admin/cassandra/metrics");
+ * </pre>
+ */
+@Singleton
+public class NinjaCassandraMetricsController {
+
+    static public final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final NinjaCassandraMetrics metrics;
+
+    @Inject
+    public NinjaCassandraMetricsController(NinjaCassandraMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Routes the JSON at the path and the prometheus text at the path plus
+     * "/prometheus".
+     * 
+     * @param router The router of the application
+     * @param path The path (e.g. "/cassandra/metrics")
+     */
+    static public void routes(Router router, String path) {
+        router.GET().route(path).with(NinjaCassandraMetricsController.class, "json");
+        router.GET().route(path + "/prometheus").with(NinjaCassandraMetricsController.class, "prometheus");
+    }
+
+    public Result json() {
+        return Results.json()
+            .doNotCacheContent()
+            .render(this.metrics.getSnapshot());
+    }
+
+    public Result prometheus() {
+        return Results.ok()
+            .doNotCacheContent()
+            .contentType(PROMETHEUS_CONTENT_TYPE)
+            .renderRaw(this.metrics.getPrometheus().getBytes(StandardCharsets.UTF_8));
+    }
+
+}
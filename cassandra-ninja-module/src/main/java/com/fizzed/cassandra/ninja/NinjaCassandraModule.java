@@ -2,6 +2,7 @@ package com.fizzed.cassandra.ninja;
 
 import com.datastax.driver.core.Cluster;
 import com.datastax.driver.core.Session;
+import com.fizzed.cassandra.orm.Cassandra;
 import com.google.inject.AbstractModule;
 
 public class NinjaCassandraModule extends AbstractModule {
@@ -9,7 +10,10 @@ public class NinjaCassandraModule extends AbstractModule {
     @Override
     protected void configure() {
         bind(Cluster.class).toProvider(NinjaCassandraClusterProvider.class);
+        // starts connecting as the module loads
+        bind(NinjaCassandraSessionProvider.class).asEagerSingleton();
         bind(Session.class).toProvider(NinjaCassandraSessionProvider.class);
+        bind(Cassandra.class).toProvider(NinjaCassandraProvider.class);
         bind(NinjaCassandraLifecycle.class);
         bind(NinjaCassandraMigrate.class);
     }
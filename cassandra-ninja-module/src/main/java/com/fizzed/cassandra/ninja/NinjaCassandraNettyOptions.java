@@ -0,0 +1,75 @@
+package com.fizzed.cassandra.ninja;
+
+import com.datastax.driver.core.NettyOptions;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Netty options with a fixed number of I/O threads and the native epoll
+ * transport (used if <code>netty-transport-native-epoll</code> is on the
+ * classpath and enabled) or NIO otherwise.
+ */
+public class NinjaCassandraNettyOptions extends NettyOptions {
+
+    private final boolean epoll;
+    private final int ioThreads;
+
+    /**
+     * @param epoll True to use epoll if available
+     * @param ioThreads The number of I/O threads (0 for netty's default of 2x cores)
+     */
+    public NinjaCassandraNettyOptions(boolean epoll, int ioThreads) {
+        this.epoll = epoll && isEpollAvailable();
+        this.ioThreads = ioThreads;
+    }
+
+    static public boolean isEpollAvailable() {
+        try {
+            // optional dependency (and only on linux)
+            return (Boolean)Class.forName("io.netty.channel.epoll.Epoll")
+                .getMethod("isAvailable")
+                .invoke(null);
+        }
+        catch (ReflectiveOperationException | LinkageError e) {
+            return false;
+        }
+    }
+
+    public boolean isEpoll() {
+        return this.epoll;
+    }
+
+    @Override
+    public EventLoopGroup eventLoopGroup(ThreadFactory threadFactory) {
+        if (this.epoll) {
+            try {
+                // optional dependency
+                return (EventLoopGroup)Class.forName("io.netty.channel.epoll.EpollEventLoopGroup")
+                    .getConstructor(int.class, ThreadFactory.class)
+                    .newInstance(this.ioThreads, threadFactory);
+            }
+            catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Unable to create epoll event loop group", e);
+            }
+        }
+        return new NioEventLoopGroup(this.ioThreads, threadFactory);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Class<? extends SocketChannel> channelClass() {
+        if (this.epoll) {
+            try {
+                return (Class<? extends SocketChannel>)Class.forName("io.netty.channel.epoll.EpollSocketChannel");
+            }
+            catch (ClassNotFoundException e) {
+                throw new IllegalStateException("Unable to load epoll socket channel", e);
+            }
+        }
+        return NioSocketChannel.class;
+    }
+
+}
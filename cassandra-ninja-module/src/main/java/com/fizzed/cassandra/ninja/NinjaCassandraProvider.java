@@ -0,0 +1,59 @@
+package com.fizzed.cassandra.ninja;
+
+import com.datastax.driver.core.Session;
+import com.fizzed.cassandra.orm.Cassandra;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+import ninja.utils.NinjaProperties;
+import static org.apache.commons.lang3.StringUtils.isEmpty;
+
+@Singleton
+public class NinjaCassandraProvider implements Provider<Cassandra> {
+
+    private final Supplier<Cassandra> memoizedSupplier;
+    
+    @Inject
+    public NinjaCassandraProvider(NinjaProperties ninjaProperties, Provider<Session> sessionProvider) {
+        this.memoizedSupplier = Suppliers.memoize(() -> {
+            final Cassandra cassandra = new Cassandra(sessionProvider.get());
+            
+            // query latency, rows & conflicts by table
+            if (ninjaProperties.getBooleanWithDefault("cassandra.metrics.jmx", true)) {
+                final String keyspace = ninjaProperties.get("cassandra.keyspace");
+                cassandra.getMetrics().registerMBean(!isEmpty(keyspace) ? keyspace : "default");
+            }
+            
+            // queries slower than a threshold to their own logger
+            final String slowQueryThresholdMillis = ninjaProperties.get("cassandra.slow_query.threshold_ms");
+            if (!isEmpty(slowQueryThresholdMillis)) {
+                cassandra.getSlowQueryLog().setThresholdMillis(Long.valueOf(slowQueryThresholdMillis.trim()));
+            }
+            
+            final String slowQueryMaxPerSecond = ninjaProperties.get("cassandra.slow_query.max_per_second");
+            if (!isEmpty(slowQueryMaxPerSecond)) {
+                cassandra.getSlowQueryLog().setMaxPerSecond(Integer.parseInt(slowQueryMaxPerSecond.trim()));
+            }
+            
+            final String slowQueryBufferSize = ninjaProperties.get("cassandra.slow_query.buffer_size");
+            if (!isEmpty(slowQueryBufferSize)) {
+                cassandra.getSlowQueryLog().setBufferSize(Integer.parseInt(slowQueryBufferSize.trim()));
+            }
+            
+            final String[] unredactedColumns = ninjaProperties.getStringArray("cassandra.slow_query.unredacted_columns");
+            if (unredactedColumns != null) {
+                cassandra.getSlowQueryLog().addUnredactedColumns(unredactedColumns);
+            }
+            
+            return cassandra;
+        });
+    }
+    
+    @Override
+    public Cassandra get() {
+        return this.memoizedSupplier.get();
+    }
+    
+}
@@ -2,43 +2,107 @@ package com.fizzed.cassandra.ninja;
 
 import com.datastax.driver.core.Cluster;
 import com.datastax.driver.core.Session;
-import com.google.common.base.Supplier;
-import com.google.common.base.Suppliers;
+import com.fizzed.cassandra.orm.impl.CompletableFutures;
+import com.google.common.util.concurrent.ListenableFuture;
+import java.util.concurrent.CompletableFuture;
 import javax.inject.Inject;
 import javax.inject.Provider;
 import javax.inject.Singleton;
 import ninja.utils.NinjaProperties;
 import static org.apache.commons.lang3.StringUtils.isEmpty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+/**
+ * Connects the session in the background, starting as soon as this provider
+ * is created (when the module loads, unless <code>cassandra.connect_eagerly</code>
+ * is false) so the rest of the application starts while the cluster is
+ * initialized. Only {@link #get()} blocks, until the session is connected.
+ */
 @Singleton
 public class NinjaCassandraSessionProvider implements Provider<Session> {
+    static private final Logger log = LoggerFactory.getLogger(NinjaCassandraSessionProvider.class);
+
+    private final NinjaProperties ninjaProperties;
+    private final Provider<Cluster> clusterProvider;
+    private CompletableFuture<Session> future;
 
-    private final Supplier<Session> memoizedSupplier;
-    
     @Inject
     public NinjaCassandraSessionProvider(
             NinjaProperties ninjaProperties,
             Provider<Cluster> clusterProvider) {
-        this.memoizedSupplier = Suppliers.memoize(() -> {
-            return this.build(ninjaProperties, clusterProvider);
-        });
+        this.ninjaProperties = ninjaProperties;
+        this.clusterProvider = clusterProvider;
+
+        final Boolean validateAtStart = ninjaProperties.getBooleanWithDefault("cassandra.validate_at_start", Boolean.TRUE);
+        if (ninjaProperties.getBooleanWithDefault("cassandra.connect_eagerly", validateAtStart)) {
+            this.connectAsync();
+        }
     }
-    
+
     @Override
     public Session get() {
-        return this.memoizedSupplier.get();
+        return CompletableFutures.get(this.connectAsync());
+    }
+
+    /**
+     * @return A future of the session, connecting it (once) if not already
+     */
+    public CompletableFuture<Session> connectAsync() {
+        synchronized (this) {
+            if (this.future == null) {
+                this.future = this.startConnect();
+            }
+            return this.future;
+        }
+    }
+
+    private CompletableFuture<Session> startConnect() {
+        final CompletableFuture<Session> connecting = new CompletableFuture<>();
+
+        // the driver initializes the cluster (control connection & metadata)
+        // on the calling thread of connectAsync, so do it on our own
+        final Thread thread = new Thread(() -> {
+            final long start = System.currentTimeMillis();
+            try {
+                final Cluster cluster = clusterProvider.get();
+                final String keyspace = ninjaProperties.get("cassandra.keyspace");
+                final ListenableFuture<Session> session = !isEmpty(keyspace)
+                    ? cluster.connectAsync(keyspace) : cluster.connectAsync();
+
+                final long initialized = System.currentTimeMillis();
+                log.info("Initialized cassandra cluster in {} ms", initialized - start);
+
+                CompletableFutures.of(session).whenComplete((v, e) -> {
+                    if (e != null) {
+                        this.failed(connecting, e);
+                    } else {
+                        log.info("Connected cassandra session (keyspace {}) in {} ms",
+                            keyspace, System.currentTimeMillis() - initialized);
+                        connecting.complete(v);
+                    }
+                });
+            }
+            catch (Throwable t) {
+                this.failed(connecting, t);
+            }
+        }, "cassandra-connect");
+
+        thread.setDaemon(true);
+        thread.start();
+
+        return connecting;
     }
-    
-    public Session build(NinjaProperties ninjaProperties, Provider<Cluster> clusterProvider) {
-        final Cluster cluster = clusterProvider.get();
-        final String keyspace = ninjaProperties.get("cassandra.keyspace");
-        final Session session;
-        if (!isEmpty(keyspace)) {
-            session = cluster.connect(keyspace);
-        } else {
-            session = cluster.connect();
+
+    private void failed(CompletableFuture<Session> connecting, Throwable e) {
+        log.warn("Unable to connect to cassandra: {}", e.getMessage());
+        synchronized (this) {
+            // the next caller tries again
+            if (this.future == connecting) {
+                this.future = null;
+            }
         }
-        return session;
+        connecting.completeExceptionally(e);
     }
-    
-}
\ No newline at end of file
+
+}
@@ -1,8 +1,23 @@
 package com.fizzed.cassandra.ninja;
 
 import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.HostDistance;
+import com.datastax.driver.core.PoolingOptions;
+import com.datastax.driver.core.ProtocolOptions;
+import com.datastax.driver.core.SocketOptions;
+import com.datastax.driver.core.policies.ConstantSpeculativeExecutionPolicy;
+import com.datastax.driver.core.policies.DCAwareRoundRobinPolicy;
+import com.datastax.driver.core.policies.LoadBalancingPolicy;
+import com.datastax.driver.core.policies.SpeculativeExecutionPolicy;
+import com.datastax.driver.core.policies.TokenAwarePolicy;
+import com.fizzed.cassandra.orm.LatencySpeculativeExecutionPolicy;
+import com.fizzed.cassandra.orm.codec.InstantCodec;
+import java.time.Instant;
 import ninja.utils.NinjaProperties;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
 import org.junit.Before;
 import org.junit.Test;
@@ -31,4 +46,99 @@ public class NinjaCassandraClusterProviderTest {
         Cluster cluster = clusterBuilder.build();
     }
     
+    @Test
+    public void registersCodecs() {
+        when(ninjaProperties.getBooleanWithDefault("cassandra.codecs", true))
+            .thenReturn(true);
+        
+        Cluster.Builder clusterBuilder = new NinjaCassandraClusterProvider(ninjaProperties)
+            .createBuilder();
+        
+        assertThat(clusterBuilder.getConfiguration().getCodecRegistry()
+            .codecFor(DataType.timestamp(), Instant.class), is(InstantCodec.instance));
+    }
+    
+    @Test
+    public void tuning() {
+        when(ninjaProperties.get("cassandra.pooling.local.core_connections")).thenReturn("2");
+        when(ninjaProperties.get("cassandra.pooling.local.max_connections")).thenReturn("4");
+        when(ninjaProperties.get("cassandra.pooling.local.max_requests_per_connection")).thenReturn("2048");
+        when(ninjaProperties.get("cassandra.pooling.remote.max_connections")).thenReturn("3");
+        when(ninjaProperties.get("cassandra.pooling.pool_timeout_ms")).thenReturn("250");
+        when(ninjaProperties.get("cassandra.pooling.heartbeat_interval_s")).thenReturn("15");
+        when(ninjaProperties.get("cassandra.socket.read_timeout_ms")).thenReturn("3000");
+        when(ninjaProperties.get("cassandra.socket.tcp_no_delay")).thenReturn("false");
+        when(ninjaProperties.get("cassandra.compression")).thenReturn("none");
+        when(ninjaProperties.get("cassandra.fetch_size")).thenReturn("100");
+        when(ninjaProperties.get("cassandra.netty.io_threads")).thenReturn("2");
+        
+        Cluster.Builder clusterBuilder = new NinjaCassandraClusterProvider(ninjaProperties)
+            .createBuilder();
+        
+        PoolingOptions pooling = clusterBuilder.getConfiguration().getPoolingOptions();
+        
+        assertThat(pooling.getCoreConnectionsPerHost(HostDistance.LOCAL), is(2));
+        assertThat(pooling.getMaxConnectionsPerHost(HostDistance.LOCAL), is(4));
+        assertThat(pooling.getMaxRequestsPerConnection(HostDistance.LOCAL), is(2048));
+        assertThat(pooling.getCoreConnectionsPerHost(HostDistance.REMOTE), is(1));
+        assertThat(pooling.getMaxConnectionsPerHost(HostDistance.REMOTE), is(3));
+        assertThat(pooling.getPoolTimeoutMillis(), is(250));
+        assertThat(pooling.getHeartbeatIntervalSeconds(), is(15));
+        
+        SocketOptions socket = clusterBuilder.getConfiguration().getSocketOptions();
+        
+        assertThat(socket.getReadTimeoutMillis(), is(3000));
+        assertThat(socket.getTcpNoDelay(), is(false));
+        // not set, keeps the driver default
+        assertThat(socket.getConnectTimeoutMillis(), is(SocketOptions.DEFAULT_CONNECT_TIMEOUT_MILLIS));
+        
+        assertThat(clusterBuilder.getConfiguration().getProtocolOptions().getCompression(),
+            is(ProtocolOptions.Compression.NONE));
+        assertThat(clusterBuilder.getConfiguration().getQueryOptions().getFetchSize(), is(100));
+        assertThat(clusterBuilder.getConfiguration().getNettyOptions() instanceof NinjaCassandraNettyOptions, is(true));
+    }
+    
+    @Test
+    public void tokenAware() {
+        when(ninjaProperties.get("cassandra.local_dc")).thenReturn("dc2");
+        
+        LoadBalancingPolicy policy = new NinjaCassandraClusterProvider(ninjaProperties)
+            .createBuilder()
+            .getConfiguration()
+            .getPolicies()
+            .getLoadBalancingPolicy();
+        
+        assertThat(policy instanceof TokenAwarePolicy, is(true));
+        assertThat(((TokenAwarePolicy)policy).getChildPolicy() instanceof DCAwareRoundRobinPolicy, is(true));
+        
+        when(ninjaProperties.get("cassandra.token_aware")).thenReturn("false");
+        
+        policy = new NinjaCassandraClusterProvider(ninjaProperties)
+            .createLoadBalancingPolicy();
+        
+        assertThat(policy instanceof DCAwareRoundRobinPolicy, is(true));
+    }
+    
+    @Test
+    public void speculativeExecution() {
+        assertThat(new NinjaCassandraClusterProvider(ninjaProperties)
+            .createSpeculativeExecutionPolicy(), is(nullValue()));
+        
+        when(ninjaProperties.get("cassandra.speculative_execution")).thenReturn("constant");
+        when(ninjaProperties.get("cassandra.speculative_execution.delay_ms")).thenReturn("50");
+        
+        assertThat(new NinjaCassandraClusterProvider(ninjaProperties)
+            .createSpeculativeExecutionPolicy() instanceof ConstantSpeculativeExecutionPolicy, is(true));
+        
+        when(ninjaProperties.get("cassandra.speculative_execution")).thenReturn("percentile");
+        
+        SpeculativeExecutionPolicy policy = new NinjaCassandraClusterProvider(ninjaProperties)
+            .createBuilder()
+            .getConfiguration()
+            .getPolicies()
+            .getSpeculativeExecutionPolicy();
+        
+        assertThat(policy instanceof LatencySpeculativeExecutionPolicy, is(true));
+    }
+    
 }
\ No newline at end of file
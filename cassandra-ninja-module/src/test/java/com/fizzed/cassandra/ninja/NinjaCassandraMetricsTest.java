@@ -0,0 +1,82 @@
+package com.fizzed.cassandra.ninja;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.Session;
+import com.fizzed.cassandra.orm.Cassandra;
+import com.fizzed.cassandra.orm.CqlQuery.Command;
+import static java.util.Arrays.asList;
+import java.util.List;
+import java.util.Map;
+import ninja.utils.NinjaProperties;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import org.junit.Before;
+import org.junit.Test;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class NinjaCassandraMetricsTest {
+ 
+    private NinjaProperties ninjaProperties;
+    private Cassandra cassandra;
+    
+    @Before
+    public void before() {
+        this.ninjaProperties = mock(NinjaProperties.class);
+        final Session session = mock(Session.class);
+        final Session.State state = mock(Session.State.class);
+        final Host host = mock(Host.class);
+        when(session.getCluster()).thenReturn(mock(Cluster.class));
+        when(session.getState()).thenReturn(state);
+        when(state.getConnectedHosts()).thenReturn(asList(host));
+        when(state.getOpenConnections(host)).thenReturn(2);
+        when(state.getInFlightQueries(host)).thenReturn(7);
+        when(host.getDatacenter()).thenReturn("dc1");
+        this.cassandra = new Cassandra(session);
+    }
+    
+    @Test
+    public void snapshot() {
+        this.cassandra.getMetrics().recordLatency("users", Command.SELECT, true, 2000000L);
+        this.cassandra.getMetrics().recordRows("users", 3);
+        
+        final NinjaCassandraMetrics metrics = new NinjaCassandraMetrics(ninjaProperties, () -> cassandra);
+        final Map<String,Object> snapshot = metrics.getSnapshot();
+        
+        final List<Map<String,Object>> hosts = (List<Map<String,Object>>)snapshot.get("hosts");
+        assertThat(hosts.get(0).get("in_flight_queries"), is(7));
+        
+        final Map<String,Object> orm = (Map<String,Object>)snapshot.get("orm");
+        final List<Map<String,Object>> latencies = (List<Map<String,Object>>)orm.get("latencies");
+        assertThat(latencies.get(0).get("table"), is("users"));
+        assertThat(latencies.get(0).get("count"), is(1L));
+        
+        final String prometheus = metrics.getPrometheus();
+        assertThat(prometheus, containsString("# TYPE cassandra_orm_query_latency_seconds summary\n"));
+        assertThat(prometheus, containsString("cassandra_orm_query_latency_seconds_count{table=\"users\",command=\"SELECT\",success=\"true\"} 1\n"));
+        assertThat(prometheus, containsString("cassandra_orm_rows_total{table=\"users\"} 3\n"));
+        assertThat(prometheus, containsString("cassandra_host_in_flight_queries{host=\"null\",datacenter=\"dc1\"} 7\n"));
+        // driver metrics disabled
+        assertThat(prometheus, not(containsString("cassandra_driver_")));
+    }
+    
+    @Test
+    public void cached() {
+        final NinjaCassandraMetrics metrics = new NinjaCassandraMetrics(ninjaProperties, () -> cassandra);
+        
+        final Map<String,Object> snapshot = metrics.getSnapshot();
+        this.cassandra.getMetrics().recordRows("users", 3);
+        
+        // not re-read within the interval
+        assertThat(metrics.getSnapshot(), is(sameInstance(snapshot)));
+        
+        when(ninjaProperties.get("cassandra.metrics.cache_ms")).thenReturn("0");
+        final NinjaCassandraMetrics uncached = new NinjaCassandraMetrics(ninjaProperties, () -> cassandra);
+        assertThat(uncached.getSnapshot(), is(not(sameInstance(uncached.getSnapshot()))));
+    }
+    
+}
@@ -0,0 +1,71 @@
+package com.fizzed.cassandra.ninja;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Session;
+import com.google.common.util.concurrent.Futures;
+import ninja.utils.NinjaProperties;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.Test;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class NinjaCassandraSessionProviderTest {
+ 
+    private NinjaProperties ninjaProperties;
+    private Cluster cluster;
+    
+    @Before
+    public void before() {
+        this.ninjaProperties = mock(NinjaProperties.class);
+        this.cluster = mock(Cluster.class);
+        when(ninjaProperties.getBooleanWithDefault(anyString(), anyBoolean()))
+            .thenAnswer(i -> i.getArgument(1));
+        when(ninjaProperties.get("cassandra.keyspace")).thenReturn("ks");
+    }
+    
+    @Test
+    public void connectsEagerlyInBackground() {
+        final Session session = mock(Session.class);
+        when(cluster.connectAsync("ks")).thenReturn(Futures.immediateFuture(session));
+        
+        final NinjaCassandraSessionProvider provider = new NinjaCassandraSessionProvider(ninjaProperties, () -> cluster);
+        
+        // started without anyone asking for the session
+        verify(cluster, timeout(5000L)).connectAsync("ks");
+        
+        assertThat(provider.get(), is(sameInstance(session)));
+        assertThat(provider.get(), is(sameInstance(session)));
+        verify(cluster, times(1)).connectAsync("ks");
+    }
+    
+    @Test
+    public void retriesAfterFailure() {
+        final Session session = mock(Session.class);
+        when(ninjaProperties.getBooleanWithDefault("cassandra.connect_eagerly", true)).thenReturn(false);
+        when(cluster.connectAsync("ks"))
+            .thenReturn(Futures.immediateFailedFuture(new IllegalStateException("down")))
+            .thenReturn(Futures.immediateFuture(session));
+        
+        final NinjaCassandraSessionProvider provider = new NinjaCassandraSessionProvider(ninjaProperties, () -> cluster);
+        
+        try {
+            provider.get();
+            fail();
+        }
+        catch (IllegalStateException e) {
+            assertThat(e.getMessage(), is("down"));
+        }
+        
+        assertThat(provider.get(), is(sameInstance(session)));
+    }
+    
+}
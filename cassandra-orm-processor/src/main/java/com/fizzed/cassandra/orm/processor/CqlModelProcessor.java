@@ -0,0 +1,450 @@
+package com.fizzed.cassandra.orm.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.Transient;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generates a <code>CqlModel</code> for every <code>@Entity</code> class at
+ * compile time, named <code>[Entity]CqlModel</code> in the same package. The
+ * generated model has the table name, primary keys (the <code>@Id</code>
+ * fields), a row mapper that resolves column indexes once per result set and
+ * reads them with the driver's typed getters, and a value binder that sets
+ * every column of an entity on a query. No reflection is used at runtime.
+ *
+ * Table and column names are taken from <code>@Table(name)</code> and
+ * <code>@Column(name)</code>, otherwise the snake_case of the class and field
+ * names. Static, transient and <code>@Transient</code> fields are skipped.
+ */
+public class CqlModelProcessor extends AbstractProcessor {
+
+    static private final String SUFFIX = "CqlModel";
+
+    // typed getters of a non-primitive java type (null checked first)
+    static private final Map<String,String> GETTERS = new HashMap<>();
+    static {
+        GETTERS.put("java.lang.Long", "getLong");
+        GETTERS.put("java.lang.Integer", "getInt");
+        GETTERS.put("java.lang.Short", "getShort");
+        GETTERS.put("java.lang.Byte", "getByte");
+        GETTERS.put("java.lang.Boolean", "getBool");
+        GETTERS.put("java.lang.Float", "getFloat");
+        GETTERS.put("java.lang.Double", "getDouble");
+        GETTERS.put("java.lang.String", "getString");
+        GETTERS.put("java.util.UUID", "getUUID");
+        GETTERS.put("java.util.Date", "getTimestamp");
+        GETTERS.put("java.nio.ByteBuffer", "getBytes");
+        GETTERS.put("java.math.BigDecimal", "getDecimal");
+        GETTERS.put("java.math.BigInteger", "getVarint");
+        GETTERS.put("java.net.InetAddress", "getInet");
+    }
+
+    static private final Map<TypeKind,String> PRIMITIVE_GETTERS = new HashMap<>();
+    static {
+        PRIMITIVE_GETTERS.put(TypeKind.LONG, "getLong");
+        PRIMITIVE_GETTERS.put(TypeKind.INT, "getInt");
+        PRIMITIVE_GETTERS.put(TypeKind.SHORT, "getShort");
+        PRIMITIVE_GETTERS.put(TypeKind.BYTE, "getByte");
+        PRIMITIVE_GETTERS.put(TypeKind.BOOLEAN, "getBool");
+        PRIMITIVE_GETTERS.put(TypeKind.FLOAT, "getFloat");
+        PRIMITIVE_GETTERS.put(TypeKind.DOUBLE, "getDouble");
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(Entity.class.getCanonicalName());
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(Entity.class)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                this.error(element, "@Entity is only supported on classes");
+                continue;
+            }
+
+            try {
+                this.generate((TypeElement)element);
+            }
+            catch (IllegalArgumentException e) {
+                this.error(element, e.getMessage());
+            }
+            catch (IOException e) {
+                this.error(element, "Unable to generate " + SUFFIX + ": " + e.getMessage());
+            }
+        }
+
+        return false;
+    }
+
+    private void error(Element element, String message) {
+        this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+
+    static private class Property {
+
+        private final String column;
+        private final TypeMirror type;
+        private final boolean id;
+        private final String getter;        // "getX()" or "x"
+        private final String setter;        // "setX" or null if by field
+        private final String field;
+
+        public Property(String column, TypeMirror type, boolean id, String getter, String setter, String field) {
+            this.column = column;
+            this.type = type;
+            this.id = id;
+            this.getter = getter;
+            this.setter = setter;
+            this.field = field;
+        }
+
+        public String read(String entity) {
+            return entity + "." + this.getter;
+        }
+
+        public String write(String entity, String value) {
+            if (this.setter != null) {
+                return entity + "." + this.setter + "(" + value + ");";
+            }
+            return entity + "." + this.field + " = " + value + ";";
+        }
+
+    }
+
+    private void generate(TypeElement entity) throws IOException {
+        if (entity.getModifiers().contains(Modifier.ABSTRACT)) {
+            throw new IllegalArgumentException("@Entity " + entity.getSimpleName() + " cannot be abstract");
+        }
+
+        if (entity.getNestingKind() == NestingKind.MEMBER && !entity.getModifiers().contains(Modifier.STATIC)) {
+            throw new IllegalArgumentException("@Entity " + entity.getSimpleName() + " must be a static class");
+        }
+
+        final boolean hasNoArgConstructor = ElementFilter.constructorsIn(entity.getEnclosedElements()).stream()
+            .anyMatch(c -> c.getParameters().isEmpty() && !c.getModifiers().contains(Modifier.PRIVATE));
+
+        if (!hasNoArgConstructor) {
+            throw new IllegalArgumentException("@Entity " + entity.getSimpleName() + " requires a non-private no-arg constructor");
+        }
+
+        final PackageElement pkg = this.processingEnv.getElementUtils().getPackageOf(entity);
+        final String packageName = pkg.isUnnamed() ? null : pkg.getQualifiedName().toString();
+        final String entityName = entity.getQualifiedName().toString();
+        final String modelName = binaryName(entity, packageName).replace('.', '_') + SUFFIX;
+        final String tableName = tableName(entity);
+        final List<Property> properties = this.properties(entity);
+
+        final List<String> primaryKeys = new ArrayList<>();
+        for (Property p : properties) {
+            if (p.id) {
+                primaryKeys.add(p.column);
+            }
+        }
+
+        if (primaryKeys.isEmpty()) {
+            throw new IllegalArgumentException("@Entity " + entity.getSimpleName() + " requires at least one @Id");
+        }
+
+        final StringBuilder s = new StringBuilder();
+
+        if (packageName != null) {
+            s.append("package ").append(packageName).append(";\n\n");
+        }
+
+        s.append("import com.datastax.driver.core.ColumnDefinitions;\n");
+        s.append("import com.datastax.driver.core.Row;\n");
+        s.append("import com.fizzed.cassandra.orm.CqlModel;\n");
+        s.append("import com.fizzed.cassandra.orm.CqlQuery;\n");
+        s.append("import com.fizzed.cassandra.orm.CqlRowMapper;\n");
+        s.append("import java.util.Arrays;\n");
+        s.append("\n");
+        s.append("// Generated by ").append(CqlModelProcessor.class.getName()).append(" from ").append(entityName).append(" (do not edit)\n");
+        s.append("public final class ").append(modelName).append(" {\n\n");
+
+        // mapper compiled per result set
+        s.append("    static private final class Mapper implements CqlRowMapper<").append(entityName).append("> {\n\n");
+        for (int i = 0; i < properties.size(); i++) {
+            s.append("        private final int i").append(i).append(";\n");
+        }
+        s.append("\n");
+        s.append("        public Mapper(ColumnDefinitions columns) {\n");
+        for (int i = 0; i < properties.size(); i++) {
+            s.append("            this.i").append(i).append(" = columns.getIndexOf(").append(literal(properties.get(i).column)).append(");\n");
+        }
+        s.append("        }\n\n");
+        s.append("        @Override\n");
+        s.append("        public ").append(entityName).append(" apply(Row row) {\n");
+        s.append("            if (row == null) {\n");
+        s.append("                return null;\n");
+        s.append("            }\n");
+        s.append("            final ").append(entityName).append(" e = new ").append(entityName).append("();\n");
+        for (int i = 0; i < properties.size(); i++) {
+            final Property p = properties.get(i);
+            final String index = "this.i" + i;
+            s.append("            if (").append(index).append(" >= 0) {\n");
+            s.append("                ").append(p.write("e", this.read(p.type, index))).append("\n");
+            s.append("            }\n");
+        }
+        s.append("            return e;\n");
+        s.append("        }\n\n");
+        s.append("    }\n\n");
+
+        s.append("    static public final CqlRowMapper<").append(entityName).append("> ROW_MAPPER = new CqlRowMapper<").append(entityName).append(">() {\n");
+        s.append("        @Override\n");
+        s.append("        public ").append(entityName).append(" apply(Row row) {\n");
+        s.append("            // slow path, not compiled for a result set\n");
+        s.append("            return row == null ? null : new Mapper(row.getColumnDefinitions()).apply(row);\n");
+        s.append("        }\n\n");
+        s.append("        @Override\n");
+        s.append("        public CqlRowMapper<").append(entityName).append("> compile(ColumnDefinitions columns) {\n");
+        s.append("            return columns != null ? new Mapper(columns) : this;\n");
+        s.append("        }\n");
+        s.append("    };\n\n");
+
+        s.append("    static public void bind(").append(entityName).append(" e, CqlQuery<?> query) {\n");
+        for (Property p : properties) {
+            s.append("        query.val(").append(literal(p.column)).append(", ").append(this.bindValue(p)).append(");\n");
+        }
+        s.append("    }\n\n");
+
+        s.append("    static public final CqlModel<").append(entityName).append("> MODEL = new CqlModel<").append(entityName).append(">()\n");
+        s.append("        .setTableName(").append(literal(tableName)).append(")\n");
+        s.append("        .setPrimaryKeys(Arrays.asList(");
+        for (int i = 0; i < primaryKeys.size(); i++) {
+            s.append(i > 0 ? ", " : "").append(literal(primaryKeys.get(i)));
+        }
+        s.append("))\n");
+        s.append("        .setRowMapper(ROW_MAPPER)\n");
+        s.append("        .setValueBinder(").append(modelName).append("::bind);\n\n");
+
+        s.append("    private ").append(modelName).append("() { }\n\n");
+        s.append("}\n");
+
+        final String qualifiedModelName = packageName != null ? packageName + "." + modelName : modelName;
+        final JavaFileObject file = this.processingEnv.getFiler().createSourceFile(qualifiedModelName, entity);
+
+        try (Writer writer = file.openWriter()) {
+            writer.write(s.toString());
+        }
+    }
+
+    private List<Property> properties(TypeElement entity) {
+        // superclass fields first
+        final List<TypeElement> hierarchy = new ArrayList<>();
+        TypeElement type = entity;
+        while (type != null && !type.getQualifiedName().contentEquals("java.lang.Object")) {
+            hierarchy.add(0, type);
+            final TypeMirror superclass = type.getSuperclass();
+            type = superclass.getKind() == TypeKind.DECLARED
+                ? (TypeElement)((DeclaredType)superclass).asElement() : null;
+        }
+
+        final List<Property> properties = new ArrayList<>();
+
+        for (TypeElement t : hierarchy) {
+            final List<ExecutableElement> methods = ElementFilter.methodsIn(t.getEnclosedElements());
+
+            for (VariableElement field : ElementFilter.fieldsIn(t.getEnclosedElements())) {
+                if (field.getModifiers().contains(Modifier.STATIC)
+                        || field.getModifiers().contains(Modifier.TRANSIENT)
+                        || field.getAnnotation(Transient.class) != null) {
+                    continue;
+                }
+
+                final String fieldName = field.getSimpleName().toString();
+                final Column column = field.getAnnotation(Column.class);
+                final String columnName = column != null && !column.name().isEmpty() ? column.name() : snakeCase(fieldName);
+                final boolean id = field.getAnnotation(Id.class) != null;
+                final TypeMirror fieldType = field.asType();
+
+                if (fieldType.getKind() == TypeKind.CHAR) {
+                    throw new IllegalArgumentException("Field " + fieldName + " of type char is not supported");
+                }
+
+                final String capitalized = Character.toUpperCase(fieldName.charAt(0)) + fieldName.substring(1);
+                final boolean isBoolean = fieldType.getKind() == TypeKind.BOOLEAN;
+
+                String getter = accessor(methods, "get" + capitalized, 0);
+                if (getter == null && isBoolean) {
+                    getter = accessor(methods, "is" + capitalized, 0);
+                }
+                String setter = accessor(methods, "set" + capitalized, 1);
+
+                final boolean fieldAccessible = !field.getModifiers().contains(Modifier.PRIVATE)
+                    && !field.getModifiers().contains(Modifier.FINAL);
+
+                if ((getter == null || setter == null) && !fieldAccessible) {
+                    throw new IllegalArgumentException("Field " + fieldName + " must be non-private or have a getter and setter");
+                }
+
+                if (getter == null || setter == null) {
+                    // use the field for both
+                    getter = null;
+                    setter = null;
+                }
+
+                properties.add(new Property(columnName, fieldType, id,
+                    getter != null ? getter + "()" : fieldName, setter, fieldName));
+            }
+        }
+
+        if (properties.isEmpty()) {
+            throw new IllegalArgumentException("@Entity " + entity.getSimpleName() + " has no columns");
+        }
+
+        return properties;
+    }
+
+    static private String accessor(List<ExecutableElement> methods, String name, int parameters) {
+        for (ExecutableElement m : methods) {
+            if (m.getSimpleName().contentEquals(name)
+                    && m.getParameters().size() == parameters
+                    && !m.getModifiers().contains(Modifier.PRIVATE)
+                    && !m.getModifiers().contains(Modifier.STATIC)) {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    private String read(TypeMirror type, String index) {
+        final String primitiveGetter = PRIMITIVE_GETTERS.get(type.getKind());
+        if (primitiveGetter != null) {
+            return "row." + primitiveGetter + "(" + index + ")";
+        }
+
+        final String value;
+
+        if (type.getKind() == TypeKind.DECLARED) {
+            final DeclaredType declared = (DeclaredType)type;
+            final TypeElement element = (TypeElement)declared.asElement();
+            final String name = element.getQualifiedName().toString();
+            final List<? extends TypeMirror> args = declared.getTypeArguments();
+
+            if (GETTERS.containsKey(name)) {
+                value = "row." + GETTERS.get(name) + "(" + index + ")";
+            }
+            else if (element.getKind() == ElementKind.ENUM) {
+                value = name + ".valueOf(row.getString(" + index + "))";
+            }
+            else if (name.equals("java.util.List") && args.size() == 1 && isRaw(args.get(0))) {
+                value = "row.getList(" + index + ", " + classLiteral(args.get(0)) + ")";
+            }
+            else if (name.equals("java.util.Set") && args.size() == 1 && isRaw(args.get(0))) {
+                value = "row.getSet(" + index + ", " + classLiteral(args.get(0)) + ")";
+            }
+            else if (name.equals("java.util.Map") && args.size() == 2 && isRaw(args.get(0)) && isRaw(args.get(1))) {
+                value = "row.getMap(" + index + ", " + classLiteral(args.get(0)) + ", " + classLiteral(args.get(1)) + ")";
+            }
+            else if (!args.isEmpty()) {
+                value = "row.get(" + index + ", new com.google.common.reflect.TypeToken<" + type + ">() {})";
+            }
+            else {
+                // anything with a registered codec (e.g. Instant, LocalDate)
+                value = "row.get(" + index + ", " + name + ".class)";
+            }
+        }
+        else if (type.getKind() == TypeKind.ARRAY) {
+            throw new IllegalArgumentException("Arrays are not supported (use a ByteBuffer or List)");
+        }
+        else {
+            throw new IllegalArgumentException("Type " + type + " is not supported");
+        }
+
+        return "row.isNull(" + index + ") ? null : " + value;
+    }
+
+    private String bindValue(Property p) {
+        final String value = p.read("e");
+
+        if (p.type.getKind() == TypeKind.DECLARED
+                && ((DeclaredType)p.type).asElement().getKind() == ElementKind.ENUM) {
+            return "(" + value + " != null ? " + value + ".name() : null)";
+        }
+
+        return value;
+    }
+
+    static private boolean isRaw(TypeMirror type) {
+        return type.getKind() == TypeKind.DECLARED && ((DeclaredType)type).getTypeArguments().isEmpty();
+    }
+
+    static private String classLiteral(TypeMirror type) {
+        return ((TypeElement)((DeclaredType)type).asElement()).getQualifiedName() + ".class";
+    }
+
+    static private String binaryName(TypeElement type, String packageName) {
+        final String name = type.getQualifiedName().toString();
+        return packageName != null ? name.substring(packageName.length() + 1) : name;
+    }
+
+    static private String tableName(TypeElement entity) {
+        final Table table = entity.getAnnotation(Table.class);
+        if (table != null && !table.name().isEmpty()) {
+            return table.name();
+        }
+        final Entity e = entity.getAnnotation(Entity.class);
+        if (e != null && !e.name().isEmpty()) {
+            return e.name();
+        }
+        return snakeCase(entity.getSimpleName().toString());
+    }
+
+    static String snakeCase(String name) {
+        final StringBuilder s = new StringBuilder(name.length() + 4);
+        for (int i = 0; i < name.length(); i++) {
+            final char c = name.charAt(i);
+            if (Character.isUpperCase(c)) {
+                // userID -> user_id, HTTPServer -> http_server
+                final boolean prevLower = i > 0 && !Character.isUpperCase(name.charAt(i - 1));
+                final boolean nextLower = i > 0 && i + 1 < name.length() && Character.isLowerCase(name.charAt(i + 1))
+                    && Character.isUpperCase(name.charAt(i - 1));
+                if (i > 0 && (prevLower || nextLower) && name.charAt(i - 1) != '_') {
+                    s.append('_');
+                }
+                s.append(Character.toLowerCase(c));
+            } else {
+                s.append(c);
+            }
+        }
+        return s.toString();
+    }
+
+    static private String literal(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+}
@@ -0,0 +1,215 @@
+package com.fizzed.cassandra.orm.processor;
+
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.Row;
+import com.fizzed.cassandra.orm.CqlModel;
+import com.fizzed.cassandra.orm.CqlQuery;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CqlModelProcessorTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    static private final String USER = String.join("\n",
+        "package sample;",
+        "import java.util.List;",
+        "import java.util.UUID;",
+        "import javax.persistence.*;",
+        "@Entity",
+        "@Table(name = \"users\")",
+        "public class User {",
+        "    public enum Status { ACTIVE, DISABLED }",
+        "    @Id private UUID id;",
+        "    @Column(name = \"display_name\") private String name;",
+        "    private long loginCount;",
+        "    private Integer age;",
+        "    private boolean admin;",
+        "    Status status;",
+        "    private List<String> tags;",
+        "    @Transient private String ignored;",
+        "    private transient String alsoIgnored;",
+        "    static public final String CONSTANT = \"x\";",
+        "    public UUID getId() { return id; }",
+        "    public void setId(UUID id) { this.id = id; }",
+        "    public String getName() { return name; }",
+        "    public void setName(String name) { this.name = name; }",
+        "    public long getLoginCount() { return loginCount; }",
+        "    public void setLoginCount(long loginCount) { this.loginCount = loginCount; }",
+        "    public Integer getAge() { return age; }",
+        "    public void setAge(Integer age) { this.age = age; }",
+        "    public boolean isAdmin() { return admin; }",
+        "    public void setAdmin(boolean admin) { this.admin = admin; }",
+        "    public List<String> getTags() { return tags; }",
+        "    public void setTags(List<String> tags) { this.tags = tags; }",
+        "}");
+
+    @Test
+    public void snakeCase() {
+        assertThat(CqlModelProcessor.snakeCase("loginCount"), is("login_count"));
+        assertThat(CqlModelProcessor.snakeCase("UserAccount"), is("user_account"));
+        assertThat(CqlModelProcessor.snakeCase("userID"), is("user_id"));
+        assertThat(CqlModelProcessor.snakeCase("HTTPServer"), is("http_server"));
+        assertThat(CqlModelProcessor.snakeCase("id"), is("id"));
+    }
+
+    @Test
+    public void generatesModel() throws Exception {
+        final ClassLoader classLoader = this.compile("sample.User", USER);
+        final Class<?> modelClass = classLoader.loadClass("sample.UserCqlModel");
+        final CqlModel<Object> model = (CqlModel<Object>)modelClass.getField("MODEL").get(null);
+
+        assertThat(model.getTableName(), is("users"));
+        assertThat(model.getPrimaryKeys(), is(new HashSet<>(Arrays.asList("id"))));
+
+        // row mapping by resolved indexes
+        final ColumnDefinitions columns = mock(ColumnDefinitions.class);
+        when(columns.getIndexOf(anyString())).thenReturn(-1);
+        when(columns.getIndexOf("id")).thenReturn(0);
+        when(columns.getIndexOf("display_name")).thenReturn(1);
+        when(columns.getIndexOf("login_count")).thenReturn(2);
+        when(columns.getIndexOf("age")).thenReturn(3);
+        when(columns.getIndexOf("admin")).thenReturn(4);
+        when(columns.getIndexOf("status")).thenReturn(5);
+        when(columns.getIndexOf("tags")).thenReturn(6);
+
+        final UUID id = UUID.randomUUID();
+        final Row row = mock(Row.class);
+        when(row.getUUID(0)).thenReturn(id);
+        when(row.getString(1)).thenReturn("Joe");
+        when(row.getLong(2)).thenReturn(5L);
+        when(row.isNull(3)).thenReturn(true);
+        when(row.getBool(4)).thenReturn(true);
+        when(row.getString(5)).thenReturn("DISABLED");
+        when(row.getList(6, String.class)).thenReturn(Arrays.asList("a", "b"));
+
+        final Object user = model.getRowMapper().compile(columns).apply(row);
+
+        assertThat(get(user, "getId"), is(id));
+        assertThat(get(user, "getName"), is("Joe"));
+        assertThat(get(user, "getLoginCount"), is(5L));
+        assertThat(get(user, "getAge"), is(nullValue()));
+        assertThat(get(user, "isAdmin"), is(true));
+        assertThat(get(user, "getTags"), is(Arrays.asList("a", "b")));
+
+        verify(row, never()).getInt(anyInt());
+        verify(row, never()).getObject(anyInt());
+        verify(row, never()).getObject(anyString());
+
+        // binding
+        final CqlQuery<Object> query = mock(CqlQuery.class);
+        model.getValueBinder().bind(user, query);
+
+        verify(query).val("id", id);
+        verify(query).val("display_name", "Joe");
+        verify(query).val("login_count", 5L);
+        verify(query).val("age", null);
+        verify(query).val("admin", true);
+        verify(query).val("status", "DISABLED");
+        verify(query).val("tags", Arrays.asList("a", "b"));
+        verify(query, never()).val("ignored", null);
+        verify(query, never()).val("also_ignored", null);
+        verify(query, never()).val("constant", "x");
+    }
+
+    @Test
+    public void inaccessibleField() throws Exception {
+        final String source = String.join("\n",
+            "package sample;",
+            "@javax.persistence.Entity",
+            "public class Broken {",
+            "    @javax.persistence.Id private String id;",
+            "}");
+
+        try {
+            this.compile("sample.Broken", source);
+        }
+        catch (IllegalStateException e) {
+            assertThat(e.getMessage(), containsString("must be non-private or have a getter and setter"));
+            return;
+        }
+
+        throw new AssertionError("expected compile failure");
+    }
+
+    @Test
+    public void missingId() throws Exception {
+        final String source = String.join("\n",
+            "package sample;",
+            "@javax.persistence.Entity",
+            "public class Broken {",
+            "    public String id;",
+            "}");
+
+        try {
+            this.compile("sample.Broken", source);
+        }
+        catch (IllegalStateException e) {
+            assertThat(e.getMessage(), containsString("requires at least one @Id"));
+            return;
+        }
+
+        throw new AssertionError("expected compile failure");
+    }
+
+    static private Object get(Object target, String method) throws Exception {
+        final Method m = target.getClass().getMethod(method);
+        return m.invoke(target);
+    }
+
+    private ClassLoader compile(String className, String source) throws IOException {
+        final Path sourceDir = this.temp.newFolder().toPath();
+        final Path outputDir = this.temp.newFolder().toPath();
+        final Path sourceFile = sourceDir.resolve(className.replace('.', '/') + ".java");
+        Files.createDirectories(sourceFile.getParent());
+        Files.write(sourceFile, source.getBytes(StandardCharsets.UTF_8));
+
+        // surefire may run tests from a manifest-only jar
+        final String classPath = System.getProperty("surefire.test.class.path", System.getProperty("java.class.path"));
+
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        final StringWriter out = new StringWriter();
+
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8)) {
+            final Iterable<? extends JavaFileObject> units = fileManager.getJavaFileObjects(sourceFile.toFile());
+            final List<String> options = Arrays.asList("-classpath", classPath, "-d", outputDir.toString(), "-s", outputDir.toString());
+            final JavaCompiler.CompilationTask task = compiler.getTask(out, fileManager, null, options, null, units);
+            task.setProcessors(Collections.singletonList(new CqlModelProcessor()));
+            if (!task.call()) {
+                throw new IllegalStateException("Compile failed: " + out);
+            }
+        }
+
+        return new URLClassLoader(new URL[] { outputDir.toUri().toURL() }, this.getClass().getClassLoader());
+    }
+
+}
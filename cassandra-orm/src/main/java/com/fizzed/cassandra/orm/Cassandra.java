@@ -1,12 +1,23 @@
 package com.fizzed.cassandra.orm;
 
+import com.datastax.driver.core.CodecRegistry;
 import com.datastax.driver.core.Row;
 import com.datastax.driver.core.Session;
+import com.datastax.driver.core.TypeCodec;
+import com.datastax.driver.core.exceptions.CodecNotFoundException;
 import com.fizzed.cassandra.orm.CqlQuery.Command;
 import com.fizzed.cassandra.orm.impl.CqlQueryImpl;
+import com.fizzed.cassandra.orm.impl.CqlQueryListeners;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 
 public class Cassandra {
     
@@ -15,19 +26,117 @@ public class Cassandra {
     
     private final AtomicLong idSequence;
     private final Session session;
+    private final PreparedStatementCache preparedStatementCache;
     private final Map<Class<?>,CqlModel<?>> modelTypes;
+    private final LongAdder tombstonesAvoided;
+    private final Map<String,Boolean> counterTables;
+    private final CqlMetrics metrics;
+    private final CqlSlowQueryLog slowQueryLog;
+    private volatile CqlQueryListener[] listeners;
 
     public Cassandra(Session session) {
         this.idSequence = new AtomicLong();
         this.session = session;
+        this.preparedStatementCache = new PreparedStatementCache(session);
         this.modelTypes = new HashMap<>();
+        this.tombstonesAvoided = new LongAdder();
+        this.counterTables = new ConcurrentHashMap<>();
+        this.metrics = new CqlMetrics();
+        this.slowQueryLog = new CqlSlowQueryLog();
+        this.listeners = CqlQueryListeners.NONE;
+    }
+
+    public Session getSession() {
+        return this.session;
+    }
+
+    public PreparedStatementCache getPreparedStatementCache() {
+        return this.preparedStatementCache;
+    }
+    
+    /**
+     * @return The number of null values left unset by queries (and batches)
+     *      with unset nulls enabled, i.e. the number of tombstones avoided
+     */
+    public long getTombstonesAvoided() {
+        return this.tombstonesAvoided.sum();
+    }
+    
+    /**
+     * @return The latency, rows & conflicts of every query (and template)
+     */
+    public CqlMetrics getMetrics() {
+        return this.metrics;
+    }
+    
+    /**
+     * @return The log of queries (and templates) slower than a threshold,
+     *      disabled until one is set
+     */
+    public CqlSlowQueryLog getSlowQueryLog() {
+        return this.slowQueryLog;
+    }
+    
+    /**
+     * Registers a listener called before & after every query (and template)
+     * created from now on.
+     * 
+     * @param listener The listener
+     * @return This
+     */
+    public Cassandra addListener(CqlQueryListener listener) {
+        synchronized (this) {
+            final CqlQueryListener[] copy = Arrays.copyOf(this.listeners, this.listeners.length + 1);
+            copy[copy.length - 1] = listener;
+            this.listeners = copy;
+        }
+        return this;
+    }
+    
+    public Cassandra removeListener(CqlQueryListener listener) {
+        synchronized (this) {
+            this.listeners = Arrays.stream(this.listeners)
+                .filter(v -> v != listener)
+                .toArray(CqlQueryListener[]::new);
+        }
+        return this;
+    }
+    
+    public List<CqlQueryListener> getListeners() {
+        return Arrays.asList(this.listeners);
     }
     
     public Cassandra registerModel(Class<?> type, CqlModel<?> model) {
+        this.registerCodecs(model);
         this.modelTypes.put(type, model);
+        if (model.getSlowQueryThresholdMillis() != null && model.getTableName() != null) {
+            this.slowQueryLog.setThresholdMillis(model.getTableName(), model.getSlowQueryThresholdMillis());
+        }
         return this;
     }
     
+    private void registerCodecs(CqlModel<?> model) {
+        if (model.getCodecs() == null || this.session == null || this.session.getCluster() == null) {
+            return;
+        }
+        
+        final CodecRegistry codecRegistry = this.session.getCluster().getConfiguration().getCodecRegistry();
+        
+        for (TypeCodec<?> codec : model.getCodecs()) {
+            try {
+                codecRegistry.codecFor(codec.getCqlType(), codec.getJavaType());
+                // already registered
+            }
+            catch (CodecNotFoundException e) {
+                codecRegistry.register(codec);
+            }
+        }
+    }
+    
+    public Collection<CqlModel<?>> getModels() {
+        return new ArrayList<>(this.modelTypes.values());
+    }
+    
     private <T> CqlModel<T> resolveModel(Class<?> type) {
         final CqlModel<?> model = this.modelTypes.get(type);
         
@@ -51,9 +160,13 @@ public class Cassandra {
     }
     
     private <T> CqlQuery<T> select(CqlModel<T> model) {
-        return new CqlQueryImpl<T>(this.idSequence.incrementAndGet(), this.session, Command.SELECT)
+        return new CqlQueryImpl<T>(this.idSequence.incrementAndGet(), this.session, this.preparedStatementCache, Command.SELECT)
+            .metrics(this.metrics)
+            .listeners(this.listeners)
+            .slowQueryLog(this.slowQueryLog)
             .rowMapper(model.getRowMapper())
             .colMappers(model.getColMappers())
+            .valueBinder(model.getValueBinder())
             .primaryKeys(model.getPrimaryKeys())
             .columns("*")
             .table(model.getTableName());
@@ -72,10 +185,17 @@ public class Cassandra {
     }
     
     public <T> CqlQuery<T> update(CqlModel<T> model) {
-        return new CqlQueryImpl<T>(this.idSequence.incrementAndGet(), this.session, Command.UPDATE)
+        return new CqlQueryImpl<T>(this.idSequence.incrementAndGet(), this.session, this.preparedStatementCache, Command.UPDATE)
+            .metrics(this.metrics)
+            .listeners(this.listeners)
+            .slowQueryLog(this.slowQueryLog)
+            .tombstonesAvoided(this.tombstonesAvoided)
+            .counterTables(this.counterTables)
             .rowMapper(model.getRowMapper())
             .colMappers(model.getColMappers())
+            .valueBinder(model.getValueBinder())
             .primaryKeys(model.getPrimaryKeys())
+            .setUnsetNulls(model.isUnsetNulls())
             .table(model.getTableName());
     }
     
@@ -92,10 +212,17 @@ public class Cassandra {
     }
     
     private <T> CqlQuery<T> insert(CqlModel<T> model) {
-        return new CqlQueryImpl<T>(this.idSequence.incrementAndGet(), this.session, Command.INSERT)
+        return new CqlQueryImpl<T>(this.idSequence.incrementAndGet(), this.session, this.preparedStatementCache, Command.INSERT)
+            .metrics(this.metrics)
+            .listeners(this.listeners)
+            .slowQueryLog(this.slowQueryLog)
+            .tombstonesAvoided(this.tombstonesAvoided)
+            .counterTables(this.counterTables)
             .rowMapper(model.getRowMapper())
             .colMappers(model.getColMappers())
+            .valueBinder(model.getValueBinder())
             .primaryKeys(model.getPrimaryKeys())
+            .setUnsetNulls(model.isUnsetNulls())
             .table(model.getTableName());
     }
     
@@ -112,10 +239,17 @@ public class Cassandra {
     }
     
     private <T> CqlQuery<T> upsert(CqlModel<T> model) {
-        return new CqlQueryImpl<T>(this.idSequence.incrementAndGet(), this.session, Command.UPSERT)
+        return new CqlQueryImpl<T>(this.idSequence.incrementAndGet(), this.session, this.preparedStatementCache, Command.UPSERT)
+            .metrics(this.metrics)
+            .listeners(this.listeners)
+            .slowQueryLog(this.slowQueryLog)
+            .tombstonesAvoided(this.tombstonesAvoided)
+            .counterTables(this.counterTables)
             .rowMapper(model.getRowMapper())
             .colMappers(model.getColMappers())
+            .valueBinder(model.getValueBinder())
             .primaryKeys(model.getPrimaryKeys())
+            .setUnsetNulls(model.isUnsetNulls())
             .table(model.getTableName());
     }
     
@@ -132,11 +266,76 @@ public class Cassandra {
     }
 
     private <T> CqlQuery<T> delete(CqlModel<T> model) {
-        return new CqlQueryImpl<T>(this.idSequence.incrementAndGet(), this.session, Command.DELETE)
+        return new CqlQueryImpl<T>(this.idSequence.incrementAndGet(), this.session, this.preparedStatementCache, Command.DELETE)
+            .counterTables(this.counterTables)
+            .metrics(this.metrics)
+            .listeners(this.listeners)
+            .slowQueryLog(this.slowQueryLog)
             .rowMapper(model.getRowMapper())
             .colMappers(model.getColMappers())
+            .valueBinder(model.getValueBinder())
             .primaryKeys(model.getPrimaryKeys())
             .table(model.getTableName());
     }
 
+    
+    
+    public CqlTemplate<Row> compile(String tableName, Function<CqlQuery<Row>,? extends CqlQuery<Row>> select) {
+        return select.apply(this.select(tableName))
+            .compile();
+    }
+    
+    /**
+     * Compiles a select of the model into a template, e.g.
+     * <code>compile(User.class, q -&gt; q.where().eq("id", CqlTemplate.BIND))</code>
+     * (use {@link CqlQuery#compile()} for any other command).
+     * 
+     * @param <T> The model type
+     * @param type The model type
+     * @param select The shape of the select
+     * @return The template
+     */
+    public <T> CqlTemplate<T> compile(Class<T> type, Function<CqlQuery<T>,? extends CqlQuery<T>> select) {
+        return select.apply(this.select(type))
+            .compile();
+    }
+    
+    
+    
+    public CqlBatch batch() {
+        return new CqlBatch(this.idSequence.incrementAndGet(), this.session, this.preparedStatementCache)
+            .tombstonesAvoided(this.tombstonesAvoided)
+            .metrics(this.metrics);
+    }
+
+
+
+    public CqlScan<Row> scan(String tableName) {
+        return scan(ROW_MODEL)
+            .table(tableName);
+    }
+
+    public <T> CqlScan<T> scan(Class<T> type) {
+        final CqlModel<T> model = this.resolveModel(type);
+        return this.scan(model);
+    }
+
+    private <T> CqlScan<T> scan(CqlModel<T> model) {
+        return new CqlScan<T>(this.idSequence.incrementAndGet(), this.session, this.preparedStatementCache)
+            .rowMapper(model.getRowMapper())
+            .table(model.getTableName());
+    }
+
+
+
+    public CqlBulkWriter bulkWriter() {
+        return new CqlBulkWriter(this.idSequence.incrementAndGet());
+    }
+
+
+
+    public CqlWarmup warmup() {
+        return new CqlWarmup(this.idSequence.incrementAndGet(), this.session, this.preparedStatementCache, new HashMap<>(this.modelTypes));
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,351 @@
+package com.fizzed.cassandra.orm;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.fizzed.cassandra.orm.CqlQuery.Parameter;
+import com.fizzed.cassandra.orm.impl.CompletableFutures;
+import com.fizzed.cassandra.orm.impl.ConcurrentFutures;
+import com.fizzed.cassandra.orm.impl.CqlQueryImpl;
+import com.fizzed.cassandra.orm.impl.PartitionKeys;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import static java.util.stream.Collectors.toList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Groups writes by partition and sends each group as an UNLOGGED batch, so a
+ * batch only ever touches a single partition (and therefore a single replica
+ * set). Batches for different partitions are sent concurrently.
+ */
+public class CqlBatch {
+    static private final Logger log = LoggerFactory.getLogger(CqlBatch.class);
+
+    static public final int DEFAULT_MAX_STATEMENTS = 100;
+    // cassandra.yaml batch_size_warn_threshold_in_kb defaults to 5
+    static public final int DEFAULT_MAX_BYTES = 5 * 1024;
+    static public final int DEFAULT_MAX_CONCURRENCY = 32;
+
+    private final long id;
+    private final Session session;
+    private final PreparedStatementCache preparedStatementCache;
+    private final List<CqlBoundQuery> queries;
+    private boolean prepared;
+    private int maxStatements;
+    private int maxBytes;
+    private int maxConcurrency;
+    private ConsistencyLevel consistencyLevel;
+    private LongAdder tombstonesAvoided;
+    private CqlMetrics metrics;
+
+    public CqlBatch(long id, Session session, PreparedStatementCache preparedStatementCache) {
+        this.id = id;
+        this.session = session;
+        this.preparedStatementCache = preparedStatementCache;
+        this.queries = new ArrayList<>();
+        this.prepared = true;
+        this.maxStatements = DEFAULT_MAX_STATEMENTS;
+        this.maxBytes = DEFAULT_MAX_BYTES;
+        this.maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+    }
+
+    CqlBatch tombstonesAvoided(LongAdder tombstonesAvoided) {
+        this.tombstonesAvoided = tombstonesAvoided;
+        return this;
+    }
+
+    /**
+     * @param metrics The metrics to record the warnings (e.g. a batch too
+     *      large) cassandra returns for a batch in
+     * @return This batch
+     */
+    CqlBatch metrics(CqlMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    public CqlBatch add(CqlBoundQuery query) {
+        Objects.requireNonNull(query, "query was null");
+
+        switch (query.getCommand()) {
+            case INSERT:
+            case UPDATE:
+            case DELETE:
+                break;
+            default:
+                throw new IllegalArgumentException("Only INSERT, UPDATE or DELETE allowed in a batch (not " + query.getCommand() + ")");
+        }
+
+        if (query.getOptimisticLock() != null) {
+            throw new IllegalArgumentException("Optimistic locking (LWT) is not supported in a batch");
+        }
+
+        this.queries.add(query);
+        return this;
+    }
+
+    public CqlBatch add(CqlQuery<?> query) {
+        return this.add(query.build());
+    }
+
+    public CqlBatch addAll(Iterable<CqlBoundQuery> queries) {
+        for (CqlBoundQuery query : queries) {
+            this.add(query);
+        }
+        return this;
+    }
+
+    public int size() {
+        return this.queries.size();
+    }
+
+    public CqlBatch setPrepared(boolean prepared) {
+        this.prepared = prepared;
+        return this;
+    }
+
+    public CqlBatch setMaxStatements(int maxStatements) {
+        if (maxStatements <= 0) {
+            throw new IllegalArgumentException("maxStatements must be > 0");
+        }
+        this.maxStatements = maxStatements;
+        return this;
+    }
+
+    public CqlBatch setMaxBytes(int maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be > 0");
+        }
+        this.maxBytes = maxBytes;
+        return this;
+    }
+
+    public CqlBatch setMaxConcurrency(int maxConcurrency) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency must be > 0");
+        }
+        this.maxConcurrency = maxConcurrency;
+        return this;
+    }
+
+    public CqlBatch setConsistencyLevel(ConsistencyLevel consistencyLevel) {
+        this.consistencyLevel = consistencyLevel;
+        return this;
+    }
+
+    /**
+     * Executes all batches and waits for them to complete.
+     *
+     * @return The number of batches sent
+     */
+    public int execute() {
+        return CompletableFutures.get(this.executeAsync());
+    }
+
+    public CompletableFuture<Integer> executeAsync() {
+        final List<List<CqlBoundQuery>> batches = this.partition();
+
+        if (log.isTraceEnabled()) {
+            log.trace("[batch {}] {} statements grouped into {} batches", this.id, this.queries.size(), batches.size());
+        }
+
+        final List<Supplier<CompletableFuture<Void>>> tasks = batches.stream()
+            .map(batch -> (Supplier<CompletableFuture<Void>>)() -> this.executeBatch(batch))
+            .collect(toList());
+
+        return ConcurrentFutures.all(tasks, this.maxConcurrency)
+            .thenApply(v -> batches.size());
+    }
+
+    private CompletableFuture<Void> executeBatch(List<CqlBoundQuery> batch) {
+        final List<CompletableFuture<Statement>> statementFutures = new ArrayList<>(batch.size());
+
+        for (CqlBoundQuery query : batch) {
+            if (this.prepared) {
+                statementFutures.add(this.preparedStatementCache.getAsync(query.getCql())
+                    .thenApply(ps -> query.bind(ps)));
+            } else {
+                statementFutures.add(CompletableFuture.completedFuture(
+                    new SimpleStatement(query.getCql(), query.toValues())));
+            }
+            
+            final int unset = this.prepared ? query.getUnsetCount() : query.getOmittedCount();
+            if (unset > 0 && this.tombstonesAvoided != null) {
+                this.tombstonesAvoided.add(unset);
+            }
+        }
+
+        return CompletableFuture.allOf(statementFutures.toArray(new CompletableFuture[0]))
+            .thenCompose(v -> {
+                final Statement statement;
+
+                if (statementFutures.size() == 1) {
+                    // no need to wrap a single statement
+                    statement = statementFutures.get(0).join();
+                } else {
+                    final BatchStatement batchStatement = new BatchStatement(BatchStatement.Type.UNLOGGED);
+                    for (CompletableFuture<Statement> f : statementFutures) {
+                        batchStatement.add(f.join());
+                    }
+                    statement = batchStatement;
+                }
+
+                if (this.consistencyLevel != null) {
+                    statement.setConsistencyLevel(this.consistencyLevel);
+                }
+
+                return CompletableFutures.of(this.session.executeAsync(statement));
+            })
+            .thenApply(rs -> {
+                // counted under the table & cql of its first statement
+                final CqlBoundQuery first = batch.get(0);
+                CqlQueryImpl.checkWarnings(this.metrics, first.getTableName(), first.getCql(), rs, false);
+                return null;
+            });
+    }
+
+    /**
+     * Groups the queries by table & partition key, then splits each group so
+     * no batch exceeds the max statements or (estimated) max bytes.
+     */
+    List<List<CqlBoundQuery>> partition() {
+        final Map<String,List<String>> partitionKeysByTable = new HashMap<>();
+        final Map<Object,List<CqlBoundQuery>> groups = new LinkedHashMap<>();
+
+        for (CqlBoundQuery query : this.queries) {
+            final List<String> partitionKeys = partitionKeysByTable.computeIfAbsent(
+                query.getTableName(), k -> this.resolvePartitionKeys(query));
+
+            final Object groupKey = groupKey(query, partitionKeys);
+
+            groups.computeIfAbsent(groupKey, k -> new ArrayList<>()).add(query);
+        }
+
+        final List<List<CqlBoundQuery>> batches = new ArrayList<>();
+
+        for (List<CqlBoundQuery> group : groups.values()) {
+            List<CqlBoundQuery> batch = new ArrayList<>();
+            int batchBytes = 0;
+
+            for (CqlBoundQuery query : group) {
+                final int queryBytes = estimateSize(query);
+
+                if (!batch.isEmpty() && (batch.size() >= this.maxStatements || batchBytes + queryBytes > this.maxBytes)) {
+                    batches.add(batch);
+                    batch = new ArrayList<>();
+                    batchBytes = 0;
+                }
+
+                batch.add(query);
+                batchBytes += queryBytes;
+            }
+
+            if (!batch.isEmpty()) {
+                batches.add(batch);
+            }
+        }
+
+        return batches;
+    }
+
+    private List<String> resolvePartitionKeys(CqlBoundQuery query) {
+        final List<String> partitionKeys = PartitionKeys.resolve(this.session, query.getTableName());
+        
+        if (partitionKeys != null) {
+            return partitionKeys;
+        }
+
+        // without metadata, the full primary key is the safest grouping we can do
+        final Set<String> primaryKeys = query.getPrimaryKeys();
+        if (primaryKeys != null && !primaryKeys.isEmpty()) {
+            return primaryKeys.stream()
+                .sorted()
+                .collect(toList());
+        }
+
+        return null;
+    }
+
+    static private Object groupKey(CqlBoundQuery query, List<String> partitionKeys) {
+        if (partitionKeys == null || partitionKeys.isEmpty()) {
+            // unknown partition, must go on its own
+            return new Object();
+        }
+
+        final List<Object> key = new ArrayList<>(partitionKeys.size() + 1);
+        key.add(query.getTableName());
+
+        for (String partitionKey : partitionKeys) {
+            final Parameter p = PartitionKeys.parameter(query.getParameters(), partitionKey);
+            if (p == null || p.getValue() instanceof Iterable) {
+                // partition key missing or an IN clause, must go on its own
+                return new Object();
+            }
+            key.add(p.getValue());
+        }
+
+        return key;
+    }
+
+    static int estimateSize(CqlBoundQuery query) {
+        int size = 0;
+        if (query.getParameters() != null) {
+            for (Parameter p : query.getParameters()) {
+                size += estimateSize(p.getValue());
+            }
+        }
+        return size;
+    }
+
+    static private int estimateSize(Object v) {
+        if (v == null) {
+            return 4;
+        }
+        if (v instanceof String) {
+            return 4 + ((String)v).length();
+        }
+        if (v instanceof ByteBuffer) {
+            return 4 + ((ByteBuffer)v).remaining();
+        }
+        if (v instanceof UUID) {
+            return 4 + 16;
+        }
+        if (v instanceof Long || v instanceof Double || v instanceof Date) {
+            return 4 + 8;
+        }
+        if (v instanceof Number || v instanceof Boolean) {
+            return 4 + 4;
+        }
+        if (v instanceof Collection) {
+            int size = 4;
+            for (Object o : (Collection<?>)v) {
+                size += estimateSize(o);
+            }
+            return size;
+        }
+        if (v instanceof Map) {
+            int size = 4;
+            for (Map.Entry<?,?> entry : ((Map<?,?>)v).entrySet()) {
+                size += estimateSize(entry.getKey()) + estimateSize(entry.getValue());
+            }
+            return size;
+        }
+        return 4 + 16;
+    }
+
+}
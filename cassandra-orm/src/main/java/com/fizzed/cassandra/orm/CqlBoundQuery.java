@@ -1,5 +1,7 @@
 package com.fizzed.cassandra.orm;
 
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.PreparedStatement;
 import com.fizzed.cassandra.orm.CqlQuery.Command;
 import com.fizzed.cassandra.orm.CqlQuery.Parameter;
 import java.util.List;
@@ -13,6 +15,8 @@ public class CqlBoundQuery {
     private final List<Parameter> parameters;
     private final Set<String> primaryKeys;
     private final Parameter optimisticLock;
+    private final int[] unsetIndexes;
+    private final int unsetCount;
 
     public CqlBoundQuery(
             Command command,
@@ -22,12 +26,27 @@ public class CqlBoundQuery {
             Set<String> primaryKeys,
             Parameter optimisticLock) {
         
+        this(command, cql, tableName, parameters, primaryKeys, optimisticLock, null, 0);
+    }
+    
+    public CqlBoundQuery(
+            Command command,
+            String cql,
+            String tableName,
+            List<Parameter> parameters,
+            Set<String> primaryKeys,
+            Parameter optimisticLock,
+            int[] unsetIndexes,
+            int unsetCount) {
+        
         this.command = command;
         this.cql = cql;
         this.tableName = tableName;
         this.parameters = parameters;
         this.primaryKeys = primaryKeys;
         this.optimisticLock = optimisticLock;
+        this.unsetIndexes = unsetIndexes;
+        this.unsetCount = unsetCount;
     }
 
     public Command getCommand() {
@@ -54,6 +73,38 @@ public class CqlBoundQuery {
         return this.optimisticLock;
     }
 
+    /**
+     * The number of null column values left out of this query (either unset
+     * when bound or omitted from the cql), each a tombstone not written.
+     * 
+     * @return The number of null values not written
+     */
+    public int getUnsetCount() {
+        return this.unsetCount;
+    }
+
+    int getOmittedCount() {
+        // omitted from the cql rather than unset when bound
+        return this.unsetCount - (this.unsetIndexes != null ? this.unsetIndexes.length : 0);
+    }
+
+    /**
+     * Binds the values to the prepared statement of this query, leaving
+     * the null values flagged as unset (protocol v4+) unset.
+     * 
+     * @param preparedStatement The prepared statement of this query's cql
+     * @return The bound statement
+     */
+    public BoundStatement bind(PreparedStatement preparedStatement) {
+        final BoundStatement statement = preparedStatement.bind(this.toValues());
+        if (this.unsetIndexes != null) {
+            for (int i : this.unsetIndexes) {
+                statement.unset(i);
+            }
+        }
+        return statement;
+    }
+
     public Object[] toValues() {
         if (this.parameters == null || this.parameters.isEmpty()) {
             return new Object[0];
@@ -0,0 +1,398 @@
+package com.fizzed.cassandra.orm;
+
+import com.datastax.driver.core.exceptions.BootstrappingException;
+import com.datastax.driver.core.exceptions.BusyConnectionException;
+import com.datastax.driver.core.exceptions.BusyPoolException;
+import com.datastax.driver.core.exceptions.NoHostAvailableException;
+import com.datastax.driver.core.exceptions.OperationTimedOutException;
+import com.datastax.driver.core.exceptions.OverloadedException;
+import com.datastax.driver.core.exceptions.UnavailableException;
+import com.datastax.driver.core.exceptions.WriteTimeoutException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streams writes to Cassandra with at most N of them in flight at once. When
+ * saturated, a write either blocks until a slot frees up or is rejected with a
+ * <code>RejectedExecutionException</code>. Writes that failed for a reason that
+ * is safe to retry (timeouts, overloaded or unavailable replicas) are retried
+ * with a backoff, unless they are not idempotent (e.g. optimistic locking).
+ * @see CqlQuery#setIdempotent(Boolean)
+ */
+public class CqlBulkWriter implements AutoCloseable {
+    static private final Logger log = LoggerFactory.getLogger(CqlBulkWriter.class);
+
+    static public final int DEFAULT_MAX_IN_FLIGHT = 128;
+    static public final int DEFAULT_MAX_RETRIES = 3;
+    static public final long DEFAULT_RETRY_DELAY_MILLIS = 50L;
+    static private final long MAX_RETRY_DELAY_MILLIS = 5000L;
+
+    private final long id;
+    private int maxInFlight;
+    private Semaphore permits;
+    private boolean blockWhenSaturated;
+    private int maxRetries;
+    private long retryDelayMillis;
+    private BiConsumer<CqlQuery<?>,Throwable> errorHandler;
+    private final AtomicInteger inFlight;
+    private final LongAdder submitted;
+    private final LongAdder completed;
+    private final LongAdder failed;
+    private final LongAdder retried;
+    private final LongAdder rejected;
+    private final LatencyHistogram latency;
+    private final AtomicReference<Throwable> firstError;
+    private volatile long startNanos;
+    private volatile boolean closed;
+    private ScheduledExecutorService scheduler;
+
+    public CqlBulkWriter(long id) {
+        this.id = id;
+        this.maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+        this.permits = new Semaphore(DEFAULT_MAX_IN_FLIGHT);
+        this.blockWhenSaturated = true;
+        this.maxRetries = DEFAULT_MAX_RETRIES;
+        this.retryDelayMillis = DEFAULT_RETRY_DELAY_MILLIS;
+        this.inFlight = new AtomicInteger();
+        this.submitted = new LongAdder();
+        this.completed = new LongAdder();
+        this.failed = new LongAdder();
+        this.retried = new LongAdder();
+        this.rejected = new LongAdder();
+        this.latency = new LatencyHistogram();
+        this.firstError = new AtomicReference<>();
+    }
+
+    public CqlBulkWriter setMaxInFlight(int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight must be > 0");
+        }
+        if (this.startNanos != 0L) {
+            throw new IllegalStateException("maxInFlight must be set before the first write");
+        }
+        this.maxInFlight = maxInFlight;
+        this.permits = new Semaphore(maxInFlight);
+        return this;
+    }
+
+    /**
+     * @param blockWhenSaturated True (default) to block the writing thread
+     *      when max in flight is reached, false to reject the write instead
+     * @return This writer
+     */
+    public CqlBulkWriter setBlockWhenSaturated(boolean blockWhenSaturated) {
+        this.blockWhenSaturated = blockWhenSaturated;
+        return this;
+    }
+
+    public CqlBulkWriter setMaxRetries(int maxRetries) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("maxRetries must be >= 0");
+        }
+        this.maxRetries = maxRetries;
+        return this;
+    }
+
+    public CqlBulkWriter setRetryDelayMillis(long retryDelayMillis) {
+        if (retryDelayMillis < 0) {
+            throw new IllegalArgumentException("retryDelayMillis must be >= 0");
+        }
+        this.retryDelayMillis = retryDelayMillis;
+        return this;
+    }
+
+    /**
+     * @param errorHandler Called for every write that ultimately failed. If
+     *      not set, the first failure is rethrown by flush() or close().
+     * @return This writer
+     */
+    public CqlBulkWriter setErrorHandler(BiConsumer<CqlQuery<?>,Throwable> errorHandler) {
+        this.errorHandler = errorHandler;
+        return this;
+    }
+
+    public int getInFlight() {
+        return this.inFlight.get();
+    }
+
+    public CqlBulkWriter write(CqlQuery<?> query) {
+        if (this.closed) {
+            throw new IllegalStateException("Bulk writer is closed");
+        }
+
+        if (this.blockWhenSaturated) {
+            try {
+                this.permits.acquire();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted waiting for in-flight writes", e);
+            }
+        } else if (!this.permits.tryAcquire()) {
+            this.rejected.increment();
+            throw new RejectedExecutionException("Bulk writer saturated (" + this.maxInFlight + " writes in flight)");
+        }
+
+        if (this.startNanos == 0L) {
+            this.startNanos = System.nanoTime();
+        }
+
+        this.submitted.increment();
+        this.inFlight.incrementAndGet();
+
+        this.attempt(query, 0, System.nanoTime());
+
+        return this;
+    }
+
+    public CqlBulkWriter writeAll(Iterable<? extends CqlQuery<?>> queries) {
+        for (CqlQuery<?> query : queries) {
+            this.write(query);
+        }
+        return this;
+    }
+
+    public CqlBulkWriter writeAll(Stream<? extends CqlQuery<?>> queries) {
+        queries.forEachOrdered(this::write);
+        return this;
+    }
+
+    /**
+     * Waits for all in-flight writes to complete.
+     */
+    public void flush() {
+        try {
+            this.permits.acquire(this.maxInFlight);
+            this.permits.release(this.maxInFlight);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for in-flight writes", e);
+        }
+
+        final Throwable error = this.firstError.getAndSet(null);
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException)error;
+        }
+        if (error instanceof Error) {
+            throw (Error)error;
+        }
+        if (error != null) {
+            throw new IllegalStateException(error);
+        }
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+        try {
+            this.flush();
+        }
+        finally {
+            synchronized (this) {
+                if (this.scheduler != null) {
+                    this.scheduler.shutdown();
+                }
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("[bulk {}] closed {}", this.id, this.getStats());
+            }
+        }
+    }
+
+    public Stats getStats() {
+        final long start = this.startNanos;
+        final long elapsedNanos = start != 0L ? System.nanoTime() - start : 0L;
+        return new Stats(
+            this.submitted.sum(),
+            this.completed.sum(),
+            this.failed.sum(),
+            this.retried.sum(),
+            this.rejected.sum(),
+            this.inFlight.get(),
+            elapsedNanos,
+            this.latency.snapshot());
+    }
+
+    private void attempt(CqlQuery<?> query, int attempt, long start) {
+        CompletableFuture<?> future;
+        try {
+            future = query.executeAsync();
+        }
+        catch (Throwable t) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(t);
+        }
+
+        future.whenComplete((rs, e) -> {
+            if (e == null) {
+                this.done(query, start, null);
+                return;
+            }
+
+            final Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+
+            if (attempt < this.maxRetries && isRetryable(query, cause)) {
+                this.retried.increment();
+                final long delay = Math.min(this.retryDelayMillis << attempt, MAX_RETRY_DELAY_MILLIS);
+                if (log.isDebugEnabled()) {
+                    log.debug("[bulk {}] retrying write in {} ms (attempt {}): {}", this.id, delay, attempt + 1, cause.getMessage());
+                }
+                try {
+                    this.scheduler().schedule(() -> this.attempt(query, attempt + 1, start), delay, TimeUnit.MILLISECONDS);
+                    return;
+                }
+                catch (RejectedExecutionException ree) {
+                    // scheduler shut down, fall through as a failure
+                }
+            }
+
+            this.done(query, start, cause);
+        });
+    }
+
+    private void done(CqlQuery<?> query, long start, Throwable error) {
+        try {
+            this.latency.record(System.nanoTime() - start);
+
+            if (error == null) {
+                this.completed.increment();
+            } else {
+                this.failed.increment();
+                if (this.errorHandler != null) {
+                    try {
+                        this.errorHandler.accept(query, error);
+                    }
+                    catch (Throwable t) {
+                        log.error("[bulk {}] error handler failed", this.id, t);
+                    }
+                } else {
+                    this.firstError.compareAndSet(null, error);
+                }
+            }
+        }
+        finally {
+            this.inFlight.decrementAndGet();
+            this.permits.release();
+        }
+    }
+
+    private synchronized ScheduledExecutorService scheduler() {
+        if (this.scheduler == null) {
+            final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+                final Thread thread = new Thread(r, "cassandra-bulk-writer-" + this.id);
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.setRemoveOnCancelPolicy(true);
+            this.scheduler = executor;
+        }
+        return this.scheduler;
+    }
+
+    static boolean isRetryable(CqlQuery<?> query, Throwable e) {
+        if (!(e instanceof OperationTimedOutException
+                || e instanceof WriteTimeoutException
+                || e instanceof UnavailableException
+                || e instanceof OverloadedException
+                || e instanceof BootstrappingException
+                || e instanceof BusyPoolException
+                || e instanceof BusyConnectionException
+                || e instanceof NoHostAvailableException)) {
+            return false;
+        }
+
+        // a write that timed out may have been applied, so only retried if
+        // applying it twice is safe (e.g. not a lightweight transaction or a
+        // delete of a list element)
+        return query.isIdempotent();
+    }
+
+    static public class Stats {
+
+        private final long submitted;
+        private final long completed;
+        private final long failed;
+        private final long retried;
+        private final long rejected;
+        private final int inFlight;
+        private final long elapsedNanos;
+        private final LatencyHistogram.Snapshot latency;
+
+        Stats(long submitted, long completed, long failed, long retried, long rejected,
+                int inFlight, long elapsedNanos, LatencyHistogram.Snapshot latency) {
+            this.submitted = submitted;
+            this.completed = completed;
+            this.failed = failed;
+            this.retried = retried;
+            this.rejected = rejected;
+            this.inFlight = inFlight;
+            this.elapsedNanos = elapsedNanos;
+            this.latency = latency;
+        }
+
+        public long getSubmitted() {
+            return this.submitted;
+        }
+
+        public long getCompleted() {
+            return this.completed;
+        }
+
+        public long getFailed() {
+            return this.failed;
+        }
+
+        public long getRetried() {
+            return this.retried;
+        }
+
+        public long getRejected() {
+            return this.rejected;
+        }
+
+        public int getInFlight() {
+            return this.inFlight;
+        }
+
+        public long getElapsedMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(this.elapsedNanos);
+        }
+
+        public double getOpsPerSecond() {
+            return this.elapsedNanos > 0 ? (this.completed + this.failed) * 1e9d / this.elapsedNanos : 0.0d;
+        }
+
+        /**
+         * @return The write latency histogram (in nanos), including retries
+         */
+        public LatencyHistogram.Snapshot getLatency() {
+            return this.latency;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                "submitted=%d completed=%d failed=%d retried=%d rejected=%d inFlight=%d ops/s=%.1f p50=%.2fms p99=%.2fms max=%.2fms",
+                this.submitted, this.completed, this.failed, this.retried, this.rejected, this.inFlight,
+                this.getOpsPerSecond(),
+                this.latency.getValueAtPercentile(50.0d) / 1e6d,
+                this.latency.getValueAtPercentile(99.0d) / 1e6d,
+                this.latency.getMax() / 1e6d);
+        }
+
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.fizzed.cassandra.orm;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Converts values of any registered source class to a target type. The
+ * converter for a source class is resolved once (walking its superclasses
+ * and interfaces, so e.g. a HeapByteBuffer finds the ByteBuffer converter)
+ * and then cached per class with a <code>ClassValue</code>.
+ *
+ * @param <T> The target type
+ */
+public class CqlConverter<T> {
+
+    private final Class<T> targetType;
+    private final Map<Class<?>,Function<Object,? extends T>> converters;
+    private volatile ClassValue<Function<Object,? extends T>> dispatch;
+
+    public CqlConverter(Class<T> targetType) {
+        this.targetType = targetType;
+        this.converters = new ConcurrentHashMap<>();
+        this.dispatch = this.newDispatch();
+    }
+
+    public Class<T> getTargetType() {
+        return this.targetType;
+    }
+
+    /**
+     * Registers (or replaces) the conversion from a source class. Values of
+     * subclasses of the source class are converted by it as well unless they
+     * have a more specific conversion registered.
+     *
+     * @param <S> The source type
+     * @param sourceType The source class
+     * @param converter The conversion
+     * @return This converter
+     */
+    public <S> CqlConverter<T> register(Class<S> sourceType, Function<? super S,? extends T> converter) {
+        this.converters.put(sourceType, v -> converter.apply(sourceType.cast(v)));
+        // previously resolved classes may now resolve differently
+        this.dispatch = this.newDispatch();
+        return this;
+    }
+
+    public boolean canConvert(Class<?> sourceType) {
+        return this.dispatch.get(sourceType) != null;
+    }
+
+    public T convert(Object v) {
+        if (v == null) {
+            return null;
+        }
+
+        final Function<Object,? extends T> converter = this.dispatch.get(v.getClass());
+
+        if (converter == null) {
+            throw new IllegalArgumentException("Unable to convert " + v.getClass() + " <-> " + this.targetType.getName());
+        }
+
+        return converter.apply(v);
+    }
+
+    private ClassValue<Function<Object,? extends T>> newDispatch() {
+        return new ClassValue<Function<Object,? extends T>>() {
+            @Override
+            protected Function<Object,? extends T> computeValue(Class<?> type) {
+                return resolve(type);
+            }
+        };
+    }
+
+    private Function<Object,? extends T> resolve(Class<?> type) {
+        // closest match first: the class, then its superclasses & interfaces
+        final Deque<Class<?>> queue = new ArrayDeque<>();
+        final Set<Class<?>> visited = new HashSet<>();
+        queue.add(type);
+
+        while (!queue.isEmpty()) {
+            final Class<?> c = queue.poll();
+            if (!visited.add(c)) {
+                continue;
+            }
+
+            final Function<Object,? extends T> converter = this.converters.get(c);
+            if (converter != null) {
+                return converter;
+            }
+
+            if (c.getSuperclass() != null) {
+                queue.add(c.getSuperclass());
+            }
+            for (Class<?> i : c.getInterfaces()) {
+                queue.add(i);
+            }
+        }
+
+        return null;
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.fizzed.cassandra.orm;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import static java.util.stream.Collectors.toList;
+import java.util.stream.StreamSupport;
+
+/**
+ * Registry of the conversions used by {@link DateTypes} (and the other
+ * <code>javaX</code> / <code>cqlX</code> helpers), keyed by target type and
+ * then source class. Register your own to support additional types, e.g.
+ * <code>CqlConverters.register(MyId.class, String.class, MyId::toString)</code>
+ */
+public class CqlConverters {
+
+    static private final Map<Class<?>,CqlConverter<?>> CONVERTERS = new ConcurrentHashMap<>();
+
+    static final CqlConverter<String> STRING = to(String.class)
+        .register(String.class, v -> v)
+        .register(ByteBuffer.class, v -> StandardCharsets.UTF_8.decode(v.duplicate()).toString());
+
+    static final CqlConverter<ByteBuffer> BLOB = to(ByteBuffer.class)
+        .register(ByteBuffer.class, v -> v)
+        .register(String.class, v -> StandardCharsets.UTF_8.encode(v));
+
+    static final CqlConverter<List> LIST = to(List.class)
+        .register(List.class, v -> v)
+        // we MUST adapt it
+        .register(Iterable.class, v -> (List)StreamSupport.stream(v.spliterator(), false).collect(toList()));
+
+    static final CqlConverter<Byte> BYTE = to(Byte.class)
+        .register(Byte.class, v -> v)
+        .register(Number.class, Number::byteValue);
+
+    static final CqlConverter<Short> SHORT = to(Short.class)
+        .register(Short.class, v -> v)
+        .register(Number.class, Number::shortValue);
+
+    static final CqlConverter<Integer> INTEGER = to(Integer.class)
+        .register(Integer.class, v -> v)
+        .register(Number.class, Number::intValue);
+
+    static final CqlConverter<Long> LONG = to(Long.class)
+        .register(Long.class, v -> v)
+        .register(Number.class, Number::longValue);
+
+    static public <T> CqlConverter<T> to(Class<T> targetType) {
+        return (CqlConverter<T>)CONVERTERS.computeIfAbsent(targetType, k -> new CqlConverter<>(targetType));
+    }
+
+    static public <S,T> void register(Class<S> sourceType, Class<T> targetType, Function<? super S,? extends T> converter) {
+        to(targetType).register(sourceType, converter);
+    }
+
+    static public <T> T convert(Object v, Class<T> targetType) {
+        if (v == null) {
+            return null;
+        }
+        return to(targetType).convert(v);
+    }
+
+}
@@ -0,0 +1,121 @@
+package com.fizzed.cassandra.orm;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A file of the CQL shapes an application prepares (one statement per line),
+ * recorded from the {@link PreparedStatementCache} during normal runs so the
+ * next start can prepare them all up front (see {@link CqlWarmup}).
+ */
+public class CqlManifest {
+
+    static public final int DEFAULT_MAX_SIZE = PreparedStatementCache.DEFAULT_MAX_SIZE;
+
+    private final Path file;
+    private int maxSize;
+
+    public CqlManifest(Path file) {
+        this.file = file;
+        this.maxSize = DEFAULT_MAX_SIZE;
+    }
+
+    public Path getFile() {
+        return this.file;
+    }
+
+    public CqlManifest setMaxSize(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be > 0");
+        }
+        this.maxSize = maxSize;
+        return this;
+    }
+
+    /**
+     * @return The recorded CQL, or empty if the file does not exist yet
+     */
+    public List<String> read() {
+        if (!Files.exists(this.file)) {
+            return new ArrayList<>();
+        }
+
+        try {
+            final List<String> cqls = new ArrayList<>();
+            for (String line : Files.readAllLines(this.file, StandardCharsets.UTF_8)) {
+                final String cql = line.trim();
+                if (!cql.isEmpty() && !cql.startsWith("#")) {
+                    cqls.add(cql);
+                }
+            }
+            return cqls;
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Merges the CQL into the file, keeping the most recent (i.e. last) up to
+     * the max size. The file is replaced atomically so a concurrent start never
+     * reads a partial manifest.
+     *
+     * @param cqls The CQL to record (e.g. {@link PreparedStatementCache#getCqls()})
+     * @return The number of statements in the manifest
+     */
+    public int write(Collection<String> cqls) {
+        final Set<String> merged = new LinkedHashSet<>(this.read());
+
+        for (String cql : cqls) {
+            // one statement per line
+            final String line = cql.replaceAll("\\s*[\\r\\n]+\\s*", " ").trim();
+            if (!line.isEmpty()) {
+                // move it to the end as the most recent
+                merged.remove(line);
+                merged.add(line);
+            }
+        }
+
+        final List<String> lines = new ArrayList<>(merged);
+        final List<String> kept = lines.subList(Math.max(0, lines.size() - this.maxSize), lines.size());
+
+        try {
+            final Path dir = this.file.toAbsolutePath().getParent();
+            if (dir != null) {
+                Files.createDirectories(dir);
+            }
+
+            final Path temp = Files.createTempFile(dir, this.file.getFileName().toString(), ".tmp");
+            try {
+                try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                    writer.write("# cql prepared by the application (recorded automatically)");
+                    writer.newLine();
+                    for (String cql : kept) {
+                        writer.write(cql);
+                        writer.newLine();
+                    }
+                }
+                Files.move(temp, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return kept.size();
+    }
+
+}
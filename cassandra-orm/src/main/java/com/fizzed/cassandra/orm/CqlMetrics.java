@@ -0,0 +1,482 @@
+package com.fizzed.cassandra.orm;
+
+import com.fizzed.cassandra.orm.CqlQuery.Command;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Latency histograms (in nanoseconds) of every query executed through a
+ * {@link Cassandra}, by table, command and success (or failure), plus the
+ * rows returned and optimistic lock conflicts by table. Recording is lock-free
+ * and allocation-free once a table has been seen, so it is always on.
+ *
+ * Rows are counted as they are mapped by the find methods (a find iterator
+ * counts the rows of each page as it is fetched).
+ *
+ * The warnings cassandra returns with a response (e.g. a read scanning too
+ * many tombstones or a batch too large) are counted by table & cql, with a
+ * buffer of the most recent, rather than only ending up in the server logs.
+ */
+public class CqlMetrics implements CqlMetricsMXBean {
+
+    static private final Command[] COMMANDS = Command.values();
+    static private final Warning[] WARNINGS = Warning.values();
+    
+    static public final int MAX_WARNING_SHAPES = 1000;
+    static public final int WARNING_SAMPLES = 100;
+
+    static public enum Warning {
+        TOMBSTONE,
+        BATCH_SIZE,
+        OTHER;
+
+        static public Warning of(String message) {
+            final String m = message.toLowerCase();
+            if (m.contains("tombstone")) {
+                return TOMBSTONE;
+            }
+            if (m.contains("batch")) {
+                return BATCH_SIZE;
+            }
+            return OTHER;
+        }
+    }
+
+    private final ConcurrentMap<String,TableMetrics> tables;
+    private final ConcurrentMap<String,LongAdder[]> warningsByCql;
+    private final WarningSample[] warningSamples;
+    private int nextWarningSample;
+
+    public CqlMetrics() {
+        this.tables = new ConcurrentHashMap<>();
+        this.warningsByCql = new ConcurrentHashMap<>();
+        this.warningSamples = new WarningSample[WARNING_SAMPLES];
+    }
+
+    private TableMetrics table(String tableName) {
+        final String name = tableName != null ? tableName : "";
+        // get first, avoids the lock of computeIfAbsent once seen
+        final TableMetrics table = this.tables.get(name);
+        return table != null ? table : this.tables.computeIfAbsent(name, TableMetrics::new);
+    }
+
+    public void recordLatency(String tableName, Command command, boolean success, long nanos) {
+        this.table(tableName).histogram(command, success).record(nanos);
+    }
+
+    public void recordRows(String tableName, long rows) {
+        if (rows > 0) {
+            this.table(tableName).rows.add(rows);
+        }
+    }
+
+    public void recordConflict(String tableName) {
+        this.table(tableName).conflicts.increment();
+    }
+
+    /**
+     * @param tableName The table queried
+     * @param cql The cql (i.e. shape) of the query
+     * @param warnings The warnings of its response
+     * @return True if any warning was of tombstones
+     */
+    public boolean recordWarnings(String tableName, String cql, List<String> warnings) {
+        final TableMetrics table = this.table(tableName);
+        
+        // shapes are bounded, beyond that only the table is counted
+        LongAdder[] byCql = this.warningsByCql.get(cql);
+        if (byCql == null && this.warningsByCql.size() < MAX_WARNING_SHAPES) {
+            byCql = this.warningsByCql.computeIfAbsent(cql, k -> newAdders(WARNINGS.length));
+        }
+
+        boolean tombstones = false;
+        for (String message : warnings) {
+            final Warning warning = Warning.of(message);
+            tombstones |= warning == Warning.TOMBSTONE;
+            table.warnings[warning.ordinal()].increment();
+            if (byCql != null) {
+                byCql[warning.ordinal()].increment();
+            }
+            synchronized (this.warningSamples) {
+                this.warningSamples[this.nextWarningSample] = new WarningSample(
+                    System.currentTimeMillis(), table.name, cql, warning, message);
+                this.nextWarningSample = (this.nextWarningSample + 1) % this.warningSamples.length;
+            }
+        }
+
+        return tombstones;
+    }
+
+    static private LongAdder[] newAdders(int length) {
+        final LongAdder[] adders = new LongAdder[length];
+        for (int i = 0; i < length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    static private Map<Warning,Long> sums(LongAdder[] adders) {
+        final Map<Warning,Long> sums = new EnumMap<>(Warning.class);
+        for (Warning warning : WARNINGS) {
+            sums.put(warning, adders[warning.ordinal()].sum());
+        }
+        return sums;
+    }
+
+    @Override
+    public void reset() {
+        this.tables.clear();
+        this.warningsByCql.clear();
+        synchronized (this.warningSamples) {
+            Arrays.fill(this.warningSamples, null);
+            this.nextWarningSample = 0;
+        }
+    }
+
+    public Snapshot snapshot() {
+        final List<Latency> latencies = new ArrayList<>();
+        final Map<String,Long> rows = new TreeMap<>();
+        final Map<String,Long> conflicts = new TreeMap<>();
+        final Map<String,Map<Warning,Long>> warnings = new TreeMap<>();
+        final Map<String,Map<Warning,Long>> warningsByCql = new TreeMap<>();
+        final List<WarningSample> samples = new ArrayList<>();
+
+        for (TableMetrics table : this.tables.values()) {
+            for (int i = 0; i < table.histograms.length(); i++) {
+                final LatencyHistogram histogram = table.histograms.get(i);
+                if (histogram != null) {
+                    latencies.add(new Latency(table.name, COMMANDS[i / 2], i % 2 == 0, histogram.snapshot()));
+                }
+            }
+            rows.put(table.name, table.rows.sum());
+            conflicts.put(table.name, table.conflicts.sum());
+            warnings.put(table.name, sums(table.warnings));
+        }
+
+        for (Map.Entry<String,LongAdder[]> entry : this.warningsByCql.entrySet()) {
+            warningsByCql.put(entry.getKey(), sums(entry.getValue()));
+        }
+
+        synchronized (this.warningSamples) {
+            // newest first
+            for (int i = 1; i <= this.warningSamples.length; i++) {
+                final WarningSample sample = this.warningSamples[
+                    (this.nextWarningSample - i + this.warningSamples.length) % this.warningSamples.length];
+                if (sample == null) {
+                    break;
+                }
+                samples.add(sample);
+            }
+        }
+
+        latencies.sort((a, b) -> {
+            int c = a.getTableName().compareTo(b.getTableName());
+            if (c == 0) {
+                c = a.getCommand().compareTo(b.getCommand());
+            }
+            if (c == 0) {
+                c = Boolean.compare(b.isSuccess(), a.isSuccess());
+            }
+            return c;
+        });
+
+        return new Snapshot(latencies, rows, conflicts, warnings, warningsByCql, samples);
+    }
+
+    @Override
+    public List<LatencyStats> getLatencies() {
+        final List<LatencyStats> stats = new ArrayList<>();
+        for (Latency latency : this.snapshot().getLatencies()) {
+            stats.add(new LatencyStats(latency));
+        }
+        return stats;
+    }
+
+    @Override
+    public Map<String,Long> getRowsByTable() {
+        return this.snapshot().getRows();
+    }
+
+    @Override
+    public Map<String,Long> getConflictsByTable() {
+        return this.snapshot().getConflicts();
+    }
+
+    @Override
+    public Map<String,Long> getWarningsByTable() {
+        final Map<String,Long> v = new TreeMap<>();
+        for (Map.Entry<String,Map<Warning,Long>> entry : this.snapshot().getWarnings().entrySet()) {
+            for (Map.Entry<Warning,Long> warning : entry.getValue().entrySet()) {
+                v.put(entry.getKey() + ":" + warning.getKey(), warning.getValue());
+            }
+        }
+        return v;
+    }
+
+    @Override
+    public List<WarningSample> getRecentWarnings() {
+        return this.snapshot().getWarningSamples();
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server, replacing any
+     * already registered under the same name.
+     *
+     * @param name The name (e.g. of the keyspace) to tell apart the metrics
+     *      of more than one {@link Cassandra}
+     * @return The object name registered
+     */
+    public ObjectName registerMBean(String name) {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName objectName = new ObjectName("com.fizzed.cassandra:type=CqlMetrics,name="
+                + ObjectName.quote(name));
+            try {
+                server.registerMBean(this, objectName);
+            }
+            catch (InstanceAlreadyExistsException e) {
+                server.unregisterMBean(objectName);
+                server.registerMBean(this, objectName);
+            }
+            return objectName;
+        }
+        catch (JMException e) {
+            throw new IllegalStateException("Unable to register metrics mbean " + name, e);
+        }
+    }
+
+    static private class TableMetrics {
+
+        private final String name;
+        // by command & success, created on first use
+        private final AtomicReferenceArray<LatencyHistogram> histograms;
+        private final LongAdder rows;
+        private final LongAdder conflicts;
+        private final LongAdder[] warnings;
+
+        TableMetrics(String name) {
+            this.name = name;
+            this.histograms = new AtomicReferenceArray<>(COMMANDS.length * 2);
+            this.rows = new LongAdder();
+            this.conflicts = new LongAdder();
+            this.warnings = newAdders(WARNINGS.length);
+        }
+
+        LatencyHistogram histogram(Command command, boolean success) {
+            final int i = command.ordinal() * 2 + (success ? 0 : 1);
+            LatencyHistogram histogram = this.histograms.get(i);
+            if (histogram == null) {
+                this.histograms.compareAndSet(i, null, new LatencyHistogram());
+                histogram = this.histograms.get(i);
+            }
+            return histogram;
+        }
+
+    }
+
+    static public class Snapshot {
+
+        private final List<Latency> latencies;
+        private final Map<String,Long> rows;
+        private final Map<String,Long> conflicts;
+        private final Map<String,Map<Warning,Long>> warnings;
+        private final Map<String,Map<Warning,Long>> warningsByCql;
+        private final List<WarningSample> warningSamples;
+
+        Snapshot(List<Latency> latencies, Map<String,Long> rows, Map<String,Long> conflicts,
+                Map<String,Map<Warning,Long>> warnings, Map<String,Map<Warning,Long>> warningsByCql,
+                List<WarningSample> warningSamples) {
+            this.latencies = Collections.unmodifiableList(latencies);
+            this.rows = Collections.unmodifiableMap(rows);
+            this.conflicts = Collections.unmodifiableMap(conflicts);
+            this.warnings = Collections.unmodifiableMap(warnings);
+            this.warningsByCql = Collections.unmodifiableMap(warningsByCql);
+            this.warningSamples = Collections.unmodifiableList(warningSamples);
+        }
+
+        /**
+         * @return The latencies by table, command & success (in that order)
+         */
+        public List<Latency> getLatencies() {
+            return this.latencies;
+        }
+
+        /**
+         * @return The rows returned by table
+         */
+        public Map<String,Long> getRows() {
+            return this.rows;
+        }
+
+        /**
+         * @return The optimistic lock conflicts (incl. duplicate inserts) by table
+         */
+        public Map<String,Long> getConflicts() {
+            return this.conflicts;
+        }
+
+        /**
+         * @return The server warnings by table & kind
+         */
+        public Map<String,Map<Warning,Long>> getWarnings() {
+            return this.warnings;
+        }
+
+        /**
+         * @return The server warnings by cql (i.e. query shape) & kind
+         */
+        public Map<String,Map<Warning,Long>> getWarningsByCql() {
+            return this.warningsByCql;
+        }
+
+        /**
+         * @return The most recent server warnings (newest first)
+         */
+        public List<WarningSample> getWarningSamples() {
+            return this.warningSamples;
+        }
+
+    }
+
+    static public class WarningSample {
+
+        private final long timestamp;
+        private final String tableName;
+        private final String cql;
+        private final Warning warning;
+        private final String message;
+
+        WarningSample(long timestamp, String tableName, String cql, Warning warning, String message) {
+            this.timestamp = timestamp;
+            this.tableName = tableName;
+            this.cql = cql;
+            this.warning = warning;
+            this.message = message;
+        }
+
+        public long getTimestamp() {
+            return this.timestamp;
+        }
+
+        public String getTableName() {
+            return this.tableName;
+        }
+
+        public String getCql() {
+            return this.cql;
+        }
+
+        public Warning getWarning() {
+            return this.warning;
+        }
+
+        public String getMessage() {
+            return this.message;
+        }
+
+    }
+
+    static public class Latency {
+
+        private final String tableName;
+        private final Command command;
+        private final boolean success;
+        private final LatencyHistogram.Snapshot histogram;
+
+        Latency(String tableName, Command command, boolean success, LatencyHistogram.Snapshot histogram) {
+            this.tableName = tableName;
+            this.command = command;
+            this.success = success;
+            this.histogram = histogram;
+        }
+
+        public String getTableName() {
+            return this.tableName;
+        }
+
+        public Command getCommand() {
+            return this.command;
+        }
+
+        public boolean isSuccess() {
+            return this.success;
+        }
+
+        /**
+         * @return The histogram of latencies in nanoseconds
+         */
+        public LatencyHistogram.Snapshot getHistogram() {
+            return this.histogram;
+        }
+
+    }
+
+    /**
+     * A latency summarized in microseconds (for JMX).
+     */
+    static public class LatencyStats {
+
+        private final Latency latency;
+
+        LatencyStats(Latency latency) {
+            this.latency = latency;
+        }
+
+        public String getTableName() {
+            return this.latency.getTableName();
+        }
+
+        public String getCommand() {
+            return this.latency.getCommand().name();
+        }
+
+        public boolean isSuccess() {
+            return this.latency.isSuccess();
+        }
+
+        public long getCount() {
+            return this.latency.getHistogram().getCount();
+        }
+
+        public double getMeanMicros() {
+            return this.latency.getHistogram().getMean() / 1000.0d;
+        }
+
+        public long getP50Micros() {
+            return micros(this.latency.getHistogram().getValueAtPercentile(50.0d));
+        }
+
+        public long getP99Micros() {
+            return micros(this.latency.getHistogram().getValueAtPercentile(99.0d));
+        }
+
+        public long getP999Micros() {
+            return micros(this.latency.getHistogram().getValueAtPercentile(99.9d));
+        }
+
+        public long getMaxMicros() {
+            return micros(this.latency.getHistogram().getMax());
+        }
+
+        static private long micros(long nanos) {
+            return TimeUnit.NANOSECONDS.toMicros(nanos);
+        }
+
+    }
+
+}
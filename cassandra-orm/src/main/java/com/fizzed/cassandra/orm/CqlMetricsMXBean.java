@@ -0,0 +1,26 @@
+package com.fizzed.cassandra.orm;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The JMX view of {@link CqlMetrics}.
+ */
+public interface CqlMetricsMXBean {
+
+    List<CqlMetrics.LatencyStats> getLatencies();
+
+    Map<String,Long> getRowsByTable();
+
+    Map<String,Long> getConflictsByTable();
+
+    /**
+     * @return The server warnings by table & kind (e.g. "users:TOMBSTONE")
+     */
+    Map<String,Long> getWarningsByTable();
+
+    List<CqlMetrics.WarningSample> getRecentWarnings();
+
+    void reset();
+
+}
@@ -1,7 +1,10 @@
 package com.fizzed.cassandra.orm;
 
+import com.datastax.driver.core.TypeCodec;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import static java.util.stream.Collectors.toSet;
@@ -12,6 +15,10 @@ public class CqlModel<T> {
     private CqlRowMapper<T> rowMapper;
     private Map<String,CqlColMapper> colMappers;
     private Set<String> primaryKeys;
+    private CqlValueBinder<T> valueBinder;
+    private boolean unsetNulls;
+    private Long slowQueryThresholdMillis;
+    private List<TypeCodec<?>> codecs;
 
     public String getTableName() {
         return tableName;
@@ -48,6 +55,44 @@ public class CqlModel<T> {
         return this;
     }
 
+    public CqlValueBinder<T> getValueBinder() {
+        return valueBinder;
+    }
+
+    public CqlModel<T> setValueBinder(CqlValueBinder<T> valueBinder) {
+        this.valueBinder = valueBinder;
+        return this;
+    }
+
+    public boolean isUnsetNulls() {
+        return unsetNulls;
+    }
+
+    /**
+     * @param unsetNulls The default of {@link CqlQuery#setUnsetNulls(boolean)}
+     *      for inserts, updates and upserts of this model
+     * @return This model
+     */
+    public CqlModel<T> setUnsetNulls(boolean unsetNulls) {
+        this.unsetNulls = unsetNulls;
+        return this;
+    }
+
+    public Long getSlowQueryThresholdMillis() {
+        return slowQueryThresholdMillis;
+    }
+
+    /**
+     * @param slowQueryThresholdMillis The latency above which a query of this
+     *      model is logged as slow, or null for the global threshold (see
+     *      {@link CqlSlowQueryLog})
+     * @return This model
+     */
+    public CqlModel<T> setSlowQueryThresholdMillis(Long slowQueryThresholdMillis) {
+        this.slowQueryThresholdMillis = slowQueryThresholdMillis;
+        return this;
+    }
+
     public Set<String> getPrimaryKeys() {
         return primaryKeys;
     }
@@ -57,5 +102,25 @@ public class CqlModel<T> {
             .collect(toSet());
         return this;
     }
+
+    public List<TypeCodec<?>> getCodecs() {
+        return codecs;
+    }
+
+    /**
+     * Adds a codec this model relies on (e.g. <code>JodaDateTimeCodec.instance</code>)
+     * to read and bind its values directly. Registered with the cluster's
+     * codec registry when the model is registered.
+     * 
+     * @param codec The codec
+     * @return This model
+     */
+    public CqlModel<T> addCodec(TypeCodec<?> codec) {
+        if (this.codecs == null) {
+            this.codecs = new ArrayList<>();
+        }
+        this.codecs.add(codec);
+        return this;
+    }
     
 }
\ No newline at end of file
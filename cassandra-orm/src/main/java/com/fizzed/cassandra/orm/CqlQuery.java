@@ -6,6 +6,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import static java.util.stream.Collectors.toSet;
 import java.util.stream.StreamSupport;
 
@@ -79,6 +80,8 @@ public interface CqlQuery<T> {
     
     CqlQuery<T> colMappers(Map<String,CqlColMapper> colMappers);
     
+    CqlQuery<T> valueBinder(CqlValueBinder<T> valueBinder);
+    
     CqlQuery<T> table(String tableName);
     
     default CqlQuery<T> primaryKeys(Iterable<String> primaryKeys) {
@@ -99,6 +102,15 @@ public interface CqlQuery<T> {
     
     CqlQuery<T> val(String name, Object value);
     
+    /**
+     * Sets the value of every column of the entity using the value binder
+     * (e.g. of its model).
+     * 
+     * @param entity The entity
+     * @return This query
+     */
+    CqlQuery<T> vals(T entity);
+    
     CqlQuery<T> optimisticLock(String name, Object value);
     
     CqlQuery<T> setAllowFiltering(boolean allowFiltering);
@@ -106,6 +118,16 @@ public interface CqlQuery<T> {
     CqlQuery<T> setFetchSize(Integer fetchSize);
     
     CqlQuery<T> setPagingState(String pagingState);
+    
+    /**
+     * Once the rows left in the current page drop to this many while iterating,
+     * the next page is fetched in the background so it overlaps with processing
+     * the current one. A good value is about half the fetch size.
+     * 
+     * @param prefetch The threshold in rows, null or 0 to disable (default)
+     * @return This query
+     */
+    CqlQuery<T> setPrefetch(Integer prefetch);
 
     CqlQuery<T> setConsistencyLevel(ConsistencyLevel consistencyLevel);
 
@@ -113,7 +135,69 @@ public interface CqlQuery<T> {
 
     CqlQuery<T> setPrepared(boolean prepared);
     
+    /**
+     * Leaves null values of inserted or updated columns (other than primary
+     * keys) unset rather than binding them as nulls, which writes a tombstone
+     * for each. An unset column keeps any value it already had, so only use
+     * this when null means "not specified". Prepared statements use protocol
+     * v4 unset values, otherwise the columns are left out of the cql.
+     * 
+     * @param unsetNulls True to leave null values unset
+     * @return This query
+     */
+    CqlQuery<T> setUnsetNulls(boolean unsetNulls);
+    
+    /**
+     * Whether an IN clause on the partition key is split into concurrent single
+     * partition queries (merged back in order of the IN values). Defaults to
+     * null, which fans out whenever the partition key is known.
+     * 
+     * @param inFanOut True to fan out, false to never, null for auto
+     * @return This query
+     */
+    CqlQuery<T> setInFanOut(Boolean inFanOut);
+    
+    CqlQuery<T> setInFanOutConcurrency(int inFanOutConcurrency);
+    
+    /**
+     * Whether this query may safely be executed more than once (e.g. retried
+     * or speculatively executed on another host). Defaults to null, which
+     * marks selects and writes that are not lightweight transactions and touch
+     * no counters (or list elements) as idempotent.
+     * 
+     * @param idempotent True if idempotent, false if not, null for auto
+     * @return This query
+     */
+    CqlQuery<T> setIdempotent(Boolean idempotent);
+    
+    /**
+     * @return True if this query may safely be executed more than once (as set
+     *      by {@link #setIdempotent(Boolean)}, otherwise inferred from the command)
+     */
+    boolean isIdempotent();
+    
+    /**
+     * Fails the query with a {@link TombstoneWarningException} if cassandra
+     * warns it scanned too many tombstones, rather than only counting the
+     * warning (see {@link CqlMetrics}), e.g. for a read on a latency critical
+     * path that should never be allowed to degrade silently.
+     * 
+     * @param failOnTombstoneWarning True to fail
+     * @return This query
+     */
+    CqlQuery<T> setFailOnTombstoneWarning(boolean failOnTombstoneWarning);
+    
     CqlBoundQuery build();
+    
+    /**
+     * Builds this query once into a template that is executed many times with
+     * only the values of its {@link CqlTemplate#BIND} placeholders, skipping
+     * the build of the cql and parameters (and the prepared statement lookup)
+     * on every execution.
+     * 
+     * @return The template
+     */
+    CqlTemplate<T> compile();
  
 
     ResultSet execute();
@@ -126,4 +210,12 @@ public interface CqlQuery<T> {
     
     PagedList<T> findPagedList();
     
+    CompletableFuture<ResultSet> executeAsync();
+    
+    CompletableFuture<T> findOneAsync();
+    
+    CompletableFuture<List<T>> findListAsync();
+    
+    CompletableFuture<PagedList<T>> findPagedListAsync();
+    
 }
\ No newline at end of file
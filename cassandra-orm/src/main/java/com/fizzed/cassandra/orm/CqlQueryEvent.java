@@ -0,0 +1,67 @@
+package com.fizzed.cassandra.orm;
+
+import com.datastax.driver.core.ExecutionInfo;
+import com.datastax.driver.core.ResultSet;
+
+/**
+ * The outcome of a query executed, as seen by a {@link CqlQueryListener}.
+ */
+public class CqlQueryEvent {
+
+    private final CqlBoundQuery query;
+    private final ResultSet results;
+    private final long elapsedNanos;
+    private final Throwable failure;
+    private final Object context;
+
+    public CqlQueryEvent(CqlBoundQuery query, ResultSet results, long elapsedNanos, Throwable failure, Object context) {
+        this.query = query;
+        this.results = results;
+        this.elapsedNanos = elapsedNanos;
+        this.failure = failure;
+        this.context = context;
+    }
+
+    public CqlBoundQuery getQuery() {
+        return this.query;
+    }
+
+    /**
+     * @return The execution info (coordinator, warnings, etc.) or null if the
+     *      query failed before a response
+     */
+    public ExecutionInfo getExecutionInfo() {
+        return this.results != null ? this.results.getExecutionInfo() : null;
+    }
+
+    public long getElapsedNanos() {
+        return this.elapsedNanos;
+    }
+
+    /**
+     * @return The number of rows returned in the first page (later pages are
+     *      fetched as the results are iterated)
+     */
+    public int getRows() {
+        return this.results != null ? this.results.getAvailableWithoutFetching() : 0;
+    }
+
+    public boolean isSuccess() {
+        return this.failure == null;
+    }
+
+    /**
+     * @return The failure or null if successful
+     */
+    public Throwable getFailure() {
+        return this.failure;
+    }
+
+    /**
+     * @return The context returned by the listener before the query
+     */
+    public Object getContext() {
+        return this.context;
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.fizzed.cassandra.orm;
+
+/**
+ * Observes every query (and compiled template) executed through a
+ * {@link Cassandra} it is registered on, e.g. to plug in tracing or metrics.
+ * Listeners are called on the thread executing (or completing) the query, so
+ * they must be fast and thread-safe. Anything they throw is logged & ignored.
+ */
+public interface CqlQueryListener {
+
+    /**
+     * Called before the query is executed.
+     *
+     * @param query The query
+     * @return A context passed back to {@link #after(CqlQueryEvent)} (e.g. a
+     *      span), may be null
+     */
+    default Object before(CqlBoundQuery query) {
+        return null;
+    }
+
+    /**
+     * Called once the query has completed (or failed).
+     *
+     * @param event The query, its outcome and the context from
+     *      {@link #before(CqlBoundQuery)}
+     */
+    void after(CqlQueryEvent event);
+
+}
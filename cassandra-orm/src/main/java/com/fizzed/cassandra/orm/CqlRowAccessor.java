@@ -0,0 +1,270 @@
+package com.fizzed.cassandra.orm;
+
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.Row;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads the columns of a row by index using the driver's typed getters, with
+ * the column indexes and types resolved once per result set (rather than by
+ * name for every column of every row). A mapper created with
+ * {@link CqlRowMapper#indexed} resolves its indexes once too, and reads every
+ * row with the getters taking an index.
+ *
+ * An accessor is re-bound to each row of its result set, so it is not
+ * thread-safe and must not be held onto past the mapping of a row.
+ */
+public class CqlRowAccessor {
+
+    private final Map<String,Integer> indexes;
+    private final DataType.Name[] types;
+    private Row row;
+
+    public CqlRowAccessor(ColumnDefinitions columns) {
+        final int size = columns.size();
+        this.indexes = new HashMap<>(size * 2);
+        this.types = new DataType.Name[size];
+        for (int i = 0; i < size; i++) {
+            this.indexes.putIfAbsent(columns.getName(i), i);
+            this.types[i] = columns.getType(i).getName();
+        }
+    }
+
+    public CqlRowAccessor bind(Row row) {
+        this.row = row;
+        return this;
+    }
+
+    public Row getRow() {
+        return this.row;
+    }
+
+    /**
+     * @param columnName The column name
+     * @return The index of the column or -1 if not present (the lowercase
+     *      alias of a name is cached, so a lookup never allocates twice)
+     */
+    public int indexOf(String columnName) {
+        if (columnName == null) {
+            return -1;
+        }
+        Integer index = this.indexes.get(columnName);
+        if (index == null) {
+            // unquoted identifiers are case insensitive
+            index = this.indexes.get(columnName.toLowerCase());
+            if (index == null) {
+                index = -1;
+            }
+            this.indexes.put(columnName, index);
+        }
+        return index;
+    }
+
+    public DataType.Name typeOf(int index) {
+        return this.types[index];
+    }
+
+    public boolean hasColumn(String columnName) {
+        return this.row != null && this.indexOf(columnName) >= 0;
+    }
+
+    private int index(String columnName, boolean required) {
+        final int index = this.row != null ? this.indexOf(columnName) : -1;
+        if (index < 0 && required) {
+            throw new IllegalArgumentException("Column " + columnName + " is not present");
+        }
+        return index;
+    }
+
+    public boolean isNull(String columnName) {
+        return this.isNull(this.index(columnName, true));
+    }
+
+    public boolean isNull(int i) {
+        return i < 0 || this.row.isNull(i);
+    }
+
+    public Object getObject(String columnName) {
+        return this.getObject(columnName, true);
+    }
+
+    public Object getObject(String columnName, boolean required) {
+        return this.getObject(this.index(columnName, required));
+    }
+
+    public Object getObject(int i) {
+        if (i < 0) {
+            return null;
+        }
+        return this.row.getObject(i);
+    }
+
+    /**
+     * Reads a column with the codec registered for the Java type (e.g.
+     * <code>Instant</code> or Joda <code>DateTime</code>), avoiding any conversion.
+     */
+    public <V> V get(String columnName, Class<V> type) {
+        return this.get(this.index(columnName, true), type);
+    }
+
+    public <V> V get(int i, Class<V> type) {
+        if (i < 0) {
+            return null;
+        }
+        return this.row.get(i, type);
+    }
+
+    public String getString(String columnName) {
+        return this.getString(columnName, true);
+    }
+
+    public String getString(String columnName, boolean required) {
+        return this.getString(this.index(columnName, required));
+    }
+
+    public String getString(int i) {
+        if (i < 0 || this.row.isNull(i)) {
+            return null;
+        }
+        switch (this.types[i]) {
+            case ASCII:
+            case TEXT:
+            case VARCHAR:
+                return this.row.getString(i);
+            case BLOB:
+                return DateTypes.javaString(this.row.getBytes(i));
+            default:
+                return DateTypes.javaString(this.row.getObject(i));
+        }
+    }
+
+    public Byte getByte(String columnName) {
+        return this.getByte(columnName, true);
+    }
+
+    public Byte getByte(String columnName, boolean required) {
+        return this.getByte(this.index(columnName, required));
+    }
+
+    public byte getByte(String columnName, byte ifNull) {
+        return this.getByte(this.index(columnName, true), ifNull);
+    }
+
+    public Byte getByte(int i) {
+        if (i < 0 || this.row.isNull(i)) {
+            return null;
+        }
+        return DateTypes.javaByte(this.row, i, this.types[i], (byte)0);
+    }
+
+    public byte getByte(int i, byte ifNull) {
+        if (i < 0) {
+            return ifNull;
+        }
+        return DateTypes.javaByte(this.row, i, this.types[i], ifNull);
+    }
+
+    public Short getShort(String columnName) {
+        return this.getShort(columnName, true);
+    }
+
+    public Short getShort(String columnName, boolean required) {
+        return this.getShort(this.index(columnName, required));
+    }
+
+    public short getShort(String columnName, short ifNull) {
+        return this.getShort(this.index(columnName, true), ifNull);
+    }
+
+    public Short getShort(int i) {
+        if (i < 0 || this.row.isNull(i)) {
+            return null;
+        }
+        return DateTypes.javaShort(this.row, i, this.types[i], (short)0);
+    }
+
+    public short getShort(int i, short ifNull) {
+        if (i < 0) {
+            return ifNull;
+        }
+        return DateTypes.javaShort(this.row, i, this.types[i], ifNull);
+    }
+
+    public Integer getInteger(String columnName) {
+        return this.getInteger(columnName, true);
+    }
+
+    public Integer getInteger(String columnName, boolean required) {
+        return this.getInteger(this.index(columnName, required));
+    }
+
+    public int getInteger(String columnName, int ifNull) {
+        return this.getInteger(this.index(columnName, true), ifNull);
+    }
+
+    public Integer getInteger(int i) {
+        if (i < 0 || this.row.isNull(i)) {
+            return null;
+        }
+        return DateTypes.javaInteger(this.row, i, this.types[i], 0);
+    }
+
+    public int getInteger(int i, int ifNull) {
+        if (i < 0) {
+            return ifNull;
+        }
+        return DateTypes.javaInteger(this.row, i, this.types[i], ifNull);
+    }
+
+    public Long getLong(String columnName) {
+        return this.getLong(columnName, true);
+    }
+
+    public Long getLong(String columnName, boolean required) {
+        return this.getLong(this.index(columnName, required));
+    }
+
+    public long getLong(String columnName, long ifNull) {
+        return this.getLong(this.index(columnName, true), ifNull);
+    }
+
+    public Long getLong(int i) {
+        if (i < 0 || this.row.isNull(i)) {
+            return null;
+        }
+        return DateTypes.javaLong(this.row, i, this.types[i], 0L);
+    }
+
+    public long getLong(int i, long ifNull) {
+        if (i < 0) {
+            return ifNull;
+        }
+        return DateTypes.javaLong(this.row, i, this.types[i], ifNull);
+    }
+
+    public Date getTimestamp(String columnName) {
+        return this.getTimestamp(columnName, true);
+    }
+
+    public Date getTimestamp(String columnName, boolean required) {
+        return this.getTimestamp(this.index(columnName, required));
+    }
+
+    public Date getTimestamp(int i) {
+        if (i < 0 || this.row.isNull(i)) {
+            return null;
+        }
+        switch (this.types[i]) {
+            case TIMESTAMP:
+                return this.row.getTimestamp(i);
+            case BIGINT:
+                return new Date(this.row.getLong(i));
+            default:
+                throw new IllegalArgumentException("Unable to convert " + this.types[i] + " <-> java.util.Date");
+        }
+    }
+
+}
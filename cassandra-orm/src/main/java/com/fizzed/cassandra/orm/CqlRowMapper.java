@@ -1,9 +1,112 @@
 package com.fizzed.cassandra.orm;
 
+import com.datastax.driver.core.ColumnDefinitions;
 import com.datastax.driver.core.Row;
+import java.util.function.Function;
 
 public interface CqlRowMapper<T> {
 
     T apply(Row row);
     
-}
\ No newline at end of file
+    /**
+     * Called once per result set before any of its rows are mapped, so a
+     * mapper can resolve anything column related up front.
+     * 
+     * @param columns The column definitions of the result set (may be null)
+     * @return The mapper to use for every row of the result set
+     */
+    default CqlRowMapper<T> compile(ColumnDefinitions columns) {
+        return this;
+    }
+    
+    /**
+     * Creates a row mapper that reads columns through a {@link CqlRowAccessor}
+     * compiled once per result set.
+     * 
+     * @param <T> The mapped type
+     * @param mapper The mapper of an accessor bound to the current row
+     * @return The row mapper
+     */
+    static <T> CqlRowMapper<T> accessor(Function<CqlRowAccessor,T> mapper) {
+        return new CqlRowMapper<T>() {
+            @Override
+            public T apply(Row row) {
+                // slow path, not compiled for a result set
+                if (row == null) {
+                    return null;
+                }
+                return mapper.apply(new CqlRowAccessor(row.getColumnDefinitions()).bind(row));
+            }
+
+            @Override
+            public CqlRowMapper<T> compile(ColumnDefinitions columns) {
+                return new CqlRowMapper<T>() {
+                    private CqlRowAccessor accessor = columns != null ? new CqlRowAccessor(columns) : null;
+                    
+                    @Override
+                    public T apply(Row row) {
+                        if (row == null) {
+                            return null;
+                        }
+                        if (this.accessor == null) {
+                            // resolve from the first row instead
+                            this.accessor = new CqlRowAccessor(row.getColumnDefinitions());
+                        }
+                        return mapper.apply(this.accessor.bind(row));
+                    }
+                };
+            }
+        };
+    }
+    
+    /**
+     * Creates a row mapper that resolves the indexes of its columns once per
+     * result set and reads every row by index, e.g.
+     * <pre>
+     * CqlRowMapper.indexed(columns -&gt; {
+     *     final int id = columns.indexOf("id");
+     *     return row -&gt; new Item(row.getLong(id));
+     * })
+     * </pre>
+     * 
+     * @param <T> The mapped type
+     * @param resolver Resolves the indexes from an accessor (not yet bound to
+     *      a row) and returns the mapper of an accessor bound to the current row
+     * @return The row mapper
+     */
+    static <T> CqlRowMapper<T> indexed(Function<CqlRowAccessor,Function<CqlRowAccessor,T>> resolver) {
+        return new CqlRowMapper<T>() {
+            @Override
+            public T apply(Row row) {
+                // slow path, not compiled for a result set
+                if (row == null) {
+                    return null;
+                }
+                final CqlRowAccessor accessor = new CqlRowAccessor(row.getColumnDefinitions());
+                return resolver.apply(accessor).apply(accessor.bind(row));
+            }
+
+            @Override
+            public CqlRowMapper<T> compile(ColumnDefinitions columns) {
+                return new CqlRowMapper<T>() {
+                    private CqlRowAccessor accessor = columns != null ? new CqlRowAccessor(columns) : null;
+                    private Function<CqlRowAccessor,T> mapper = this.accessor != null ? resolver.apply(this.accessor) : null;
+                    
+                    @Override
+                    public T apply(Row row) {
+                        if (row == null) {
+                            return null;
+                        }
+                        if (this.accessor == null) {
+                            // resolve from the first row instead
+                            this.accessor = new CqlRowAccessor(row.getColumnDefinitions());
+                            this.mapper = resolver.apply(this.accessor);
+                        }
+                        return this.mapper.apply(this.accessor.bind(row));
+                    }
+                };
+            }
+        };
+    }
+    
+}
@@ -0,0 +1,380 @@
+package com.fizzed.cassandra.orm;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.PagingState;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.TableMetadata;
+import com.datastax.driver.core.TokenRange;
+import com.datastax.driver.core.exceptions.DriverException;
+import com.datastax.driver.core.exceptions.QueryValidationException;
+import com.fizzed.cassandra.orm.impl.CompletableFutures;
+import com.fizzed.cassandra.orm.impl.ConcurrentFutures;
+import com.fizzed.cassandra.orm.impl.PartitionKeys;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Scans an entire table by splitting the token ring into sub-ranges and
+ * querying each with <code>token(pk) &gt; ? AND token(pk) &lt;= ?</code>, routed
+ * directly to a replica of that range. Ranges are scanned concurrently and a
+ * failed range is retried on its own (resuming from its last page) against the
+ * next replica.
+ *
+ * Rows are passed to the consumer from multiple threads at once, so it must be
+ * thread-safe.
+ */
+public class CqlScan<T> {
+    static private final Logger log = LoggerFactory.getLogger(CqlScan.class);
+
+    static public final int DEFAULT_CONCURRENCY = 16;
+    static public final int DEFAULT_MAX_RETRIES = 3;
+
+    private final long id;
+    private final Session session;
+    private final PreparedStatementCache preparedStatementCache;
+    private String tableName;
+    private String columns;
+    private CqlRowMapper<T> rowMapper;
+    private int concurrency;
+    private int splitsPerRange;
+    private int maxRetries;
+    private Integer fetchSize;
+    private ConsistencyLevel consistencyLevel;
+    private Executor executor;
+    private final LongAdder retried;
+
+    public CqlScan(long id, Session session, PreparedStatementCache preparedStatementCache) {
+        this.id = id;
+        this.session = session;
+        this.preparedStatementCache = preparedStatementCache;
+        this.columns = "*";
+        this.concurrency = DEFAULT_CONCURRENCY;
+        this.splitsPerRange = 1;
+        this.maxRetries = DEFAULT_MAX_RETRIES;
+        this.retried = new LongAdder();
+    }
+
+    public CqlScan<T> table(String tableName) {
+        this.tableName = tableName;
+        return this;
+    }
+
+    public CqlScan<T> columns(String columns) {
+        this.columns = columns;
+        return this;
+    }
+
+    public CqlScan<T> rowMapper(CqlRowMapper<T> rowMapper) {
+        this.rowMapper = rowMapper;
+        return this;
+    }
+
+    /**
+     * @param concurrency The max number of ranges scanned at once
+     * @return This scan
+     */
+    public CqlScan<T> setConcurrency(int concurrency) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("concurrency must be > 0");
+        }
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    /**
+     * @param splitsPerRange The number of sub-ranges each token range of the
+     *      ring is evenly split into (default 1, raise it for clusters
+     *      without vnodes)
+     * @return This scan
+     */
+    public CqlScan<T> setSplitsPerRange(int splitsPerRange) {
+        if (splitsPerRange <= 0) {
+            throw new IllegalArgumentException("splitsPerRange must be > 0");
+        }
+        this.splitsPerRange = splitsPerRange;
+        return this;
+    }
+
+    public CqlScan<T> setMaxRetries(int maxRetries) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("maxRetries must be >= 0");
+        }
+        this.maxRetries = maxRetries;
+        return this;
+    }
+
+    public CqlScan<T> setFetchSize(Integer fetchSize) {
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
+    public CqlScan<T> setConsistencyLevel(ConsistencyLevel consistencyLevel) {
+        this.consistencyLevel = consistencyLevel;
+        return this;
+    }
+
+    /**
+     * @param executor The executor rows are mapped and consumed on, otherwise
+     *      they are consumed on the driver's I/O threads (and the consumer
+     *      should not block)
+     * @return This scan
+     */
+    public CqlScan<T> setExecutor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Scans the table and waits for it to complete.
+     *
+     * @param consumer The (thread-safe) consumer of every row
+     * @return The number of rows scanned
+     */
+    public long execute(Consumer<? super T> consumer) {
+        return CompletableFutures.get(this.executeAsync(consumer));
+    }
+
+    public CompletableFuture<Long> executeAsync(Consumer<? super T> consumer) {
+        Objects.requireNonNull(consumer, "consumer was null");
+
+        if (this.rowMapper == null) {
+            throw new IllegalStateException("A rowMapper must be set prior to scan");
+        }
+
+        final TableMetadata table = PartitionKeys.tableMetadata(this.session, this.tableName);
+        if (table == null) {
+            throw new IllegalStateException("Unable to scan " + this.tableName + " (table metadata not available)");
+        }
+
+        final String keyspace = table.getKeyspace().getName();
+        final List<String> partitionKeys = table.getPartitionKey().stream()
+            .map(c -> Metadata.quoteIfNecessary(c.getName()))
+            .collect(toList());
+
+        final List<Split> splits = this.splits(keyspace);
+
+        if (log.isDebugEnabled()) {
+            log.debug("[scan {}] scanning {} in {} ranges ({} at once)", this.id, this.tableName, splits.size(), this.concurrency);
+        }
+
+        final long start = System.currentTimeMillis();
+        final CompletableFuture<PreparedStatement> closedRange
+            = this.preparedStatementCache.getAsync(this.cql(partitionKeys, false));
+        final CompletableFuture<PreparedStatement> openRange
+            = this.preparedStatementCache.getAsync(this.cql(partitionKeys, true));
+
+        return closedRange.thenCombine(openRange, (closed, open) -> {
+                final List<Supplier<CompletableFuture<Long>>> tasks = new ArrayList<>(splits.size());
+                for (Split split : splits) {
+                    final PreparedStatement ps = split.openEnd ? open : closed;
+                    tasks.add(() -> new RangeScan(split, ps, consumer).start());
+                }
+                return tasks;
+            })
+            .thenCompose(tasks -> ConcurrentFutures.all(tasks, this.concurrency))
+            .thenApply(counts -> {
+                final long rows = counts.stream().mapToLong(Long::longValue).sum();
+                if (log.isDebugEnabled()) {
+                    log.debug("[scan {}] scanned {} rows from {} in {} ms ({} retries)",
+                        this.id, rows, this.tableName, System.currentTimeMillis() - start, this.retried.sum());
+                }
+                return rows;
+            });
+    }
+
+    String cql(List<String> partitionKeys, boolean openEnd) {
+        final String token = "token(" + partitionKeys.stream().collect(joining(",")) + ")";
+        final StringBuilder cql = new StringBuilder();
+        cql.append("SELECT ").append(this.columns)
+            .append(" FROM ").append(this.tableName)
+            .append(" WHERE ").append(token).append(">?");
+        if (!openEnd) {
+            cql.append(" AND ").append(token).append("<=?");
+        }
+        return cql.toString();
+    }
+
+    private List<Split> splits(String keyspace) {
+        final Metadata metadata = this.session.getCluster().getMetadata();
+        final String quotedKeyspace = Metadata.quote(keyspace);
+        final List<Split> splits = new ArrayList<>();
+
+        for (TokenRange range : metadata.getTokenRanges()) {
+            final List<Host> replicas = metadata.getReplicas(quotedKeyspace, range).stream()
+                .filter(Host::isUp)
+                .collect(toList());
+
+            final List<TokenRange> subRanges = this.splitsPerRange > 1
+                ? range.splitEvenly(this.splitsPerRange) : Collections.singletonList(range);
+
+            for (TokenRange subRange : subRanges) {
+                final List<TokenRange> unwrapped = subRange.unwrap();
+                for (int i = 0; i < unwrapped.size(); i++) {
+                    // unwrapping yields (start, minToken] first, which has no upper bound
+                    final boolean openEnd = unwrapped.size() > 1 && i == 0;
+                    splits.add(new Split(unwrapped.get(i), openEnd, replicas, splits.size()));
+                }
+            }
+        }
+
+        return splits;
+    }
+
+    static private class Split {
+
+        private final TokenRange range;
+        private final boolean openEnd;
+        private final List<Host> replicas;
+        private final int offset;
+
+        public Split(TokenRange range, boolean openEnd, List<Host> replicas, int offset) {
+            this.range = range;
+            this.openEnd = openEnd;
+            this.replicas = replicas;
+            this.offset = offset;
+        }
+
+        public Host host(int attempt) {
+            // spread ranges across their replicas, moving to the next on retry
+            return this.replicas.isEmpty() ? null : this.replicas.get((this.offset + attempt) % this.replicas.size());
+        }
+
+    }
+
+    private class RangeScan {
+
+        private final Split split;
+        private final PreparedStatement preparedStatement;
+        private final Consumer<? super T> consumer;
+        private final CompletableFuture<Long> done;
+        private int attempt;
+        private long rows;
+        private PagingState pagingState;
+        private CqlRowMapper<T> mapper;
+
+        public RangeScan(Split split, PreparedStatement preparedStatement, Consumer<? super T> consumer) {
+            this.split = split;
+            this.preparedStatement = preparedStatement;
+            this.consumer = consumer;
+            this.done = new CompletableFuture<>();
+        }
+
+        public CompletableFuture<Long> start() {
+            this.execute();
+            return this.done;
+        }
+
+        private void execute() {
+            final BoundStatement statement = this.preparedStatement.bind();
+            statement.setToken(0, this.split.range.getStart());
+            if (!this.split.openEnd) {
+                statement.setToken(1, this.split.range.getEnd());
+            }
+
+            if (fetchSize != null) {
+                statement.setFetchSize(fetchSize);
+            }
+
+            if (consistencyLevel != null) {
+                statement.setConsistencyLevel(consistencyLevel);
+            }
+
+            // resume where a failed attempt left off
+            if (this.pagingState != null) {
+                statement.setPagingState(this.pagingState);
+            }
+
+            final Host host = this.split.host(this.attempt);
+            if (host != null) {
+                statement.setHost(host);
+            }
+
+            if (log.isTraceEnabled()) {
+                log.trace("[scan {}] range {} on {}", id, this.split.range, host);
+            }
+
+            this.next(CompletableFutures.of(session.executeAsync(statement)));
+        }
+
+        private void next(CompletableFuture<ResultSet> future) {
+            final Executor e = executor;
+            if (e != null) {
+                future.whenCompleteAsync(this::page, e);
+            } else {
+                future.whenComplete(this::page);
+            }
+        }
+
+        private void page(ResultSet results, Throwable error) {
+            if (error != null) {
+                this.failed(error);
+                return;
+            }
+
+            try {
+                // only consume rows already fetched, iterating past them would block
+                if (this.mapper == null) {
+                    this.mapper = rowMapper.compile(results.getColumnDefinitions());
+                }
+                final int available = results.getAvailableWithoutFetching();
+                for (int i = 0; i < available; i++) {
+                    this.consumer.accept(this.mapper.apply(results.one()));
+                }
+                this.rows += available;
+
+                if (results.isFullyFetched()) {
+                    this.done.complete(this.rows);
+                    return;
+                }
+
+                this.pagingState = results.getExecutionInfo().getPagingState();
+            }
+            catch (Throwable t) {
+                this.done.completeExceptionally(t);
+                return;
+            }
+
+            this.next(CompletableFutures.of(results.fetchMoreResults()));
+        }
+
+        private void failed(Throwable error) {
+            final Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+
+            if (this.attempt < maxRetries
+                    && cause instanceof DriverException
+                    && !(cause instanceof QueryValidationException)) {
+                this.attempt++;
+                retried.increment();
+                log.warn("[scan {}] retrying range {} (attempt {}): {}", id, this.split.range, this.attempt, cause.getMessage());
+                try {
+                    this.execute();
+                }
+                catch (Throwable t) {
+                    this.done.completeExceptionally(t);
+                }
+                return;
+            }
+
+            this.done.completeExceptionally(cause);
+        }
+
+    }
+
+}
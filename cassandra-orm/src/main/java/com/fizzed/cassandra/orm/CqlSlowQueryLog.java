@@ -0,0 +1,334 @@
+package com.fizzed.cassandra.orm;
+
+import com.datastax.driver.core.ExecutionInfo;
+import com.datastax.driver.core.ResultSet;
+import com.fizzed.cassandra.orm.CqlQuery.Command;
+import com.fizzed.cassandra.orm.CqlQuery.Parameter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import static java.util.stream.Collectors.joining;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records the queries (and templates) that take longer than a threshold, to a
+ * dedicated logger and a small ring buffer of the most recent ones, without
+ * the cost of trace logging every query. Thresholds are global or by table
+ * (see {@link CqlModel#setSlowQueryThresholdMillis(Long)}) and the records are
+ * rate limited, the number suppressed is reported with the next one logged.
+ *
+ * Parameter values are redacted (only their type is logged), other than of
+ * the columns explicitly allowed (e.g. ids).
+ */
+public class CqlSlowQueryLog {
+    static private final Logger log = LoggerFactory.getLogger("com.fizzed.cassandra.orm.slow_queries");
+
+    static public final int DEFAULT_BUFFER_SIZE = 100;
+    static public final int DEFAULT_MAX_PER_SECOND = 10;
+
+    private final Map<String,Long> tableThresholdNanos;
+    private final Set<String> unredactedColumns;
+    private volatile long thresholdNanos;
+    private volatile long minThresholdNanos;
+    private int maxPerSecond;
+    private Record[] buffer;
+    private int next;
+    private long window;
+    private int windowCount;
+    private long suppressed;
+
+    public CqlSlowQueryLog() {
+        this.tableThresholdNanos = new ConcurrentHashMap<>();
+        this.unredactedColumns = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        this.thresholdNanos = Long.MAX_VALUE;       // disabled
+        this.minThresholdNanos = Long.MAX_VALUE;
+        this.maxPerSecond = DEFAULT_MAX_PER_SECOND;
+        this.buffer = new Record[DEFAULT_BUFFER_SIZE];
+    }
+
+    /**
+     * @param thresholdMillis The latency above which any query is slow, or
+     *      null to only log the tables with their own threshold (the default)
+     * @return This log
+     */
+    public CqlSlowQueryLog setThresholdMillis(Long thresholdMillis) {
+        this.thresholdNanos = thresholdMillis != null ? TimeUnit.MILLISECONDS.toNanos(thresholdMillis) : Long.MAX_VALUE;
+        this.updateMinThreshold();
+        return this;
+    }
+
+    /**
+     * @param tableName The table
+     * @param thresholdMillis The latency above which a query of the table is
+     *      slow, or null for the global threshold
+     * @return This log
+     */
+    public CqlSlowQueryLog setThresholdMillis(String tableName, Long thresholdMillis) {
+        if (thresholdMillis != null) {
+            this.tableThresholdNanos.put(tableName, TimeUnit.MILLISECONDS.toNanos(thresholdMillis));
+        } else {
+            this.tableThresholdNanos.remove(tableName);
+        }
+        this.updateMinThreshold();
+        return this;
+    }
+
+    private void updateMinThreshold() {
+        long min = this.thresholdNanos;
+        for (Long v : this.tableThresholdNanos.values()) {
+            min = Math.min(min, v);
+        }
+        this.minThresholdNanos = min;
+    }
+
+    public CqlSlowQueryLog setMaxPerSecond(int maxPerSecond) {
+        if (maxPerSecond <= 0) {
+            throw new IllegalArgumentException("maxPerSecond must be > 0");
+        }
+        this.maxPerSecond = maxPerSecond;
+        return this;
+    }
+
+    public CqlSlowQueryLog setBufferSize(int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize must be > 0");
+        }
+        synchronized (this) {
+            final List<Record> recent = this.getRecent();
+            this.buffer = new Record[bufferSize];
+            this.next = 0;
+            for (int i = Math.min(recent.size(), bufferSize) - 1; i >= 0; i--) {
+                this.add(recent.get(i));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * @param columns The columns whose values are logged as-is (e.g. ids)
+     * @return This log
+     */
+    public CqlSlowQueryLog addUnredactedColumns(String... columns) {
+        Collections.addAll(this.unredactedColumns, columns);
+        return this;
+    }
+
+    /**
+     * Costs a comparison if faster than every threshold.
+     *
+     * @param tableName The table of the query
+     * @param elapsedNanos The time it took
+     * @return True if slow (and should be recorded)
+     */
+    public boolean isSlow(String tableName, long elapsedNanos) {
+        if (elapsedNanos < this.minThresholdNanos) {
+            return false;
+        }
+        final Long tableThreshold = tableName != null ? this.tableThresholdNanos.get(tableName) : null;
+        return elapsedNanos >= (tableThreshold != null ? tableThreshold : this.thresholdNanos);
+    }
+
+    /**
+     * Records a slow query (see {@link #isSlow(String, long)}), unless over
+     * the rate limit.
+     *
+     * @param id The id of the query
+     * @param query The query
+     * @param elapsedNanos The time it took
+     * @param results The results or null if failed
+     * @param failure The failure or null if successful
+     */
+    public void record(long id, CqlBoundQuery query, long elapsedNanos, ResultSet results, Throwable failure) {
+        final long suppressedBefore;
+        synchronized (this) {
+            final long second = System.currentTimeMillis() / 1000L;
+            if (second != this.window) {
+                this.window = second;
+                this.windowCount = 0;
+            }
+            if (this.windowCount >= this.maxPerSecond) {
+                this.suppressed++;
+                return;
+            }
+            this.windowCount++;
+            suppressedBefore = this.suppressed;
+            this.suppressed = 0;
+        }
+
+        final ExecutionInfo executionInfo = results != null ? results.getExecutionInfo() : null;
+
+        final Record record = new Record(
+            System.currentTimeMillis(),
+            id,
+            query.getTableName(),
+            query.getCommand(),
+            query.getCql(),
+            this.redact(query.getParameters()),
+            executionInfo != null && executionInfo.getQueriedHost() != null
+                ? executionInfo.getQueriedHost().toString() : null,
+            results != null && !results.isFullyFetched(),
+            TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+            failure != null ? failure.toString() : null,
+            suppressedBefore);
+
+        synchronized (this) {
+            this.add(record);
+        }
+
+        log.warn("{}", record);
+    }
+
+    private void add(Record record) {
+        this.buffer[this.next] = record;
+        this.next = (this.next + 1) % this.buffer.length;
+    }
+
+    private String redact(List<Parameter> parameters) {
+        if (parameters == null) {
+            return "";
+        }
+        return parameters.stream()
+            .map(p -> p.getName() + "=" + (p.getValue() == null ? "null"
+                : this.unredactedColumns.contains(p.getName()) ? p.getValue()
+                : "<" + p.getValue().getClass().getSimpleName() + ">"))
+            .collect(joining(", "));
+    }
+
+    /**
+     * @return The most recent slow queries (newest first)
+     */
+    public List<Record> getRecent() {
+        synchronized (this) {
+            final List<Record> recent = new ArrayList<>(this.buffer.length);
+            for (int i = 1; i <= this.buffer.length; i++) {
+                final Record record = this.buffer[(this.next - i + this.buffer.length) % this.buffer.length];
+                if (record == null) {
+                    break;
+                }
+                recent.add(record);
+            }
+            return recent;
+        }
+    }
+
+    public void clear() {
+        synchronized (this) {
+            this.buffer = new Record[this.buffer.length];
+            this.next = 0;
+        }
+    }
+
+    static public class Record {
+
+        private final long timestamp;
+        private final long id;
+        private final String tableName;
+        private final Command command;
+        private final String cql;
+        private final String parameters;
+        private final String coordinator;
+        private final boolean morePages;
+        private final long elapsedMillis;
+        private final String failure;
+        private final long suppressed;
+
+        Record(long timestamp, long id, String tableName, Command command, String cql, String parameters,
+                String coordinator, boolean morePages, long elapsedMillis, String failure, long suppressed) {
+            this.timestamp = timestamp;
+            this.id = id;
+            this.tableName = tableName;
+            this.command = command;
+            this.cql = cql;
+            this.parameters = parameters;
+            this.coordinator = coordinator;
+            this.morePages = morePages;
+            this.elapsedMillis = elapsedMillis;
+            this.failure = failure;
+            this.suppressed = suppressed;
+        }
+
+        /**
+         * @return When it completed (epoch millis)
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * @return The id of the query (as in its trace logging)
+         */
+        public long getId() {
+            return id;
+        }
+
+        public String getTableName() {
+            return tableName;
+        }
+
+        public Command getCommand() {
+            return command;
+        }
+
+        public String getCql() {
+            return cql;
+        }
+
+        /**
+         * @return The parameters, with their values redacted
+         */
+        public String getParameters() {
+            return parameters;
+        }
+
+        /**
+         * @return The host that coordinated the query, or null if it failed
+         */
+        public String getCoordinator() {
+            return coordinator;
+        }
+
+        /**
+         * @return True if the first page was not the last, i.e. the time is
+         *      of the first page only (later pages are fetched as the results
+         *      are iterated, after the query was recorded)
+         */
+        public boolean isMorePages() {
+            return morePages;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /**
+         * @return The failure or null if successful
+         */
+        public String getFailure() {
+            return failure;
+        }
+
+        /**
+         * @return The number of slow queries not recorded (over the rate
+         *      limit) since the one before this
+         */
+        public long getSuppressed() {
+            return suppressed;
+        }
+
+        @Override
+        public String toString() {
+            return "[txn " + id + "] slow " + command + " on " + tableName + " in " + elapsedMillis + " ms"
+                + " (coordinator " + coordinator + (morePages ? ", more pages" : "") + ")"
+                + (failure != null ? " failed " + failure : "")
+                + ": " + cql + " [" + parameters + "]"
+                + (suppressed > 0 ? " (" + suppressed + " more suppressed)" : "");
+        }
+
+    }
+
+}
@@ -0,0 +1,468 @@
+package com.fizzed.cassandra.orm;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.ExecutionInfo;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.fizzed.cassandra.orm.CqlQuery.Parameter;
+import com.fizzed.cassandra.orm.impl.CompletableFutures;
+import com.fizzed.cassandra.orm.impl.CqlQueryImpl;
+import com.fizzed.cassandra.orm.impl.CqlQueryListeners;
+import com.fizzed.cassandra.orm.impl.ResultSets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import javax.persistence.EntityExistsException;
+import javax.persistence.OptimisticLockException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A query whose shape (cql, prepared statement, fixed values) is built once
+ * by {@link CqlQuery#compile()} and then executed many times with only the
+ * values of its {@link #BIND} placeholders, e.g.
+ *
+ * <pre>
+ * CqlTemplate&lt;User&gt; byId = cassandra.compile(User.class, q -&gt; q.where().eq("id", CqlTemplate.BIND));
+ * User user = byId.findOne(id);
+ * </pre>
+ *
+ * Values are given positionally in the order their placeholders appear in
+ * the cql (see {@link #getParameterNames()}). A template is thread-safe, a
+ * {@link Binder} is not.
+ */
+public class CqlTemplate<T> {
+    static private final Logger log = LoggerFactory.getLogger(CqlTemplate.class);
+
+    /**
+     * The placeholder for a value bound on each execution of a template.
+     */
+    static public final Object BIND = new Object() {
+        @Override
+        public String toString() {
+            return "?";
+        }
+    };
+
+    private final long id;
+    private final Session session;
+    private final PreparedStatementCache preparedStatementCache;
+    private final CqlBoundQuery boundQuery;
+    private final Object[] values;
+    private final int[] slots;
+    private final CqlColMapper[] slotColMappers;
+    private final int[] unsettableIndexes;
+    private final List<String> parameterNames;
+    private CqlRowMapper<T> rowMapper;
+    private Integer fetchSize;
+    private ConsistencyLevel consistencyLevel;
+    private ConsistencyLevel serialConsistencyLevel;
+    private Boolean idempotent;
+    private boolean failOnTombstoneWarning;
+    private LongAdder tombstonesAvoided;
+    private CqlMetrics metrics;
+    private CqlQueryListener[] listeners;
+    private CqlSlowQueryLog slowQueryLog;
+    private volatile PreparedStatement preparedStatement;
+
+    /**
+     * @param id The id (for logging)
+     * @param session The session
+     * @param preparedStatementCache The cache to prepare the cql with
+     * @param boundQuery The query with {@link #BIND} placeholders
+     * @param colMappers The col mappers applied to bound values (may be null)
+     * @param unsettableIndexes The indexes of the parameters left unset when
+     *      bound with a null value (may be null)
+     */
+    public CqlTemplate(
+            long id,
+            Session session,
+            PreparedStatementCache preparedStatementCache,
+            CqlBoundQuery boundQuery,
+            Map<String,CqlColMapper> colMappers,
+            int[] unsettableIndexes) {
+
+        this.id = id;
+        this.session = session;
+        this.preparedStatementCache = preparedStatementCache;
+        this.boundQuery = boundQuery;
+        this.values = boundQuery.toValues();
+        this.unsettableIndexes = unsettableIndexes != null ? unsettableIndexes : new int[0];
+        this.listeners = CqlQueryListeners.NONE;
+
+        final List<Parameter> parameters = boundQuery.getParameters();
+        final List<Integer> slots = new ArrayList<>();
+        for (int i = 0; i < this.values.length; i++) {
+            if (this.values[i] == BIND) {
+                slots.add(i);
+            }
+        }
+
+        this.slots = slots.stream().mapToInt(Integer::intValue).toArray();
+        this.slotColMappers = new CqlColMapper[this.slots.length];
+        final List<String> names = new ArrayList<>(this.slots.length);
+
+        for (int s = 0; s < this.slots.length; s++) {
+            final String name = parameters.get(this.slots[s]).getName();
+            names.add(name);
+            this.slotColMappers[s] = colMappers != null ? colMappers.get(name) : null;
+        }
+
+        this.parameterNames = Collections.unmodifiableList(names);
+    }
+
+    public CqlTemplate<T> rowMapper(CqlRowMapper<T> rowMapper) {
+        this.rowMapper = rowMapper;
+        return this;
+    }
+
+    public CqlTemplate<T> setFetchSize(Integer fetchSize) {
+        this.fetchSize = fetchSize;
+        return this;
+    }
+
+    public CqlTemplate<T> setConsistencyLevel(ConsistencyLevel consistencyLevel) {
+        this.consistencyLevel = consistencyLevel;
+        return this;
+    }
+
+    public CqlTemplate<T> setSerialConsistencyLevel(ConsistencyLevel consistencyLevel) {
+        this.serialConsistencyLevel = consistencyLevel;
+        return this;
+    }
+
+    public CqlTemplate<T> setIdempotent(Boolean idempotent) {
+        this.idempotent = idempotent;
+        return this;
+    }
+
+    /**
+     * @param failOnTombstoneWarning True to fail with a {@link TombstoneWarningException}
+     *      if cassandra warns an execution scanned too many tombstones
+     * @return This template
+     * @see CqlQuery#setFailOnTombstoneWarning(boolean)
+     */
+    public CqlTemplate<T> setFailOnTombstoneWarning(boolean failOnTombstoneWarning) {
+        this.failOnTombstoneWarning = failOnTombstoneWarning;
+        return this;
+    }
+
+    public CqlTemplate<T> tombstonesAvoided(LongAdder tombstonesAvoided) {
+        this.tombstonesAvoided = tombstonesAvoided;
+        return this;
+    }
+
+    public CqlTemplate<T> metrics(CqlMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    public CqlTemplate<T> listeners(CqlQueryListener[] listeners) {
+        this.listeners = listeners != null ? listeners : CqlQueryListeners.NONE;
+        return this;
+    }
+
+    public CqlTemplate<T> slowQueryLog(CqlSlowQueryLog slowQueryLog) {
+        this.slowQueryLog = slowQueryLog;
+        return this;
+    }
+
+    public String getCql() {
+        return this.boundQuery.getCql();
+    }
+
+    /**
+     * @return The column names of the {@link #BIND} placeholders, in the
+     *      order their values are bound
+     */
+    public List<String> getParameterNames() {
+        return this.parameterNames;
+    }
+
+    /**
+     * @return A new (reusable) binder of the values of this template
+     */
+    public Binder binder() {
+        return new Binder();
+    }
+
+    public ResultSet execute(Object... values) {
+        return this.bind(values).execute();
+    }
+
+    public CompletableFuture<ResultSet> executeAsync(Object... values) {
+        return this.bind(values).executeAsync();
+    }
+
+    public T findOne(Object... values) {
+        return this.bind(values).findOne();
+    }
+
+    public CompletableFuture<T> findOneAsync(Object... values) {
+        return this.bind(values).findOneAsync();
+    }
+
+    public List<T> findList(Object... values) {
+        return this.bind(values).findList();
+    }
+
+    public CompletableFuture<List<T>> findListAsync(Object... values) {
+        return this.bind(values).findListAsync();
+    }
+
+    private Binder bind(Object... values) {
+        if (values.length != this.slots.length) {
+            throw new IllegalArgumentException("Template requires " + this.slots.length
+                + " values " + this.parameterNames + " (not " + values.length + ")");
+        }
+        final Binder binder = new Binder();
+        for (int i = 0; i < values.length; i++) {
+            binder.set(i, values[i]);
+        }
+        return binder;
+    }
+
+    private PreparedStatement prepare() {
+        PreparedStatement ps = this.preparedStatement;
+        if (ps == null) {
+            ps = this.preparedStatementCache.get(this.boundQuery.getCql());
+            this.preparedStatement = ps;
+        }
+        return ps;
+    }
+
+    private CompletableFuture<PreparedStatement> prepareAsync() {
+        final PreparedStatement ps = this.preparedStatement;
+        if (ps != null) {
+            return completedFuture(ps);
+        }
+        return this.preparedStatementCache.getAsync(this.boundQuery.getCql())
+            .thenApply(v -> {
+                this.preparedStatement = v;
+                return v;
+            });
+    }
+
+    private BoundStatement createStatement(PreparedStatement ps, Object[] values) {
+        final BoundStatement statement = ps.bind(values);
+        int unset = 0;
+
+        for (int i : this.unsettableIndexes) {
+            if (values[i] == null) {
+                statement.unset(i);
+                unset++;
+            }
+        }
+
+        if (unset > 0 && this.tombstonesAvoided != null) {
+            this.tombstonesAvoided.add(unset);
+        }
+
+        if (this.fetchSize != null) {
+            statement.setFetchSize(this.fetchSize);
+        }
+
+        if (this.consistencyLevel != null) {
+            statement.setConsistencyLevel(this.consistencyLevel);
+        }
+
+        if (this.serialConsistencyLevel != null) {
+            statement.setSerialConsistencyLevel(this.serialConsistencyLevel);
+        }
+
+        if (this.idempotent != null) {
+            statement.setIdempotent(this.idempotent);
+        }
+
+        if (log.isTraceEnabled()) {
+            log.trace("[template {}] sql {}", this.id, this.boundQuery.getCql());
+            log.trace("[template {}] val {}", this.id, Arrays.asList(values));
+        }
+
+        return statement;
+    }
+
+    /**
+     * @return A listener checking the warnings of every page fetched after
+     *      the first (which is checked as the template executes)
+     */
+    private Consumer<ExecutionInfo> pageWarnings() {
+        return executionInfo -> CqlQueryImpl.checkWarnings(this.metrics, this.boundQuery.getTableName(),
+            this.boundQuery.getCql(), executionInfo, this.failOnTombstoneWarning);
+    }
+
+    private ResultSet verifyApplied(Object[] values, ResultSet results) {
+        CqlQueryImpl.checkWarnings(this.metrics, this.boundQuery.getTableName(), this.boundQuery.getCql(),
+            results, this.failOnTombstoneWarning);
+
+        if (results.wasApplied()) {
+            return results;
+        }
+
+        // only rebuild the parameters for a helpful message on failure
+        return CqlQueryImpl.verifyApplied(this.boundQuery(values), results);
+    }
+
+    private CqlBoundQuery boundQuery(Object[] values) {
+        final List<Parameter> parameters = new ArrayList<>(values.length);
+        for (int i = 0; i < values.length; i++) {
+            parameters.add(new Parameter(this.boundQuery.getParameters().get(i).getName(), values[i]));
+        }
+
+        return new CqlBoundQuery(
+            this.boundQuery.getCommand(),
+            this.boundQuery.getCql(),
+            this.boundQuery.getTableName(),
+            parameters,
+            this.boundQuery.getPrimaryKeys(),
+            this.boundQuery.getOptimisticLock());
+    }
+
+    private Object[] before(CqlBoundQuery query) {
+        return query != null ? CqlQueryListeners.before(this.listeners, query) : null;
+    }
+
+    private void completed(Object[] values, CqlBoundQuery query, Object[] contexts, long elapsedNanos, ResultSet results, Throwable failure) {
+        if (query != null) {
+            CqlQueryListeners.after(this.listeners, contexts, query, results, elapsedNanos, failure);
+        }
+
+        if (this.slowQueryLog != null && this.slowQueryLog.isSlow(this.boundQuery.getTableName(), elapsedNanos)) {
+            this.slowQueryLog.record(this.id, query != null ? query : this.boundQuery(values), elapsedNanos, results, failure);
+        }
+
+        if (this.metrics != null) {
+            this.metrics.recordLatency(this.boundQuery.getTableName(), this.boundQuery.getCommand(), failure == null, elapsedNanos);
+            if (failure instanceof OptimisticLockException || failure instanceof EntityExistsException) {
+                this.metrics.recordConflict(this.boundQuery.getTableName());
+            }
+        }
+    }
+
+    private <R> R rowsReturned(R v, long rows) {
+        if (this.metrics != null) {
+            this.metrics.recordRows(this.boundQuery.getTableName(), rows);
+        }
+        return v;
+    }
+
+    /**
+     * The values of one execution of a template. Once executed, a binder may
+     * be reused (by setting new values) but is not thread-safe.
+     */
+    public class Binder {
+
+        private final Object[] values;
+
+        private Binder() {
+            this.values = CqlTemplate.this.values.clone();
+        }
+
+        /**
+         * @param index The index of the placeholder (see {@link #getParameterNames()})
+         * @param value The value
+         * @return This binder
+         */
+        public Binder set(int index, Object value) {
+            if (index < 0 || index >= slots.length) {
+                throw new IndexOutOfBoundsException("Template has " + slots.length + " values (not index " + index + ")");
+            }
+            final CqlColMapper colMapper = slotColMappers[index];
+            this.values[slots[index]] = colMapper != null && value != null ? colMapper.apply(value) : value;
+            return this;
+        }
+
+        private Object[] snapshot() {
+            for (int s = 0; s < slots.length; s++) {
+                if (this.values[slots[s]] == BIND) {
+                    throw new IllegalStateException("Value " + s + " (" + parameterNames.get(s) + ") was not set");
+                }
+            }
+            // the statement keeps its own serialized copy, safe to reuse ours
+            return this.values;
+        }
+
+        public BoundStatement statement() {
+            return createStatement(prepare(), this.snapshot());
+        }
+
+        public ResultSet execute() {
+            final Object[] v = this.snapshot();
+            final BoundStatement statement = createStatement(prepare(), v);
+            final CqlBoundQuery query = listeners.length > 0 ? boundQuery(v) : null;
+            final Object[] contexts = before(query);
+            final long start = System.nanoTime();
+            ResultSet results = null;
+            Throwable failure = null;
+            try {
+                results = session.execute(statement);
+                return verifyApplied(v, results);
+            }
+            catch (RuntimeException | Error e) {
+                failure = e;
+                throw e;
+            }
+            finally {
+                completed(v, query, contexts, System.nanoTime() - start, results, failure);
+            }
+        }
+
+        public CompletableFuture<ResultSet> executeAsync() {
+            // copied since the binder may be reused before the future completes
+            final Object[] v = this.snapshot().clone();
+            final CqlBoundQuery query = listeners.length > 0 ? boundQuery(v) : null;
+            final Object[] contexts = before(query);
+            final long start = System.nanoTime();
+            return prepareAsync()
+                .thenCompose(ps -> CompletableFutures.of(session.executeAsync(createStatement(ps, v))))
+                .thenApply(results -> verifyApplied(v, results))
+                .whenComplete((results, e) -> completed(v, query, contexts, System.nanoTime() - start, results, CompletableFutures.unwrap(e)));
+        }
+
+        public T findOne() {
+            requireRowMapper();
+            final Row row = this.execute().one();
+            return rowsReturned(rowMapper.apply(row), row != null ? 1 : 0);
+        }
+
+        public CompletableFuture<T> findOneAsync() {
+            requireRowMapper();
+            return this.executeAsync()
+                .thenApply(results -> results.one())
+                .thenApply(row -> rowsReturned(rowMapper.apply(row), row != null ? 1 : 0));
+        }
+
+        public List<T> findList() {
+            requireRowMapper();
+            final ResultSet results = this.execute();
+            final List<T> v = new ArrayList<>(results.getAvailableWithoutFetching());
+            ResultSets.mapAll(results, rowMapper.compile(results.getColumnDefinitions()), 0, pageWarnings(), v);
+            return rowsReturned(v, v.size());
+        }
+
+        public CompletableFuture<List<T>> findListAsync() {
+            requireRowMapper();
+            return this.executeAsync()
+                .thenCompose(results -> ResultSets.mapAllAsync(results, rowMapper.compile(results.getColumnDefinitions()),
+                    pageWarnings(), new ArrayList<>(results.getAvailableWithoutFetching())))
+                .thenApply(v -> rowsReturned(v, v.size()));
+        }
+
+    }
+
+    private void requireRowMapper() {
+        if (this.rowMapper == null) {
+            throw new IllegalStateException("A rowMapper must be set prior to execute");
+        }
+    }
+
+}
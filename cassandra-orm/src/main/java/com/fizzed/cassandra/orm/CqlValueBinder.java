@@ -0,0 +1,10 @@
+package com.fizzed.cassandra.orm;
+
+/**
+ * Binds the column values of an entity to an insert, update or upsert.
+ */
+public interface CqlValueBinder<T> {
+
+    void bind(T entity, CqlQuery<?> query);
+    
+}
@@ -0,0 +1,344 @@
+package com.fizzed.cassandra.orm;
+
+import com.datastax.driver.core.ColumnMetadata;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.TableMetadata;
+import com.fizzed.cassandra.orm.CqlQuery.Command;
+import com.fizzed.cassandra.orm.impl.CompletableFutures;
+import com.fizzed.cassandra.orm.impl.ConcurrentFutures;
+import com.fizzed.cassandra.orm.impl.CqlQueryImpl;
+import com.fizzed.cassandra.orm.impl.PartitionKeys;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Warms up a session before it serves traffic: opens a connection to every
+ * host (with a trivial query routed to each) and prepares every CQL shape of
+ * a {@link CqlManifest} plus the CRUD shapes of every registered model, in
+ * parallel and within a time budget. Statements are prepared through the
+ * {@link PreparedStatementCache} so later queries find them there.
+ *
+ * A warm-up never fails, a statement that cannot be prepared (e.g. for a
+ * column since dropped) is skipped and whatever is not done once the time
+ * budget runs out is left to be prepared on first use.
+ */
+public class CqlWarmup {
+    static private final Logger log = LoggerFactory.getLogger(CqlWarmup.class);
+
+    static public final int DEFAULT_CONCURRENCY = 16;
+    static public final long DEFAULT_TIMEOUT_MILLIS = 10000L;
+
+    private final long id;
+    private final Session session;
+    private final PreparedStatementCache preparedStatementCache;
+    private final Map<Class<?>,CqlModel<?>> models;
+    private final Set<String> cqls;
+    private CqlManifest manifest;
+    private int concurrency;
+    private long timeoutMillis;
+    private boolean openPools;
+
+    public CqlWarmup(long id, Session session, PreparedStatementCache preparedStatementCache, Map<Class<?>,CqlModel<?>> models) {
+        this.id = id;
+        this.session = session;
+        this.preparedStatementCache = preparedStatementCache;
+        this.models = models;
+        this.cqls = new LinkedHashSet<>();
+        this.concurrency = DEFAULT_CONCURRENCY;
+        this.timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+        this.openPools = true;
+    }
+
+    public CqlWarmup addCql(String cql) {
+        this.cqls.add(cql);
+        return this;
+    }
+
+    public CqlWarmup setManifest(CqlManifest manifest) {
+        this.manifest = manifest;
+        return this;
+    }
+
+    public CqlWarmup setConcurrency(int concurrency) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("concurrency must be > 0");
+        }
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    public CqlWarmup setTimeoutMillis(long timeoutMillis) {
+        if (timeoutMillis <= 0) {
+            throw new IllegalArgumentException("timeoutMillis must be > 0");
+        }
+        this.timeoutMillis = timeoutMillis;
+        return this;
+    }
+
+    public CqlWarmup setOpenPools(boolean openPools) {
+        this.openPools = openPools;
+        return this;
+    }
+
+    /**
+     * @return Every CQL shape to prepare (explicit, manifest, then models)
+     */
+    public List<String> getCqls() {
+        final Set<String> all = new LinkedHashSet<>(this.cqls);
+
+        if (this.manifest != null) {
+            try {
+                all.addAll(this.manifest.read());
+            }
+            catch (RuntimeException e) {
+                log.warn("[warmup {}] unable to read manifest {}: {}", this.id, this.manifest.getFile(), e.getMessage());
+            }
+        }
+
+        if (this.models != null) {
+            for (Map.Entry<Class<?>,CqlModel<?>> entry : this.models.entrySet()) {
+                all.addAll(this.modelCqls((Class<Object>)entry.getKey(), (CqlModel<Object>)entry.getValue()));
+            }
+        }
+
+        return new ArrayList<>(all);
+    }
+
+    /**
+     * The shapes {@link Cassandra} builds for a select and delete of a model by
+     * its full primary key and for an insert of an entity, with its columns in
+     * the order its value binder sets them (or of the table metadata if the
+     * model has none).
+     */
+    <T> List<String> modelCqls(Class<T> type, CqlModel<T> model) {
+        final String tableName = model.getTableName();
+        final TableMetadata table = tableName != null ? PartitionKeys.tableMetadata(this.session, tableName) : null;
+
+        if (table == null) {
+            return new ArrayList<>();
+        }
+
+        final String where = table.getPrimaryKey().stream()
+            .map(c -> Metadata.quoteIfNecessary(c.getName()) + "=?")
+            .collect(joining(" AND "));
+
+        final List<String> cqls = new ArrayList<>();
+        cqls.add("SELECT * FROM " + tableName + " WHERE " + where);
+        cqls.add("DELETE FROM " + tableName + " WHERE " + where);
+
+        String insert = this.bindInsert(type, model);
+        if (insert == null) {
+            final List<String> columns = table.getColumns().stream()
+                .map(ColumnMetadata::getName)
+                .map(Metadata::quoteIfNecessary)
+                .collect(toList());
+
+            insert = "INSERT INTO " + tableName + " (" + columns.stream().collect(joining(","))
+                + ") VALUES (" + columns.stream().map(c -> "?").collect(joining(",")) + ")";
+        }
+        cqls.add(insert);
+
+        return cqls;
+    }
+
+    /**
+     * Builds the insert of a new (empty) entity through the value binder of
+     * its model, exactly as <code>cassandra.insert(type).vals(entity)</code>
+     * would.
+     *
+     * @return The cql or null if the model has no value binder or the entity
+     *      cannot be created (e.g. lacks a no-arg constructor) or bound
+     */
+    private <T> String bindInsert(Class<T> type, CqlModel<T> model) {
+        if (type == null || model.getValueBinder() == null) {
+            return null;
+        }
+
+        try {
+            final Constructor<T> constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            final T entity = constructor.newInstance();
+
+            return new CqlQueryImpl<T>(0L, this.session, this.preparedStatementCache, Command.INSERT)
+                .colMappers(model.getColMappers())
+                .valueBinder(model.getValueBinder())
+                .primaryKeys(model.getPrimaryKeys())
+                .setUnsetNulls(model.isUnsetNulls())
+                .table(model.getTableName())
+                .vals(entity)
+                .build()
+                .getCql();
+        }
+        catch (ReflectiveOperationException | RuntimeException e) {
+            log.debug("[warmup {}] unable to bind an insert of {}: {}", this.id, type.getCanonicalName(), e.getMessage());
+            return null;
+        }
+    }
+
+    public Result execute() {
+        final long start = System.currentTimeMillis();
+        final AtomicBoolean expired = new AtomicBoolean();
+        final LongAdder prepared = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final LongAdder hosts = new LongAdder();
+        final List<CompletableFuture<?>> futures = new ArrayList<>();
+
+        if (this.openPools) {
+            futures.add(this.openPools(hosts));
+        }
+
+        final List<String> statements = this.getCqls();
+
+        final List<Supplier<CompletableFuture<Boolean>>> tasks = statements.stream()
+            .map(cql -> (Supplier<CompletableFuture<Boolean>>)() -> {
+                if (expired.get()) {
+                    return CompletableFuture.completedFuture(false);
+                }
+                return this.preparedStatementCache.getAsync(cql)
+                    .handle((ps, e) -> {
+                        if (e != null) {
+                            failed.increment();
+                            log.debug("[warmup {}] unable to prepare {}: {}", this.id, cql, e.getMessage());
+                            return false;
+                        }
+                        prepared.increment();
+                        return true;
+                    });
+            })
+            .collect(toList());
+
+        futures.add(ConcurrentFutures.all(tasks, this.concurrency));
+
+        boolean complete = true;
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                .get(this.timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        catch (TimeoutException e) {
+            // stop starting new prepares, whatever is left is prepared on first use
+            expired.set(true);
+            complete = false;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            expired.set(true);
+            complete = false;
+        }
+        catch (ExecutionException e) {
+            // failures are counted & skipped, nothing else should fail
+            log.warn("[warmup {}] failed: {}", this.id, e.getCause().getMessage());
+            complete = false;
+        }
+
+        final Result result = new Result(statements.size(), prepared.intValue(), failed.intValue(),
+            hosts.intValue(), complete, System.currentTimeMillis() - start);
+
+        log.info("[warmup {}] {}", this.id, result);
+
+        return result;
+    }
+
+    private CompletableFuture<Void> openPools(LongAdder hosts) {
+        // e.g. an in-memory session, with no hosts to connect to
+        if (this.session.getCluster() == null || this.session.getCluster().getMetadata() == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        final List<CompletableFuture<?>> futures = new ArrayList<>();
+
+        // route a trivial query to every host, so its pool is open & connected
+        for (Host host : this.session.getCluster().getMetadata().getAllHosts()) {
+            if (!host.isUp()) {
+                continue;
+            }
+
+            final SimpleStatement statement = new SimpleStatement("SELECT release_version FROM system.local");
+            statement.setHost(host);
+
+            futures.add(CompletableFutures.of(this.session.executeAsync(statement))
+                .handle((rs, e) -> {
+                    if (e != null) {
+                        log.warn("[warmup {}] unable to connect to {}: {}", this.id, host, e.getMessage());
+                    } else {
+                        hosts.increment();
+                    }
+                    return null;
+                }));
+        }
+
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+    }
+
+    static public class Result {
+
+        private final int statements;
+        private final int prepared;
+        private final int failed;
+        private final int hosts;
+        private final boolean complete;
+        private final long elapsedMillis;
+
+        Result(int statements, int prepared, int failed, int hosts, boolean complete, long elapsedMillis) {
+            this.statements = statements;
+            this.prepared = prepared;
+            this.failed = failed;
+            this.hosts = hosts;
+            this.complete = complete;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public int getStatements() {
+            return statements;
+        }
+
+        public int getPrepared() {
+            return prepared;
+        }
+
+        public int getFailed() {
+            return failed;
+        }
+
+        public int getHosts() {
+            return hosts;
+        }
+
+        /**
+         * @return True if everything was done within the time budget
+         */
+        public boolean isComplete() {
+            return complete;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "prepared " + prepared + "/" + statements + " statements (" + failed + " failed)"
+                + " and connected to " + hosts + " hosts in " + elapsedMillis + " ms"
+                + (complete ? "" : " (time budget exceeded)");
+        }
+
+    }
+
+}
@@ -8,38 +8,31 @@ import org.joda.time.DateTimeZone;
 
 public class DataTypesJoda {
  
+    // joda is optional, so its conversions are only registered once this class is used
+    static private final CqlConverter<Date> TIMESTAMP = CqlConverters.to(Date.class)
+        .register(Date.class, v -> v)
+        .register(DateTime.class, DateTime::toDate);
+    
+    static private final CqlConverter<DateTime> DATE_TIME = CqlConverters.to(DateTime.class)
+        .register(DateTime.class, v -> v)
+        .register(Date.class, v -> new DateTime(v.getTime(), DateTimeZone.UTC))
+        .register(Long.class, v -> new DateTime(v, DateTimeZone.UTC));
+    
     static public Date cqlTimestampJoda(Object v) {
-        if (v == null) {
-            return null;
-        }
-        
-        if (v instanceof DateTime) {
-            return ((DateTime)v).toDate();
-        }
-        
-        if (v instanceof Date) {
-            return (Date)v;
-        }
-        
-        throw new IllegalArgumentException("Unable to convert to DateTime");
+        return TIMESTAMP.convert(v);
+    }
+    
+    /**
+     * @param v The value
+     * @return The value as a DateTime, to bind as-is to a timestamp through the
+     *      JodaDateTimeCodec (which must be registered with the session's cluster)
+     */
+    static public DateTime cqlDateTimeJoda(Object v) {
+        return jodaDateTime(v);
     }
  
     static private DateTime jodaDateTime(Object v) {
-        if (v == null) {
-            return null;
-        }
-        
-        switch (v.getClass().getCanonicalName()) {
-            case "java.util.Date":
-                Date d = (Date)v;
-                return new DateTime(d.getTime(), DateTimeZone.UTC);
-            case "java.lang.Long":
-                Long l = (Long)v;
-                return new DateTime(l, DateTimeZone.UTC);
-            default:
-                // com.datastax.driver.core.exceptions.CodecNotFoundException: Codec not found for requested operation: [varchar <-> java.util.Date]
-                throw new IllegalArgumentException("Unable to convert " + v.getClass() + " <-> org.joda.time.DateTime");
-        }
+        return DATE_TIME.convert(v);
     }
     
     static public DateTime jodaDateTime(Row row, String columnName) {
@@ -54,4 +47,19 @@ public class DataTypesJoda {
         return null;
     }
     
-}
\ No newline at end of file
+    /**
+     * Reads a timestamp straight from the wire through the JodaDateTimeCodec,
+     * which must be registered with the cluster of the row.
+     * 
+     * @param row The row
+     * @param columnName The column
+     * @return The value or null
+     */
+    static public DateTime jodaDateTimeCodec(Row row, String columnName) {
+        if (hasColumn(row, columnName, true)) {
+            return row.get(columnName, DateTime.class);
+        }
+        return null;
+    }
+    
+}
@@ -1,11 +1,9 @@
 package com.fizzed.cassandra.orm;
 
+import com.datastax.driver.core.DataType;
 import com.datastax.driver.core.Row;
 import java.nio.ByteBuffer;
-import java.nio.charset.StandardCharsets;
 import java.util.List;
-import static java.util.stream.Collectors.toList;
-import java.util.stream.StreamSupport;
 
 public class DateTypes {
 
@@ -21,47 +19,28 @@ public class DateTypes {
         return exists;
     }
     
-    static public List<?> cqlList(Iterable<?> iterable) {
-        if (iterable != null) {
-            if (iterable instanceof List) {
-                return (List)iterable;
-            }
-            
-            // we MUST adapt it
-            return StreamSupport.stream(iterable.spliterator(), false)
-                .collect(toList());
+    // for the primitive accessors, a single name lookup then typed getters by index
+    static private int indexOf(Row row, String columnName) {
+        final int i = row != null && columnName != null
+            ? row.getColumnDefinitions().getIndexOf(columnName) : -1;
+        
+        if (i < 0) {
+            throw new IllegalArgumentException("Column " + columnName + " is not present");
         }
-        return null;
+        
+        return i;
+    }
+    
+    static public List<?> cqlList(Iterable<?> iterable) {
+        return CqlConverters.LIST.convert(iterable);
     }
     
     static public ByteBuffer cqlBlob(String s) {
-        if (s != null) {
-            return StandardCharsets.UTF_8.encode(s);
-        }
-        return null;
+        return CqlConverters.BLOB.convert(s);
     }
     
-    static private String javaString(Object v) {
-        if (v == null) {
-            return null;
-        }
-        
-        if (v instanceof String) {
-            return (String)v;
-        }
-        
-        if (v instanceof ByteBuffer) {
-            ByteBuffer bb = (ByteBuffer)v;
-            return StandardCharsets.UTF_8.decode(bb).toString();
-        }
-
-        switch (v.getClass().getCanonicalName()) {
-//            case "java.nio.ByteBuffer":
-//                ByteBuffer bb = (ByteBuffer)v;
-//                return StandardCharsets.UTF_8.decode(bb).toString();
-            default:
-                throw new IllegalArgumentException("Unable to convert " + v.getClass() + " <-> java.lang.String");
-        }
+    static String javaString(Object v) {
+        return CqlConverters.STRING.convert(v);
     }
     
     static public String javaString(Row row, String columnName) {
@@ -81,45 +60,11 @@ public class DateTypes {
     //
     
     static public Byte cqlByte(Object v) {
-        if (v != null) {
-            if (v instanceof Byte) {
-                return (Byte)v;
-            }
-            if (v instanceof Number) {
-                return ((Number)v).byteValue();
-            }
-            throw new IllegalArgumentException("Unable to convert to cqlByte");
-        }
-        return null;
+        return CqlConverters.BYTE.convert(v);
     }
     
-    static private Byte javaByte(Object v) {
-        if (v == null) {
-            return null;
-        }
-        
-        if (v instanceof Byte) {
-            return (Byte)v;
-        }
-        
-        if (v instanceof Number) {
-            Number n = (Number)v;
-            return n.byteValue();
-        }
-        
-        switch (v.getClass().getCanonicalName()) {
-//            case "java.lang.Byte":
-//                Byte b = (Byte)v;
-//                return b.longValue();
-//            case "java.lang.Short":
-//                Short s = (Short)v;
-//                return s.longValue();
-//            case "java.lang.Integer":
-//                Integer i = (Integer)v;
-//                return i.longValue();
-            default:
-                throw new IllegalArgumentException("Unable to convert " + v.getClass() + " <-> java.lang.Byte");
-        }
+    static Byte javaByte(Object v) {
+        return CqlConverters.BYTE.convert(v);
     }
     
     static public Byte javaByte(Row row, String columnName) {
@@ -134,50 +79,33 @@ public class DateTypes {
         return null;
     }
     
+    static public byte javaByte(Row row, String columnName, byte ifNull) {
+        final int i = indexOf(row, columnName);
+        return javaByte(row, i, row.getColumnDefinitions().getType(i).getName(), ifNull);
+    }
+    
+    static byte javaByte(Row row, int i, DataType.Name type, byte ifNull) {
+        if (row.isNull(i)) {
+            return ifNull;
+        }
+        switch (type) {
+            case TINYINT:
+                return row.getByte(i);
+            default:
+                return javaByte(row.getObject(i));
+        }
+    }
+    
     //
     // Shorts
     //
     
     static public Short cqlShort(Number v) {
-        if (v != null) {
-            if (v instanceof Short) {
-                return (Short)v;
-            }
-            if (v instanceof Number) {
-                return ((Number)v).shortValue();
-            }
-            throw new IllegalArgumentException("Unable to convert to cqlShort");
-        }
-        return null;
+        return CqlConverters.SHORT.convert(v);
     }
     
-    static private Short javaShort(Object v) {
-        if (v == null) {
-            return null;
-        }
-        
-        if (v instanceof Short) {
-            return (Short)v;
-        }
-        
-        if (v instanceof Number) {
-            Number n = (Number)v;
-            return n.shortValue();
-        }
-        
-        switch (v.getClass().getCanonicalName()) {
-//            case "java.lang.Byte":
-//                Byte b = (Byte)v;
-//                return b.longValue();
-//            case "java.lang.Short":
-//                Short s = (Short)v;
-//                return s.longValue();
-//            case "java.lang.Integer":
-//                Integer i = (Integer)v;
-//                return i.longValue();
-            default:
-                throw new IllegalArgumentException("Unable to convert " + v.getClass() + " <-> java.lang.Short");
-        }
+    static Short javaShort(Object v) {
+        return CqlConverters.SHORT.convert(v);
     }
     
     static public Short javaShort(Row row, String columnName) {
@@ -192,50 +120,35 @@ public class DateTypes {
         return null;
     }
     
+    static public short javaShort(Row row, String columnName, short ifNull) {
+        final int i = indexOf(row, columnName);
+        return javaShort(row, i, row.getColumnDefinitions().getType(i).getName(), ifNull);
+    }
+    
+    static short javaShort(Row row, int i, DataType.Name type, short ifNull) {
+        if (row.isNull(i)) {
+            return ifNull;
+        }
+        switch (type) {
+            case SMALLINT:
+                return row.getShort(i);
+            case TINYINT:
+                return row.getByte(i);
+            default:
+                return javaShort(row.getObject(i));
+        }
+    }
+    
     //
     // Ints
     //
     
     static public Integer cqlInteger(Number v) {
-        if (v != null) {
-            if (v instanceof Integer) {
-                return (Integer)v;
-            }
-            if (v instanceof Number) {
-                return ((Number)v).intValue();
-            }
-            throw new IllegalArgumentException("Unable to convert to cqlInteger");
-        }
-        return null;
+        return CqlConverters.INTEGER.convert(v);
     }
     
-    static private Integer javaInteger(Object v) {
-        if (v == null) {
-            return null;
-        }
-        
-        if (v instanceof Integer) {
-            return (Integer)v;
-        }
-        
-        if (v instanceof Number) {
-            Number n = (Number)v;
-            return n.intValue();
-        }
-        
-        switch (v.getClass().getCanonicalName()) {
-//            case "java.lang.Byte":
-//                Byte b = (Byte)v;
-//                return b.intValue();
-//            case "java.lang.Short":
-//                Short s = (Short)v;
-//                return s.intValue();
-//            case "java.lang.Long":
-//                Long l = (Long)v;
-//                return l.intValue();
-            default:
-                throw new IllegalArgumentException("Unable to convert " + v.getClass() + " <-> java.lang.Integer");
-        }
+    static Integer javaInteger(Object v) {
+        return CqlConverters.INTEGER.convert(v);
     }
     
     static public Integer javaInteger(Row row, String columnName) {
@@ -250,50 +163,37 @@ public class DateTypes {
         return null;
     }
     
+    static public int javaInteger(Row row, String columnName, int ifNull) {
+        final int i = indexOf(row, columnName);
+        return javaInteger(row, i, row.getColumnDefinitions().getType(i).getName(), ifNull);
+    }
+    
+    static int javaInteger(Row row, int i, DataType.Name type, int ifNull) {
+        if (row.isNull(i)) {
+            return ifNull;
+        }
+        switch (type) {
+            case INT:
+                return row.getInt(i);
+            case SMALLINT:
+                return row.getShort(i);
+            case TINYINT:
+                return row.getByte(i);
+            default:
+                return javaInteger(row.getObject(i));
+        }
+    }
+    
     //
     // Longs
     //
     
     static public Long cqlLong(Number v) {
-        if (v != null) {
-            if (v instanceof Long) {
-                return (Long)v;
-            }
-            if (v instanceof Number) {
-                return ((Number)v).longValue();
-            }
-            throw new IllegalArgumentException("Unable to convert to cqlLong");
-        }
-        return null;
+        return CqlConverters.LONG.convert(v);
     }
     
-    static private Long javaLong(Object v) {
-        if (v == null) {
-            return null;
-        }
-        
-        if (v instanceof Long) {
-            return (Long)v;
-        }
-        
-        if (v instanceof Number) {
-            Number n = (Number)v;
-            return n.longValue();
-        }
-        
-        switch (v.getClass().getCanonicalName()) {
-//            case "java.lang.Byte":
-//                Byte b = (Byte)v;
-//                return b.longValue();
-//            case "java.lang.Short":
-//                Short s = (Short)v;
-//                return s.longValue();
-//            case "java.lang.Integer":
-//                Integer i = (Integer)v;
-//                return i.longValue();
-            default:
-                throw new IllegalArgumentException("Unable to convert " + v.getClass() + " <-> java.lang.Long");
-        }
+    static Long javaLong(Object v) {
+        return CqlConverters.LONG.convert(v);
     }
     
     static public Long javaLong(Row row, String columnName) {
@@ -308,4 +208,29 @@ public class DateTypes {
         return null;
     }
     
+    static public long javaLong(Row row, String columnName, long ifNull) {
+        final int i = indexOf(row, columnName);
+        return javaLong(row, i, row.getColumnDefinitions().getType(i).getName(), ifNull);
+    }
+    
+    static long javaLong(Row row, int i, DataType.Name type, long ifNull) {
+        if (row.isNull(i)) {
+            return ifNull;
+        }
+        switch (type) {
+            case BIGINT:
+            case COUNTER:
+            case TIME:
+                return row.getLong(i);
+            case INT:
+                return row.getInt(i);
+            case SMALLINT:
+                return row.getShort(i);
+            case TINYINT:
+                return row.getByte(i);
+            default:
+                return javaLong(row.getObject(i));
+        }
+    }
+    
 }
\ No newline at end of file
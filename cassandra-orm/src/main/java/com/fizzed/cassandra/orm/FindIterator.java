@@ -1,24 +1,69 @@
 package com.fizzed.cassandra.orm;
 
+import com.datastax.driver.core.ExecutionInfo;
 import com.datastax.driver.core.ResultSet;
 import com.datastax.driver.core.Row;
+import com.fizzed.cassandra.orm.impl.ResultSets;
+import static java.util.Collections.singletonList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
 public class FindIterator<T> implements Iterable<T> {
 
-    private final ResultSet results;
-    private final CqlRowMapper<T> rowMapper;
     private final AtomicLong counter;
-    private final Iterator<Row> it;
+    private final Iterator<T> it;
 
     public FindIterator(ResultSet results, CqlRowMapper<T> rowMapper) {
-        this.results = results;
-        this.rowMapper = rowMapper;
+        this(singletonList(results), rowMapper, 0);
+    }
+
+    public FindIterator(List<ResultSet> results, CqlRowMapper<T> rowMapper) {
+        this(results, rowMapper, 0);
+    }
+
+    /**
+     * @param results The result sets to iterate in order
+     * @param rowMapper The row mapper
+     * @param prefetch Once the rows left in the current page drop to this
+     *      many, the next page is fetched in the background (0 to disable)
+     */
+    public FindIterator(List<ResultSet> results, CqlRowMapper<T> rowMapper, int prefetch) {
+        this(results, rowMapper, prefetch, null);
+    }
+
+    /**
+     * @param results The result sets to iterate in order
+     * @param rowMapper The row mapper
+     * @param prefetch Once the rows left in the current page drop to this
+     *      many, the next page is fetched in the background (0 to disable)
+     * @param pageListener Called with each page fetched after the first of a
+     *      result set (or null), e.g. to check its warnings
+     */
+    public FindIterator(List<ResultSet> results, CqlRowMapper<T> rowMapper, int prefetch, Consumer<ExecutionInfo> pageListener) {
+        this(results, rowMapper, prefetch, pageListener, null);
+    }
+
+    /**
+     * @param results The result sets to iterate in order
+     * @param rowMapper The row mapper
+     * @param prefetch Once the rows left in the current page drop to this
+     *      many, the next page is fetched in the background (0 to disable)
+     * @param pageListener Called with each page fetched after the first of a
+     *      result set (or null), e.g. to check its warnings
+     * @param rowsListener Called with the rows of each page fetched after the
+     *      first of a result set (or null), e.g. to count them
+     */
+    public FindIterator(List<ResultSet> results, CqlRowMapper<T> rowMapper, int prefetch,
+            Consumer<ExecutionInfo> pageListener, LongConsumer rowsListener) {
         this.counter = new AtomicLong();
-        this.it = this.results.iterator();
+        // each result set still pages lazily as it's iterated
+        this.it = new MappingIterator<>(results, rowMapper, prefetch, pageListener, rowsListener);
     }
-    
+
     public long getCount() {
         return this.counter.get();
     }
@@ -33,11 +78,69 @@ public class FindIterator<T> implements Iterable<T> {
 
             @Override
             public T next() {
-                Row row = it.next();
+                T value = it.next();
                 counter.incrementAndGet();
-                return rowMapper.apply(row);
+                return value;
             }
         };
     }
 
-}
\ No newline at end of file
+    static private class MappingIterator<T> implements Iterator<T> {
+
+        private final Iterator<ResultSet> results;
+        private final CqlRowMapper<T> rowMapper;
+        private final int prefetch;
+        private final Consumer<ExecutionInfo> pageListener;
+        private final LongConsumer rowsListener;
+        private ResultSet current;
+        private CqlRowMapper<T> mapper;
+        private Iterator<Row> rows;
+        private ResultSets.Pages pages;
+
+        public MappingIterator(List<ResultSet> results, CqlRowMapper<T> rowMapper, int prefetch,
+                Consumer<ExecutionInfo> pageListener, LongConsumer rowsListener) {
+            this.results = results.iterator();
+            this.rowMapper = rowMapper;
+            this.prefetch = prefetch;
+            this.pageListener = pageListener;
+            this.rowsListener = rowsListener;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (this.rows == null || !this.rows.hasNext()) {
+                if (this.pages != null) {
+                    // any (empty) last page
+                    this.pages.checkLast();
+                    this.pages = null;
+                }
+                if (!this.results.hasNext()) {
+                    return false;
+                }
+                this.current = this.results.next();
+                // columns are resolved once per result set
+                this.mapper = this.rowMapper.compile(this.current.getColumnDefinitions());
+                this.rows = this.current.iterator();
+                if (this.pageListener != null || this.rowsListener != null) {
+                    this.pages = new ResultSets.Pages(this.current, this.pageListener, this.rowsListener);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public T next() {
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final Row row = this.rows.next();
+            if (this.pages != null) {
+                this.pages.check();
+            }
+            ResultSets.prefetch(this.current, this.prefetch);
+            return this.mapper.apply(row);
+        }
+
+    }
+
+}
@@ -0,0 +1,140 @@
+package com.fizzed.cassandra.orm;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free, fixed-memory histogram of long values (e.g. nanoseconds) using
+ * log-linear buckets in the style of HdrHistogram. Each power of 2 is split
+ * into 32 linear sub-buckets, so any recorded value is reported within ~3%.
+ */
+public class LatencyHistogram {
+
+    static private final int SUB_BUCKET_BITS = 5;
+    static private final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    static private final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts;
+    private final LongAdder count;
+    private final LongAdder sum;
+    private final AtomicLong max;
+
+    public LatencyHistogram() {
+        this.counts = new AtomicLongArray(BUCKET_COUNT);
+        this.count = new LongAdder();
+        this.sum = new LongAdder();
+        this.max = new AtomicLong();
+    }
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        this.counts.incrementAndGet(indexOf(value));
+        this.count.increment();
+        this.sum.add(value);
+        long m = this.max.get();
+        while (value > m && !this.max.compareAndSet(m, value)) {
+            m = this.max.get();
+        }
+    }
+
+    public long getCount() {
+        return this.count.sum();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            this.counts.set(i, 0);
+        }
+        this.count.reset();
+        this.sum.reset();
+        this.max.set(0);
+    }
+
+    public Snapshot snapshot() {
+        final long[] c = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            c[i] = this.counts.get(i);
+            total += c[i];
+        }
+        return new Snapshot(c, total, this.sum.sum(), this.max.get());
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            // small values are recorded exactly
+            return (int)value;
+        }
+        final int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        final int shift = magnitude - SUB_BUCKET_BITS;
+        final int sub = (int)(value >>> shift) - SUB_BUCKET_COUNT;
+        return (shift + 1) * SUB_BUCKET_COUNT + sub;
+    }
+
+    static long highestEquivalentValue(int index) {
+        final int bucket = index / SUB_BUCKET_COUNT;
+        final int sub = index % SUB_BUCKET_COUNT;
+        if (bucket == 0) {
+            return sub;
+        }
+        final int shift = bucket - 1;
+        final long lowest = ((long)SUB_BUCKET_COUNT + sub) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    static public class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return this.count;
+        }
+
+        public long getSum() {
+            return this.sum;
+        }
+
+        public long getMax() {
+            return this.max;
+        }
+
+        public double getMean() {
+            return this.count > 0 ? (double)this.sum / this.count : 0.0d;
+        }
+
+        /**
+         * @param percentile The percentile (e.g. 99.0 or 99.9)
+         * @return The value at or below which the percentile of recorded values fall
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (this.count <= 0) {
+                return 0;
+            }
+            final double p = Math.min(Math.max(percentile, 0.0d), 100.0d);
+            final long target = Math.max(1L, (long)Math.ceil((p / 100.0d) * this.count));
+            long seen = 0;
+            for (int i = 0; i < this.counts.length; i++) {
+                seen += this.counts[i];
+                if (seen >= target) {
+                    return Math.min(highestEquivalentValue(i), this.max);
+                }
+            }
+            return this.max;
+        }
+
+    }
+
+}
@@ -0,0 +1,159 @@
+package com.fizzed.cassandra.orm;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.LatencyTracker;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.policies.SpeculativeExecutionPolicy;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Speculatively executes a statement on another host once it has taken longer
+ * than a percentile (e.g. the p99) of the recent latencies of idempotent
+ * statements, so a single slow replica (e.g. in a GC pause or compacting) does
+ * not drive the tail latency. The percentile is tracked with a
+ * {@link LatencyHistogram} over fixed intervals, rather than the driver's
+ * percentile tracker which requires HdrHistogram.
+ *
+ * The driver only asks for a plan for idempotent statements, so a write that
+ * is not (e.g. lightweight transactions, counters) is never sent twice.
+ */
+public class LatencySpeculativeExecutionPolicy implements SpeculativeExecutionPolicy, LatencyTracker {
+
+    static public final long DEFAULT_INTERVAL_MILLIS = 5000L;
+    static public final long DEFAULT_MIN_RECORDED_VALUES = 1000L;
+
+    private final double percentile;
+    private final int maxSpeculativeExecutions;
+    private final LatencyHistogram histogram;
+    private final AtomicLong nextIntervalAt;
+    private long intervalMillis;
+    private long minRecordedValues;
+    private long minDelayMillis;
+    private volatile long delayMillis;
+    private Cluster cluster;
+
+    /**
+     * @param percentile The percentile of latency to speculate after (e.g. 99.0)
+     * @param maxSpeculativeExecutions The max number of speculative executions
+     *      of a statement (on top of the first)
+     */
+    public LatencySpeculativeExecutionPolicy(double percentile, int maxSpeculativeExecutions) {
+        if (percentile <= 0.0d || percentile >= 100.0d) {
+            throw new IllegalArgumentException("percentile must be > 0 and < 100");
+        }
+        if (maxSpeculativeExecutions <= 0) {
+            throw new IllegalArgumentException("maxSpeculativeExecutions must be > 0");
+        }
+        this.percentile = percentile;
+        this.maxSpeculativeExecutions = maxSpeculativeExecutions;
+        this.histogram = new LatencyHistogram();
+        this.intervalMillis = DEFAULT_INTERVAL_MILLIS;
+        this.minRecordedValues = DEFAULT_MIN_RECORDED_VALUES;
+        this.nextIntervalAt = new AtomicLong(System.currentTimeMillis() + this.intervalMillis);
+        this.delayMillis = -1L;
+    }
+
+    /**
+     * @param intervalMillis How often the percentile is recomputed from the
+     *      latencies recorded since
+     * @return This policy
+     */
+    public LatencySpeculativeExecutionPolicy setIntervalMillis(long intervalMillis) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("intervalMillis must be > 0");
+        }
+        this.intervalMillis = intervalMillis;
+        return this;
+    }
+
+    /**
+     * @param minRecordedValues The number of latencies an interval needs for
+     *      its percentile to be trusted (until then, nothing is speculated)
+     * @return This policy
+     */
+    public LatencySpeculativeExecutionPolicy setMinRecordedValues(long minRecordedValues) {
+        this.minRecordedValues = minRecordedValues;
+        return this;
+    }
+
+    /**
+     * @param minDelayMillis The least a statement waits before it is speculated
+     * @return This policy
+     */
+    public LatencySpeculativeExecutionPolicy setMinDelayMillis(long minDelayMillis) {
+        this.minDelayMillis = minDelayMillis;
+        return this;
+    }
+
+    /**
+     * @return The current delay before a speculative execution or -1 if not
+     *      known yet
+     */
+    public long getDelayMillis() {
+        return this.delayMillis;
+    }
+
+    @Override
+    public void init(Cluster cluster) {
+        this.cluster = cluster;
+        cluster.register(this);
+    }
+
+    @Override
+    public void close() {
+        if (this.cluster != null) {
+            this.cluster.unregister(this);
+        }
+    }
+
+    @Override
+    public SpeculativeExecutionPlan newPlan(String loggedKeyspace, Statement statement) {
+        final long delay = this.delayMillis;
+        if (delay < 0) {
+            return lastQueried -> -1L;
+        }
+        final AtomicInteger remaining = new AtomicInteger(this.maxSpeculativeExecutions);
+        return lastQueried -> remaining.getAndDecrement() > 0 ? delay : -1L;
+    }
+
+    @Override
+    public void update(Host host, Statement statement, Exception exception, long newLatencyNanos) {
+        // only what may be speculated, and failures are not representative
+        if (exception != null || statement == null || !Boolean.TRUE.equals(statement.isIdempotent())) {
+            return;
+        }
+
+        this.histogram.record(newLatencyNanos);
+
+        final long now = System.currentTimeMillis();
+        final long at = this.nextIntervalAt.get();
+        if (now >= at && this.nextIntervalAt.compareAndSet(at, now + this.intervalMillis)) {
+            this.rollInterval();
+        }
+    }
+
+    void rollInterval() {
+        final LatencyHistogram.Snapshot snapshot = this.histogram.snapshot();
+
+        // too few values keeps the last percentile (or none)
+        if (snapshot.getCount() >= this.minRecordedValues) {
+            final long millis = TimeUnit.NANOSECONDS.toMillis(snapshot.getValueAtPercentile(this.percentile));
+            this.delayMillis = Math.max(millis, this.minDelayMillis);
+            this.histogram.reset();
+        }
+    }
+
+    @Override
+    public void onRegister(Cluster cluster) {
+        // nothing to do
+    }
+
+    @Override
+    public void onUnregister(Cluster cluster) {
+        // nothing to do
+    }
+
+}
@@ -0,0 +1,199 @@
+package com.fizzed.cassandra.orm;
+
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.Session;
+import com.fizzed.cassandra.orm.impl.CompletableFutures;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Session-wide cache of prepared statements keyed by their CQL. Entries are
+ * evicted in least-recently-used order once the max size is reached. Concurrent
+ * requests for the same CQL share a single prepare call.
+ */
+public class PreparedStatementCache {
+
+    static public final int DEFAULT_MAX_SIZE = 1000;
+
+    private final Session session;
+    private final LinkedHashMap<String,CompletableFuture<PreparedStatement>> entries;
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder evictions;
+    private volatile int maxSize;
+
+    public PreparedStatementCache(Session session) {
+        this(session, DEFAULT_MAX_SIZE);
+    }
+
+    public PreparedStatementCache(Session session, int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be > 0");
+        }
+        this.session = session;
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.evictions = new LongAdder();
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<String,CompletableFuture<PreparedStatement>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String,CompletableFuture<PreparedStatement>> eldest) {
+                if (this.size() > PreparedStatementCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    public PreparedStatementCache setMaxSize(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be > 0");
+        }
+        synchronized (this.entries) {
+            this.maxSize = maxSize;
+            // trim down to the new size (iteration order is eldest first)
+            while (this.entries.size() > maxSize) {
+                final String eldest = this.entries.keySet().iterator().next();
+                this.entries.remove(eldest);
+                this.evictions.increment();
+            }
+        }
+        return this;
+    }
+
+    public int size() {
+        synchronized (this.entries) {
+            return this.entries.size();
+        }
+    }
+
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    public long getEvictions() {
+        return this.evictions.sum();
+    }
+
+    /**
+     * @return A snapshot of the CQL of every cached statement, least recently
+     *      used first (e.g. to record in a {@link CqlManifest})
+     */
+    public List<String> getCqls() {
+        synchronized (this.entries) {
+            return new ArrayList<>(this.entries.keySet());
+        }
+    }
+
+    public void clear() {
+        synchronized (this.entries) {
+            this.entries.clear();
+        }
+    }
+
+    /**
+     * Gets the prepared statement for the CQL, preparing it if needed. Only
+     * one caller prepares a given CQL string, any others wait on its result.
+     *
+     * @param cql The CQL to prepare
+     * @return The prepared statement
+     */
+    public PreparedStatement get(String cql) {
+        final CompletableFuture<PreparedStatement> future;
+        final boolean owner;
+
+        synchronized (this.entries) {
+            final CompletableFuture<PreparedStatement> existing = this.entries.get(cql);
+            if (existing != null) {
+                future = existing;
+                owner = false;
+            } else {
+                future = new CompletableFuture<>();
+                owner = true;
+                this.entries.put(cql, future);
+            }
+        }
+
+        if (!owner) {
+            this.hits.increment();
+            return CompletableFutures.get(future);
+        }
+
+        this.misses.increment();
+
+        try {
+            final PreparedStatement preparedStatement = this.session.prepare(cql);
+            future.complete(preparedStatement);
+            return preparedStatement;
+        }
+        catch (RuntimeException | Error e) {
+            // do not cache failures, the next caller will try again
+            this.remove(cql, future);
+            future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the prepared statement for the CQL without blocking, preparing it
+     * via the async driver API if needed.
+     *
+     * @param cql The CQL to prepare
+     * @return A future of the prepared statement
+     */
+    public CompletableFuture<PreparedStatement> getAsync(String cql) {
+        final CompletableFuture<PreparedStatement> future;
+
+        synchronized (this.entries) {
+            final CompletableFuture<PreparedStatement> existing = this.entries.get(cql);
+            if (existing != null) {
+                this.hits.increment();
+                return existing;
+            }
+            future = new CompletableFuture<>();
+            this.entries.put(cql, future);
+        }
+
+        this.misses.increment();
+
+        try {
+            CompletableFutures.of(this.session.prepareAsync(cql))
+                .whenComplete((preparedStatement, e) -> {
+                    if (e != null) {
+                        // do not cache failures, the next caller will try again
+                        this.remove(cql, future);
+                        future.completeExceptionally(e);
+                    } else {
+                        future.complete(preparedStatement);
+                    }
+                });
+        }
+        catch (RuntimeException e) {
+            this.remove(cql, future);
+            future.completeExceptionally(e);
+        }
+
+        return future;
+    }
+
+    private void remove(String cql, CompletableFuture<PreparedStatement> future) {
+        synchronized (this.entries) {
+            this.entries.remove(cql, future);
+        }
+    }
+
+}
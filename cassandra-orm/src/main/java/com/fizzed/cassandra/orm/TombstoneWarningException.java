@@ -0,0 +1,27 @@
+package com.fizzed.cassandra.orm;
+
+import java.util.List;
+import javax.persistence.PersistenceException;
+
+/**
+ * A query set to fail on tombstone warnings (see
+ * {@link CqlQuery#setFailOnTombstoneWarning(boolean)}) scanned more tombstones
+ * than the server's tombstone_warn_threshold.
+ */
+public class TombstoneWarningException extends PersistenceException {
+ 
+    private final List<String> warnings;
+    
+    public TombstoneWarningException(String message, List<String> warnings) {
+        super(message);
+        this.warnings = warnings;
+    }
+
+    /**
+     * @return The warnings of the response
+     */
+    public List<String> getWarnings() {
+        return warnings;
+    }
+    
+}
@@ -0,0 +1,44 @@
+package com.fizzed.cassandra.orm.codec;
+
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.TypeCodec;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CqlCodecs {
+    
+    // joda is an optional dependency
+    static private final boolean JODA_PRESENT = isPresent("org.joda.time.DateTime");
+    
+    /**
+     * @return The java.time codecs, plus the Joda DateTime codec if joda-time
+     *      is on the classpath
+     */
+    static public List<TypeCodec<?>> defaults() {
+        final List<TypeCodec<?>> codecs = new ArrayList<>();
+        codecs.add(InstantCodec.instance);
+        codecs.add(LocalDateCodec.instance);
+        codecs.add(LocalTimeCodec.instance);
+        if (JODA_PRESENT) {
+            codecs.add(JodaDateTimeCodec.instance);
+        }
+        return codecs;
+    }
+    
+    static public CodecRegistry register(CodecRegistry codecRegistry) {
+        final List<TypeCodec<?>> codecs = defaults();
+        codecRegistry.register(codecs);
+        return codecRegistry;
+    }
+    
+    static private boolean isPresent(String className) {
+        try {
+            Class.forName(className, false, CqlCodecs.class.getClassLoader());
+            return true;
+        }
+        catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+    
+}
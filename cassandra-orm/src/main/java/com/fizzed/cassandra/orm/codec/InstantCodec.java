@@ -0,0 +1,49 @@
+package com.fizzed.cassandra.orm.codec;
+
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.TypeCodec;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Date;
+
+/**
+ * Maps a CQL <code>timestamp</code> directly to/from a <code>java.time.Instant</code>
+ * (millisecond precision).
+ */
+public class InstantCodec extends TypeCodec<Instant> {
+
+    static public final InstantCodec instance = new InstantCodec();
+
+    private InstantCodec() {
+        super(DataType.timestamp(), Instant.class);
+    }
+
+    @Override
+    public ByteBuffer serialize(Instant value, ProtocolVersion protocolVersion) {
+        if (value == null) {
+            return null;
+        }
+        return TypeCodec.bigint().serializeNoBoxing(value.toEpochMilli(), protocolVersion);
+    }
+
+    @Override
+    public Instant deserialize(ByteBuffer bytes, ProtocolVersion protocolVersion) {
+        if (bytes == null || bytes.remaining() == 0) {
+            return null;
+        }
+        return Instant.ofEpochMilli(TypeCodec.bigint().deserializeNoBoxing(bytes, protocolVersion));
+    }
+
+    @Override
+    public Instant parse(String value) {
+        final Date date = TypeCodec.timestamp().parse(value);
+        return date != null ? date.toInstant() : null;
+    }
+
+    @Override
+    public String format(Instant value) {
+        return TypeCodec.timestamp().format(value != null ? Date.from(value) : null);
+    }
+
+}
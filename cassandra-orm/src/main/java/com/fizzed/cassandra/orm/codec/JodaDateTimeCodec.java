@@ -0,0 +1,50 @@
+package com.fizzed.cassandra.orm.codec;
+
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.TypeCodec;
+import java.nio.ByteBuffer;
+import java.util.Date;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+/**
+ * Maps a CQL <code>timestamp</code> directly to/from a Joda <code>DateTime</code>
+ * (in UTC, same as <code>DataTypesJoda.jodaDateTime</code>).
+ */
+public class JodaDateTimeCodec extends TypeCodec<DateTime> {
+
+    static public final JodaDateTimeCodec instance = new JodaDateTimeCodec();
+
+    private JodaDateTimeCodec() {
+        super(DataType.timestamp(), DateTime.class);
+    }
+
+    @Override
+    public ByteBuffer serialize(DateTime value, ProtocolVersion protocolVersion) {
+        if (value == null) {
+            return null;
+        }
+        return TypeCodec.bigint().serializeNoBoxing(value.getMillis(), protocolVersion);
+    }
+
+    @Override
+    public DateTime deserialize(ByteBuffer bytes, ProtocolVersion protocolVersion) {
+        if (bytes == null || bytes.remaining() == 0) {
+            return null;
+        }
+        return new DateTime(TypeCodec.bigint().deserializeNoBoxing(bytes, protocolVersion), DateTimeZone.UTC);
+    }
+
+    @Override
+    public DateTime parse(String value) {
+        final Date date = TypeCodec.timestamp().parse(value);
+        return date != null ? new DateTime(date.getTime(), DateTimeZone.UTC) : null;
+    }
+
+    @Override
+    public String format(DateTime value) {
+        return TypeCodec.timestamp().format(value != null ? value.toDate() : null);
+    }
+
+}
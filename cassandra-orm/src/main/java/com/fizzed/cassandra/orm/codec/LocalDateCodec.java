@@ -0,0 +1,51 @@
+package com.fizzed.cassandra.orm.codec;
+
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.TypeCodec;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+
+/**
+ * Maps a CQL <code>date</code> directly to/from a <code>java.time.LocalDate</code>.
+ */
+public class LocalDateCodec extends TypeCodec<LocalDate> {
+
+    static public final LocalDateCodec instance = new LocalDateCodec();
+
+    private LocalDateCodec() {
+        super(DataType.date(), LocalDate.class);
+    }
+
+    @Override
+    public ByteBuffer serialize(LocalDate value, ProtocolVersion protocolVersion) {
+        if (value == null) {
+            return null;
+        }
+        // an unsigned int of days, with the epoch at 2^31
+        final int days = (int)value.toEpochDay() + Integer.MIN_VALUE;
+        return TypeCodec.cint().serializeNoBoxing(days, protocolVersion);
+    }
+
+    @Override
+    public LocalDate deserialize(ByteBuffer bytes, ProtocolVersion protocolVersion) {
+        if (bytes == null || bytes.remaining() == 0) {
+            return null;
+        }
+        final int days = TypeCodec.cint().deserializeNoBoxing(bytes, protocolVersion) - Integer.MIN_VALUE;
+        return LocalDate.ofEpochDay(days);
+    }
+
+    @Override
+    public LocalDate parse(String value) {
+        final com.datastax.driver.core.LocalDate date = TypeCodec.date().parse(value);
+        return date != null ? LocalDate.ofEpochDay(date.getDaysSinceEpoch()) : null;
+    }
+
+    @Override
+    public String format(LocalDate value) {
+        return TypeCodec.date().format(value != null
+            ? com.datastax.driver.core.LocalDate.fromDaysSinceEpoch((int)value.toEpochDay()) : null);
+    }
+
+}
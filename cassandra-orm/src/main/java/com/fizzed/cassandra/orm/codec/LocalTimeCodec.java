@@ -0,0 +1,48 @@
+package com.fizzed.cassandra.orm.codec;
+
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.TypeCodec;
+import java.nio.ByteBuffer;
+import java.time.LocalTime;
+
+/**
+ * Maps a CQL <code>time</code> (nanos of the day) directly to/from a
+ * <code>java.time.LocalTime</code>.
+ */
+public class LocalTimeCodec extends TypeCodec<LocalTime> {
+
+    static public final LocalTimeCodec instance = new LocalTimeCodec();
+
+    private LocalTimeCodec() {
+        super(DataType.time(), LocalTime.class);
+    }
+
+    @Override
+    public ByteBuffer serialize(LocalTime value, ProtocolVersion protocolVersion) {
+        if (value == null) {
+            return null;
+        }
+        return TypeCodec.bigint().serializeNoBoxing(value.toNanoOfDay(), protocolVersion);
+    }
+
+    @Override
+    public LocalTime deserialize(ByteBuffer bytes, ProtocolVersion protocolVersion) {
+        if (bytes == null || bytes.remaining() == 0) {
+            return null;
+        }
+        return LocalTime.ofNanoOfDay(TypeCodec.bigint().deserializeNoBoxing(bytes, protocolVersion));
+    }
+
+    @Override
+    public LocalTime parse(String value) {
+        final Long nanos = TypeCodec.time().parse(value);
+        return nanos != null ? LocalTime.ofNanoOfDay(nanos) : null;
+    }
+
+    @Override
+    public String format(LocalTime value) {
+        return TypeCodec.time().format(value != null ? value.toNanoOfDay() : null);
+    }
+
+}
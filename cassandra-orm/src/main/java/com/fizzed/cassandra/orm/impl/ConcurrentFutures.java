@@ -0,0 +1,107 @@
+package com.fizzed.cassandra.orm.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs a list of async tasks with at most N of them in flight at once. Results
+ * are returned in the same order as the tasks. The first failure fails the
+ * returned future and no further tasks are started.
+ */
+public class ConcurrentFutures<R> {
+
+    private final List<? extends Supplier<CompletableFuture<R>>> tasks;
+    private final Object[] results;
+    private final AtomicInteger next;
+    private final AtomicInteger remaining;
+    private final CompletableFuture<List<R>> done;
+
+    private ConcurrentFutures(List<? extends Supplier<CompletableFuture<R>>> tasks) {
+        this.tasks = tasks;
+        this.results = new Object[tasks.size()];
+        this.next = new AtomicInteger();
+        this.remaining = new AtomicInteger(tasks.size());
+        this.done = new CompletableFuture<>();
+    }
+
+    static public <R> CompletableFuture<List<R>> all(List<? extends Supplier<CompletableFuture<R>>> tasks, int maxConcurrency) {
+        if (tasks.isEmpty()) {
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
+
+        final ConcurrentFutures<R> futures = new ConcurrentFutures<>(tasks);
+        final int workers = Math.min(Math.max(1, maxConcurrency), tasks.size());
+
+        for (int i = 0; i < workers; i++) {
+            futures.drain();
+        }
+
+        return futures.done;
+    }
+
+    private void drain() {
+        // loop rather than recurse so tasks that complete immediately do not grow the stack
+        while (!this.done.isDone()) {
+            final int i = this.next.getAndIncrement();
+            if (i >= this.tasks.size()) {
+                return;
+            }
+
+            final CompletableFuture<R> future;
+            try {
+                future = this.tasks.get(i).get();
+            }
+            catch (Throwable t) {
+                this.done.completeExceptionally(t);
+                return;
+            }
+
+            if (!future.isDone()) {
+                future.whenComplete((result, e) -> {
+                    if (this.complete(i, result, e)) {
+                        this.drain();
+                    }
+                });
+                return;
+            }
+
+            R result = null;
+            Throwable error = null;
+            try {
+                result = future.join();
+            }
+            catch (CompletionException e) {
+                error = e.getCause() != null ? e.getCause() : e;
+            }
+            catch (Throwable t) {
+                error = t;
+            }
+
+            if (!this.complete(i, result, error)) {
+                return;
+            }
+        }
+    }
+
+    private boolean complete(int i, R result, Throwable e) {
+        if (e != null) {
+            this.done.completeExceptionally(e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+            return false;
+        }
+
+        this.results[i] = result;
+
+        if (this.remaining.decrementAndGet() == 0) {
+            this.done.complete((List<R>)Arrays.asList(this.results));
+            return false;
+        }
+
+        return true;
+    }
+
+}
@@ -4,19 +4,39 @@ import com.datastax.driver.core.*;
 import com.fizzed.cassandra.orm.CqlBoundQuery;
 import com.fizzed.cassandra.orm.CqlColMapper;
 import com.fizzed.cassandra.orm.CqlExpressionList;
+import com.fizzed.cassandra.orm.CqlMetrics;
 import com.fizzed.cassandra.orm.CqlQuery;
+import com.fizzed.cassandra.orm.CqlQueryListener;
 import com.fizzed.cassandra.orm.CqlRowMapper;
+import com.fizzed.cassandra.orm.CqlSlowQueryLog;
+import com.fizzed.cassandra.orm.CqlTemplate;
+import com.fizzed.cassandra.orm.CqlValueBinder;
 import com.fizzed.cassandra.orm.FindIterator;
 import com.fizzed.cassandra.orm.PagedList;
+import com.fizzed.cassandra.orm.PreparedStatementCache;
+import com.fizzed.cassandra.orm.TombstoneWarningException;
 import com.fizzed.cassandra.orm.UnappliedException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import static java.util.Collections.singletonList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import static java.util.Optional.ofNullable;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import static java.util.concurrent.CompletableFuture.completedFuture;
 import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toList;
+import java.util.stream.IntStream;
 import javax.persistence.EntityExistsException;
 import javax.persistence.OptimisticLockException;
 import org.slf4j.Logger;
@@ -25,6 +45,11 @@ import org.slf4j.LoggerFactory;
 public class CqlQueryImpl<T> implements CqlQuery<T>, CqlExpressionList<T> {
     static private final Logger log = LoggerFactory.getLogger(CqlQuery.class);
     
+    static public final int DEFAULT_IN_FAN_OUT_CONCURRENCY = 16;
+    
+    // a list of columns (no aggregates, functions or DISTINCT)
+    static private final Pattern PLAIN_COLUMNS = Pattern.compile("\\s*(\\*|\"?\\w+\"?(\\s*,\\s*\"?\\w+\"?)*)\\s*");
+    
     static interface Clause {
         
         void appendTo(StringBuilder cql, List<Parameter> parameters);
@@ -72,30 +97,44 @@ public class CqlQueryImpl<T> implements CqlQuery<T>, CqlExpressionList<T> {
     
     private final long id;
     private final Session session;
-    private final ConcurrentHashMap<String,PreparedStatement> preparedStatementCache;
+    private final PreparedStatementCache preparedStatementCache;
     private final Command command;
     private boolean prepared;
     private CqlRowMapper<T> rowMapper;
     private String columns;
     private String tableName;
     private boolean allowFiltering;
+    private boolean unsetNulls;
+    private LongAdder tombstonesAvoided;
+    private Map<String,Boolean> counterTables;
+    private CqlMetrics metrics;
+    private CqlQueryListener[] listeners;
+    private CqlSlowQueryLog slowQueryLog;
     private List<Clause> clauses;
     private List<Parameter> vals;
     private Set<String> primaryKeys;
     private Map<String,CqlColMapper> colMappers;
+    private CqlValueBinder<T> valueBinder;
     private Parameter optimisticLock;
     private String groupBy;
     private String orderBy;
     private Integer fetchSize;
+    private Integer prefetch;
     private PagingState pagingState;
     private ConsistencyLevel consistencyLevel;
     private ConsistencyLevel serialConsistencyLevel;
+    private Boolean inFanOut;
+    private int inFanOutConcurrency;
+    private Boolean idempotent;
+    private boolean failOnTombstoneWarning;
     
-    public CqlQueryImpl(long id, Session session, Command command) {
+    public CqlQueryImpl(long id, Session session, PreparedStatementCache preparedStatementCache, Command command) {
         this.id = id;
         this.session = session;
-        this.preparedStatementCache = new ConcurrentHashMap<>();
+        this.preparedStatementCache = preparedStatementCache;
         this.command = command;
+        this.inFanOutConcurrency = DEFAULT_IN_FAN_OUT_CONCURRENCY;
+        this.listeners = CqlQueryListeners.NONE;
     }
 
     @Override
@@ -115,7 +154,57 @@ public class CqlQueryImpl<T> implements CqlQuery<T>, CqlExpressionList<T> {
         return this;
     }
 
+    /**
+     * @param tombstonesAvoided The counter of null values this query leaves
+     *      unset (rather than writing a tombstone for) when executed
+     * @return This query
+     */
+    public CqlQueryImpl<T> tombstonesAvoided(LongAdder tombstonesAvoided) {
+        this.tombstonesAvoided = tombstonesAvoided;
+        return this;
+    }
+
+    /**
+     * @param counterTables Whether a table has counter columns by table name,
+     *      shared by the queries of a session so the table metadata is only
+     *      scanned once per table
+     * @return This query
+     */
+    public CqlQueryImpl<T> counterTables(Map<String,Boolean> counterTables) {
+        this.counterTables = counterTables;
+        return this;
+    }
+
+    /**
+     * @param metrics The metrics to record the latency (and rows returned) of
+     *      this query in
+     * @return This query
+     */
+    public CqlQueryImpl<T> metrics(CqlMetrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+    
+    public CqlQueryImpl<T> listeners(CqlQueryListener[] listeners) {
+        this.listeners = listeners != null ? listeners : CqlQueryListeners.NONE;
+        return this;
+    }
+    
+    public CqlQueryImpl<T> slowQueryLog(CqlSlowQueryLog slowQueryLog) {
+        this.slowQueryLog = slowQueryLog;
+        return this;
+    }
+    
+    @Override
+    public CqlQuery<T> valueBinder(CqlValueBinder<T> valueBinder) {
+        this.valueBinder = valueBinder;
+        return this;
+    }
+
     private Object cqlVal(String columnName, Object value) {
+        if (value == CqlTemplate.BIND) {
+            return value;   // mapped once bound
+        }
         if (this.colMappers != null) {
             CqlColMapper colMapper = this.colMappers.get(columnName);
             if (colMapper != null) {
@@ -158,6 +247,15 @@ public class CqlQueryImpl<T> implements CqlQuery<T>, CqlExpressionList<T> {
         return this;
     }
     
+    @Override
+    public CqlQuery<T> vals(T entity) {
+        if (this.valueBinder == null) {
+            throw new IllegalStateException("A valueBinder must be set prior to vals");
+        }
+        this.valueBinder.bind(entity, this);
+        return this;
+    }
+    
     private void addClause(Clause clause) {
         if (this.clauses == null) {
             this.clauses = new ArrayList<>();
@@ -231,6 +329,15 @@ public class CqlQueryImpl<T> implements CqlQuery<T>, CqlExpressionList<T> {
         return this;
     }
     
+    @Override
+    public CqlQuery<T> setPrefetch(Integer prefetch) {
+        if (prefetch != null && prefetch < 0) {
+            throw new IllegalArgumentException("prefetch must be >= 0");
+        }
+        this.prefetch = prefetch;
+        return this;
+    }
+    
     @Override
     public CqlQuery<T> setPagingState(String pagingState) {
         if (pagingState != null && !pagingState.isEmpty()) { 
@@ -259,12 +366,100 @@ public class CqlQueryImpl<T> implements CqlQuery<T>, CqlExpressionList<T> {
         return this;
     }
     
+    @Override
+    public CqlQuery<T> setUnsetNulls(boolean unsetNulls) {
+        this.unsetNulls = unsetNulls;
+        return this;
+    }
+    
     @Override
     public CqlQuery<T> setPrepared(boolean prepared) {
         this.prepared = prepared;
         return this;
     }
     
+    @Override
+    public CqlQuery<T> setInFanOut(Boolean inFanOut) {
+        this.inFanOut = inFanOut;
+        return this;
+    }
+    
+    @Override
+    public CqlQuery<T> setInFanOutConcurrency(int inFanOutConcurrency) {
+        if (inFanOutConcurrency <= 0) {
+            throw new IllegalArgumentException("inFanOutConcurrency must be > 0");
+        }
+        this.inFanOutConcurrency = inFanOutConcurrency;
+        return this;
+    }
+    
+    @Override
+    public CqlQuery<T> setIdempotent(Boolean idempotent) {
+        this.idempotent = idempotent;
+        return this;
+    }
+    
+    @Override
+    public CqlQuery<T> setFailOnTombstoneWarning(boolean failOnTombstoneWarning) {
+        this.failOnTombstoneWarning = failOnTombstoneWarning;
+        return this;
+    }
+    
+    @Override
+    public boolean isIdempotent() {
+        return this.isIdempotent(this.build());
+    }
+    
+    private boolean isIdempotent(CqlBoundQuery boundQuery) {
+        if (this.idempotent != null) {
+            return this.idempotent;
+        }
+        
+        if (boundQuery.getCommand() == Command.SELECT) {
+            return true;
+        }
+        
+        // a lightweight transaction applies only once
+        if (boundQuery.getOptimisticLock() != null) {
+            return false;
+        }
+        
+        // deleting a list element by index (e.g. "items[0]") shifts the others
+        if (boundQuery.getCommand() == Command.DELETE && this.columns != null && this.columns.contains("[")) {
+            return false;
+        }
+        
+        // counter updates are increments, not values
+        return !this.hasCounters(boundQuery.getTableName());
+    }
+    
+    private boolean hasCounters(String tableName) {
+        final Boolean known = this.counterTables != null ? this.counterTables.get(tableName) : null;
+        if (known != null) {
+            return known;
+        }
+        
+        final TableMetadata table = PartitionKeys.tableMetadata(this.session, tableName);
+        if (table == null) {
+            // unknown may well be counters, never retried (not cached, may be known later)
+            return true;
+        }
+        
+        boolean counters = false;
+        for (ColumnMetadata column : table.getColumns()) {
+            if (column.getType().getName() == DataType.Name.COUNTER) {
+                counters = true;
+                break;
+            }
+        }
+        
+        if (this.counterTables != null) {
+            this.counterTables.put(tableName, counters);
+        }
+        
+        return counters;
+    }
+    
     private Command effectiveCommand() {
         if (this.command == Command.UPSERT) {
             if (this.optimisticLock == null || this.optimisticLock.getValue() == null) {
@@ -277,8 +472,44 @@ public class CqlQueryImpl<T> implements CqlQuery<T>, CqlExpressionList<T> {
         }
     }
     
+    @Override
+    public CqlTemplate<T> compile() {
+        if (this.pagingState != null) {
+            throw new IllegalStateException("A paging state cannot be compiled into a template");
+        }
+        
+        final CqlBoundQuery boundQuery = this.build();
+        final List<Parameter> parameters = boundQuery.getParameters();
+        
+        // inserted or updated values (not keys, clauses or locks) may be left unset
+        final int[] unsettableIndexes = !this.unsetNulls || this.vals == null ? null
+            : IntStream.range(0, parameters.size())
+                .filter(i -> this.vals.stream().anyMatch(v -> v == parameters.get(i)))
+                .filter(i -> this.primaryKeys == null || !this.primaryKeys.contains(parameters.get(i).getName()))
+                .toArray();
+        
+        if (log.isTraceEnabled()) {
+            log.trace("[txn {}] compiled {}", this.id, boundQuery.getCql());
+        }
+        
+        return new CqlTemplate<T>(this.id, this.session, this.preparedStatementCache, boundQuery, this.colMappers, unsettableIndexes)
+            .rowMapper(this.rowMapper)
+            .setFetchSize(this.fetchSize)
+            .setConsistencyLevel(this.consistencyLevel)
+            .setSerialConsistencyLevel(this.serialConsistencyLevel)
+            .setIdempotent(this.isIdempotent(boundQuery))
+            .tombstonesAvoided(this.tombstonesAvoided)
+            .metrics(this.metrics)
+            .listeners(this.listeners)
+            .slowQueryLog(this.slowQueryLog);
+    }
+    
     @Override
     public CqlBoundQuery build() {
+        return this.build(this.clauses);
+    }
+    
+    private CqlBoundQuery build(List<Clause> clauses) {
         final StringBuilder cql = new StringBuilder();
         final List<Parameter> parameters = new ArrayList();
         final Command cmd = this.effectiveCommand();
@@ -312,33 +543,37 @@ public class CqlQueryImpl<T> implements CqlQuery<T>, CqlExpressionList<T> {
         
         cql.append(this.tableName);
         
+        // null values to leave unset (prepared) or out of the cql (otherwise)
+        final boolean omitNulls = this.unsetNulls && !(this.prepared && this.supportsUnset());
+        final List<Integer> unsetIndexes = new ArrayList<>();
+        int omitted = 0;
+        
         // insert columns & values
         if (cmd == Command.INSERT) {
             cql.append(" (");
             
-            int count = 0;
+            final StringBuilder placeholders = new StringBuilder();
             for (Parameter p : this.vals) {
-                if (count > 0) {
+                if (this.isUnsettable(p)) {
+                    if (omitNulls) {
+                        omitted++;
+                        continue;   // skip it!
+                    }
+                    unsetIndexes.add(parameters.size());
+                }
+                
+                if (placeholders.length() > 0) {
                     cql.append(",");
+                    placeholders.append(",");
                 }
                 
                 cql.append(p.getName());
+                placeholders.append("?");
                 parameters.add(p);
-                count++;
             }
             
             cql.append(") VALUES (");
-            
-            count = 0;
-            for (Parameter p : this.vals) {
-                if (count > 0) {
-                    cql.append(",");
-                }
-                
-                cql.append("?");
-                count++;
-            }
-            
+            cql.append(placeholders);
             cql.append(")");
         }
         
@@ -346,6 +581,10 @@ public class CqlQueryImpl<T> implements CqlQuery<T>, CqlExpressionList<T> {
         if (cmd == Command.UPDATE) {
             cql.append(" SET");
             
+            // an update must set at least one column
+            final boolean omitSetNulls = omitNulls && this.vals.stream()
+                .anyMatch(p -> p.getValue() != null && !(isUpsert && this.primaryKeys.contains(p.getName())));
+            
             int count = 0;
             for (Parameter p : this.vals) {
                 // skip primary keys, not part of update
@@ -353,6 +592,16 @@ public class CqlQueryImpl<T> implements CqlQuery<T>, CqlExpressionList<T> {
                     continue;   // skip it!
                 }
                 
+                if (this.isUnsettable(p)) {
+                    if (omitSetNulls) {
+                        omitted++;
+                        continue;   // skip it!
+                    }
+                    if (!omitNulls) {
+                        unsetIndexes.add(parameters.size());
+                    }
+                }
+                
                 if (count > 0) {
                     cql.append(",");
                 }
@@ -372,7 +621,7 @@ public class CqlQueryImpl<T> implements CqlQuery<T>, CqlExpressionList<T> {
                 //
                 // build a new effective "clauses" array if upsert
                 //
-                List<Clause> _clauses = this.clauses;
+                List<Clause> _clauses = clauses;
                 if (isUpsert) {
                     _clauses = this.vals.stream()
                         .filter(v -> this.primaryKeys.contains(v.getName()))
@@ -431,29 +680,55 @@ public class CqlQueryImpl<T> implements CqlQuery<T>, CqlExpressionList<T> {
             this.tableName,
             parameters,
             this.primaryKeys,
-            isOptimisticLocking ? this.optimisticLock : null);
+            isOptimisticLocking ? this.optimisticLock : null,
+            unsetIndexes.isEmpty() ? null : unsetIndexes.stream().mapToInt(Integer::intValue).toArray(),
+            unsetIndexes.size() + omitted);
     }
     
+    private boolean isUnsettable(Parameter p) {
+        // primary keys are required, binding them null is left to fail
+        return this.unsetNulls
+            && p.getValue() == null
+            && (this.primaryKeys == null || !this.primaryKeys.contains(p.getName()));
+    }
     
-    @Override
-    public ResultSet execute() {
-        // a row mapper MUST be set
-        if (this.rowMapper == null) {
-            throw new IllegalStateException("A rowMapper must be set prior to execute");
+    private boolean supportsUnset() {
+        // unset values require protocol v4+ (cassandra 2.2+)
+        final Cluster cluster = this.session != null ? this.session.getCluster() : null;
+        if (cluster == null || cluster.getConfiguration() == null) {
+            return true;
         }
-        
-        final CqlBoundQuery boundQuery = this.build();
-        
+        final ProtocolVersion version = cluster.getConfiguration().getProtocolOptions().getProtocolVersion();
+        return version == null || version.compareTo(ProtocolVersion.V4) >= 0;
+    }
+    
+    
+    private Statement createStatement(CqlBoundQuery boundQuery, PreparedStatement preparedStatement) {
         final Statement statement;
         
-        if (this.prepared) {
-            final PreparedStatement preparedStatement = this.preparedStatementCache.computeIfAbsent(
-                boundQuery.getCql(), k -> this.session.prepare(k));
-
-            statement = preparedStatement.bind(boundQuery.toValues());
+        if (preparedStatement != null) {
+            statement = boundQuery.bind(preparedStatement);
         }
         else {
-            statement = new SimpleStatement(boundQuery.getCql(), boundQuery.toValues());
+            final SimpleStatement simpleStatement = new SimpleStatement(boundQuery.getCql(), boundQuery.toValues());
+            
+            // a prepared statement knows its routing key, a simple one must be told
+            final ByteBuffer[] routingKey = PartitionKeys.routingKey(
+                this.session, boundQuery.getTableName(), boundQuery.getParameters());
+            if (routingKey != null) {
+                simpleStatement.setRoutingKey(routingKey);
+                // the routing key is of the keyspace of the table (not the logged one)
+                final int dot = boundQuery.getTableName().indexOf('.');
+                if (dot > 0) {
+                    simpleStatement.setKeyspace(boundQuery.getTableName().substring(0, dot));
+                }
+            }
+            
+            statement = simpleStatement;
+        }
+        
+        if (boundQuery.getUnsetCount() > 0 && this.tombstonesAvoided != null) {
+            this.tombstonesAvoided.add(boundQuery.getUnsetCount());
         }
 
         if (this.fetchSize != null) {
@@ -471,80 +746,504 @@ public class CqlQueryImpl<T> implements CqlQuery<T>, CqlExpressionList<T> {
         if (this.serialConsistencyLevel != null) {
             statement.setSerialConsistencyLevel(this.serialConsistencyLevel);
         }
+        
+        // only an idempotent statement is ever speculatively executed
+        statement.setIdempotent(this.isIdempotent(boundQuery));
 
         if (log.isTraceEnabled()) {
             log.trace("[txn {}] sql {}", this.id, boundQuery.getCql());
             log.trace("[txn {}] val {}", this.id, boundQuery.getParameters());
+            if (boundQuery.getUnsetCount() > 0) {
+                log.trace("[txn {}] unset {} null values", this.id, boundQuery.getUnsetCount());
+            }
         }
         
-        final long start = System.currentTimeMillis();
-        boolean success = false;
-        try {
-            final ResultSet results = this.session.execute(statement);
-
-            if (!results.wasApplied()) {
-                if (boundQuery.getOptimisticLock() != null) {
-                    // build a helpful primary key help message
-                    final String pkmsg = boundQuery.getParameters().stream()
-                        .filter(v -> boundQuery.getPrimaryKeys().contains(v.getName()))
-                        .map(v -> v.toString())
-                        .collect(joining(", "));
-
-                    if (boundQuery.getOptimisticLock() == null || boundQuery.getOptimisticLock().getValue() == null) {
-                        // Error[Duplicate entry '2000000-2-63f10cfb-11f6-4338-bf0c-386cae93d26d' for key 'uk_local_data_accounting_typed_key']
-                        throw new EntityExistsException(
-                            "Duplicate entry for primary key '" + pkmsg + "' in table " + boundQuery.getTableName(), null);
-                    } else {
-                        // Data has changed. updated [0] rows sql[update local_data set document=?, updated_at=? where id=? and updated_at=?] bind[null]
-                        throw new OptimisticLockException(
-                            "Data has changed. Updated [0] rows for primary key '" + pkmsg + "' in table " + boundQuery.getTableName());
-                    }
+        return statement;
+    }
+    
+    static public ResultSet verifyApplied(CqlBoundQuery boundQuery, ResultSet results) {
+        if (!results.wasApplied()) {
+            if (boundQuery.getOptimisticLock() != null) {
+                // build a helpful primary key help message
+                final String pkmsg = boundQuery.getParameters().stream()
+                    .filter(v -> boundQuery.getPrimaryKeys().contains(v.getName()))
+                    .map(v -> v.toString())
+                    .collect(joining(", "));
+
+                if (boundQuery.getOptimisticLock() == null || boundQuery.getOptimisticLock().getValue() == null) {
+                    // Error[Duplicate entry '2000000-2-63f10cfb-11f6-4338-bf0c-386cae93d26d' for key 'uk_local_data_accounting_typed_key']
+                    throw new EntityExistsException(
+                        "Duplicate entry for primary key '" + pkmsg + "' in table " + boundQuery.getTableName(), null);
+                } else {
+                    // Data has changed. updated [0] rows sql[update local_data set document=?, updated_at=? where id=? and updated_at=?] bind[null]
+                    throw new OptimisticLockException(
+                        "Data has changed. Updated [0] rows for primary key '" + pkmsg + "' in table " + boundQuery.getTableName());
                 }
+            }
 
-                throw new UnappliedException("Unable to apply " + boundQuery.getCommand());
+            throw new UnappliedException("Unable to apply " + boundQuery.getCommand());
+        }
+        
+        return results;
+    }
+    
+    /**
+     * Records the warnings (if any) cassandra returned with the results.
+     * 
+     * @param metrics The metrics to record them in (or null)
+     * @param tableName The table queried
+     * @param cql The cql of the query
+     * @param results The results
+     * @param failOnTombstoneWarning True to fail on a tombstone warning
+     * @return The results
+     * @throws TombstoneWarningException If a tombstone warning and set to fail
+     */
+    static public ResultSet checkWarnings(CqlMetrics metrics, String tableName, String cql,
+            ResultSet results, boolean failOnTombstoneWarning) {
+        
+        checkWarnings(metrics, tableName, cql, results.getExecutionInfo(), failOnTombstoneWarning);
+        
+        return results;
+    }
+    
+    /**
+     * Records the warnings (if any) cassandra returned with a page of results,
+     * e.g. of a page fetched as the results are iterated.
+     * 
+     * @param metrics The metrics to record them in (or null)
+     * @param tableName The table queried
+     * @param cql The cql of the query
+     * @param executionInfo The execution info of the page (or null)
+     * @param failOnTombstoneWarning True to fail on a tombstone warning
+     * @throws TombstoneWarningException If a tombstone warning and set to fail
+     */
+    static public void checkWarnings(CqlMetrics metrics, String tableName, String cql,
+            ExecutionInfo executionInfo, boolean failOnTombstoneWarning) {
+        
+        final List<String> warnings = executionInfo != null ? executionInfo.getWarnings() : null;
+        if (warnings == null || warnings.isEmpty()) {
+            return;
+        }
+        
+        // a query warned on may run many times a second, the metrics count
+        // (and sample) every warning instead
+        log.debug("Cassandra warned on {}: {} (for {})", tableName, warnings, cql);
+        
+        boolean tombstones = false;
+        if (metrics != null) {
+            tombstones = metrics.recordWarnings(tableName, cql, warnings);
+        } else if (failOnTombstoneWarning) {
+            tombstones = warnings.stream().anyMatch(w -> CqlMetrics.Warning.of(w) == CqlMetrics.Warning.TOMBSTONE);
+        }
+        
+        if (tombstones && failOnTombstoneWarning) {
+            throw new TombstoneWarningException("Too many tombstones scanned in table " + tableName + ": " + warnings, warnings);
+        }
+    }
+    
+    /**
+     * @return A listener checking the warnings of every page fetched after
+     *      the first (which is checked as the query completes)
+     */
+    private Consumer<ExecutionInfo> pageWarnings() {
+        return executionInfo -> {
+            // the cql is only built if warned
+            if (executionInfo != null && executionInfo.getWarnings() != null && !executionInfo.getWarnings().isEmpty()) {
+                checkWarnings(this.metrics, this.tableName, this.build().getCql(), executionInfo, this.failOnTombstoneWarning);
             }
+        };
+    }
+    
+    @Override
+    public ResultSet execute() {
+        // a row mapper MUST be set
+        if (this.rowMapper == null) {
+            throw new IllegalStateException("A rowMapper must be set prior to execute");
+        }
+        
+        final CqlBoundQuery boundQuery = this.build();
+        
+        final PreparedStatement preparedStatement = this.prepared
+            ? this.preparedStatementCache.get(boundQuery.getCql()) : null;
+        
+        final Statement statement = this.createStatement(boundQuery, preparedStatement);
+        
+        final Object[] contexts = this.listeners.length > 0 ? CqlQueryListeners.before(this.listeners, boundQuery) : null;
+        final long start = System.nanoTime();
+        ResultSet results = null;
+        Throwable failure = null;
+        try {
+            results = this.session.execute(statement);
 
-            success = true;
+            checkWarnings(this.metrics, boundQuery.getTableName(), boundQuery.getCql(), results, this.failOnTombstoneWarning);
+            verifyApplied(boundQuery, results);
             
             return results;
         }
+        catch (RuntimeException | Error e) {
+            failure = e;
+            throw e;
+        }
         finally {
-            if (log.isTraceEnabled()) {
-                final long elapsedMillis = System.currentTimeMillis() - start;
-                log.trace("[txn {}] execute {} in {} ms", this.id, success ? "success" : "failed", elapsedMillis);
+            this.completed(boundQuery, System.nanoTime() - start, results, failure, contexts);
+        }
+    }
+    
+    @Override
+    public CompletableFuture<ResultSet> executeAsync() {
+        // a row mapper MUST be set
+        if (this.rowMapper == null) {
+            throw new IllegalStateException("A rowMapper must be set prior to execute");
+        }
+        
+        final CqlBoundQuery boundQuery = this.build();
+        
+        return this.executeAsync(boundQuery, this.prepared);
+    }
+    
+    private CompletableFuture<ResultSet> executeAsync(CqlBoundQuery boundQuery, boolean prepared) {
+        final CompletableFuture<PreparedStatement> preparedFuture = prepared
+            ? this.preparedStatementCache.getAsync(boundQuery.getCql()) : completedFuture(null);
+        
+        final Object[] contexts = this.listeners.length > 0 ? CqlQueryListeners.before(this.listeners, boundQuery) : null;
+        final long start = System.nanoTime();
+        
+        return preparedFuture
+            .thenCompose(preparedStatement -> {
+                final Statement statement = this.createStatement(boundQuery, preparedStatement);
+                return CompletableFutures.of(this.session.executeAsync(statement));
+            })
+            .thenApply(results -> checkWarnings(
+                this.metrics, boundQuery.getTableName(), boundQuery.getCql(), results, this.failOnTombstoneWarning))
+            .thenApply(results -> verifyApplied(boundQuery, results))
+            .whenComplete((results, e) -> {
+                this.completed(boundQuery, System.nanoTime() - start, results, CompletableFutures.unwrap(e), contexts);
+            });
+    }
+    
+    private void completed(CqlBoundQuery boundQuery, long elapsedNanos, ResultSet results, Throwable failure, Object[] contexts) {
+        if (contexts != null) {
+            CqlQueryListeners.after(this.listeners, contexts, boundQuery, results, elapsedNanos, failure);
+        }
+        
+        if (this.slowQueryLog != null && this.slowQueryLog.isSlow(boundQuery.getTableName(), elapsedNanos)) {
+            this.slowQueryLog.record(this.id, boundQuery, elapsedNanos, results, failure);
+        }
+        
+        if (this.metrics != null) {
+            this.metrics.recordLatency(boundQuery.getTableName(), boundQuery.getCommand(), failure == null, elapsedNanos);
+            if (failure instanceof OptimisticLockException || failure instanceof EntityExistsException) {
+                this.metrics.recordConflict(boundQuery.getTableName());
+            }
+        }
+        
+        if (log.isTraceEnabled()) {
+            log.trace("[txn {}] execute {} in {} ms", this.id, failure == null ? "success" : "failed", NANOSECONDS.toMillis(elapsedNanos));
+        }
+    }
+    
+    private <R> R rowsReturned(R v, long rows) {
+        if (this.metrics != null) {
+            this.metrics.recordRows(this.tableName, rows);
+        }
+        return v;
+    }
+    
+    /**
+     * @return A listener counting the rows of every page fetched after the
+     *      first (which is counted as the query completes)
+     */
+    private LongConsumer pageRows() {
+        if (this.metrics == null) {
+            return null;
+        }
+        return rows -> this.metrics.recordRows(this.tableName, rows);
+    }
+    
+    /**
+     * An IN clause on the partition key makes a single coordinator gather rows
+     * from many replicas. If this query has one, it can instead be split into
+     * concurrent single partition queries.
+     * 
+     * @return The IN clause to fan out or null if this query should not be
+     */
+    private InClause fanOutClause() {
+        if (Boolean.FALSE.equals(this.inFanOut)
+                || this.command != Command.SELECT
+                || this.clauses == null
+                || this.pagingState != null
+                || this.primaryKeys == null
+                || this.primaryKeys.isEmpty()) {
+            return null;
+        }
+        
+        // ordering, grouping and aggregates apply across every partition of
+        // the IN, only the coordinator can do those
+        if (this.orderBy != null
+                || this.groupBy != null
+                || (this.columns != null && !PLAIN_COLUMNS.matcher(this.columns).matches())) {
+            return null;
+        }
+        
+        InClause inClause = null;
+        for (Clause clause : this.clauses) {
+            if (clause instanceof InClause) {
+                if (inClause != null) {
+                    return null;    // multiple IN clauses, leave it to the coordinator
+                }
+                inClause = (InClause)clause;
+            }
+        }
+        
+        if (inClause == null
+                || !this.primaryKeys.contains(inClause.name)
+                || !(inClause.value instanceof Iterable)) {
+            return null;
+        }
+        
+        List<String> partitionKeys = PartitionKeys.resolve(this.session, this.tableName);
+        if (partitionKeys == null) {
+            // without metadata, only a single primary key is known to be the partition key
+            if (this.primaryKeys.size() != 1) {
+                return null;
+            }
+            partitionKeys = new ArrayList<>(this.primaryKeys);
+        }
+        
+        if (!partitionKeys.contains(inClause.name)) {
+            return null;
+        }
+        
+        // every other partition key column must be fixed by an equals
+        for (String partitionKey : partitionKeys) {
+            if (!partitionKey.equals(inClause.name) && !this.hasEqClause(partitionKey)) {
+                return null;
+            }
+        }
+        
+        // no point in fanning out a single value
+        final Iterator<?> it = ((Iterable<?>)inClause.value).iterator();
+        if (!it.hasNext()) {
+            return null;
+        }
+        it.next();
+        if (!it.hasNext()) {
+            return null;
+        }
+        
+        return inClause;
+    }
+    
+    private boolean hasEqClause(String name) {
+        for (Clause clause : this.clauses) {
+            if (clause instanceof BasicClause) {
+                final BasicClause basicClause = (BasicClause)clause;
+                if (basicClause.name.equals(name) && basicClause.op.equals("=")) {
+                    return true;
+                }
             }
         }
+        return false;
+    }
+    
+    private List<CqlBoundQuery> fanOutQueries(InClause inClause) {
+        // a row mapper MUST be set
+        if (this.rowMapper == null) {
+            throw new IllegalStateException("A rowMapper must be set prior to execute");
+        }
+        
+        // cassandra de-duplicates partition keys in an IN, so must we
+        final Set<Object> keys = new LinkedHashSet<>();
+        for (Object key : (Iterable<?>)inClause.value) {
+            keys.add(key);
+        }
+        
+        if (log.isTraceEnabled()) {
+            log.trace("[txn {}] fan out {} IN into {} queries", this.id, inClause.name, keys.size());
+        }
+        
+        final List<CqlBoundQuery> boundQueries = new ArrayList<>(keys.size());
+        
+        for (Object key : keys) {
+            final List<Clause> keyClauses = new ArrayList<>(this.clauses.size());
+            for (Clause clause : this.clauses) {
+                keyClauses.add(clause == inClause ? new BasicClause(inClause.name, "=", key) : clause);
+            }
+            boundQueries.add(this.build(keyClauses));
+        }
+        
+        return boundQueries;
+    }
+    
+    private CompletableFuture<List<ResultSet>> executeFanOutAsync(InClause inClause) {
+        final List<CqlBoundQuery> boundQueries = this.fanOutQueries(inClause);
+        
+        final List<Supplier<CompletableFuture<ResultSet>>> tasks = new ArrayList<>(boundQueries.size());
+        
+        for (CqlBoundQuery boundQuery : boundQueries) {
+            // every sub query has the same shape, always worth preparing
+            tasks.add(() -> this.executeAsync(boundQuery, true));
+        }
+        
+        return ConcurrentFutures.all(tasks, this.inFanOutConcurrency);
+    }
+    
+    /**
+     * Queries the partitions of the IN concurrently (at most inFanOutConcurrency
+     * at once) and returns the row of the first one, in order of its values,
+     * that has one. Partitions after one known to have a row are not queried.
+     */
+    private CompletableFuture<Row> findFirstFanOutAsync(InClause inClause) {
+        final List<CqlBoundQuery> boundQueries = this.fanOutQueries(inClause);
+        final AtomicInteger firstFound = new AtomicInteger(Integer.MAX_VALUE);
+        
+        final List<Supplier<CompletableFuture<Row>>> tasks = new ArrayList<>(boundQueries.size());
+        
+        for (int i = 0; i < boundQueries.size(); i++) {
+            final int index = i;
+            final CqlBoundQuery boundQuery = boundQueries.get(i);
+            tasks.add(() -> {
+                if (index > firstFound.get()) {
+                    return completedFuture(null);
+                }
+                return this.executeAsync(boundQuery, true)
+                    .thenApply(results -> {
+                        final Row row = results.one();
+                        if (row != null) {
+                            firstFound.accumulateAndGet(index, Math::min);
+                        }
+                        return row;
+                    });
+            });
+        }
+        
+        return ConcurrentFutures.all(tasks, this.inFanOutConcurrency)
+            .thenApply(rows -> {
+                for (Row row : rows) {
+                    if (row != null) {
+                        return row;
+                    }
+                }
+                return null;
+            });
     }
 
     @Override
     public T findOne() {
+        final InClause fanOutClause = this.fanOutClause();
+        
+        if (fanOutClause != null) {
+            final Row row = CompletableFutures.get(this.findFirstFanOutAsync(fanOutClause));
+            return this.rowsReturned(this.rowMapper.apply(row), row != null ? 1 : 0);
+        }
+        
         final Row row = this.execute().one();
-        return this.rowMapper.apply(row);
+        return this.rowsReturned(this.rowMapper.apply(row), row != null ? 1 : 0);
     }
-
+    
+    @Override
+    public CompletableFuture<T> findOneAsync() {
+        final InClause fanOutClause = this.fanOutClause();
+        
+        if (fanOutClause != null) {
+            return this.findFirstFanOutAsync(fanOutClause)
+                .thenApply(row -> this.rowsReturned(this.rowMapper.apply(row), row != null ? 1 : 0));
+        }
+        
+        return this.executeAsync()
+            .thenApply(results -> results.one())
+            .thenApply(row -> this.rowsReturned(this.rowMapper.apply(row), row != null ? 1 : 0));
+    }
+    
     @Override
     public List<T> findList() {
+        final InClause fanOutClause = this.fanOutClause();
+        
+        if (fanOutClause != null) {
+            final List<ResultSet> results = CompletableFutures.get(this.executeFanOutAsync(fanOutClause));
+            
+            final List<T> v = new ArrayList<>();
+            
+            for (ResultSet rs : results) {
+                this.mapAll(rs, v);
+            }
+            
+            return this.rowsReturned(v, v.size());
+        }
+        
         final ResultSet results = this.execute();
         final int rowSize = results.getAvailableWithoutFetching();
         
         final List<T> v = new ArrayList<>(rowSize);
         
-        for (Row row : results) {
-            v.add(this.rowMapper.apply(row));
+        this.mapAll(results, v);
+        
+        return this.rowsReturned(v, v.size());
+    }
+    
+    private void mapAll(ResultSet results, List<T> v) {
+        ResultSets.mapAll(results, this.rowMapper.compile(results.getColumnDefinitions()), this.prefetch(), this.pageWarnings(), v);
+    }
+    
+    private int prefetch() {
+        return this.prefetch != null ? this.prefetch : 0;
+    }
+    
+    @Override
+    public CompletableFuture<List<T>> findListAsync() {
+        final InClause fanOutClause = this.fanOutClause();
+        
+        if (fanOutClause != null) {
+            return this.executeFanOutAsync(fanOutClause)
+                .thenCompose(results -> {
+                    // map each partition in order of the IN values
+                    CompletableFuture<List<T>> future = completedFuture(new ArrayList<>());
+                    for (ResultSet rs : results) {
+                        future = future.thenCompose(v -> this.mapAllAsync(rs, this.rowMapper.compile(rs.getColumnDefinitions()), v));
+                    }
+                    return future;
+                })
+                .thenApply(v -> this.rowsReturned(v, v.size()));
         }
         
-        return v;
+        return this.executeAsync()
+            .thenCompose(results -> this.mapAllAsync(results, this.rowMapper.compile(results.getColumnDefinitions()),
+                new ArrayList<>(results.getAvailableWithoutFetching())))
+            .thenApply(v -> this.rowsReturned(v, v.size()));
+    }
+    
+    private CompletableFuture<List<T>> mapAllAsync(ResultSet results, CqlRowMapper<T> mapper, List<T> v) {
+        return ResultSets.mapAllAsync(results, mapper, this.pageWarnings(), v);
     }
 
     @Override
     public FindIterator<T> findIterator() {
+        final InClause fanOutClause = this.fanOutClause();
+        
+        if (fanOutClause != null) {
+            final List<ResultSet> results = CompletableFutures.get(this.executeFanOutAsync(fanOutClause));
+            final long rows = results.stream().mapToLong(ResultSet::getAvailableWithoutFetching).sum();
+            return this.rowsReturned(new FindIterator<>(results, this.rowMapper, this.prefetch(), this.pageWarnings(), this.pageRows()), rows);
+        }
+        
         final ResultSet results = this.execute();
-        return new FindIterator<>(results, this.rowMapper);
+        return this.rowsReturned(new FindIterator<>(singletonList(results), this.rowMapper, this.prefetch(), this.pageWarnings(), this.pageRows()),
+            results.getAvailableWithoutFetching());
     }
     
     @Override
     public PagedList<T> findPagedList() {
         final ResultSet results = this.execute();
+        return this.toPagedList(results);
+    }
+    
+    @Override
+    public CompletableFuture<PagedList<T>> findPagedListAsync() {
+        return this.executeAsync()
+            .thenApply(results -> this.toPagedList(results));
+    }
+    
+    private PagedList<T> toPagedList(ResultSet results) {
         final int rowSize = results.getAvailableWithoutFetching();
         final String current = ofNullable(this.pagingState)
             .map(v -> v.toString())
@@ -555,21 +1254,15 @@ public class CqlQueryImpl<T> implements CqlQuery<T>, CqlExpressionList<T> {
             .orElse(null);
         
         final List<T> v = new ArrayList<>(rowSize);
+        final CqlRowMapper<T> mapper = this.rowMapper.compile(results.getColumnDefinitions());
         
-        int count = 0;
-        
-        for (Row row : results) {
-            if (count >= rowSize) {
-                // exit early, so we don't trigger another page of data...
-                break;
-            }
-            
-            v.add(this.rowMapper.apply(row));
-            
-            count++;
+        // only consume the current page, so we don't trigger another page of data
+        // (which would also block the driver thread when called async)
+        for (int i = 0; i < rowSize; i++) {
+            v.add(mapper.apply(results.one()));
         }
 
-        return new PagedList<>(v, this.fetchSize, current, next);
+        return this.rowsReturned(new PagedList<>(v, this.fetchSize, current, next), v.size());
     }
     
 }
\ No newline at end of file
@@ -0,0 +1,48 @@
+package com.fizzed.cassandra.orm.impl;
+
+import com.datastax.driver.core.ResultSet;
+import com.fizzed.cassandra.orm.CqlBoundQuery;
+import com.fizzed.cassandra.orm.CqlQueryEvent;
+import com.fizzed.cassandra.orm.CqlQueryListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class CqlQueryListeners {
+    static private final Logger log = LoggerFactory.getLogger(CqlQueryListeners.class);
+    
+    static public final CqlQueryListener[] NONE = new CqlQueryListener[0];
+    
+    /**
+     * Calls every listener before a query. Only call it if there are any.
+     * 
+     * @param listeners The listeners
+     * @param query The query
+     * @return The contexts of the listeners (by index)
+     */
+    static public Object[] before(CqlQueryListener[] listeners, CqlBoundQuery query) {
+        final Object[] contexts = new Object[listeners.length];
+        for (int i = 0; i < listeners.length; i++) {
+            try {
+                contexts[i] = listeners[i].before(query);
+            }
+            catch (RuntimeException e) {
+                log.warn("Query listener {} failed (before): {}", listeners[i], e.getMessage(), e);
+            }
+        }
+        return contexts;
+    }
+    
+    static public void after(CqlQueryListener[] listeners, Object[] contexts, CqlBoundQuery query,
+            ResultSet results, long elapsedNanos, Throwable failure) {
+        
+        for (int i = 0; i < listeners.length; i++) {
+            try {
+                listeners[i].after(new CqlQueryEvent(query, results, elapsedNanos, failure, contexts[i]));
+            }
+            catch (RuntimeException e) {
+                log.warn("Query listener {} failed (after): {}", listeners[i], e.getMessage(), e);
+            }
+        }
+    }
+    
+}
@@ -0,0 +1,160 @@
+package com.fizzed.cassandra.orm.impl;
+
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ColumnMetadata;
+import com.datastax.driver.core.Configuration;
+import com.datastax.driver.core.KeyspaceMetadata;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.TableMetadata;
+import com.datastax.driver.core.exceptions.CodecNotFoundException;
+import com.datastax.driver.core.exceptions.InvalidTypeException;
+import com.fizzed.cassandra.orm.CqlQuery.Parameter;
+import java.nio.ByteBuffer;
+import java.util.List;
+import static java.util.stream.Collectors.toList;
+
+public class PartitionKeys {
+    
+    /**
+     * Resolves the table metadata for a table name (optionally prefixed with
+     * its keyspace), using the logged keyspace of the session otherwise.
+     * 
+     * @param session The session
+     * @param tableName The table name (e.g. "table" or "keyspace.table")
+     * @return The table metadata or null if not available
+     */
+    static public TableMetadata tableMetadata(Session session, String tableName) {
+        if (session == null || tableName == null) {
+            return null;
+        }
+        
+        String keyspaceName = session.getLoggedKeyspace();
+        String name = tableName;
+
+        final int dot = tableName.indexOf('.');
+        if (dot > 0) {
+            keyspaceName = tableName.substring(0, dot);
+            name = tableName.substring(dot+1);
+        }
+
+        if (keyspaceName == null || session.getCluster() == null) {
+            return null;
+        }
+        
+        final Metadata metadata = session.getCluster().getMetadata();
+        if (metadata == null) {
+            return null;
+        }
+
+        final KeyspaceMetadata keyspace = metadata.getKeyspace(keyspaceName);
+
+        return keyspace != null ? keyspace.getTable(name) : null;
+    }
+    
+    /**
+     * Resolves the partition key column names of a table from the cluster
+     * metadata.
+     * 
+     * @param session The session
+     * @param tableName The table name (e.g. "table" or "keyspace.table")
+     * @return The partition key column names in order or null if not available
+     */
+    static public List<String> resolve(Session session, String tableName) {
+        final TableMetadata table = tableMetadata(session, tableName);
+        
+        if (table == null) {
+            return null;
+        }
+        
+        return table.getPartitionKey().stream()
+            .map(ColumnMetadata::getName)
+            .collect(toList());
+    }
+    
+    /**
+     * Serializes the routing key (i.e. the partition key) of a statement from
+     * the values bound to the partition key columns of its table, so a
+     * token-aware load balancing policy can send it straight to a replica.
+     * 
+     * @param session The session
+     * @param tableName The table name (e.g. "table" or "keyspace.table")
+     * @param parameters The parameters of the statement
+     * @return The routing key components (one per partition key column in
+     *      order) or null if not available (no metadata or not every partition
+     *      key column bound to a single value)
+     */
+    static public ByteBuffer[] routingKey(Session session, String tableName, List<Parameter> parameters) {
+        final TableMetadata table = tableMetadata(session, tableName);
+        
+        if (table == null || parameters == null) {
+            return null;
+        }
+        
+        final Configuration configuration = session.getCluster().getConfiguration();
+        if (configuration == null) {
+            return null;
+        }
+        
+        final CodecRegistry codecRegistry = configuration.getCodecRegistry() != null
+            ? configuration.getCodecRegistry() : CodecRegistry.DEFAULT_INSTANCE;
+        
+        // serialized the same by every version for a partition key (before init it is not known yet)
+        ProtocolVersion protocolVersion = configuration.getProtocolOptions() != null
+            ? configuration.getProtocolOptions().getProtocolVersion() : null;
+        if (protocolVersion == null) {
+            protocolVersion = ProtocolVersion.NEWEST_SUPPORTED;
+        }
+        
+        final List<ColumnMetadata> partitionKey = table.getPartitionKey();
+        final ByteBuffer[] components = new ByteBuffer[partitionKey.size()];
+        
+        for (int i = 0; i < components.length; i++) {
+            final ColumnMetadata column = partitionKey.get(i);
+            final Parameter parameter = parameter(parameters, column.getName());
+            final Object value = parameter != null ? parameter.getValue() : null;
+            
+            if (value == null) {
+                return null;
+            }
+            
+            try {
+                components[i] = codecRegistry.codecFor(column.getType(), value).serialize(value, protocolVersion);
+            }
+            catch (CodecNotFoundException | InvalidTypeException e) {
+                // e.g. the values of an IN, which have no single token
+                return null;
+            }
+        }
+        
+        return components;
+    }
+    
+    /**
+     * Finds the parameter bound to a column, by its exact name first and then
+     * lowercased (metadata names unquoted identifiers in lowercase).
+     * 
+     * @param parameters The parameters of the statement
+     * @param columnName The column name (as in the metadata)
+     * @return The parameter or null if not bound
+     */
+    static public Parameter parameter(List<Parameter> parameters, String columnName) {
+        if (parameters == null) {
+            return null;
+        }
+        for (Parameter parameter : parameters) {
+            if (parameter.getName().equals(columnName)) {
+                return parameter;
+            }
+        }
+        for (Parameter parameter : parameters) {
+            // unquoted identifiers are case insensitive
+            if (parameter.getName().toLowerCase().equals(columnName)) {
+                return parameter;
+            }
+        }
+        return null;
+    }
+    
+}
\ No newline at end of file
@@ -0,0 +1,189 @@
+package com.fizzed.cassandra.orm.impl;
+
+import com.datastax.driver.core.ExecutionInfo;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.fizzed.cassandra.orm.CqlRowMapper;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+
+public class ResultSets {
+    
+    /**
+     * Starts fetching the next page (without blocking) if the rows left in the
+     * current page have dropped to the prefetch threshold. Safe to call on every
+     * row since the driver will not issue a second fetch while one is in flight.
+     * 
+     * @param results The result set
+     * @param prefetch The prefetch threshold in rows (0 to disable)
+     */
+    static public void prefetch(ResultSet results, int prefetch) {
+        if (prefetch > 0
+                && !results.isFullyFetched()
+                && results.getAvailableWithoutFetching() <= prefetch) {
+            results.fetchMoreResults();
+        }
+    }
+    
+    /**
+     * Maps every row of the result set, fetching the remaining pages as needed.
+     * 
+     * @param <T> The mapped type
+     * @param results The result set
+     * @param mapper The row mapper compiled for the result set
+     * @param prefetch The prefetch threshold in rows (0 to disable)
+     * @param v The list to add the mapped rows to
+     */
+    static public <T> void mapAll(ResultSet results, CqlRowMapper<T> mapper, int prefetch, List<T> v) {
+        mapAll(results, mapper, prefetch, null, v);
+    }
+    
+    /**
+     * Maps every row of the result set, fetching the remaining pages as needed.
+     * 
+     * @param <T> The mapped type
+     * @param results The result set
+     * @param mapper The row mapper compiled for the result set
+     * @param prefetch The prefetch threshold in rows (0 to disable)
+     * @param pageListener Called with each page fetched after the first (or null)
+     * @param v The list to add the mapped rows to
+     */
+    static public <T> void mapAll(ResultSet results, CqlRowMapper<T> mapper, int prefetch,
+            Consumer<ExecutionInfo> pageListener, List<T> v) {
+        
+        final Pages pages = pageListener != null ? new Pages(results, pageListener) : null;
+        
+        for (Row row : results) {
+            if (pages != null) {
+                pages.check();
+            }
+            prefetch(results, prefetch);
+            v.add(mapper.apply(row));
+        }
+        
+        if (pages != null) {
+            pages.checkLast();
+        }
+    }
+    
+    /**
+     * Maps every row of the result set without blocking, fetching the
+     * remaining pages asynchronously.
+     * 
+     * @param <T> The mapped type
+     * @param results The result set
+     * @param mapper The row mapper compiled for the result set
+     * @param v The list to add the mapped rows to
+     * @return A future of the list
+     */
+    static public <T> CompletableFuture<List<T>> mapAllAsync(ResultSet results, CqlRowMapper<T> mapper, List<T> v) {
+        return mapAllAsync(results, mapper, null, v);
+    }
+    
+    /**
+     * Maps every row of the result set without blocking, fetching the
+     * remaining pages asynchronously.
+     * 
+     * @param <T> The mapped type
+     * @param results The result set
+     * @param mapper The row mapper compiled for the result set
+     * @param pageListener Called with each page fetched after the first (or null)
+     * @param v The list to add the mapped rows to
+     * @return A future of the list
+     */
+    static public <T> CompletableFuture<List<T>> mapAllAsync(ResultSet results, CqlRowMapper<T> mapper,
+            Consumer<ExecutionInfo> pageListener, List<T> v) {
+        
+        // only consume rows already fetched, iterating past them would block the driver thread
+        final int available = results.getAvailableWithoutFetching();
+        
+        for (int i = 0; i < available; i++) {
+            v.add(mapper.apply(results.one()));
+        }
+        
+        if (results.isFullyFetched()) {
+            return completedFuture(v);
+        }
+        
+        return CompletableFutures.of(results.fetchMoreResults())
+            .thenCompose(more -> {
+                if (pageListener != null) {
+                    pageListener.accept(more.getExecutionInfo());
+                }
+                return mapAllAsync(more, mapper, pageListener, v);
+            });
+    }
+    
+    /**
+     * Tracks the pages of a result set fetched after the first as it's
+     * iterated (or prefetched), passing the execution info of each to a
+     * listener, and the number of rows fetched to another. Costs a comparison
+     * per row, the execution infos are only copied once a page arrived.
+     */
+    static public class Pages {
+        
+        private final ResultSet results;
+        private final Consumer<ExecutionInfo> listener;
+        private final LongConsumer rowsListener;
+        private int seen;
+        private int available;
+        
+        public Pages(ResultSet results, Consumer<ExecutionInfo> listener) {
+            this(results, listener, null);
+        }
+        
+        /**
+         * @param results The result set
+         * @param listener Called with each page fetched after the first (or null)
+         * @param rowsListener Called with the rows of each page fetched after
+         *      the first (or null)
+         */
+        public Pages(ResultSet results, Consumer<ExecutionInfo> listener, LongConsumer rowsListener) {
+            this.results = results;
+            this.listener = listener;
+            this.rowsListener = rowsListener;
+            this.seen = results.getAllExecutionInfo().size();
+            this.available = results.getAvailableWithoutFetching();
+        }
+        
+        /**
+         * Checks for pages fetched since last called, should be called after
+         * every row taken from the result set.
+         */
+        public void check() {
+            this.check(1);
+        }
+        
+        /**
+         * Checks for pages fetched since last called, once no more rows are
+         * taken from the result set (e.g. an empty last page).
+         */
+        public void checkLast() {
+            this.check(0);
+        }
+        
+        private void check(int taken) {
+            final int available = this.results.getAvailableWithoutFetching();
+            // without a new page, every row taken lowers what is available
+            final int fetched = available - (this.available - taken);
+            if (fetched > 0 || taken == 0) {
+                if (fetched > 0 && this.rowsListener != null) {
+                    this.rowsListener.accept(fetched);
+                }
+                if (this.listener != null) {
+                    final List<ExecutionInfo> infos = this.results.getAllExecutionInfo();
+                    for (int i = this.seen; i < infos.size(); i++) {
+                        this.listener.accept(infos.get(i));
+                    }
+                    this.seen = infos.size();
+                }
+            }
+            this.available = available;
+        }
+        
+    }
+    
+}
@@ -0,0 +1,70 @@
+package com.datastax.driver.core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Access to the package-private parts of the driver the tests need to build
+ * the driver's own types (token ranges, prepared ids, paging states) around a
+ * mocked session.
+ */
+public final class MockDriver {
+
+    static public final ProtocolVersion PROTOCOL_VERSION = ProtocolVersion.V4;
+
+    private MockDriver() {
+        // static only
+    }
+
+    /**
+     * @param value The token value
+     * @return A token of the murmur3 partitioner
+     */
+    static public Token token(long value) {
+        return Token.M3PToken.FACTORY.fromString(Long.toString(value));
+    }
+
+    /**
+     * @param start The start (exclusive)
+     * @param end The end (inclusive)
+     * @return A token range of the murmur3 partitioner
+     */
+    static public TokenRange tokenRange(long start, long end) {
+        return new TokenRange(token(start), token(end), Token.M3PToken.FACTORY);
+    }
+
+    static public PreparedId preparedId(byte[] id, DataType... variableTypes) {
+        final ColumnDefinitions.Definition[] definitions = new ColumnDefinitions.Definition[variableTypes.length];
+        for (int i = 0; i < variableTypes.length; i++) {
+            definitions[i] = new ColumnDefinitions.Definition("ks", "test", "v" + i, variableTypes[i]);
+        }
+        final ColumnDefinitions variables = new ColumnDefinitions(definitions, CodecRegistry.DEFAULT_INSTANCE);
+        final ColumnDefinitions resultColumns = new ColumnDefinitions(new ColumnDefinitions.Definition[0], CodecRegistry.DEFAULT_INSTANCE);
+        return new PreparedId(
+            new PreparedId.PreparedMetadata(MD5Digest.wrap(id), variables),
+            new PreparedId.PreparedMetadata(MD5Digest.wrap(id), resultColumns),
+            null,
+            PROTOCOL_VERSION);
+    }
+
+    static public ColumnDefinitions variables(PreparedId preparedId) {
+        return preparedId.boundValuesMetadata.variables;
+    }
+
+    /**
+     * @param raw The raw paging state
+     * @param statement The statement whose results it pages
+     * @return The paging state as the driver returns it with a page
+     */
+    static public PagingState pagingState(byte[] raw, Statement statement) {
+        return new PagingState(ByteBuffer.wrap(raw), statement, PROTOCOL_VERSION, CodecRegistry.DEFAULT_INSTANCE);
+    }
+
+    /**
+     * @param statement The statement
+     * @return The raw paging state it was set with (if any)
+     */
+    static public ByteBuffer pagingState(Statement statement) {
+        return statement.getPagingState();
+    }
+
+}
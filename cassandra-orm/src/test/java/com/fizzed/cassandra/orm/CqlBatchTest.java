@@ -0,0 +1,151 @@
+package com.fizzed.cassandra.orm;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ColumnMetadata;
+import com.datastax.driver.core.Configuration;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.KeyspaceMetadata;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.TableMetadata;
+import com.fizzed.cassandra.orm.impl.PartitionKeys;
+import java.nio.ByteBuffer;
+import static java.util.Arrays.asList;
+import java.util.List;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CqlBatchTest {
+
+    private final Cassandra cassandra = new Cassandra(null);
+
+    @Test
+    public void groupsByPrimaryKey() {
+        final CqlBatch batch = this.cassandra.batch();
+
+        for (int i = 0; i < 10; i++) {
+            batch.add(this.cassandra.upsert("test")
+                .primaryKeys(asList("a"))
+                .val("a", i % 2)
+                .val("b", i));
+        }
+
+        final List<List<CqlBoundQuery>> batches = batch.partition();
+
+        assertThat(batches, hasSize(2));
+        assertThat(batches.get(0), hasSize(5));
+        assertThat(batches.get(1), hasSize(5));
+    }
+
+    @Test
+    public void splitsOnMaxStatements() {
+        final CqlBatch batch = this.cassandra.batch()
+            .setMaxStatements(3);
+
+        for (int i = 0; i < 10; i++) {
+            batch.add(this.cassandra.upsert("test")
+                .primaryKeys(asList("a"))
+                .val("a", 1)
+                .val("b", i));
+        }
+
+        final List<List<CqlBoundQuery>> batches = batch.partition();
+
+        assertThat(batches, hasSize(4));
+        assertThat(batches.get(3), hasSize(1));
+    }
+
+    @Test
+    public void splitsOnMaxBytes() {
+        final CqlBatch batch = this.cassandra.batch()
+            .setMaxBytes(100);
+
+        for (int i = 0; i < 4; i++) {
+            batch.add(this.cassandra.upsert("test")
+                .primaryKeys(asList("a"))
+                .val("a", "k")
+                .val("b", "0123456789012345678901234567890123456789"));
+        }
+
+        final List<List<CqlBoundQuery>> batches = batch.partition();
+
+        assertThat(batches, hasSize(2));
+    }
+
+    @Test
+    public void groupsByPartitionKeyMetadata() {
+        final Session session = mock(Session.class);
+        final Cluster cluster = mock(Cluster.class);
+        final Configuration configuration = mock(Configuration.class);
+        final Metadata metadata = mock(Metadata.class);
+        final KeyspaceMetadata keyspace = mock(KeyspaceMetadata.class);
+        final TableMetadata table = mock(TableMetadata.class);
+        final ColumnMetadata userId = mock(ColumnMetadata.class);
+        when(userId.getName()).thenReturn("userid");
+        when(userId.getType()).thenReturn(DataType.cint());
+        when(session.getLoggedKeyspace()).thenReturn("ks");
+        when(session.getCluster()).thenReturn(cluster);
+        when(cluster.getConfiguration()).thenReturn(configuration);
+        when(configuration.getCodecRegistry()).thenReturn(CodecRegistry.DEFAULT_INSTANCE);
+        when(cluster.getMetadata()).thenReturn(metadata);
+        when(metadata.getKeyspace("ks")).thenReturn(keyspace);
+        when(keyspace.getTable("test")).thenReturn(table);
+        when(table.getPartitionKey()).thenReturn(asList(userId));
+
+        final Cassandra cassandra = new Cassandra(session);
+        final CqlBatch batch = cassandra.batch();
+
+        // an unquoted camelCase name is the lowercase column of the metadata
+        for (int i = 0; i < 10; i++) {
+            batch.add(cassandra.insert("test")
+                .val("userId", i % 2)
+                .val("b", i));
+        }
+
+        final List<List<CqlBoundQuery>> batches = batch.partition();
+
+        assertThat(batches, hasSize(2));
+        assertThat(batches.get(0), hasSize(5));
+        assertThat(batches.get(1), hasSize(5));
+
+        final ByteBuffer[] routingKey = PartitionKeys.routingKey(session, "test",
+            batches.get(1).get(0).getParameters());
+
+        assertThat(routingKey.length, is(1));
+        assertThat(routingKey[0].getInt(0), is(1));
+    }
+
+    @Test
+    public void unknownPartitionGoesAlone() {
+        final CqlBatch batch = this.cassandra.batch()
+            .add(this.cassandra.insert("test").val("a", 1))
+            .add(this.cassandra.insert("test").val("a", 1));
+
+        assertThat(batch.partition(), hasSize(2));
+    }
+
+    @Test
+    public void rejectsOptimisticLock() {
+        try {
+            this.cassandra.batch()
+                .add(this.cassandra.upsert("test")
+                    .primaryKeys(asList("a"))
+                    .optimisticLock("b", null)
+                    .val("a", 1)
+                    .val("b", 2));
+            fail();
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        assertThat(this.cassandra.batch().size(), is(0));
+    }
+
+}
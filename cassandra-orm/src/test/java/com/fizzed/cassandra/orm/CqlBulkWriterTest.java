@@ -0,0 +1,137 @@
+package com.fizzed.cassandra.orm;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.exceptions.NoHostAvailableException;
+import com.fizzed.cassandra.orm.CqlQuery.Parameter;
+import java.util.ArrayList;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+public class CqlBulkWriterTest {
+
+    private final Cassandra cassandra = new Cassandra(null);
+
+    @Test
+    public void rejectsWhenSaturated() {
+        final List<CompletableFuture<ResultSet>> pending = new ArrayList<>();
+        final CqlBulkWriter writer = new CqlBulkWriter(1L)
+            .setMaxInFlight(2)
+            .setBlockWhenSaturated(false);
+
+        writer.write(query(pending, null));
+        writer.write(query(pending, null));
+
+        assertThat(writer.getInFlight(), is(2));
+
+        try {
+            writer.write(query(pending, null));
+            fail();
+        }
+        catch (RejectedExecutionException e) {
+            // expected
+        }
+
+        pending.get(0).complete(null);
+
+        writer.write(query(pending, null));
+
+        pending.forEach(f -> f.complete(null));
+        writer.close();
+
+        final CqlBulkWriter.Stats stats = writer.getStats();
+        assertThat(stats.getCompleted(), is(3L));
+        assertThat(stats.getRejected(), is(1L));
+        assertThat(stats.getInFlight(), is(0));
+        assertThat(stats.getLatency().getCount(), is(3L));
+    }
+
+    @Test
+    public void retriesSafeFailures() {
+        // without table metadata, only retried if known to be idempotent
+        final CqlQuery<?> query = spy(this.cassandra.insert("test").setIdempotent(true).val("a", 1));
+        doReturn(failed(), failed(), CompletableFuture.completedFuture(null)).when(query).executeAsync();
+
+        final CqlBulkWriter writer = new CqlBulkWriter(1L)
+            .setRetryDelayMillis(0L);
+
+        writer.write(query);
+        writer.close();
+
+        final CqlBulkWriter.Stats stats = writer.getStats();
+        assertThat(stats.getCompleted(), is(1L));
+        assertThat(stats.getRetried(), is(2L));
+        assertThat(stats.getFailed(), is(0L));
+    }
+
+    @Test
+    public void doesNotRetryOptimisticLock() {
+        assertNotRetried(this.cassandra.upsert("test")
+            .primaryKeys(asList("a"))
+            .optimisticLock("v", 1)
+            .val("a", 1)
+            .val("v", 2));
+    }
+
+    @Test
+    public void doesNotRetryNonIdempotent() {
+        assertNotRetried(this.cassandra.insert("test")
+            .val("a", 1)
+            .setIdempotent(false));
+
+        // deleting a list element by index shifts the others
+        assertNotRetried(this.cassandra.delete("test")
+            .columns("items[0]"));
+
+        // without table metadata, may be a counter table
+        assertNotRetried(this.cassandra.insert("test")
+            .val("a", 1));
+    }
+
+    static private void assertNotRetried(CqlQuery<?> query) {
+        final CqlQuery<?> spied = spy(query);
+        doReturn(failed(), CompletableFuture.completedFuture(null)).when(spied).executeAsync();
+
+        final CqlBulkWriter writer = new CqlBulkWriter(1L)
+            .setRetryDelayMillis(0L);
+
+        writer.write(spied);
+
+        try {
+            writer.flush();
+            fail();
+        }
+        catch (NoHostAvailableException e) {
+            // expected
+        }
+
+        assertThat(writer.getStats().getFailed(), is(1L));
+        assertThat(writer.getStats().getRetried(), is(0L));
+    }
+
+    static private CqlQuery<?> query(List<CompletableFuture<ResultSet>> pending, Parameter optimisticLock) {
+        final CompletableFuture<ResultSet> future = new CompletableFuture<>();
+        pending.add(future);
+        final CqlQuery<?> query = mock(CqlQuery.class);
+        when(query.isIdempotent()).thenReturn(optimisticLock == null);
+        when(query.executeAsync()).thenReturn(future);
+        return query;
+    }
+
+    static private CompletableFuture<ResultSet> failed() {
+        final CompletableFuture<ResultSet> future = new CompletableFuture<>();
+        future.completeExceptionally(new NoHostAvailableException(emptyMap()));
+        return future;
+    }
+
+}
@@ -0,0 +1,96 @@
+package com.fizzed.cassandra.orm;
+
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.TypeCodec;
+import com.fizzed.cassandra.orm.codec.CqlCodecs;
+import com.fizzed.cassandra.orm.codec.InstantCodec;
+import com.fizzed.cassandra.orm.codec.JodaDateTimeCodec;
+import com.fizzed.cassandra.orm.codec.LocalDateCodec;
+import com.fizzed.cassandra.orm.codec.LocalTimeCodec;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Date;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CqlCodecsTest {
+
+    static private final ProtocolVersion V4 = ProtocolVersion.V4;
+
+    @Test
+    public void wireCompatibleWithDriverCodecs() {
+        final Instant instant = Instant.ofEpochMilli(1500000000123L);
+
+        // same bytes as the driver's own codecs
+        assertThat(InstantCodec.instance.serialize(instant, V4),
+            is(TypeCodec.timestamp().serialize(Date.from(instant), V4)));
+        assertThat(JodaDateTimeCodec.instance.serialize(new DateTime(instant.toEpochMilli()), V4),
+            is(TypeCodec.timestamp().serialize(Date.from(instant), V4)));
+        assertThat(LocalDateCodec.instance.serialize(LocalDate.of(2017, 7, 14), V4),
+            is(TypeCodec.date().serialize(com.datastax.driver.core.LocalDate.fromYearMonthDay(2017, 7, 14), V4)));
+        assertThat(LocalTimeCodec.instance.serialize(LocalTime.of(13, 14, 15, 16), V4),
+            is(TypeCodec.time().serialize(LocalTime.of(13, 14, 15, 16).toNanoOfDay(), V4)));
+    }
+
+    @Test
+    public void roundTrip() {
+        final Instant instant = Instant.ofEpochMilli(1500000000123L);
+        final LocalDate date = LocalDate.of(1969, 12, 31);
+        final LocalTime time = LocalTime.of(23, 59, 59, 999999999);
+        final DateTime dateTime = new DateTime(1500000000123L, DateTimeZone.UTC);
+
+        assertThat(InstantCodec.instance.deserialize(InstantCodec.instance.serialize(instant, V4), V4), is(instant));
+        assertThat(LocalDateCodec.instance.deserialize(LocalDateCodec.instance.serialize(date, V4), V4), is(date));
+        assertThat(LocalTimeCodec.instance.deserialize(LocalTimeCodec.instance.serialize(time, V4), V4), is(time));
+        assertThat(JodaDateTimeCodec.instance.deserialize(JodaDateTimeCodec.instance.serialize(dateTime, V4), V4), is(dateTime));
+        assertThat(InstantCodec.instance.deserialize(null, V4), is(nullValue()));
+        assertThat(LocalDateCodec.instance.parse(LocalDateCodec.instance.format(date)), is(date));
+    }
+
+    @Test
+    public void register() {
+        final CodecRegistry codecRegistry = CqlCodecs.register(new CodecRegistry());
+
+        assertThat(codecRegistry.codecFor(DataType.timestamp(), DateTime.class), sameInstance((TypeCodec)JodaDateTimeCodec.instance));
+        assertThat(codecRegistry.codecFor(DataType.date(), LocalDate.class), sameInstance((TypeCodec)LocalDateCodec.instance));
+    }
+
+    @Test
+    public void jodaHelpersUseCodec() {
+        final DateTime dateTime = new DateTime(1500000000123L, DateTimeZone.UTC);
+        final Row row = mock(Row.class);
+        final ColumnDefinitions columns = mock(ColumnDefinitions.class);
+        when(row.getColumnDefinitions()).thenReturn(columns);
+        when(columns.contains("ts")).thenReturn(true);
+        when(columns.getType("ts")).thenReturn(DataType.timestamp());
+        when(row.get("ts", DateTime.class)).thenReturn(dateTime);
+        when(row.getObject("ts")).thenReturn(dateTime.toDate());
+
+        // through a Date, whatever the cluster's registry
+        assertThat(DataTypesJoda.cqlTimestampJoda(dateTime), is(dateTime.toDate()));
+        assertThat(DataTypesJoda.jodaDateTime(row, "ts"), is(dateTime));
+        verify(row, never()).get("ts", DateTime.class);
+
+        // explicitly through the codec, the DateTime is bound and read as-is
+        assertThat(DataTypesJoda.cqlDateTimeJoda(dateTime), sameInstance(dateTime));
+        assertThat(DataTypesJoda.cqlDateTimeJoda(new Date(5L)), is(new DateTime(5L, DateTimeZone.UTC)));
+        assertThat(DataTypesJoda.jodaDateTimeCodec(row, "ts"), sameInstance(dateTime));
+        verify(row).get("ts", DateTime.class);
+        verify(row).getObject("ts");
+    }
+
+}
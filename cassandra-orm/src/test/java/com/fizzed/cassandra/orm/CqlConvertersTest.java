@@ -0,0 +1,51 @@
+package com.fizzed.cassandra.orm;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Date;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+
+public class CqlConvertersTest {
+
+    @Test
+    public void defaults() {
+        assertThat(DateTypes.cqlLong(1), is(1L));
+        assertThat(DateTypes.cqlInteger(BigInteger.TEN), is(10));
+        assertThat(DateTypes.cqlShort(null), is(nullValue()));
+        // heap buffer resolves to the ByteBuffer conversion
+        assertThat(CqlConverters.convert(ByteBuffer.wrap("abc".getBytes()), String.class), is("abc"));
+        assertThat(DataTypesJoda.cqlTimestampJoda(new DateTime(5L, DateTimeZone.UTC)), is(new Date(5L)));
+    }
+
+    @Test
+    public void unknownConversion() {
+        try {
+            DateTypes.cqlByte("a");
+            fail();
+        }
+        catch (IllegalArgumentException e) {
+            assertThat(e.getMessage(), is("Unable to convert class java.lang.String <-> java.lang.Byte"));
+        }
+    }
+
+    @Test
+    public void register() {
+        final CqlConverter<Long> converter = new CqlConverter<>(Long.class)
+            .register(Number.class, Number::longValue);
+
+        assertThat(converter.convert(2), is(2L));
+
+        // replaces what was cached for Integer
+        converter.register(Integer.class, v -> v * 10L);
+
+        assertThat(converter.convert(2), is(20L));
+        assertThat(converter.canConvert(String.class), is(false));
+    }
+
+}
@@ -0,0 +1,47 @@
+package com.fizzed.cassandra.orm;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CqlManifestTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void writeAndMerge() throws Exception {
+        final Path file = this.temp.getRoot().toPath().resolve("dir/cql.manifest");
+        final CqlManifest manifest = new CqlManifest(file);
+
+        assertThat(manifest.read(), is(empty()));
+
+        assertThat(manifest.write(asList("SELECT * FROM a WHERE id=?", "INSERT INTO a (id,\n  b) VALUES (?,?)")), is(2));
+        assertThat(manifest.write(asList("SELECT * FROM a WHERE id=?", "DELETE FROM a WHERE id=?")), is(3));
+
+        assertThat(manifest.read(), is(asList(
+            "INSERT INTO a (id, b) VALUES (?,?)",
+            "SELECT * FROM a WHERE id=?",
+            "DELETE FROM a WHERE id=?")));
+
+        assertThat(Files.list(file.getParent()).count(), is(1L));
+    }
+
+    @Test
+    public void keepsMostRecent() {
+        final CqlManifest manifest = new CqlManifest(this.temp.getRoot().toPath().resolve("cql.manifest"))
+            .setMaxSize(2);
+
+        manifest.write(asList("a", "b"));
+        manifest.write(asList("c"));
+
+        assertThat(manifest.read(), is(asList("b", "c")));
+    }
+
+}
@@ -0,0 +1,220 @@
+package com.fizzed.cassandra.orm;
+
+import com.datastax.driver.core.ExecutionInfo;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.fizzed.cassandra.orm.CqlQuery.Command;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import static java.util.Arrays.asList;
+import java.util.Iterator;
+import java.util.List;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.persistence.OptimisticLockException;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CqlMetricsTest {
+
+    @Test
+    public void recordsQueries() {
+        final Session session = mock(Session.class);
+        final ResultSet rs = mock(ResultSet.class);
+        final Row row = mock(Row.class);
+        when(session.execute(any(Statement.class))).thenReturn(rs);
+        when(rs.wasApplied()).thenReturn(true);
+        when(rs.one()).thenReturn(row);
+
+        final Cassandra cassandra = new Cassandra(session);
+
+        cassandra.select("a").where().eq("id", 1).findOne();
+        cassandra.select("a").where().eq("id", 2).findOne();
+        cassandra.insert("b").val("id", 1).execute();
+
+        // an optimistic lock conflict
+        when(rs.wasApplied()).thenReturn(false);
+        try {
+            cassandra.upsert("b")
+                .primaryKeys(asList("id"))
+                .val("id", 1)
+                .val("v", 2)
+                .optimisticLock("v", 1)
+                .execute();
+            fail();
+        }
+        catch (OptimisticLockException e) {
+            // expected
+        }
+
+        final CqlMetrics.Snapshot snapshot = cassandra.getMetrics().snapshot();
+        final List<CqlMetrics.Latency> latencies = snapshot.getLatencies();
+
+        assertThat(latencies.size(), is(3));
+        assertThat(latencies.get(0).getTableName(), is("a"));
+        assertThat(latencies.get(0).getCommand(), is(Command.SELECT));
+        assertThat(latencies.get(0).isSuccess(), is(true));
+        assertThat(latencies.get(0).getHistogram().getCount(), is(2L));
+        assertThat(latencies.get(1).getTableName(), is("b"));
+        assertThat(latencies.get(1).getCommand(), is(Command.INSERT));
+        assertThat(latencies.get(2).getCommand(), is(Command.UPDATE));
+        assertThat(latencies.get(2).isSuccess(), is(false));
+
+        assertThat(snapshot.getRows().get("a"), is(2L));
+        assertThat(snapshot.getConflicts().get("b"), is(1L));
+        assertThat(snapshot.getConflicts().get("a"), is(0L));
+    }
+
+    @Test
+    public void warnings() {
+        final Session session = mock(Session.class);
+        final ResultSet rs = mock(ResultSet.class);
+        final ExecutionInfo executionInfo = mock(ExecutionInfo.class);
+        when(session.execute(any(Statement.class))).thenReturn(rs);
+        when(rs.wasApplied()).thenReturn(true);
+        when(rs.getExecutionInfo()).thenReturn(executionInfo);
+        when(executionInfo.getWarnings()).thenReturn(asList(
+            "Read 10 live rows and 1500 tombstone cells for query SELECT * FROM ks.a WHERE id = 1 LIMIT 5000"));
+
+        final Cassandra cassandra = new Cassandra(session);
+
+        cassandra.select("a").where().eq("id", 1).execute();
+
+        // fails fast if asked to
+        try {
+            cassandra.select("a").where().eq("id", 1).setFailOnTombstoneWarning(true).execute();
+            fail();
+        }
+        catch (TombstoneWarningException e) {
+            assertThat(e.getWarnings().size(), is(1));
+        }
+
+        when(executionInfo.getWarnings()).thenReturn(asList(
+            "Batch for [ks.b] is of size 6.2KiB, exceeding specified threshold of 5.0KiB by 1.2KiB."));
+        cassandra.insert("b").val("id", 1).execute();
+
+        final CqlMetrics.Snapshot snapshot = cassandra.getMetrics().snapshot();
+
+        assertThat(snapshot.getWarnings().get("a").get(CqlMetrics.Warning.TOMBSTONE), is(2L));
+        assertThat(snapshot.getWarnings().get("a").get(CqlMetrics.Warning.BATCH_SIZE), is(0L));
+        assertThat(snapshot.getWarnings().get("b").get(CqlMetrics.Warning.BATCH_SIZE), is(1L));
+        assertThat(snapshot.getWarningsByCql().size(), is(2));
+        assertThat(snapshot.getWarningsByCql().get("SELECT * FROM a WHERE id=?").get(CqlMetrics.Warning.TOMBSTONE), is(2L));
+        assertThat(snapshot.getWarningSamples().size(), is(3));
+        assertThat(snapshot.getWarningSamples().get(0).getTableName(), is("b"));
+        assertThat(snapshot.getWarningSamples().get(0).getWarning(), is(CqlMetrics.Warning.BATCH_SIZE));
+        // the failure is recorded as such
+        assertThat(snapshot.getLatencies().get(1).isSuccess(), is(false));
+        
+        assertThat(cassandra.getMetrics().getWarningsByTable().get("a:TOMBSTONE"), is(2L));
+    }
+
+    @Test
+    public void warningsOfLaterPages() {
+        final Session session = mock(Session.class);
+        when(session.execute(any(Statement.class))).thenAnswer(i -> pagedResultSet(
+            asList(),
+            asList("Read 10 live rows and 1500 tombstone cells for query SELECT * FROM ks.a LIMIT 5000"),
+            asList()));
+
+        final Cassandra cassandra = new Cassandra(session);
+
+        assertThat(cassandra.select("a").findList().size(), is(3));
+
+        int count = 0;
+        for (Row row : cassandra.select("a").findIterator()) {
+            count++;
+        }
+        assertThat(count, is(3));
+
+        final CqlMetrics.Snapshot snapshot = cassandra.getMetrics().snapshot();
+
+        assertThat(snapshot.getWarnings().get("a").get(CqlMetrics.Warning.TOMBSTONE), is(2L));
+        assertThat(snapshot.getWarningsByCql().get("SELECT * FROM a").get(CqlMetrics.Warning.TOMBSTONE), is(2L));
+    }
+
+    @Test
+    public void rowsOfEveryPage() {
+        final Session session = mock(Session.class);
+        when(session.execute(any(Statement.class))).thenAnswer(i -> pagedResultSet(asList(), asList(), asList()));
+
+        final Cassandra cassandra = new Cassandra(session);
+
+        int count = 0;
+        for (Row row : cassandra.select("a").findIterator()) {
+            count++;
+        }
+        assertThat(count, is(3));
+
+        // the first page as the query completes, the others as they are fetched
+        assertThat(cassandra.getMetrics().snapshot().getRows().get("a"), is(3L));
+    }
+
+    /**
+     * A result set of a row per page, the first page fetched, the others as
+     * it is iterated, each with the warnings given.
+     */
+    @SafeVarargs
+    static private ResultSet pagedResultSet(List<String>... warnings) {
+        final List<ExecutionInfo> fetched = new ArrayList<>();
+        final ResultSet rs = mock(ResultSet.class);
+        final Runnable fetch = () -> {
+            final ExecutionInfo executionInfo = mock(ExecutionInfo.class);
+            when(executionInfo.getWarnings()).thenReturn(warnings[fetched.size()]);
+            fetched.add(executionInfo);
+        };
+        final int[] position = new int[1];
+        fetch.run();
+        when(rs.wasApplied()).thenReturn(true);
+        when(rs.getExecutionInfo()).thenAnswer(i -> fetched.get(fetched.size() - 1));
+        when(rs.getAllExecutionInfo()).thenAnswer(i -> new ArrayList<>(fetched));
+        when(rs.isFullyFetched()).thenAnswer(i -> fetched.size() == warnings.length);
+        when(rs.getAvailableWithoutFetching()).thenAnswer(i -> fetched.size() - position[0]);
+        when(rs.iterator()).thenAnswer(i -> new Iterator<Row>() {
+            @Override
+            public boolean hasNext() {
+                if (position[0] == fetched.size() && fetched.size() < warnings.length) {
+                    fetch.run();
+                }
+                return position[0] < fetched.size();
+            }
+
+            @Override
+            public Row next() {
+                position[0]++;
+                return mock(Row.class);
+            }
+        });
+        return rs;
+    }
+
+    @Test
+    public void mbean() throws Exception {
+        final CqlMetrics metrics = new CqlMetrics();
+        metrics.recordLatency("a", Command.SELECT, true, 2000000L);
+        metrics.recordRows("a", 5);
+
+        final ObjectName name = metrics.registerMBean("test");
+        // replaces the one already registered
+        metrics.registerMBean("test");
+
+        final CompositeData[] latencies = (CompositeData[])ManagementFactory.getPlatformMBeanServer()
+            .getAttribute(name, "Latencies");
+
+        assertThat(latencies.length, is(1));
+        assertThat(latencies[0].get("tableName"), is("a"));
+        assertThat(latencies[0].get("command"), is("SELECT"));
+        assertThat(latencies[0].get("count"), is(1L));
+        assertThat((Long)latencies[0].get("maxMicros"), is(2000L));
+
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+    }
+
+}
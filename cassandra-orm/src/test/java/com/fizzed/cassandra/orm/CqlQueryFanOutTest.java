@@ -0,0 +1,313 @@
+package com.fizzed.cassandra.orm;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.google.common.util.concurrent.AbstractFuture;
+import com.google.common.util.concurrent.Futures;
+import java.util.ArrayList;
+import static java.util.Arrays.asList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Before;
+import org.junit.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CqlQueryFanOutTest {
+
+    private final Map<Statement,Object> statementKeys = new IdentityHashMap<>();
+    private final List<Object> boundKeys = new ArrayList<>();
+    private final List<String> executedCql = new ArrayList<>();
+    private Cassandra cassandra;
+
+    @Before
+    public void before() {
+        final Session session = mock(Session.class);
+        final PreparedStatement preparedStatement = mock(PreparedStatement.class);
+
+        when(session.prepareAsync(anyString())).thenAnswer(i -> {
+            this.executedCql.add(i.getArgument(0));
+            return Futures.immediateFuture(preparedStatement);
+        });
+
+        when(preparedStatement.bind(any())).thenAnswer(i -> {
+            final BoundStatement statement = mock(BoundStatement.class);
+            this.statementKeys.put(statement, i.getArguments()[0]);
+            this.boundKeys.add(i.getArguments()[0]);
+            return statement;
+        });
+
+        when(session.executeAsync(any(Statement.class))).thenAnswer(i -> {
+            final Statement statement = i.getArgument(0);
+            if (statement instanceof SimpleStatement) {
+                this.executedCql.add(((SimpleStatement)statement).getQueryString());
+                return new ImmediateResultSetFuture(resultSet(asList("x", "y", "z")));
+            }
+            final Object key = this.statementKeys.get(statement);
+            // partition 0 is empty
+            return new ImmediateResultSetFuture(resultSet(
+                Integer.valueOf(0).equals(key) ? asList() : asList(key + "-1", key + "-2")));
+        });
+
+        when(session.execute(any(Statement.class))).thenAnswer(i -> {
+            this.executedCql.add(((SimpleStatement)i.getArgument(0)).getQueryString());
+            return resultSet(asList("x", "y", "z"));
+        });
+
+        this.cassandra = new Cassandra(session);
+    }
+
+    @Test
+    public void fansOutInOrder() {
+        final List<Row> rows = this.cassandra.select("test")
+            .primaryKeys(asList("id"))
+            .where()
+            .in("id", asList(3, 1, 2, 1))
+            .findList();
+
+        assertThat(this.executedCql, contains("SELECT * FROM test WHERE id=?"));
+        assertThat(rows, hasSize(6));
+        assertThat(values(rows), contains("3-1", "3-2", "1-1", "1-2", "2-1", "2-2"));
+    }
+
+    @Test
+    public void fansOutIterator() {
+        final FindIterator<Row> it = this.cassandra.select("test")
+            .primaryKeys(asList("id"))
+            .where()
+            .in("id", asList(2, 1))
+            .findIterator();
+
+        final List<Row> rows = new ArrayList<>();
+        it.forEach(rows::add);
+
+        assertThat(values(rows), contains("2-1", "2-2", "1-1", "1-2"));
+    }
+
+    @Test
+    public void fansOutAsync() throws Exception {
+        final List<Row> rows = this.cassandra.select("test")
+            .primaryKeys(asList("id"))
+            .where()
+            .in("id", asList(2, 1))
+            .findListAsync()
+            .get();
+
+        assertThat(values(rows), contains("2-1", "2-2", "1-1", "1-2"));
+    }
+
+    @Test
+    public void findOneStopsAtFirstRow() throws Exception {
+        final Row row = this.cassandra.select("test")
+            .primaryKeys(asList("id"))
+            .where()
+            .in("id", asList(0, 2, 1, 3))
+            .findOne();
+
+        assertThat(row.getObject(0), is("2-1"));
+        // partition 1 and 3 never queried
+        assertThat(this.boundKeys, contains(0, 2));
+
+        this.boundKeys.clear();
+
+        final Row row2 = this.cassandra.select("test")
+            .primaryKeys(asList("id"))
+            .where()
+            .in("id", asList(0, 3, 1))
+            .findOneAsync()
+            .get();
+
+        assertThat(row2.getObject(0), is("3-1"));
+        assertThat(this.boundKeys, contains(0, 3));
+    }
+
+    @Test
+    public void findOneConcurrently() throws Exception {
+        final Session session = mock(Session.class);
+        final PreparedStatement preparedStatement = mock(PreparedStatement.class);
+        final Map<Object,PendingResultSetFuture> pending = new LinkedHashMap<>();
+
+        when(session.prepareAsync(anyString())).thenReturn(Futures.immediateFuture(preparedStatement));
+        when(preparedStatement.bind(any())).thenAnswer(i -> {
+            final BoundStatement statement = mock(BoundStatement.class);
+            this.statementKeys.put(statement, i.getArguments()[0]);
+            return statement;
+        });
+        when(session.executeAsync(any(Statement.class))).thenAnswer(i -> {
+            final PendingResultSetFuture future = new PendingResultSetFuture();
+            pending.put(this.statementKeys.get(i.getArgument(0)), future);
+            return future;
+        });
+
+        final CompletableFuture<Row> future = new Cassandra(session).select("test")
+            .primaryKeys(asList("id"))
+            .setInFanOutConcurrency(2)
+            .where()
+            .in("id", asList(0, 1, 2, 3))
+            .findOneAsync();
+
+        // two partitions in flight at once
+        assertThat(pending.keySet(), contains(0, 1));
+
+        // a row in partition 1 means 2 and 3 are never queried
+        pending.get(1).set(resultSet(asList("1-1")));
+        assertThat(pending.keySet(), contains(0, 1));
+        assertThat(future.isDone(), is(false));
+
+        // but the first partition in order of the IN wins
+        pending.get(0).set(resultSet(asList("0-1")));
+        assertThat(future.get().getObject(0), is("0-1"));
+    }
+
+    @Test
+    public void noFanOutWithOrderBy() {
+        this.cassandra.select("test")
+            .primaryKeys(asList("id", "ts"))
+            .where()
+            .in("id", asList(2, 1))
+            .orderBy("ts DESC")
+            .findList();
+
+        assertThat(this.executedCql, contains("SELECT * FROM test WHERE id IN ? ORDER BY ts DESC"));
+        assertThat(this.cassandra.getPreparedStatementCache().size(), is(0));
+    }
+
+    @Test
+    public void noFanOutWithAggregate() {
+        this.cassandra.select("test")
+            .primaryKeys(asList("id"))
+            .columns("count(*)")
+            .where()
+            .in("id", asList(2, 1))
+            .findOne();
+
+        assertThat(this.executedCql, contains("SELECT count(*) FROM test WHERE id IN ?"));
+
+        this.executedCql.clear();
+
+        // a list of columns still fans out
+        this.cassandra.select("test")
+            .primaryKeys(asList("id"))
+            .columns("id, \"Name\"")
+            .where()
+            .in("id", asList(2, 1))
+            .findList();
+
+        assertThat(this.executedCql, contains("SELECT id, \"Name\" FROM test WHERE id=?"));
+    }
+
+    @Test
+    public void fanOutDisabled() {
+        final List<Row> rows = this.cassandra.select("test")
+            .primaryKeys(asList("id"))
+            .setInFanOut(false)
+            .where()
+            .in("id", asList(2, 1))
+            .findList();
+
+        assertThat(this.executedCql, contains("SELECT * FROM test WHERE id IN ?"));
+        assertThat(rows, hasSize(3));
+    }
+
+    @Test
+    public void noFanOutWithoutPrimaryKeys() {
+        this.cassandra.select("test")
+            .where()
+            .in("id", asList(2, 1))
+            .findList();
+
+        assertThat(this.executedCql, contains("SELECT * FROM test WHERE id IN ?"));
+    }
+
+    @Test
+    public void noFanOutOnClusteringKey() {
+        this.cassandra.select("test")
+            .primaryKeys(asList("id", "ts"))
+            .where()
+            .eq("id", 1)
+            .in("ts", asList(2, 1))
+            .findList();
+
+        assertThat(this.executedCql, contains("SELECT * FROM test WHERE id=? AND ts IN ?"));
+        assertThat(this.cassandra.getPreparedStatementCache().size(), is(0));
+    }
+
+    static private List<Object> values(List<Row> rows) {
+        final List<Object> values = new ArrayList<>();
+        for (Row row : rows) {
+            values.add(row.getObject(0));
+        }
+        return values;
+    }
+
+    static private ResultSet resultSet(List<?> values) {
+        final List<Row> rows = new ArrayList<>();
+        for (Object value : values) {
+            final Row row = mock(Row.class);
+            when(row.getObject(0)).thenReturn(value);
+            rows.add(row);
+        }
+
+        final ResultSet rs = mock(ResultSet.class);
+        final List<Row> remaining = new ArrayList<>(rows);
+        when(rs.wasApplied()).thenReturn(true);
+        when(rs.isFullyFetched()).thenReturn(true);
+        when(rs.getAvailableWithoutFetching()).thenAnswer(i -> remaining.size());
+        when(rs.one()).thenAnswer(i -> remaining.isEmpty() ? null : remaining.remove(0));
+        when(rs.iterator()).thenAnswer(i -> remaining.iterator());
+        return rs;
+    }
+
+    static private class PendingResultSetFuture extends AbstractFuture<ResultSet> implements ResultSetFuture {
+
+        @Override
+        public boolean set(ResultSet rs) {
+            return super.set(rs);
+        }
+
+        @Override
+        public ResultSet getUninterruptibly() {
+            return Futures.getUnchecked(this);
+        }
+
+        @Override
+        public ResultSet getUninterruptibly(long timeout, java.util.concurrent.TimeUnit unit) {
+            return Futures.getUnchecked(this);
+        }
+
+    }
+
+    static private class ImmediateResultSetFuture extends AbstractFuture<ResultSet> implements ResultSetFuture {
+
+        public ImmediateResultSetFuture(ResultSet rs) {
+            this.set(rs);
+        }
+
+        @Override
+        public ResultSet getUninterruptibly() {
+            return Futures.getUnchecked(this);
+        }
+
+        @Override
+        public ResultSet getUninterruptibly(long timeout, java.util.concurrent.TimeUnit unit) {
+            return Futures.getUnchecked(this);
+        }
+
+    }
+
+}
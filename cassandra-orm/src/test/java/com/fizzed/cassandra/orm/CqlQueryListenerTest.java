@@ -0,0 +1,108 @@
+package com.fizzed.cassandra.orm;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.ExecutionInfo;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CqlQueryListenerTest {
+
+    @Test
+    public void beforeAndAfter() {
+        final Session session = mock(Session.class);
+        final ResultSet rs = mock(ResultSet.class);
+        final ExecutionInfo executionInfo = mock(ExecutionInfo.class);
+        final PreparedStatement ps = mock(PreparedStatement.class);
+        when(session.execute(any(Statement.class))).thenReturn(rs);
+        when(session.prepare(any(String.class))).thenReturn(ps);
+        when(ps.bind(any())).thenReturn(mock(BoundStatement.class));
+        when(rs.wasApplied()).thenReturn(true);
+        when(rs.getExecutionInfo()).thenReturn(executionInfo);
+        when(rs.getAvailableWithoutFetching()).thenReturn(3);
+
+        final List<CqlBoundQuery> befores = new ArrayList<>();
+        final List<CqlQueryEvent> afters = new ArrayList<>();
+
+        final Cassandra cassandra = new Cassandra(session)
+            .addListener(new CqlQueryListener() {
+                @Override
+                public Object before(CqlBoundQuery query) {
+                    befores.add(query);
+                    return "span" + befores.size();
+                }
+                @Override
+                public void after(CqlQueryEvent event) {
+                    afters.add(event);
+                }
+            })
+            .addListener(event -> {
+                throw new IllegalStateException("ignored");
+            });
+
+        cassandra.select("test").where().eq("a", 1).execute();
+
+        assertThat(befores.size(), is(1));
+        assertThat(befores.get(0).getCql(), is("SELECT * FROM test WHERE a=?"));
+        assertThat(afters.size(), is(1));
+        assertThat(afters.get(0).getQuery(), is(befores.get(0)));
+        assertThat(afters.get(0).getContext(), is("span1"));
+        assertThat(afters.get(0).getExecutionInfo(), is(executionInfo));
+        assertThat(afters.get(0).getRows(), is(3));
+        assertThat(afters.get(0).isSuccess(), is(true));
+        assertThat(afters.get(0).getElapsedNanos(), greaterThanOrEqualTo(0L));
+
+        // failure
+        when(rs.wasApplied()).thenReturn(false);
+        try {
+            cassandra.update("test").val("b", 2).where().eq("a", 1).execute();
+            fail();
+        }
+        catch (UnappliedException e) {
+            // expected
+        }
+
+        assertThat(afters.get(1).isSuccess(), is(false));
+        assertThat(afters.get(1).getFailure() instanceof UnappliedException, is(true));
+
+        // templates with the values bound
+        when(rs.wasApplied()).thenReturn(true);
+        cassandra.compile("test", q -> q.where().eq("a", CqlTemplate.BIND)).execute(5);
+
+        assertThat(afters.get(2).getQuery().toValues()[0], is(5));
+    }
+
+    @Test
+    public void none() {
+        final Session session = mock(Session.class);
+        final ResultSet rs = mock(ResultSet.class);
+        when(session.execute(any(Statement.class))).thenReturn(rs);
+        when(rs.wasApplied()).thenReturn(true);
+
+        final List<CqlQueryEvent> afters = new ArrayList<>();
+        final CqlQueryListener listener = afters::add;
+
+        final Cassandra cassandra = new Cassandra(session)
+            .addListener(listener)
+            .removeListener(listener);
+
+        cassandra.select("test").execute();
+
+        assertThat(cassandra.getListeners().isEmpty(), is(true));
+        assertThat(afters.isEmpty(), is(true));
+        assertThat(new CqlQueryEvent(null, null, 0L, null, null).getExecutionInfo(), is(nullValue()));
+    }
+
+}
@@ -1,12 +1,37 @@
 package com.fizzed.cassandra.orm;
 
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ColumnMetadata;
+import com.datastax.driver.core.Configuration;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.KeyspaceMetadata;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.TableMetadata;
+import com.datastax.driver.core.TypeCodec;
 import com.fizzed.cassandra.orm.CqlBoundQuery;
 import com.fizzed.cassandra.orm.Cassandra;
 import com.fizzed.cassandra.orm.CqlQuery.Parameter;
+import java.nio.ByteBuffer;
 import static java.util.Arrays.asList;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class CqlQueryTest {
  
@@ -183,4 +208,212 @@ public class CqlQueryTest {
         assertThat(query.getParameters().get(4), is(new Parameter("a", 5)));
     }
     
-}
\ No newline at end of file
+    @Test
+    public void unsetNulls() {
+        
+        CqlBoundQuery query;
+        
+        // not prepared: null columns left out of the cql
+        query = this.cassandra.upsert("test")
+            .setUnsetNulls(true)
+            .primaryKeys(asList("a"))
+            .val("a", 1)
+            .val("b", null)
+            .val("c", 3)
+            .build();
+
+        assertThat(query.getCql(), is("INSERT INTO test (a,c) VALUES (?,?)"));
+        assertThat(query.getUnsetCount(), is(1));
+        
+        query = this.cassandra.update("test")
+            .setUnsetNulls(true)
+            .val("b", null)
+            .val("c", 3)
+            .where()
+            .eq("a", 1)
+            .build();
+
+        assertThat(query.getCql(), is("UPDATE test SET c=? WHERE a=?"));
+        assertThat(query.getUnsetCount(), is(1));
+        
+        // an update must set something
+        query = this.cassandra.update("test")
+            .setUnsetNulls(true)
+            .val("b", null)
+            .where()
+            .eq("a", 1)
+            .build();
+
+        assertThat(query.getCql(), is("UPDATE test SET b=? WHERE a=?"));
+        assertThat(query.getUnsetCount(), is(0));
+        
+        // prepared: same cql, null values unset when bound
+        query = this.cassandra.upsert("test")
+            .setUnsetNulls(true)
+            .setPrepared(true)
+            .primaryKeys(asList("a"))
+            .val("a", 1)
+            .val("b", null)
+            .val("c", 3)
+            .build();
+
+        assertThat(query.getCql(), is("INSERT INTO test (a,b,c) VALUES (?,?,?)"));
+        assertThat(query.getUnsetCount(), is(1));
+        
+        final PreparedStatement ps = mock(PreparedStatement.class);
+        final BoundStatement bs = mock(BoundStatement.class);
+        when(ps.bind(any())).thenReturn(bs);
+        
+        query.bind(ps);
+        
+        verify(bs).unset(1);
+        verify(bs, never()).unset(0);
+        verify(bs, never()).unset(2);
+        
+        // off by default
+        query = this.cassandra.insert("test")
+            .val("a", 1)
+            .val("b", null)
+            .build();
+
+        assertThat(query.getCql(), is("INSERT INTO test (a,b) VALUES (?,?)"));
+        assertThat(query.getUnsetCount(), is(0));
+    }
+    
+    @Test
+    public void routingKey() {
+        final Session session = mock(Session.class);
+        final Cluster cluster = mock(Cluster.class);
+        final Configuration configuration = mock(Configuration.class);
+        final Metadata metadata = mock(Metadata.class);
+        final KeyspaceMetadata keyspace = mock(KeyspaceMetadata.class);
+        final TableMetadata table = mock(TableMetadata.class);
+        final ColumnMetadata a = mock(ColumnMetadata.class);
+        final ColumnMetadata b = mock(ColumnMetadata.class);
+        final ResultSet rs = mock(ResultSet.class);
+        when(a.getName()).thenReturn("a");
+        when(a.getType()).thenReturn(DataType.cint());
+        when(b.getName()).thenReturn("b");
+        when(b.getType()).thenReturn(DataType.text());
+        when(session.getLoggedKeyspace()).thenReturn("ks");
+        when(session.getCluster()).thenReturn(cluster);
+        when(cluster.getConfiguration()).thenReturn(configuration);
+        when(configuration.getCodecRegistry()).thenReturn(CodecRegistry.DEFAULT_INSTANCE);
+        when(cluster.getMetadata()).thenReturn(metadata);
+        when(metadata.getKeyspace("ks")).thenReturn(keyspace);
+        when(keyspace.getTable("test")).thenReturn(table);
+        when(table.getPartitionKey()).thenReturn(asList(a, b));
+        when(session.execute(any(Statement.class))).thenReturn(rs);
+        when(rs.wasApplied()).thenReturn(true);
+        
+        final Cassandra cassandra = new Cassandra(session);
+        
+        cassandra.select("test")
+            .where()
+            .eq("b", "x")
+            .eq("a", 1)
+            .eq("c", 2)
+            .execute();
+        
+        // not every partition key column is known
+        cassandra.select("test")
+            .where()
+            .eq("a", 1)
+            .execute();
+        
+        // an IN has no single partition
+        cassandra.select("test")
+            .setInFanOut(false)
+            .where()
+            .eq("b", "x")
+            .in("a", asList(1, 2))
+            .execute();
+        
+        final ArgumentCaptor<Statement> statements = ArgumentCaptor.forClass(Statement.class);
+        verify(session, times(3)).execute(statements.capture());
+        
+        // every partition key column is known (composite, in partition key order)
+        final SimpleStatement expected = new SimpleStatement("")
+            .setRoutingKey(
+                TypeCodec.cint().serialize(1, ProtocolVersion.NEWEST_SUPPORTED),
+                TypeCodec.varchar().serialize("x", ProtocolVersion.NEWEST_SUPPORTED));
+        
+        assertThat(routingKey(statements.getAllValues().get(0)), is(routingKey(expected)));
+        assertThat(routingKey(statements.getAllValues().get(1)), is(nullValue()));
+        assertThat(routingKey(statements.getAllValues().get(2)), is(nullValue()));
+    }
+    
+    @Test
+    public void idempotence() {
+        final Session session = mock(Session.class);
+        final ResultSet rs = mock(ResultSet.class);
+        when(session.execute(any(Statement.class))).thenReturn(rs);
+        when(rs.wasApplied()).thenReturn(true);
+        
+        final Cassandra cassandra = new Cassandra(session);
+        
+        cassandra.select("test").where().eq("a", 1).execute();
+        // without table metadata, may be a counter table
+        cassandra.insert("test").val("a", 1).execute();
+        // lightweight transaction
+        cassandra.upsert("test").primaryKeys(asList("a")).val("a", 1).optimisticLock("v", null).execute();
+        // list element by index
+        cassandra.delete("test").columns("items[0]").where().eq("a", 1).execute();
+        // overridden
+        cassandra.insert("test").setIdempotent(false).val("a", 1).execute();
+        cassandra.insert("test").setIdempotent(true).val("a", 1).execute();
+        
+        final ArgumentCaptor<Statement> statements = ArgumentCaptor.forClass(Statement.class);
+        verify(session, times(6)).execute(statements.capture());
+        
+        assertThat(statements.getAllValues().get(0).isIdempotent(), is(true));
+        assertThat(statements.getAllValues().get(1).isIdempotent(), is(false));
+        assertThat(statements.getAllValues().get(2).isIdempotent(), is(false));
+        assertThat(statements.getAllValues().get(3).isIdempotent(), is(false));
+        assertThat(statements.getAllValues().get(4).isIdempotent(), is(false));
+        assertThat(statements.getAllValues().get(5).isIdempotent(), is(true));
+    }
+    
+    @Test
+    public void countersScannedOncePerTable() {
+        final Session session = mock(Session.class);
+        final Cluster cluster = mock(Cluster.class);
+        final Metadata metadata = mock(Metadata.class);
+        final KeyspaceMetadata keyspace = mock(KeyspaceMetadata.class);
+        final TableMetadata table = mock(TableMetadata.class);
+        final ColumnMetadata id = mock(ColumnMetadata.class);
+        final ColumnMetadata hits = mock(ColumnMetadata.class);
+        final ResultSet rs = mock(ResultSet.class);
+        when(id.getName()).thenReturn("id");
+        when(id.getType()).thenReturn(DataType.cint());
+        when(hits.getName()).thenReturn("hits");
+        when(hits.getType()).thenReturn(DataType.counter());
+        when(session.getLoggedKeyspace()).thenReturn("ks");
+        when(session.getCluster()).thenReturn(cluster);
+        when(cluster.getMetadata()).thenReturn(metadata);
+        when(metadata.getKeyspace("ks")).thenReturn(keyspace);
+        when(keyspace.getTable("counts")).thenReturn(table);
+        when(table.getColumns()).thenReturn(asList(id, hits));
+        when(session.execute(any(Statement.class))).thenReturn(rs);
+        when(rs.wasApplied()).thenReturn(true);
+        
+        final Cassandra cassandra = new Cassandra(session);
+        
+        for (int i = 0; i < 3; i++) {
+            cassandra.update("counts").val("hits", 1).where().eq("id", i).execute();
+        }
+        
+        final ArgumentCaptor<Statement> statements = ArgumentCaptor.forClass(Statement.class);
+        verify(session, times(3)).execute(statements.capture());
+        
+        for (Statement statement : statements.getAllValues()) {
+            assertThat(statement.isIdempotent(), is(false));
+        }
+        verify(table, times(1)).getColumns();
+    }
+    
+    static private ByteBuffer routingKey(Statement statement) {
+        return statement.getRoutingKey(ProtocolVersion.NEWEST_SUPPORTED, CodecRegistry.DEFAULT_INSTANCE);
+    }
+    
+}
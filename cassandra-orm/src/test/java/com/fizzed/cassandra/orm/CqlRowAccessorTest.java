@@ -0,0 +1,138 @@
+package com.fizzed.cassandra.orm;
+
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.Row;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CqlRowAccessorTest {
+
+    @Test
+    public void readsByIndexWithTypedGetters() {
+        final ColumnDefinitions columns = columns();
+        final CqlRowMapper<String> mapper = CqlRowMapper.<String>accessor(row ->
+            row.getString("name") + ":" + row.getLong("total") + ":" + row.getLong("count") + ":" + row.getInteger("missing", false))
+            .compile(columns);
+
+        final Row row1 = row("a", 1L, 2);
+        final Row row2 = row("b", 3L, null);
+
+        assertThat(mapper.apply(row1), is("a:1:2:null"));
+        assertThat(mapper.apply(row2), is("b:3:null:null"));
+        assertThat(mapper.apply(null), is(nullValue()));
+
+        // resolved once per result set, never by name per row
+        verify(columns, times(1)).getName(0);
+        verify(row1, never()).getObject(anyString());
+        verify(row1, times(1)).getLong(1);
+        verify(row1, times(1)).getInt(2);
+    }
+
+    @Test
+    public void indexedResolvesOnce() {
+        final ColumnDefinitions columns = columns();
+        final AtomicInteger resolved = new AtomicInteger();
+        final CqlRowMapper<String> mapper = CqlRowMapper.<String>indexed(accessor -> {
+            resolved.incrementAndGet();
+            final int name = accessor.indexOf("Name");
+            final int total = accessor.indexOf("TOTAL");
+            final int missing = accessor.indexOf("missing");
+            return row -> row.getString(name) + ":" + row.getLong(total, -1L) + ":" + row.getInteger(missing);
+        })
+        .compile(columns);
+
+        assertThat(mapper.apply(row("a", 1L, 2)), is("a:1:null"));
+        assertThat(mapper.apply(row("b", null, 3)), is("b:-1:null"));
+        assertThat(resolved.get(), is(1));
+    }
+
+    @Test
+    public void indexOfCachesAliases() {
+        final CqlRowAccessor accessor = new CqlRowAccessor(columns());
+
+        assertThat(accessor.indexOf("Count"), is(2));
+        assertThat(accessor.indexOf("Count"), is(2));
+        assertThat(accessor.indexOf("Missing"), is(-1));
+        assertThat(accessor.indexOf("Missing"), is(-1));
+        assertThat(accessor.indexOf("count"), is(2));
+    }
+
+    @Test
+    public void requiredColumn() {
+        final CqlRowAccessor accessor = new CqlRowAccessor(columns())
+            .bind(row("a", 1L, 2));
+
+        try {
+            accessor.getLong("missing");
+            fail();
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        assertThat(accessor.hasColumn("NAME"), is(true));
+        assertThat(accessor.hasColumn("missing"), is(false));
+    }
+
+    @Test
+    public void primitives() {
+        final ColumnDefinitions columns = columns();
+        when(columns.getIndexOf("total")).thenReturn(1);
+        when(columns.getIndexOf("count")).thenReturn(2);
+        when(columns.getIndexOf("missing")).thenReturn(-1);
+
+        final Row row = row("a", null, 7);
+        when(row.getColumnDefinitions()).thenReturn(columns);
+
+        assertThat(DateTypes.javaLong(row, "total", -1L), is(-1L));
+        assertThat(DateTypes.javaLong(row, "count", -1L), is(7L));
+        assertThat(DateTypes.javaInteger(row, "count", -1), is(7));
+        assertThat(new CqlRowAccessor(columns).bind(row).getLong("count", -1L), is(7L));
+
+        try {
+            DateTypes.javaLong(row, "missing", -1L);
+            fail();
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        verify(row, never()).getObject(anyString());
+        verify(row, never()).getObject(2);
+    }
+
+    static private ColumnDefinitions columns() {
+        final ColumnDefinitions columns = mock(ColumnDefinitions.class);
+        when(columns.size()).thenReturn(3);
+        when(columns.getName(0)).thenReturn("name");
+        when(columns.getType(0)).thenReturn(DataType.text());
+        when(columns.getName(1)).thenReturn("total");
+        when(columns.getType(1)).thenReturn(DataType.bigint());
+        when(columns.getName(2)).thenReturn("count");
+        when(columns.getType(2)).thenReturn(DataType.cint());
+        return columns;
+    }
+
+    static private Row row(String name, Long total, Integer count) {
+        final Row row = mock(Row.class);
+        when(row.isNull(0)).thenReturn(name == null);
+        when(row.getString(0)).thenReturn(name);
+        when(row.isNull(1)).thenReturn(total == null);
+        when(row.getLong(1)).thenReturn(total != null ? total : 0L);
+        when(row.isNull(2)).thenReturn(count == null);
+        when(row.getInt(2)).thenReturn(count != null ? count : 0);
+        return row;
+    }
+
+}
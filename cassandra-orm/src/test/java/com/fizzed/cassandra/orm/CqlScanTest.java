@@ -0,0 +1,352 @@
+package com.fizzed.cassandra.orm;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ColumnMetadata;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.ExecutionInfo;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.KeyspaceMetadata;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.MockDriver;
+import com.datastax.driver.core.PagingState;
+import com.datastax.driver.core.PreparedId;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.TableMetadata;
+import com.datastax.driver.core.TokenRange;
+import com.datastax.driver.core.exceptions.OperationTimedOutException;
+import com.google.common.util.concurrent.AbstractFuture;
+import com.google.common.util.concurrent.Futures;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CqlScanTest {
+
+    private final Cassandra cassandra = new Cassandra(null);
+    private final Host h1 = host("h1");
+    private final Host h2 = host("h2");
+    private final Host h3 = host("h3");
+    private final Map<TokenRange,List<Host>> ring = new LinkedHashMap<>();
+    private final List<BoundStatement> executed = new ArrayList<>();
+
+    @Before
+    public void before() {
+        // a ring of 3 ranges, the last wrapping around, each on 2 of 3 hosts
+        this.ring.put(MockDriver.tokenRange(-100, 0), asList(this.h1, this.h2));
+        this.ring.put(MockDriver.tokenRange(0, 100), asList(this.h2, this.h3));
+        this.ring.put(MockDriver.tokenRange(100, -100), asList(this.h3, this.h1));
+    }
+
+    @Test
+    public void cql() {
+        final CqlScan<?> scan = this.cassandra.scan("test")
+            .columns("a,b");
+
+        assertThat(scan.cql(asList("a", "b"), false), is("SELECT a,b FROM test WHERE token(a,b)>? AND token(a,b)<=?"));
+        assertThat(scan.cql(asList("a"), true), is("SELECT a,b FROM test WHERE token(a)>?"));
+    }
+
+    @Test
+    public void requiresTableMetadata() {
+        try {
+            this.cassandra.scan("test")
+                .executeAsync(row -> {});
+            fail();
+        }
+        catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void scansEveryRange() {
+        final Session session = this.session(statement -> completed(page(1, null)));
+
+        final List<Row> rows = new ArrayList<>();
+        final long count = new Cassandra(session).scan("test")
+            .execute(row -> {
+                synchronized (rows) {
+                    rows.add(row);
+                }
+            });
+
+        // the wrapped range is unwrapped in 2
+        assertThat(count, is(4L));
+        assertThat(rows.size(), is(4));
+        assertThat(this.executed.size(), is(4));
+
+        assertRange(this.executed.get(0), -100L, 0L);
+        assertRange(this.executed.get(1), 0L, 100L);
+        // (100, min] has no upper bound, (min, -100] does
+        assertRange(this.executed.get(2), 100L, null);
+        assertThat(this.executed.get(2).preparedStatement().getQueryString(), is("SELECT * FROM test WHERE token(id)>?"));
+        assertRange(this.executed.get(3), Long.MIN_VALUE, -100L);
+    }
+
+    @Test
+    public void splitsRanges() {
+        final Session session = this.session(statement -> completed(page(1, null)));
+
+        final long count = new Cassandra(session).scan("test")
+            .setSplitsPerRange(2)
+            .execute(row -> {});
+
+        // each range in 2, the first half of the wrapped one still wraps
+        // (and is unwrapped in 2)
+        assertThat(count, is(7L));
+        assertRange(this.executed.get(0), -100L, -50L);
+        assertRange(this.executed.get(1), -50L, 0L);
+        assertRange(this.executed.get(2), 0L, 50L);
+        assertRange(this.executed.get(3), 50L, 100L);
+        assertRange(this.executed.get(4), 100L, null);
+        assertRange(this.executed.get(5), Long.MIN_VALUE, Long.MIN_VALUE + 1);
+        assertRange(this.executed.get(6), Long.MIN_VALUE + 1, -100L);
+
+        // every token scanned once: each range starts where the previous ended
+        for (int i = 1; i < 4; i++) {
+            assertThat(this.executed.get(i).getLong(0), is(this.executed.get(i - 1).getLong(1)));
+        }
+    }
+
+    @Test
+    public void routesToReplicas() {
+        // h2 is down
+        when(this.h2.isUp()).thenReturn(false);
+
+        final Session session = this.session(statement -> completed(page(1, null)));
+
+        new Cassandra(session).scan("test")
+            .execute(row -> {});
+
+        // each split on a replica that is up, spread by its position
+        assertThat(this.executed.get(0).getHost(), is(this.h1));
+        assertThat(this.executed.get(1).getHost(), is(this.h3));
+        assertThat(this.executed.get(2).getHost(), is(this.h3));
+        assertThat(this.executed.get(3).getHost(), is(this.h1));
+    }
+
+    @Test
+    public void resumesFailedRangeFromPagingState() {
+        final byte[] rawPagingState = new byte[] { 1, 2, 3 };
+
+        final Session session = this.session(statement -> {
+            if (statement.getLong(0) != -100L) {
+                return completed(page(1, null));
+            }
+            if (MockDriver.pagingState(statement) != null) {
+                // the retry, resumed from the last page
+                return completed(page(2, null));
+            }
+            // a first page, then fails fetching the next
+            final ResultSet rs = page(3, MockDriver.pagingState(rawPagingState, statement));
+            when(rs.fetchMoreResults()).thenReturn(Futures.immediateFailedFuture(
+                new OperationTimedOutException(null, "timed out")));
+            return completed(rs);
+        });
+
+        final long count = new Cassandra(session).scan("test")
+            .setMaxRetries(1)
+            .execute(row -> {});
+
+        // 3 rows of the first page and 2 of the resumed one, 1 of each other
+        assertThat(count, is(8L));
+        assertThat(this.executed.size(), is(5));
+
+        // retried right after failing
+        final BoundStatement retry = this.executed.get(1);
+        assertRange(retry, -100L, 0L);
+        assertThat(MockDriver.pagingState(retry), is(ByteBuffer.wrap(rawPagingState)));
+        assertThat(MockDriver.pagingState(this.executed.get(0)), is(nullValue()));
+        // on the next replica
+        assertThat(this.executed.get(0).getHost(), is(this.h1));
+        assertThat(retry.getHost(), is(this.h2));
+    }
+
+    @Test
+    public void failsOnceRetriesExhausted() {
+        final Session session = this.session(statement -> failed(new OperationTimedOutException(null, "timed out")));
+
+        try {
+            new Cassandra(session).scan("test")
+                .setMaxRetries(1)
+                .setConcurrency(1)
+                .execute(row -> {});
+            fail();
+        }
+        catch (OperationTimedOutException e) {
+            // expected
+        }
+
+        // the first range, then its retry
+        assertThat(this.executed.size(), is(2));
+    }
+
+    @Test
+    public void boundedConcurrency() throws Exception {
+        final List<TestResultSetFuture> pending = new ArrayList<>();
+        final Session session = this.session(statement -> {
+            final TestResultSetFuture future = new TestResultSetFuture();
+            pending.add(future);
+            return future;
+        });
+
+        final CompletableFuture<Long> future = new Cassandra(session).scan("test")
+            .setConcurrency(2)
+            .executeAsync(row -> {});
+
+        assertThat(this.executed.size(), is(2));
+
+        // each range completed starts the next
+        pending.get(0).set(page(1, null));
+        assertThat(this.executed.size(), is(3));
+        pending.get(1).set(page(1, null));
+        assertThat(this.executed.size(), is(4));
+        assertThat(future.isDone(), is(false));
+
+        pending.get(2).set(page(1, null));
+        pending.get(3).set(page(1, null));
+
+        assertThat(future.get(), is(4L));
+        assertThat(this.executed.size(), is(4));
+    }
+
+    private Session session(Function<BoundStatement,ResultSetFuture> responder) {
+        final Session session = mock(Session.class);
+        final Cluster cluster = mock(Cluster.class);
+        final Metadata metadata = mock(Metadata.class);
+        final KeyspaceMetadata keyspace = mock(KeyspaceMetadata.class);
+        final TableMetadata table = mock(TableMetadata.class);
+        final ColumnMetadata id = mock(ColumnMetadata.class);
+        when(id.getName()).thenReturn("id");
+        when(session.getLoggedKeyspace()).thenReturn("ks");
+        when(session.getCluster()).thenReturn(cluster);
+        when(cluster.getMetadata()).thenReturn(metadata);
+        when(metadata.getKeyspace("ks")).thenReturn(keyspace);
+        when(keyspace.getName()).thenReturn("ks");
+        when(keyspace.getTable("test")).thenReturn(table);
+        when(table.getKeyspace()).thenReturn(keyspace);
+        when(table.getPartitionKey()).thenReturn(singletonList(id));
+        when(metadata.getTokenRanges()).thenReturn(new LinkedHashSet<>(this.ring.keySet()));
+        for (Map.Entry<TokenRange,List<Host>> entry : this.ring.entrySet()) {
+            when(metadata.getReplicas("\"ks\"", entry.getKey())).thenReturn(new LinkedHashSet<>(entry.getValue()));
+        }
+
+        when(session.prepareAsync(anyString())).thenAnswer(i -> {
+            final String cql = i.getArgument(0);
+            // a token per bound of the range
+            final PreparedId preparedId = cql.contains("<=")
+                ? MockDriver.preparedId(new byte[] { 2 }, DataType.bigint(), DataType.bigint())
+                : MockDriver.preparedId(new byte[] { 1 }, DataType.bigint());
+            final PreparedStatement ps = mock(PreparedStatement.class);
+            when(ps.getQueryString()).thenReturn(cql);
+            when(ps.getPreparedId()).thenReturn(preparedId);
+            when(ps.getVariables()).thenReturn(MockDriver.variables(preparedId));
+            when(ps.getCodecRegistry()).thenReturn(CodecRegistry.DEFAULT_INSTANCE);
+            when(ps.bind()).thenAnswer(j -> new BoundStatement(ps));
+            return Futures.immediateFuture(ps);
+        });
+
+        when(session.executeAsync(any(Statement.class))).thenAnswer(i -> {
+            final BoundStatement statement = i.getArgument(0);
+            synchronized (this.executed) {
+                this.executed.add(statement);
+            }
+            return responder.apply(statement);
+        });
+
+        return session;
+    }
+
+    /**
+     * @param rows The number of rows of the page
+     * @param pagingState The paging state of the next page (or null if last)
+     */
+    static private ResultSet page(int rows, PagingState pagingState) {
+        final ResultSet rs = mock(ResultSet.class);
+        final ExecutionInfo executionInfo = mock(ExecutionInfo.class);
+        when(rs.getAvailableWithoutFetching()).thenReturn(rows);
+        when(rs.one()).thenAnswer(i -> mock(Row.class));
+        when(rs.isFullyFetched()).thenReturn(pagingState == null);
+        when(rs.getExecutionInfo()).thenReturn(executionInfo);
+        when(executionInfo.getPagingState()).thenReturn(pagingState);
+        return rs;
+    }
+
+    static private void assertRange(BoundStatement statement, Long start, Long end) {
+        assertThat(statement.getLong(0), is(start));
+        if (end != null) {
+            assertThat(statement.getLong(1), is(end));
+        } else {
+            assertThat(statement.preparedStatement().getVariables().size(), is(1));
+        }
+    }
+
+    static private Host host(String name) {
+        final Host host = mock(Host.class);
+        when(host.isUp()).thenReturn(true);
+        when(host.toString()).thenReturn(name);
+        return host;
+    }
+
+    static private ResultSetFuture completed(ResultSet rs) {
+        final TestResultSetFuture future = new TestResultSetFuture();
+        future.set(rs);
+        return future;
+    }
+
+    static private ResultSetFuture failed(Throwable t) {
+        final TestResultSetFuture future = new TestResultSetFuture();
+        future.setException(t);
+        return future;
+    }
+
+    static private class TestResultSetFuture extends AbstractFuture<ResultSet> implements ResultSetFuture {
+
+        @Override
+        public boolean set(ResultSet value) {
+            return super.set(value);
+        }
+
+        @Override
+        public boolean setException(Throwable t) {
+            return super.setException(t);
+        }
+
+        @Override
+        public ResultSet getUninterruptibly() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ResultSet getUninterruptibly(long timeout, TimeUnit unit) {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+}
@@ -0,0 +1,73 @@
+package com.fizzed.cassandra.orm;
+
+import com.fizzed.cassandra.orm.CqlQuery.Command;
+import com.fizzed.cassandra.orm.CqlQuery.Parameter;
+import static java.util.Arrays.asList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+public class CqlSlowQueryLogTest {
+
+    static private final CqlBoundQuery QUERY = new CqlBoundQuery(
+        Command.SELECT,
+        "SELECT * FROM users WHERE id=? AND email=?",
+        "users",
+        asList(new Parameter("id", 1), new Parameter("email", "joe@example.com")),
+        null,
+        null);
+
+    @Test
+    public void thresholds() {
+        final CqlSlowQueryLog slowQueryLog = new CqlSlowQueryLog();
+
+        // disabled by default
+        assertThat(slowQueryLog.isSlow("users", Long.MAX_VALUE - 1), is(false));
+
+        slowQueryLog.setThresholdMillis(100L);
+
+        assertThat(slowQueryLog.isSlow("users", TimeUnit.MILLISECONDS.toNanos(99)), is(false));
+        assertThat(slowQueryLog.isSlow("users", TimeUnit.MILLISECONDS.toNanos(100)), is(true));
+
+        slowQueryLog.setThresholdMillis("users", 10L);
+        slowQueryLog.setThresholdMillis("events", 1000L);
+
+        assertThat(slowQueryLog.isSlow("users", TimeUnit.MILLISECONDS.toNanos(10)), is(true));
+        assertThat(slowQueryLog.isSlow("events", TimeUnit.MILLISECONDS.toNanos(500)), is(false));
+        assertThat(slowQueryLog.isSlow("other", TimeUnit.MILLISECONDS.toNanos(50)), is(false));
+    }
+
+    @Test
+    public void recordsRedactedAndRateLimited() {
+        final CqlSlowQueryLog slowQueryLog = new CqlSlowQueryLog()
+            .setMaxPerSecond(2)
+            .setBufferSize(2)
+            .addUnredactedColumns("id");
+
+        for (int i = 1; i <= 3; i++) {
+            slowQueryLog.record(i, QUERY, TimeUnit.MILLISECONDS.toNanos(250), null, null);
+        }
+
+        final List<CqlSlowQueryLog.Record> recent = slowQueryLog.getRecent();
+
+        // at most 2 within a second (unless it just rolled over)
+        assertThat(recent.size(), is(2));
+
+        final CqlSlowQueryLog.Record record = recent.get(recent.get(0).getId() == 3 ? 1 : 0);
+
+        assertThat(record.getTableName(), is("users"));
+        assertThat(record.getCommand(), is(Command.SELECT));
+        assertThat(record.getElapsedMillis(), is(250L));
+        assertThat(record.getParameters(), is("id=1, email=<String>"));
+        assertThat(record.getCoordinator(), is(nullValue()));
+        assertThat(record.isMorePages(), is(false));
+
+        slowQueryLog.clear();
+
+        assertThat(slowQueryLog.getRecent().isEmpty(), is(true));
+    }
+
+}
@@ -0,0 +1,114 @@
+package com.fizzed.cassandra.orm;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonMap;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CqlTemplateTest {
+
+    @Test
+    public void bindsPositionally() {
+        final Session session = mock(Session.class);
+        final PreparedStatement ps = mock(PreparedStatement.class);
+        final BoundStatement bs = mock(BoundStatement.class);
+        final ResultSet rs = mock(ResultSet.class);
+        final Row row = mock(Row.class);
+        when(session.prepare(any(String.class))).thenReturn(ps);
+        when(ps.bind(any())).thenReturn(bs);
+        when(session.execute(any(Statement.class))).thenReturn(rs);
+        when(rs.wasApplied()).thenReturn(true);
+        when(rs.one()).thenReturn(row);
+
+        final Cassandra cassandra = new Cassandra(session);
+
+        final CqlTemplate<Row> template = cassandra.compile("test", q -> q
+            .where()
+            .eq("a", CqlTemplate.BIND)
+            .eq("b", "fixed")
+            .eq("c", CqlTemplate.BIND));
+
+        assertThat(template.getCql(), is("SELECT * FROM test WHERE a=? AND b=? AND c=?"));
+        assertThat(template.getParameterNames(), is(asList("a", "c")));
+
+        assertThat(template.findOne(1, 2), is(row));
+        assertThat(template.findOne(3, 4), is(row));
+
+        // prepared once, never rebuilt
+        verify(session, times(1)).prepare("SELECT * FROM test WHERE a=? AND b=? AND c=?");
+        verify(ps).bind(1, "fixed", 2);
+        verify(ps).bind(3, "fixed", 4);
+
+        // reusable binder
+        final CqlTemplate<Row>.Binder binder = template.binder();
+        binder.set(0, 5).set(1, 6).execute();
+        binder.set(1, 7).execute();
+
+        verify(ps).bind(5, "fixed", 6);
+        verify(ps).bind(5, "fixed", 7);
+
+        try {
+            template.findOne(1);
+            fail();
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        try {
+            template.binder().set(0, 1).execute();
+            fail();
+        }
+        catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void colMappersAndUnsetNulls() {
+        final Session session = mock(Session.class);
+        final PreparedStatement ps = mock(PreparedStatement.class);
+        final BoundStatement bs = mock(BoundStatement.class);
+        final ResultSet rs = mock(ResultSet.class);
+        when(session.prepare(any(String.class))).thenReturn(ps);
+        when(ps.bind(any())).thenReturn(bs);
+        when(session.execute(any(Statement.class))).thenReturn(rs);
+        when(rs.wasApplied()).thenReturn(true);
+
+        final Cassandra cassandra = new Cassandra(session);
+
+        final CqlTemplate<Row> template = cassandra.upsert("test")
+            .colMappers(singletonMap("b", v -> v.toString().toUpperCase()))
+            .primaryKeys(asList("a"))
+            .setUnsetNulls(true)
+            .val("a", CqlTemplate.BIND)
+            .val("b", CqlTemplate.BIND)
+            .val("c", CqlTemplate.BIND)
+            .compile();
+
+        assertThat(template.getCql(), is("INSERT INTO test (a,b,c) VALUES (?,?,?)"));
+
+        template.execute(1, "x", null);
+
+        verify(ps).bind(1, "X", null);
+        verify(bs).unset(2);
+        verify(bs, never()).unset(0);
+        verify(bs, never()).unset(1);
+        assertThat(cassandra.getTombstonesAvoided(), is(1L));
+    }
+
+}
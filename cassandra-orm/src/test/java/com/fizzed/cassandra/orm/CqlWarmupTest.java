@@ -0,0 +1,154 @@
+package com.fizzed.cassandra.orm;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.ColumnMetadata;
+import com.datastax.driver.core.KeyspaceMetadata;
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.TableMetadata;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.SettableFuture;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CqlWarmupTest {
+
+    @Test
+    public void preparesIntoCache() {
+        final Session session = mock(Session.class);
+        when(session.prepareAsync("a")).thenReturn(Futures.immediateFuture(mock(PreparedStatement.class)));
+        when(session.prepareAsync("b")).thenReturn(Futures.immediateFailedFuture(new IllegalStateException("bad")));
+        when(session.prepareAsync("c")).thenReturn(Futures.immediateFuture(mock(PreparedStatement.class)));
+
+        final PreparedStatementCache cache = new PreparedStatementCache(session);
+
+        final CqlWarmup.Result result = new CqlWarmup(1L, session, cache, null)
+            .setOpenPools(false)
+            .addCql("a")
+            .addCql("b")
+            .addCql("c")
+            .execute();
+
+        assertThat(result.getStatements(), is(3));
+        assertThat(result.getPrepared(), is(2));
+        assertThat(result.getFailed(), is(1));
+        assertThat(result.isComplete(), is(true));
+        assertThat(cache.getCqls(), is(asList("a", "c")));
+    }
+
+    @Test
+    public void noPoolsWithoutCluster() {
+        // e.g. an in-memory session
+        final Session session = mock(Session.class);
+        when(session.prepareAsync("a")).thenReturn(Futures.immediateFuture(mock(PreparedStatement.class)));
+
+        final CqlWarmup.Result result = new CqlWarmup(1L, session, new PreparedStatementCache(session), null)
+            .addCql("a")
+            .execute();
+
+        assertThat(result.getPrepared(), is(1));
+        assertThat(result.getHosts(), is(0));
+        assertThat(result.isComplete(), is(true));
+    }
+
+    @Test
+    public void timeBudget() {
+        final Session session = mock(Session.class);
+        when(session.prepareAsync("a")).thenReturn(SettableFuture.create());
+
+        final CqlWarmup.Result result = new CqlWarmup(1L, session, new PreparedStatementCache(session), null)
+            .setOpenPools(false)
+            .setTimeoutMillis(50L)
+            .addCql("a")
+            .execute();
+
+        assertThat(result.getPrepared(), is(0));
+        assertThat(result.isComplete(), is(false));
+    }
+
+    @Test
+    public void modelShapes() {
+        final Session session = usersSession();
+
+        final CqlModel<Object> model = new CqlModel<>()
+            .setTableName("users");
+
+        final CqlWarmup warmup = new CqlWarmup(1L, session, new PreparedStatementCache(session), singletonMap(Object.class, model));
+
+        assertThat(warmup.modelCqls(Object.class, model), is(asList(
+            "SELECT * FROM users WHERE id=?",
+            "DELETE FROM users WHERE id=?",
+            "INSERT INTO users (id,name) VALUES (?,?)")));
+
+        // the same shapes as the queries of the model
+        final Cassandra cassandra = new Cassandra(null);
+        cassandra.registerModel(Object.class, model.setPrimaryKeys(asList("id")));
+
+        assertThat(warmup.getCqls(), hasItem(cassandra.select(Object.class).where().eq("id", 1).build().getCql()));
+        assertThat(warmup.getCqls(), hasItem(cassandra.delete(Object.class).where().eq("id", 1).build().getCql()));
+        assertThat(warmup.getCqls(), hasItem(cassandra.insert(Object.class).val("id", 1).val("name", "a").build().getCql()));
+    }
+
+    static public class User {
+        private Integer id;
+        private String name;
+    }
+
+    @Test
+    public void modelInsertFollowsValueBinder() {
+        final Session session = usersSession();
+
+        // binds in another order than the table metadata (id, name)
+        final CqlModel<User> model = new CqlModel<User>()
+            .setTableName("users")
+            .setPrimaryKeys(asList("id"))
+            .setValueBinder((e, q) -> q.val("name", e.name).val("id", e.id));
+
+        final CqlWarmup warmup = new CqlWarmup(1L, session, new PreparedStatementCache(session), singletonMap(User.class, model));
+
+        final Cassandra cassandra = new Cassandra(session);
+        cassandra.registerModel(User.class, model);
+
+        final User user = new User();
+        user.id = 1;
+        user.name = "a";
+
+        final String insert = cassandra.insert(User.class).vals(user).build().getCql();
+
+        assertThat(insert, is("INSERT INTO users (name,id) VALUES (?,?)"));
+        assertThat(warmup.modelCqls(User.class, model).get(2), is(insert));
+    }
+
+    static private Session usersSession() {
+        final Session session = mock(Session.class);
+        final Cluster cluster = mock(Cluster.class);
+        final Metadata metadata = mock(Metadata.class);
+        final KeyspaceMetadata keyspace = mock(KeyspaceMetadata.class);
+        final TableMetadata table = mock(TableMetadata.class);
+        final ColumnMetadata id = column("id");
+        final ColumnMetadata name = column("name");
+        when(session.getLoggedKeyspace()).thenReturn("ks");
+        when(session.getCluster()).thenReturn(cluster);
+        when(cluster.getMetadata()).thenReturn(metadata);
+        when(metadata.getKeyspace("ks")).thenReturn(keyspace);
+        when(keyspace.getTable("users")).thenReturn(table);
+        when(table.getPrimaryKey()).thenReturn(singletonList(id));
+        when(table.getColumns()).thenReturn(asList(id, name));
+        return session;
+    }
+
+    static private ColumnMetadata column(String name) {
+        final ColumnMetadata column = mock(ColumnMetadata.class);
+        when(column.getName()).thenReturn(name);
+        return column;
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.fizzed.cassandra.orm;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import java.util.ArrayList;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import java.util.Iterator;
+import java.util.List;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class FindIteratorTest {
+
+    @Test
+    public void prefetchesNextPage() {
+        final ResultSet rs = resultSet(asList(1, 2, 3, 4, 5));
+
+        final FindIterator<Object> it = new FindIterator<>(singletonList(rs), row -> row.getObject(0), 2);
+
+        final List<Object> values = new ArrayList<>();
+        it.forEach(values::add);
+
+        assertThat(values, contains(1, 2, 3, 4, 5));
+        assertThat(it.getCount(), is(5L));
+        // 2, 1 and 0 rows left
+        verify(rs, times(3)).fetchMoreResults();
+    }
+
+    @Test
+    public void noPrefetchByDefault() {
+        final ResultSet rs = resultSet(asList(1, 2, 3));
+
+        final FindIterator<Object> it = new FindIterator<>(rs, row -> row.getObject(0));
+
+        final List<Object> values = new ArrayList<>();
+        it.forEach(values::add);
+
+        assertThat(values, contains(1, 2, 3));
+        verify(rs, never()).fetchMoreResults();
+    }
+
+    @Test
+    public void iteratesResultSetsInOrder() {
+        final FindIterator<Object> it = new FindIterator<>(
+            asList(resultSet(asList(1, 2)), resultSet(new ArrayList<>()), resultSet(asList(3))), row -> row.getObject(0), 1);
+
+        final List<Object> values = new ArrayList<>();
+        it.forEach(values::add);
+
+        assertThat(values, contains(1, 2, 3));
+    }
+
+    static private ResultSet resultSet(List<?> values) {
+        final List<Row> remaining = new ArrayList<>();
+        for (Object value : values) {
+            final Row row = mock(Row.class);
+            when(row.getObject(0)).thenReturn(value);
+            remaining.add(row);
+        }
+
+        // simulates a page that is never fully fetched
+        final ResultSet rs = mock(ResultSet.class);
+        when(rs.isFullyFetched()).thenReturn(false);
+        when(rs.getAvailableWithoutFetching()).thenAnswer(i -> remaining.size());
+        when(rs.iterator()).thenAnswer(i -> new Iterator<Row>() {
+            @Override
+            public boolean hasNext() {
+                return !remaining.isEmpty();
+            }
+
+            @Override
+            public Row next() {
+                return remaining.remove(0);
+            }
+        });
+        return rs;
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.fizzed.cassandra.orm;
+
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void percentiles() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        for (long i = 1; i <= 10000; i++) {
+            histogram.record(i * 1000L);
+        }
+
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertThat(snapshot.getCount(), is(10000L));
+        assertThat(snapshot.getMax(), is(10000000L));
+        assertThat(snapshot.getValueAtPercentile(50.0d), allOf(greaterThanOrEqualTo(5000000L), lessThanOrEqualTo(5160000L)));
+        assertThat(snapshot.getValueAtPercentile(99.0d), allOf(greaterThanOrEqualTo(9900000L), lessThanOrEqualTo(10000000L)));
+        assertThat(snapshot.getValueAtPercentile(100.0d), is(10000000L));
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+
+        histogram.record(0L);
+        histogram.record(7L);
+        histogram.record(31L);
+
+        assertThat(histogram.snapshot().getValueAtPercentile(50.0d), is(7L));
+        assertThat(histogram.snapshot().getValueAtPercentile(100.0d), is(31L));
+
+        histogram.reset();
+
+        assertThat(histogram.getCount(), is(0L));
+        assertThat(histogram.snapshot().getValueAtPercentile(99.0d), is(0L));
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.fizzed.cassandra.orm;
+
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.policies.SpeculativeExecutionPolicy.SpeculativeExecutionPlan;
+import java.util.concurrent.TimeUnit;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import org.junit.Test;
+
+public class LatencySpeculativeExecutionPolicyTest {
+
+    @Test
+    public void speculatesAfterPercentile() {
+        final LatencySpeculativeExecutionPolicy policy = new LatencySpeculativeExecutionPolicy(90.0d, 2)
+            .setMinRecordedValues(10);
+
+        final Statement idempotent = new SimpleStatement("SELECT * FROM test").setIdempotent(true);
+
+        // nothing known yet
+        assertThat(policy.newPlan("ks", idempotent).nextExecution(null), is(-1L));
+
+        for (int i = 1; i <= 100; i++) {
+            policy.update(null, idempotent, null, TimeUnit.MILLISECONDS.toNanos(i));
+        }
+
+        // neither failures nor non-idempotent statements are representative
+        policy.update(null, idempotent, new RuntimeException(), TimeUnit.SECONDS.toNanos(10));
+        policy.update(null, new SimpleStatement("INSERT"), null, TimeUnit.SECONDS.toNanos(10));
+
+        policy.rollInterval();
+
+        assertThat(policy.getDelayMillis(), is(90L));
+
+        final SpeculativeExecutionPlan plan = policy.newPlan("ks", idempotent);
+
+        assertThat(plan.nextExecution(null), is(90L));
+        assertThat(plan.nextExecution(null), is(90L));
+        assertThat(plan.nextExecution(null), is(-1L));
+
+        // too few values in the next interval keeps the last delay
+        policy.update(null, idempotent, null, TimeUnit.MILLISECONDS.toNanos(1));
+        policy.rollInterval();
+
+        assertThat(policy.getDelayMillis(), is(90L));
+    }
+
+    @Test
+    public void minDelay() {
+        final LatencySpeculativeExecutionPolicy policy = new LatencySpeculativeExecutionPolicy(99.0d, 1)
+            .setMinRecordedValues(1)
+            .setMinDelayMillis(20);
+
+        policy.update(null, new SimpleStatement("SELECT").setIdempotent(true), null, TimeUnit.MILLISECONDS.toNanos(2));
+        policy.rollInterval();
+
+        assertThat(policy.getDelayMillis(), is(20L));
+    }
+
+}
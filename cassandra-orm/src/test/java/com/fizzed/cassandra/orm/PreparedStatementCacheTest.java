@@ -0,0 +1,105 @@
+package com.fizzed.cassandra.orm;
+
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.Session;
+import com.google.common.util.concurrent.Futures;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.Test;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PreparedStatementCacheTest {
+
+    private Session session;
+
+    @Before
+    public void before() {
+        this.session = mock(Session.class);
+        when(this.session.prepare("a")).thenReturn(mock(PreparedStatement.class));
+        when(this.session.prepare("b")).thenReturn(mock(PreparedStatement.class));
+        when(this.session.prepare("c")).thenReturn(mock(PreparedStatement.class));
+    }
+
+    @Test
+    public void preparesOnlyOnce() {
+        final PreparedStatementCache cache = new PreparedStatementCache(this.session, 10);
+
+        final PreparedStatement ps1 = cache.get("a");
+        final PreparedStatement ps2 = cache.get("a");
+
+        assertThat(ps2, is(sameInstance(ps1)));
+        assertThat(cache.getMisses(), is(1L));
+        assertThat(cache.getHits(), is(1L));
+        verify(this.session, times(1)).prepare("a");
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        final PreparedStatementCache cache = new PreparedStatementCache(this.session, 2);
+
+        final PreparedStatement a = cache.get("a");
+        cache.get("b");
+        cache.get("a");     // a is now most recently used
+        cache.get("c");     // evicts b
+
+        assertThat(cache.size(), is(2));
+        assertThat(cache.getEvictions(), is(1L));
+        assertThat(cache.get("a"), is(sameInstance(a)));
+
+        cache.get("b");     // must be prepared again
+
+        verify(this.session, times(2)).prepare("b");
+    }
+
+    @Test
+    public void failuresNotCached() {
+        when(this.session.prepare("bad")).thenThrow(new IllegalArgumentException("bad cql"));
+
+        final PreparedStatementCache cache = new PreparedStatementCache(this.session, 10);
+
+        try {
+            cache.get("bad");
+            fail();
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+
+        assertThat(cache.size(), is(0));
+        assertThat(cache.get("a"), is(not(sameInstance(null))));
+    }
+
+    @Test
+    public void getAsync() throws Exception {
+        final PreparedStatement ps = mock(PreparedStatement.class);
+        when(this.session.prepareAsync("d")).thenReturn(Futures.immediateFuture(ps));
+
+        final PreparedStatementCache cache = new PreparedStatementCache(this.session, 10);
+
+        assertThat(cache.getAsync("d").get(), is(sameInstance(ps)));
+        assertThat(cache.get("d"), is(sameInstance(ps)));
+        assertThat(cache.getMisses(), is(1L));
+        assertThat(cache.getHits(), is(1L));
+    }
+
+    @Test
+    public void shrinkMaxSize() {
+        final PreparedStatementCache cache = new PreparedStatementCache(this.session, 10);
+
+        cache.get("a");
+        cache.get("b");
+        cache.get("c");
+        cache.setMaxSize(1);
+
+        assertThat(cache.size(), is(1));
+        assertThat(cache.getEvictions(), is(2L));
+    }
+
+}
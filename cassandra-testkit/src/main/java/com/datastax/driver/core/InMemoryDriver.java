@@ -0,0 +1,77 @@
+package com.datastax.driver.core;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Access to the package-private parts of the driver an in-memory session needs
+ * to hand the driver's own types (rows, column definitions, prepared ids,
+ * paging states) back to its callers, so they behave exactly as with a real
+ * session. Not an API, only for com.fizzed.cassandra.testkit.
+ */
+public final class InMemoryDriver {
+
+    static public final ProtocolVersion PROTOCOL_VERSION = ProtocolVersion.V4;
+
+    private InMemoryDriver() {
+        // static only
+    }
+
+    static public DataType parseType(String cql) {
+        return DataTypeCqlNameParser.parse(cql, null, null, Collections.<String,UserType>emptyMap(),
+            Collections.<String,UserType>emptyMap(), false, false);
+    }
+
+    static public ColumnDefinitions.Definition definition(String keyspace, String table, String name, DataType type) {
+        return new ColumnDefinitions.Definition(keyspace, table, name, type);
+    }
+
+    static public ColumnDefinitions columnDefinitions(List<ColumnDefinitions.Definition> definitions, CodecRegistry codecRegistry) {
+        return new ColumnDefinitions(definitions.toArray(new ColumnDefinitions.Definition[0]), codecRegistry);
+    }
+
+    static public PreparedId preparedId(byte[] id, ColumnDefinitions variables, ColumnDefinitions resultColumns) {
+        return new PreparedId(
+            new PreparedId.PreparedMetadata(MD5Digest.wrap(id), variables),
+            new PreparedId.PreparedMetadata(MD5Digest.wrap(id), resultColumns),
+            null,
+            PROTOCOL_VERSION);
+    }
+
+    static public Row row(ColumnDefinitions columns, List<ByteBuffer> values) {
+        return ArrayBackedRow.fromData(columns, null, PROTOCOL_VERSION, values);
+    }
+
+    static public ExecutionInfo executionInfo(Statement statement, ByteBuffer pagingState,
+            List<String> warnings, CodecRegistry codecRegistry) {
+
+        return new ExecutionInfo(0, 0, Collections.<Host>singletonList(null), ConsistencyLevel.ONE,
+                Collections.<String,ByteBuffer>emptyMap())
+            .with(null, warnings, pagingState, statement, PROTOCOL_VERSION, codecRegistry);
+    }
+
+    static public CloseFuture closed() {
+        return CloseFuture.immediateFuture();
+    }
+
+    /**
+     * @param statement The statement
+     * @return The statement a {@link StatementWrapper} wraps (or itself)
+     */
+    static public Statement unwrap(Statement statement) {
+        while (statement instanceof StatementWrapper) {
+            statement = ((StatementWrapper)statement).getWrappedStatement();
+        }
+        return statement;
+    }
+
+    /**
+     * @param statement The statement
+     * @return The raw paging state it was set with (if any)
+     */
+    static public ByteBuffer pagingState(Statement statement) {
+        return statement.getPagingState();
+    }
+
+}
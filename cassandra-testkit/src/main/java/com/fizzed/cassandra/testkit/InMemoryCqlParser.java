@@ -0,0 +1,569 @@
+package com.fizzed.cassandra.testkit;
+
+import com.datastax.driver.core.InMemoryDriver;
+import com.datastax.driver.core.exceptions.InvalidQueryException;
+import com.datastax.driver.core.exceptions.SyntaxError;
+import com.fizzed.cassandra.testkit.InMemoryStatement.Bind;
+import com.fizzed.cassandra.testkit.InMemoryStatement.ConditionalWrite;
+import com.fizzed.cassandra.testkit.InMemoryStatement.Literal;
+import com.fizzed.cassandra.testkit.InMemoryStatement.Relation;
+import com.fizzed.cassandra.testkit.InMemoryStatement.Term;
+import com.fizzed.cassandra.testkit.InMemoryStatement.TermList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses the subset of cql the ORM generates (and a test needs to set up its
+ * tables): SELECT, INSERT, UPDATE and DELETE with =, range and IN relations,
+ * IF NOT EXISTS, IF EXISTS and IF conditions, plus CREATE TABLE, DROP TABLE,
+ * TRUNCATE and USE. Anything else fails with a {@link SyntaxError}.
+ */
+class InMemoryCqlParser {
+
+    static private final Pattern UUID = Pattern.compile(
+        "[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}");
+
+    static private enum Type {
+        WORD,
+        QUOTED,
+        LITERAL,
+        SYMBOL,
+        END
+    }
+
+    static private class Token {
+
+        final Type type;
+        final String text;
+
+        Token(Type type, String text) {
+            this.type = type;
+            this.text = text;
+        }
+
+        boolean is(String keyword) {
+            return (this.type == Type.WORD || this.type == Type.SYMBOL) && this.text.equalsIgnoreCase(keyword);
+        }
+
+        @Override
+        public String toString() {
+            return this.type == Type.END ? "<end>" : this.text;
+        }
+
+    }
+
+    private final String cql;
+    private final List<Token> tokens;
+    private int pos;
+    private InMemoryStatement statement;
+
+    private InMemoryCqlParser(String cql) {
+        this.cql = cql;
+        this.tokens = tokenize(cql);
+    }
+
+    static InMemoryStatement parse(String cql) {
+        return new InMemoryCqlParser(cql).statement();
+    }
+
+    static private List<Token> tokenize(String cql) {
+        final List<Token> tokens = new ArrayList<>();
+        final Matcher uuid = UUID.matcher(cql);
+        final int n = cql.length();
+        int i = 0;
+        while (i < n) {
+            final char c = cql.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (uuid.region(i, n).lookingAt()) {
+                tokens.add(new Token(Type.LITERAL, uuid.group()));
+                i = uuid.end();
+            } else if (c == '\'' || c == '"') {
+                // quotes are escaped by doubling them
+                final StringBuilder sb = new StringBuilder();
+                int j = i + 1;
+                while (true) {
+                    if (j >= n) {
+                        throw new SyntaxError(null, "Unterminated quote in: " + cql);
+                    }
+                    if (cql.charAt(j) == c) {
+                        if (j + 1 < n && cql.charAt(j + 1) == c) {
+                            sb.append(c);
+                            j += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    sb.append(cql.charAt(j++));
+                }
+                if (c == '\'') {
+                    tokens.add(new Token(Type.LITERAL, cql.substring(i, j + 1)));
+                } else {
+                    tokens.add(new Token(Type.QUOTED, sb.toString()));
+                }
+                i = j + 1;
+            } else if (Character.isDigit(c) || (c == '-' && i + 1 < n && Character.isDigit(cql.charAt(i + 1)))) {
+                int j = i + 1;
+                while (j < n && (Character.isLetterOrDigit(cql.charAt(j)) || cql.charAt(j) == '.'
+                        || ((cql.charAt(j) == '-' || cql.charAt(j) == '+') && Character.toLowerCase(cql.charAt(j - 1)) == 'e'))) {
+                    j++;
+                }
+                tokens.add(new Token(Type.LITERAL, cql.substring(i, j)));
+                i = j;
+            } else if (Character.isLetter(c) || c == '_') {
+                int j = i + 1;
+                while (j < n && (Character.isLetterOrDigit(cql.charAt(j)) || cql.charAt(j) == '_' || cql.charAt(j) == '.')) {
+                    j++;
+                }
+                tokens.add(new Token(Type.WORD, cql.substring(i, j)));
+                i = j;
+            } else if ((c == '<' || c == '>' || c == '!') && i + 1 < n && cql.charAt(i + 1) == '=') {
+                tokens.add(new Token(Type.SYMBOL, cql.substring(i, i + 2)));
+                i += 2;
+            } else {
+                tokens.add(new Token(Type.SYMBOL, String.valueOf(c)));
+                i++;
+            }
+        }
+        tokens.add(new Token(Type.END, ""));
+        return tokens;
+    }
+
+    private Token peek() {
+        return this.tokens.get(this.pos);
+    }
+
+    private Token next() {
+        final Token token = this.tokens.get(this.pos);
+        if (token.type != Type.END) {
+            this.pos++;
+        }
+        return token;
+    }
+
+    private boolean accept(String keyword) {
+        if (this.peek().is(keyword)) {
+            this.pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(String keyword) {
+        if (!this.accept(keyword)) {
+            throw this.error("expecting " + keyword);
+        }
+    }
+
+    private SyntaxError error(String message) {
+        return new SyntaxError(null, "line 1: " + message + " at '" + this.peek() + "' in: " + this.cql);
+    }
+
+    private String identifier() {
+        final Token token = this.next();
+        switch (token.type) {
+            case WORD:
+                // unquoted identifiers are case insensitive
+                return token.text.toLowerCase(Locale.ROOT);
+            case QUOTED:
+                return token.text;
+            default:
+                this.pos--;
+                throw this.error("expecting an identifier");
+        }
+    }
+
+    private Term term() {
+        final Token token = this.next();
+        if (token.is("?")) {
+            final Bind bind = new Bind(this.statement.binds.size());
+            this.statement.binds.add(bind);
+            return bind;
+        }
+        if (token.type == Type.LITERAL || token.is("true") || token.is("false") || token.is("null")
+                || token.is("NaN") || token.is("Infinity")) {
+            return new Literal(token.text);
+        }
+        if (token.is("[") || token.is("{")) {
+            // a collection literal (parsed by the codec of its column)
+            final StringBuilder sb = new StringBuilder(token.text);
+            int depth = 1;
+            while (depth > 0) {
+                final Token t = this.next();
+                if (t.type == Type.END) {
+                    throw this.error("unterminated collection");
+                }
+                if (t.is("[") || t.is("{")) {
+                    depth++;
+                } else if (t.is("]") || t.is("}")) {
+                    depth--;
+                }
+                sb.append(t.type == Type.QUOTED ? "\"" + t.text + "\"" : t.text).append(' ');
+            }
+            return new Literal(sb.toString());
+        }
+        if (token.is(":")) {
+            throw this.error("named bind markers are not supported");
+        }
+        this.pos--;
+        throw this.error("expecting a value");
+    }
+
+    private InMemoryStatement statement() {
+        final InMemoryStatement s;
+        if (this.accept("SELECT")) {
+            s = this.select();
+        } else if (this.accept("INSERT")) {
+            s = this.insert();
+        } else if (this.accept("UPDATE")) {
+            s = this.update();
+        } else if (this.accept("DELETE")) {
+            s = this.delete();
+        } else if (this.accept("CREATE")) {
+            s = this.create();
+        } else if (this.accept("DROP")) {
+            s = this.drop();
+        } else if (this.accept("TRUNCATE")) {
+            this.accept("TABLE");
+            s = new InMemoryStatement.Schema("TRUNCATE", this.identifier(), false);
+        } else if (this.accept("USE")) {
+            s = new InMemoryStatement.Schema("USE", this.identifier(), false);
+        } else if (this.peek().is("ALTER") || this.peek().is("BEGIN") || this.peek().is("GRANT")) {
+            throw this.error(this.peek().text.toUpperCase(Locale.ROOT) + " is not supported");
+        } else {
+            throw this.error("unknown statement");
+        }
+        this.accept(";");
+        if (this.peek().type != Type.END) {
+            throw this.error("unexpected input");
+        }
+        return s;
+    }
+
+    private InMemoryStatement select() {
+        final List<String> columns = new ArrayList<>();
+        if (this.accept("DISTINCT")) {
+            throw this.error("DISTINCT is not supported");
+        }
+        if (!this.accept("*")) {
+            do {
+                columns.add(this.identifier());
+                if (this.peek().is("(") || this.peek().is("AS")) {
+                    throw this.error("functions and aliases are not supported");
+                }
+            } while (this.accept(","));
+        }
+        this.expect("FROM");
+
+        final InMemoryStatement.Select select = new InMemoryStatement.Select(this.identifier());
+        select.columns.addAll(columns);
+        this.statement = select;
+
+        if (this.accept("WHERE")) {
+            this.relations(select.where);
+        }
+        if (this.accept("GROUP")) {
+            throw this.error("GROUP BY is not supported");
+        }
+        if (this.accept("ORDER")) {
+            this.expect("BY");
+            do {
+                final String column = this.identifier();
+                final boolean descending = this.accept("DESC");
+                if (!descending) {
+                    this.accept("ASC");
+                }
+                select.orderBy.put(column, descending);
+            } while (this.accept(","));
+        }
+        if (this.accept("PER")) {
+            throw this.error("PER PARTITION LIMIT is not supported");
+        }
+        if (this.accept("LIMIT")) {
+            select.limit = this.term();
+        }
+        if (this.accept("ALLOW")) {
+            this.expect("FILTERING");
+            select.allowFiltering = true;
+        }
+        return select;
+    }
+
+    private InMemoryStatement insert() {
+        this.expect("INTO");
+        final InMemoryStatement.Insert insert = new InMemoryStatement.Insert(this.identifier());
+        this.statement = insert;
+
+        this.expect("(");
+        do {
+            insert.columns.add(this.identifier());
+        } while (this.accept(","));
+        this.expect(")");
+
+        if (this.accept("JSON")) {
+            throw this.error("INSERT JSON is not supported");
+        }
+        this.expect("VALUES");
+        this.expect("(");
+        do {
+            insert.terms.add(this.term());
+        } while (this.accept(","));
+        this.expect(")");
+
+        if (this.accept("IF")) {
+            this.expect("NOT");
+            this.expect("EXISTS");
+            insert.ifNotExists = true;
+        }
+        this.using();
+        return insert;
+    }
+
+    private InMemoryStatement update() {
+        final InMemoryStatement.Update update = new InMemoryStatement.Update(this.identifier());
+        this.statement = update;
+        this.using();
+
+        this.expect("SET");
+        do {
+            update.columns.add(this.identifier());
+            this.expect("=");
+            if (this.peek().type == Type.WORD && !this.peek().is("true") && !this.peek().is("false") && !this.peek().is("null")) {
+                throw this.error("counter and collection updates are not supported");
+            }
+            update.terms.add(this.term());
+        } while (this.accept(","));
+
+        this.expect("WHERE");
+        this.relations(update.where);
+        this.conditions(update);
+        return update;
+    }
+
+    private InMemoryStatement delete() {
+        final List<String> columns = new ArrayList<>();
+        if (!this.peek().is("FROM")) {
+            do {
+                columns.add(this.identifier());
+            } while (this.accept(","));
+        }
+        this.expect("FROM");
+
+        final InMemoryStatement.Delete delete = new InMemoryStatement.Delete(this.identifier());
+        delete.columns.addAll(columns);
+        this.statement = delete;
+        this.using();
+
+        this.expect("WHERE");
+        this.relations(delete.where);
+        this.conditions(delete);
+        return delete;
+    }
+
+    /**
+     * USING TTL and TIMESTAMP are accepted (their bind markers counted) but
+     * ignored, nothing expires.
+     */
+    private void using() {
+        if (this.accept("USING")) {
+            do {
+                if (this.accept("TTL")) {
+                    InMemoryStatement.resolve(this.term(), "[ttl]", com.datastax.driver.core.DataType.cint());
+                } else {
+                    this.expect("TIMESTAMP");
+                    InMemoryStatement.resolve(this.term(), "[timestamp]", com.datastax.driver.core.DataType.bigint());
+                }
+            } while (this.accept("AND"));
+        }
+    }
+
+    private void relations(List<Relation> relations) {
+        do {
+            if (this.peek().is("(") || this.peek().is("token")) {
+                throw this.error("multi-column and token relations are not supported");
+            }
+            final String column = this.identifier();
+            final Token op = this.next();
+            if (op.is("IN")) {
+                if (this.accept("(")) {
+                    final List<Term> terms = new ArrayList<>();
+                    if (!this.peek().is(")")) {
+                        do {
+                            terms.add(this.term());
+                        } while (this.accept(","));
+                    }
+                    this.expect(")");
+                    relations.add(new Relation(column, "IN", new TermList(terms)));
+                } else {
+                    relations.add(new Relation(column, "IN", this.term()));
+                }
+            } else if (op.is("=") || op.is("<") || op.is("<=") || op.is(">") || op.is(">=")) {
+                relations.add(new Relation(column, op.text, this.term()));
+            } else {
+                this.pos--;
+                throw this.error("unsupported relation");
+            }
+        } while (this.accept("AND"));
+    }
+
+    private void conditions(ConditionalWrite write) {
+        if (!this.accept("IF")) {
+            return;
+        }
+        if (this.accept("EXISTS")) {
+            write.ifExists = true;
+            return;
+        }
+        do {
+            final String column = this.identifier();
+            final Token op = this.next();
+            if (op.is("IN")) {
+                this.pos--;
+                throw this.error("IN conditions are not supported");
+            }
+            if (!(op.is("=") || op.is("!=") || op.is("<") || op.is("<=") || op.is(">") || op.is(">="))) {
+                this.pos--;
+                throw this.error("unsupported condition");
+            }
+            write.conditions.add(new Relation(column, op.text, this.term()));
+        } while (this.accept("AND"));
+    }
+
+    private InMemoryStatement create() {
+        if (this.accept("KEYSPACE")) {
+            // keyspaces are not modeled, all tables share one namespace
+            this.pos = this.tokens.size() - 1;
+            return new InMemoryStatement.Schema("CREATE KEYSPACE", null, false);
+        }
+        this.expect("TABLE");
+        boolean ifNotExists = false;
+        if (this.accept("IF")) {
+            this.expect("NOT");
+            this.expect("EXISTS");
+            ifNotExists = true;
+        }
+
+        final InMemoryStatement.CreateTable create = new InMemoryStatement.CreateTable(this.identifier());
+        create.ifNotExists = ifNotExists;
+        this.statement = create;
+
+        this.expect("(");
+        do {
+            if (this.accept("PRIMARY")) {
+                this.expect("KEY");
+                this.primaryKey(create);
+                continue;
+            }
+            create.columnNames.add(this.identifier());
+            create.columnTypes.add(InMemoryDriver.parseType(this.type()));
+            if (this.accept("STATIC")) {
+                throw this.error("static columns are not supported");
+            }
+            if (this.accept("PRIMARY")) {
+                this.expect("KEY");
+                create.partitionKey.add(create.columnNames.get(create.columnNames.size() - 1));
+            }
+        } while (this.accept(","));
+        this.expect(")");
+
+        if (create.partitionKey.isEmpty()) {
+            throw new InvalidQueryException("No PRIMARY KEY specified for table " + create.tableName);
+        }
+
+        if (this.accept("WITH")) {
+            do {
+                if (this.accept("CLUSTERING")) {
+                    this.expect("ORDER");
+                    this.expect("BY");
+                    this.expect("(");
+                    do {
+                        final String column = this.identifier();
+                        final boolean descending = this.accept("DESC");
+                        if (!descending) {
+                            this.expect("ASC");
+                        }
+                        create.descending.put(column, descending);
+                    } while (this.accept(","));
+                    this.expect(")");
+                } else {
+                    // other options (compaction, caching, ...) are irrelevant in memory
+                    this.skipOption();
+                }
+            } while (this.accept("AND"));
+        }
+        return create;
+    }
+
+    private void primaryKey(InMemoryStatement.CreateTable create) {
+        this.expect("(");
+        if (this.accept("(")) {
+            do {
+                create.partitionKey.add(this.identifier());
+            } while (this.accept(","));
+            this.expect(")");
+        } else {
+            create.partitionKey.add(this.identifier());
+        }
+        while (this.accept(",")) {
+            create.clusteringColumns.add(this.identifier());
+        }
+        this.expect(")");
+    }
+
+    private String type() {
+        final StringBuilder sb = new StringBuilder();
+        final Token name = this.next();
+        if (name.type != Type.WORD) {
+            this.pos--;
+            throw this.error("expecting a type");
+        }
+        sb.append(name.text);
+        if (this.accept("<")) {
+            sb.append('<');
+            int depth = 1;
+            while (depth > 0) {
+                final Token t = this.next();
+                if (t.type == Type.END) {
+                    throw this.error("unterminated type");
+                }
+                if (t.is("<")) {
+                    depth++;
+                } else if (t.is(">")) {
+                    depth--;
+                }
+                sb.append(t.text);
+            }
+        }
+        return sb.toString();
+    }
+
+    private void skipOption() {
+        int depth = 0;
+        while (this.peek().type != Type.END && !(depth == 0 && (this.peek().is("AND") || this.peek().is(";")))) {
+            final Token t = this.next();
+            if (t.is("{") || t.is("(")) {
+                depth++;
+            } else if (t.is("}") || t.is(")")) {
+                depth--;
+            }
+        }
+    }
+
+    private InMemoryStatement drop() {
+        if (this.accept("KEYSPACE")) {
+            this.pos = this.tokens.size() - 1;
+            return new InMemoryStatement.Schema("DROP KEYSPACE", null, false);
+        }
+        this.expect("TABLE");
+        boolean ifExists = false;
+        if (this.accept("IF")) {
+            this.expect("EXISTS");
+            ifExists = true;
+        }
+        return new InMemoryStatement.Schema("DROP TABLE", this.identifier(), ifExists);
+    }
+
+}
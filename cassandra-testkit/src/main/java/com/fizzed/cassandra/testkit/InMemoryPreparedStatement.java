@@ -0,0 +1,183 @@
+package com.fizzed.cassandra.testkit;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.PreparedId;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.policies.RetryPolicy;
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * A statement prepared by an {@link InMemorySession}, its variables named and
+ * typed as cassandra would (by column, or in(column), [limit], [ttl] and
+ * [timestamp]).
+ */
+class InMemoryPreparedStatement implements PreparedStatement {
+
+    private final InMemorySession session;
+    private final String cql;
+    private final String keyspace;
+    private final InMemoryStatement statement;
+    private final PreparedId preparedId;
+    private final ColumnDefinitions variables;
+    private volatile ByteBuffer routingKey;
+    private volatile ConsistencyLevel consistencyLevel;
+    private volatile ConsistencyLevel serialConsistencyLevel;
+    private volatile boolean tracing;
+    private volatile RetryPolicy retryPolicy;
+    private volatile Map<String,ByteBuffer> outgoingPayload;
+    private volatile Boolean idempotent;
+
+    InMemoryPreparedStatement(InMemorySession session, String cql, InMemoryStatement statement,
+            PreparedId preparedId, ColumnDefinitions variables) {
+
+        this.session = session;
+        this.cql = cql;
+        this.keyspace = session.getLoggedKeyspace();
+        this.statement = statement;
+        this.preparedId = preparedId;
+        this.variables = variables;
+    }
+
+    InMemorySession getSession() {
+        return this.session;
+    }
+
+    InMemoryStatement getStatement() {
+        return this.statement;
+    }
+
+    @Override
+    public ColumnDefinitions getVariables() {
+        return this.variables;
+    }
+
+    @Override
+    public BoundStatement bind(Object... values) {
+        return new BoundStatement(this).bind(values);
+    }
+
+    @Override
+    public BoundStatement bind() {
+        return new BoundStatement(this);
+    }
+
+    @Override
+    public PreparedStatement setRoutingKey(ByteBuffer routingKey) {
+        this.routingKey = routingKey;
+        return this;
+    }
+
+    @Override
+    public PreparedStatement setRoutingKey(ByteBuffer... routingKeyComponents) {
+        // only a single component is ever needed in memory
+        this.routingKey = routingKeyComponents.length > 0 ? routingKeyComponents[0] : null;
+        return this;
+    }
+
+    @Override
+    public ByteBuffer getRoutingKey() {
+        return this.routingKey;
+    }
+
+    @Override
+    public PreparedStatement setConsistencyLevel(ConsistencyLevel consistency) {
+        this.consistencyLevel = consistency;
+        return this;
+    }
+
+    @Override
+    public ConsistencyLevel getConsistencyLevel() {
+        return this.consistencyLevel;
+    }
+
+    @Override
+    public PreparedStatement setSerialConsistencyLevel(ConsistencyLevel serialConsistency) {
+        this.serialConsistencyLevel = serialConsistency;
+        return this;
+    }
+
+    @Override
+    public ConsistencyLevel getSerialConsistencyLevel() {
+        return this.serialConsistencyLevel;
+    }
+
+    @Override
+    public String getQueryString() {
+        return this.cql;
+    }
+
+    @Override
+    public String getQueryKeyspace() {
+        return this.keyspace;
+    }
+
+    @Override
+    public PreparedStatement enableTracing() {
+        this.tracing = true;
+        return this;
+    }
+
+    @Override
+    public PreparedStatement disableTracing() {
+        this.tracing = false;
+        return this;
+    }
+
+    @Override
+    public boolean isTracing() {
+        return this.tracing;
+    }
+
+    @Override
+    public PreparedStatement setRetryPolicy(RetryPolicy policy) {
+        this.retryPolicy = policy;
+        return this;
+    }
+
+    @Override
+    public RetryPolicy getRetryPolicy() {
+        return this.retryPolicy;
+    }
+
+    @Override
+    public PreparedId getPreparedId() {
+        return this.preparedId;
+    }
+
+    @Override
+    public Map<String,ByteBuffer> getIncomingPayload() {
+        return null;
+    }
+
+    @Override
+    public Map<String,ByteBuffer> getOutgoingPayload() {
+        return this.outgoingPayload;
+    }
+
+    @Override
+    public PreparedStatement setOutgoingPayload(Map<String,ByteBuffer> payload) {
+        this.outgoingPayload = payload;
+        return this;
+    }
+
+    @Override
+    public CodecRegistry getCodecRegistry() {
+        return this.session.getCodecRegistry();
+    }
+
+    @Override
+    public PreparedStatement setIdempotent(Boolean idempotent) {
+        this.idempotent = idempotent;
+        return this;
+    }
+
+    @Override
+    public Boolean isIdempotent() {
+        return this.idempotent;
+    }
+
+}
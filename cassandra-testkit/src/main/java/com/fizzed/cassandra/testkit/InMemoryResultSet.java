@@ -0,0 +1,164 @@
+package com.fizzed.cassandra.testkit;
+
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.ExecutionInfo;
+import com.datastax.driver.core.InMemoryDriver;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Statement;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * The rows of a statement, a snapshot taken when it executed and handed out a
+ * page (of the fetch size) at a time. The paging state of a page is the offset
+ * of the next row, so a query re-executed with it resumes from there.
+ */
+class InMemoryResultSet implements ResultSet {
+
+    private final InMemorySession session;
+    private final Statement statement;
+    private final ColumnDefinitions columns;
+    private final List<Row> rows;
+    private final boolean applied;
+    private final int fetchSize;
+    private final List<ExecutionInfo> executionInfos;
+    private int position;
+    private int fetched;
+
+    InMemoryResultSet(InMemorySession session, Statement statement, InMemoryStatement.Result result,
+            int offset, int fetchSize) {
+
+        this.session = session;
+        this.statement = statement;
+        this.columns = result.columns;
+        this.rows = result.rows;
+        this.applied = result.applied;
+        this.fetchSize = fetchSize;
+        this.executionInfos = new ArrayList<>();
+        this.position = offset;
+        this.fetched = offset;
+        this.fetchPage();
+    }
+
+    static ByteBuffer pagingState(int offset) {
+        final ByteBuffer state = ByteBuffer.allocate(4);
+        state.putInt(0, offset);
+        return state;
+    }
+
+    static int offset(ByteBuffer pagingState) {
+        return pagingState.remaining() == 4 ? pagingState.getInt(pagingState.position()) : -1;
+    }
+
+    private synchronized void fetchPage() {
+        if (this.fetched < this.rows.size() || this.executionInfos.isEmpty()) {
+            this.fetched = (int)Math.min((long)this.fetched + this.fetchSize, this.rows.size());
+            final ByteBuffer state = this.fetched < this.rows.size() ? pagingState(this.fetched) : null;
+            this.executionInfos.add(InMemoryDriver.executionInfo(this.statement, state,
+                Collections.<String>emptyList(), this.session.getCodecRegistry()));
+        }
+    }
+
+    @Override
+    public synchronized boolean isExhausted() {
+        if (this.position < this.fetched) {
+            return false;
+        }
+        if (this.fetched < this.rows.size()) {
+            // as the driver, fetches the next page (and waits for it)
+            this.session.pause();
+            this.fetchPage();
+        }
+        return this.position >= this.fetched;
+    }
+
+    @Override
+    public synchronized boolean isFullyFetched() {
+        return this.fetched >= this.rows.size();
+    }
+
+    @Override
+    public synchronized int getAvailableWithoutFetching() {
+        return this.fetched - this.position;
+    }
+
+    @Override
+    public ListenableFuture<ResultSet> fetchMoreResults() {
+        if (this.isFullyFetched()) {
+            return Futures.<ResultSet>immediateFuture(this);
+        }
+        final SettableFuture<ResultSet> future = SettableFuture.create();
+        this.session.later(() -> {
+            this.fetchPage();
+            future.set(this);
+        });
+        return future;
+    }
+
+    @Override
+    public synchronized Row one() {
+        return this.isExhausted() ? null : this.rows.get(this.position++);
+    }
+
+    @Override
+    public synchronized List<Row> all() {
+        final List<Row> all = new ArrayList<>(this.rows.size() - this.position);
+        while (!this.isExhausted()) {
+            all.add(this.rows.get(this.position++));
+        }
+        return all;
+    }
+
+    @Override
+    public Iterator<Row> iterator() {
+        return new Iterator<Row>() {
+            @Override
+            public boolean hasNext() {
+                return !isExhausted();
+            }
+
+            @Override
+            public Row next() {
+                final Row row = one();
+                if (row == null) {
+                    throw new NoSuchElementException();
+                }
+                return row;
+            }
+        };
+    }
+
+    @Override
+    public synchronized ExecutionInfo getExecutionInfo() {
+        return this.executionInfos.get(this.executionInfos.size() - 1);
+    }
+
+    @Override
+    public synchronized List<ExecutionInfo> getAllExecutionInfo() {
+        return new ArrayList<>(this.executionInfos);
+    }
+
+    @Override
+    public ColumnDefinitions getColumnDefinitions() {
+        return this.columns;
+    }
+
+    @Override
+    public boolean wasApplied() {
+        return this.applied;
+    }
+
+    @Override
+    public String toString() {
+        return "ResultSet[ exhausted: " + this.isExhausted() + ", " + this.columns + "]";
+    }
+
+}
@@ -0,0 +1,50 @@
+package com.fizzed.cassandra.testkit;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.google.common.util.concurrent.AbstractFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The future of a statement executed by an {@link InMemorySession}, completed
+ * once its (injected) latency elapsed.
+ */
+class InMemoryResultSetFuture extends AbstractFuture<ResultSet> implements ResultSetFuture {
+
+    void complete(ResultSet resultSet, RuntimeException e) {
+        if (e != null) {
+            this.setException(e);
+        } else {
+            this.set(resultSet);
+        }
+    }
+
+    @Override
+    public ResultSet getUninterruptibly() {
+        try {
+            return Uninterruptibles.getUninterruptibly(this);
+        } catch (ExecutionException e) {
+            throw propagate(e);
+        }
+    }
+
+    @Override
+    public ResultSet getUninterruptibly(long timeout, TimeUnit unit) throws TimeoutException {
+        try {
+            return Uninterruptibles.getUninterruptibly(this, timeout, unit);
+        } catch (ExecutionException e) {
+            throw propagate(e);
+        }
+    }
+
+    static private RuntimeException propagate(ExecutionException e) {
+        if (e.getCause() instanceof RuntimeException) {
+            return (RuntimeException)e.getCause();
+        }
+        return new IllegalStateException(e.getCause());
+    }
+
+}
@@ -0,0 +1,552 @@
+package com.fizzed.cassandra.testkit;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.CloseFuture;
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.InMemoryDriver;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.RegularStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.exceptions.InvalidQueryException;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link Session} that executes cql against tables held in memory, for
+ * testing and benchmarking code on top of the driver (e.g. the ORM) without a
+ * running cassandra.
+ *
+ * It runs the cql the ORM generates: SELECT, INSERT, UPDATE and DELETE with =,
+ * range and IN relations, IF NOT EXISTS, IF EXISTS and IF conditions, ORDER BY,
+ * LIMIT and ALLOW FILTERING, plus batches, prepared statements and paging. A
+ * test creates its tables with CREATE TABLE. Partitions are sorted by their key
+ * (not by token) and rows by clustering key, as cassandra sorts them within a
+ * partition. Statements execute one at a time, each atomically.
+ *
+ * A latency (and jitter) can be injected, every async execute completes after
+ * it, so the pipelining of concurrent queries behaves as against a cluster.
+ *
+ * There is no {@link Cluster} behind it, {@link #getCluster()} returns null
+ * (the ORM then falls back to what it can do without metadata).
+ */
+public class InMemorySession implements Session {
+
+    static private final int MAX_PARSED_STATEMENTS = 1000;
+    static private final AtomicInteger THREADS = new AtomicInteger();
+
+    private final Object lock;
+    private final CodecRegistry codecRegistry;
+    private final Map<String,InMemoryTable> tables;
+    private final ConcurrentHashMap<String,InMemoryStatement> parsedStatements;
+    private final AtomicLong statementsExecuted;
+    private volatile String keyspace;
+    private volatile long latencyMillis;
+    private volatile long latencyJitterMillis;
+    private volatile int defaultFetchSize;
+    private volatile boolean closed;
+    private ScheduledExecutorService scheduler;
+
+    public InMemorySession() {
+        this(null);
+    }
+
+    public InMemorySession(String keyspace) {
+        this(keyspace, new CodecRegistry());
+    }
+
+    public InMemorySession(String keyspace, CodecRegistry codecRegistry) {
+        this.lock = new Object();
+        this.codecRegistry = codecRegistry;
+        this.tables = new HashMap<>();
+        this.parsedStatements = new ConcurrentHashMap<>();
+        this.statementsExecuted = new AtomicLong();
+        this.keyspace = keyspace;
+        this.defaultFetchSize = 5000;
+    }
+
+    public CodecRegistry getCodecRegistry() {
+        return this.codecRegistry;
+    }
+
+    public long getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    /**
+     * @param latencyMillis The time every statement (and fetch of a page)
+     *      takes to complete
+     * @return This session
+     */
+    public InMemorySession setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+        return this;
+    }
+
+    public long getLatencyJitterMillis() {
+        return latencyJitterMillis;
+    }
+
+    /**
+     * @param latencyJitterMillis The max (random) time added to the latency
+     * @return This session
+     */
+    public InMemorySession setLatencyJitterMillis(long latencyJitterMillis) {
+        this.latencyJitterMillis = latencyJitterMillis;
+        return this;
+    }
+
+    public int getDefaultFetchSize() {
+        return defaultFetchSize;
+    }
+
+    /**
+     * @param defaultFetchSize The page size of a statement without a fetch size
+     * @return This session
+     */
+    public InMemorySession setDefaultFetchSize(int defaultFetchSize) {
+        if (defaultFetchSize <= 0) {
+            throw new IllegalArgumentException("defaultFetchSize must be > 0");
+        }
+        this.defaultFetchSize = defaultFetchSize;
+        return this;
+    }
+
+    /**
+     * @return The number of statements executed (a batch counts as one)
+     */
+    public long getStatementsExecuted() {
+        return this.statementsExecuted.get();
+    }
+
+    /**
+     * Removes the rows of every table.
+     */
+    public void truncateAll() {
+        synchronized (this.lock) {
+            for (InMemoryTable table : this.tables.values()) {
+                table.partitions.clear();
+            }
+        }
+    }
+
+    @Override
+    public String getLoggedKeyspace() {
+        return this.keyspace;
+    }
+
+    @Override
+    public Session init() {
+        return this;
+    }
+
+    @Override
+    public ListenableFuture<Session> initAsync() {
+        return Futures.<Session>immediateFuture(this);
+    }
+
+    @Override
+    public ResultSet execute(String query) {
+        return this.executeAsync(query).getUninterruptibly();
+    }
+
+    @Override
+    public ResultSet execute(String query, Object... values) {
+        return this.executeAsync(query, values).getUninterruptibly();
+    }
+
+    @Override
+    public ResultSet execute(String query, Map<String,Object> values) {
+        return this.executeAsync(query, values).getUninterruptibly();
+    }
+
+    @Override
+    public ResultSet execute(Statement statement) {
+        return this.executeAsync(statement).getUninterruptibly();
+    }
+
+    @Override
+    public ResultSetFuture executeAsync(String query) {
+        return this.executeAsync(new SimpleStatement(query));
+    }
+
+    @Override
+    public ResultSetFuture executeAsync(String query, Object... values) {
+        return this.executeAsync(new SimpleStatement(query, values));
+    }
+
+    @Override
+    public ResultSetFuture executeAsync(String query, Map<String,Object> values) {
+        return this.executeAsync(new SimpleStatement(query, values));
+    }
+
+    @Override
+    public ResultSetFuture executeAsync(Statement statement) {
+        final InMemoryResultSetFuture future = new InMemoryResultSetFuture();
+        ResultSet resultSet = null;
+        RuntimeException failure = null;
+        try {
+            // executed right away (so in the order submitted), completed later
+            resultSet = this.run(statement);
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        final ResultSet rs = resultSet;
+        final RuntimeException e = failure;
+        this.later(() -> future.complete(rs, e));
+        return future;
+    }
+
+    @Override
+    public PreparedStatement prepare(String query) {
+        this.checkOpen();
+        final InMemoryStatement statement = this.parse(query);
+        final List<ColumnDefinitions.Definition> variables = new ArrayList<>(statement.binds.size());
+        synchronized (this.lock) {
+            final InMemoryTable table = statement.table(this);
+            if (table != null) {
+                statement.resolve(table);
+            }
+            for (InMemoryStatement.Bind bind : statement.binds) {
+                variables.add(InMemoryDriver.definition(
+                    table != null ? table.keyspace : this.keyspace,
+                    table != null ? table.name : null,
+                    bind.name, bind.type));
+            }
+            final ColumnDefinitions resultColumns = statement.resultColumns(this, table);
+            final byte[] id = md5(query);
+            final ColumnDefinitions vars = InMemoryDriver.columnDefinitions(variables, this.codecRegistry);
+            return new InMemoryPreparedStatement(this, query, statement,
+                InMemoryDriver.preparedId(id, vars, resultColumns), vars);
+        }
+    }
+
+    @Override
+    public PreparedStatement prepare(RegularStatement statement) {
+        final PreparedStatement prepared = this.prepare(statement.getQueryString(this.codecRegistry));
+        if (statement.getConsistencyLevel() != null) {
+            prepared.setConsistencyLevel(statement.getConsistencyLevel());
+        }
+        if (statement.getSerialConsistencyLevel() != null) {
+            prepared.setSerialConsistencyLevel(statement.getSerialConsistencyLevel());
+        }
+        if (statement.isIdempotent() != null) {
+            prepared.setIdempotent(statement.isIdempotent());
+        }
+        return prepared;
+    }
+
+    @Override
+    public ListenableFuture<PreparedStatement> prepareAsync(String query) {
+        try {
+            return Futures.immediateFuture(this.prepare(query));
+        } catch (RuntimeException e) {
+            return Futures.immediateFailedFuture(e);
+        }
+    }
+
+    @Override
+    public ListenableFuture<PreparedStatement> prepareAsync(RegularStatement statement) {
+        try {
+            return Futures.immediateFuture(this.prepare(statement));
+        } catch (RuntimeException e) {
+            return Futures.immediateFailedFuture(e);
+        }
+    }
+
+    @Override
+    public CloseFuture closeAsync() {
+        this.close();
+        return InMemoryDriver.closed();
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+        synchronized (this) {
+            if (this.scheduler != null) {
+                this.scheduler.shutdown();
+                this.scheduler = null;
+            }
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return this.closed;
+    }
+
+    /**
+     * @return Null, there is no cluster (nor metadata) behind this session
+     */
+    @Override
+    public Cluster getCluster() {
+        return null;
+    }
+
+    @Override
+    public State getState() {
+        return new State() {
+            @Override
+            public Session getSession() {
+                return InMemorySession.this;
+            }
+
+            @Override
+            public Collection<Host> getConnectedHosts() {
+                return Collections.emptyList();
+            }
+
+            @Override
+            public int getOpenConnections(Host host) {
+                return 0;
+            }
+
+            @Override
+            public int getTrashedConnections(Host host) {
+                return 0;
+            }
+
+            @Override
+            public int getInFlightQueries(Host host) {
+                return 0;
+            }
+        };
+    }
+
+    //
+    // tables (only ever called holding the lock)
+    //
+
+    static String unqualified(String name) {
+        final int dot = name.lastIndexOf('.');
+        return dot >= 0 ? name.substring(dot + 1) : name;
+    }
+
+    InMemoryTable table(String name) {
+        final InMemoryTable table = this.tables.get(unqualified(name));
+        if (table == null) {
+            throw new InvalidQueryException("unconfigured table " + unqualified(name));
+        }
+        return table;
+    }
+
+    boolean createTable(InMemoryTable table) {
+        return this.tables.putIfAbsent(table.name, table) == null;
+    }
+
+    boolean dropTable(String name) {
+        return this.tables.remove(unqualified(name)) != null;
+    }
+
+    void use(String keyspace) {
+        this.keyspace = keyspace;
+    }
+
+    //
+    // execution
+    //
+
+    private void checkOpen() {
+        if (this.closed) {
+            throw new IllegalStateException("Session is closed");
+        }
+    }
+
+    private InMemoryStatement parse(String cql) {
+        InMemoryStatement statement = this.parsedStatements.get(cql);
+        if (statement == null) {
+            statement = InMemoryCqlParser.parse(cql);
+            if (this.parsedStatements.size() >= MAX_PARSED_STATEMENTS) {
+                this.parsedStatements.clear();
+            }
+            this.parsedStatements.put(cql, statement);
+        }
+        return statement;
+    }
+
+    /**
+     * A parsed statement and the values bound to it.
+     */
+    static private class Bound {
+
+        final InMemoryStatement statement;
+        final InMemoryStatement.Values values;
+
+        Bound(InMemoryStatement statement, InMemoryStatement.Values values) {
+            this.statement = statement;
+            this.values = values;
+        }
+
+    }
+
+    private Bound bound(Statement statement) {
+        if (statement instanceof BoundStatement) {
+            final BoundStatement bs = (BoundStatement)statement;
+            if (!(bs.preparedStatement() instanceof InMemoryPreparedStatement)
+                    || ((InMemoryPreparedStatement)bs.preparedStatement()).getSession() != this) {
+                throw new IllegalArgumentException("Statement was not prepared by this session");
+            }
+            return new Bound(((InMemoryPreparedStatement)bs.preparedStatement()).getStatement(),
+                (index, type) -> bs.isSet(index) ? bs.getObject(index) : InMemoryStatement.UNSET);
+        }
+
+        if (statement instanceof RegularStatement) {
+            final RegularStatement rs = (RegularStatement)statement;
+            if (rs.usesNamedValues()) {
+                throw new IllegalArgumentException("Named values are not supported");
+            }
+            final InMemoryStatement parsed = this.parse(rs.getQueryString(this.codecRegistry));
+            final ByteBuffer[] values = rs.getValues(InMemoryDriver.PROTOCOL_VERSION, this.codecRegistry);
+            final int count = values != null ? values.length : 0;
+            if (count != parsed.binds.size()) {
+                throw new InvalidQueryException("There were " + parsed.binds.size()
+                    + " markers(?) in CQL but " + count + " bound variables");
+            }
+            // values are serialized by their java type, read back as the column type
+            return new Bound(parsed, (index, type) -> values[index] == null ? null
+                : this.codecRegistry.codecFor(type).deserialize(values[index].duplicate(), InMemoryDriver.PROTOCOL_VERSION));
+        }
+
+        throw new IllegalArgumentException("Unsupported statement " + statement.getClass().getName());
+    }
+
+    private ResultSet run(Statement statement) {
+        this.checkOpen();
+        final Statement s = InMemoryDriver.unwrap(statement);
+        this.statementsExecuted.incrementAndGet();
+
+        final InMemoryStatement.Result result;
+        synchronized (this.lock) {
+            if (s instanceof BatchStatement) {
+                result = this.batch((BatchStatement)s);
+            } else {
+                final Bound bound = this.bound(s);
+                result = bound.statement.execute(this, bound.values);
+            }
+        }
+
+        int offset = 0;
+        final ByteBuffer pagingState = InMemoryDriver.pagingState(s);
+        if (pagingState != null) {
+            offset = InMemoryResultSet.offset(pagingState);
+            if (offset < 0 || offset > result.rows.size()) {
+                throw new InvalidQueryException("Invalid value for the paging state");
+            }
+        }
+
+        final int fetchSize = s.getFetchSize() > 0 ? s.getFetchSize() : this.defaultFetchSize;
+        return new InMemoryResultSet(this, statement, result, offset, fetchSize);
+    }
+
+    private InMemoryStatement.Result batch(BatchStatement batch) {
+        final List<Bound> bounds = new ArrayList<>(batch.size());
+        for (Statement statement : batch.getStatements()) {
+            final Bound bound = this.bound(InMemoryDriver.unwrap(statement));
+            if (!(bound.statement instanceof InMemoryStatement.ConditionalWrite)) {
+                throw new InvalidQueryException("Invalid statement in batch: only UPDATE, INSERT and DELETE statements are allowed.");
+            }
+            bounds.add(bound);
+        }
+
+        // every condition is checked before any statement is applied
+        final List<InMemoryTable> tables = new ArrayList<>(bounds.size());
+        boolean conditional = false;
+        for (Bound bound : bounds) {
+            final InMemoryTable table = bound.statement.table(this);
+            bound.statement.resolve(table);
+            tables.add(table);
+            conditional |= bound.statement.isConditional();
+        }
+        for (int i = 0; i < bounds.size(); i++) {
+            if (!bounds.get(i).statement.check(this, tables.get(i), bounds.get(i).values)) {
+                return InMemoryStatement.applied(this, false);
+            }
+        }
+        for (int i = 0; i < bounds.size(); i++) {
+            bounds.get(i).statement.apply(this, tables.get(i), bounds.get(i).values);
+        }
+        return conditional ? InMemoryStatement.applied(this, true) : InMemoryStatement.empty(this);
+    }
+
+    //
+    // latency
+    //
+
+    private long latency() {
+        final long jitter = this.latencyJitterMillis;
+        return this.latencyMillis + (jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter + 1) : 0);
+    }
+
+    /**
+     * Blocks for the latency (of a page fetched synchronously).
+     */
+    void pause() {
+        final long latency = this.latency();
+        if (latency > 0) {
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Runs a task once the latency elapsed (right away if none).
+     */
+    void later(Runnable task) {
+        final long latency = this.latency();
+        if (latency <= 0 || this.closed) {
+            task.run();
+            return;
+        }
+        this.scheduler().schedule(task, latency, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized ScheduledExecutorService scheduler() {
+        if (this.scheduler == null) {
+            final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(
+                Math.max(2, Runtime.getRuntime().availableProcessors()), r -> {
+                    final Thread thread = new Thread(r, "cassandra-in-memory-" + THREADS.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            this.scheduler = executor;
+        }
+        return this.scheduler;
+    }
+
+    static private byte[] md5(String cql) {
+        try {
+            return MessageDigest.getInstance("MD5").digest(cql.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
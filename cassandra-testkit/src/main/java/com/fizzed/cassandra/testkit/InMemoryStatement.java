@@ -0,0 +1,886 @@
+package com.fizzed.cassandra.testkit;
+
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.ColumnDefinitions;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.InMemoryDriver;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.TypeCodec;
+import com.datastax.driver.core.exceptions.AlreadyExistsException;
+import com.datastax.driver.core.exceptions.InvalidQueryException;
+import com.fizzed.cassandra.testkit.InMemoryTable.Column;
+import com.fizzed.cassandra.testkit.InMemoryTable.Kind;
+import com.fizzed.cassandra.testkit.InMemoryTable.StoredRow;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+
+/**
+ * A parsed cql statement, executed against the tables of an {@link InMemorySession}.
+ * A statement only ever executes while holding the lock of its session.
+ */
+abstract class InMemoryStatement {
+
+    /**
+     * The value of a bind marker left unset.
+     */
+    static final Object UNSET = new Object();
+
+    /**
+     * The values bound to a statement.
+     */
+    interface Values {
+
+        /**
+         * @param index The index of the bind marker
+         * @param type The type it is bound to
+         * @return The value (as the default java type of the cql type), null
+         *      or {@link #UNSET}
+         */
+        Object get(int index, DataType type);
+
+    }
+
+    static abstract class Term {
+
+        abstract Object value(Values values, CodecRegistry codecRegistry, DataType type);
+
+    }
+
+    static class Bind extends Term {
+
+        final int index;
+        String name;
+        DataType type;
+
+        Bind(int index) {
+            this.index = index;
+        }
+
+        @Override
+        Object value(Values values, CodecRegistry codecRegistry, DataType type) {
+            return values.get(this.index, type);
+        }
+
+    }
+
+    static class Literal extends Term {
+
+        final String cql;
+
+        Literal(String cql) {
+            this.cql = cql;
+        }
+
+        @Override
+        Object value(Values values, CodecRegistry codecRegistry, DataType type) {
+            return codecRegistry.codecFor(type).parse(this.cql);
+        }
+
+    }
+
+    static class TermList extends Term {
+
+        final List<Term> terms;
+
+        TermList(List<Term> terms) {
+            this.terms = terms;
+        }
+
+        @Override
+        Object value(Values values, CodecRegistry codecRegistry, DataType type) {
+            final List<Object> list = new ArrayList<>(this.terms.size());
+            for (Term term : this.terms) {
+                list.add(term.value(values, codecRegistry, type));
+            }
+            return list;
+        }
+
+    }
+
+    /**
+     * A relation of a where clause or a condition of an IF.
+     */
+    static class Relation {
+
+        final String column;
+        final String op;
+        final Term term;
+
+        Relation(String column, String op, Term term) {
+            this.column = column;
+            this.op = op;
+            this.term = term;
+        }
+
+        boolean isIn() {
+            return "IN".equals(this.op);
+        }
+
+        DataType termType(Column c) {
+            // a single marker binds the whole list of an IN
+            return this.isIn() && !(this.term instanceof TermList) ? DataType.list(c.type) : c.type;
+        }
+
+        Object value(InMemorySession session, Values values, Column c) {
+            final Object v = this.term.value(values, session.getCodecRegistry(), this.termType(c));
+            if (v == UNSET) {
+                throw new InvalidQueryException("Invalid unset value for column " + c.name);
+            }
+            return v;
+        }
+
+        /**
+         * @param session The session
+         * @param values The values
+         * @param c The column
+         * @param current The current value of the column (null if not set)
+         * @param condition True if an IF condition (where nulls are compared)
+         */
+        boolean matches(InMemorySession session, Values values, Column c, Object current, boolean condition) {
+            final Object v = this.value(session, values, c);
+            if (this.isIn()) {
+                for (Object e : (List<?>)v) {
+                    if (equal(c, current, e, condition)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            switch (this.op) {
+                case "=":
+                    return equal(c, current, v, condition);
+                case "!=":
+                    return !equal(c, current, v, true);
+                default:
+                    if (current == null || v == null) {
+                        return false;
+                    }
+                    final int cmp = InMemoryTable.compare(c.type, current, v);
+                    switch (this.op) {
+                        case "<":
+                            return cmp < 0;
+                        case "<=":
+                            return cmp <= 0;
+                        case ">":
+                            return cmp > 0;
+                        case ">=":
+                            return cmp >= 0;
+                        default:
+                            throw new InvalidQueryException("Unsupported operator " + this.op);
+                    }
+            }
+        }
+
+        static private boolean equal(Column c, Object current, Object v, boolean nulls) {
+            if (current == null || v == null) {
+                return nulls && current == null && v == null;
+            }
+            return InMemoryTable.compare(c.type, current, v) == 0;
+        }
+
+    }
+
+    static class Result {
+
+        final ColumnDefinitions columns;
+        final List<Row> rows;
+        final boolean applied;
+
+        Result(ColumnDefinitions columns, List<Row> rows, boolean applied) {
+            this.columns = columns;
+            this.rows = rows;
+            this.applied = applied;
+        }
+
+    }
+
+    /**
+     * The bind markers in order.
+     */
+    final List<Bind> binds = new ArrayList<>();
+
+    /**
+     * @param session The session
+     * @return The table of this statement (or null if not of a table)
+     */
+    abstract InMemoryTable table(InMemorySession session);
+
+    /**
+     * Resolves the name & type of every bind marker against the table.
+     */
+    abstract void resolve(InMemoryTable table);
+
+    /**
+     * @param table The table
+     * @return The columns of the rows this statement returns
+     */
+    ColumnDefinitions resultColumns(InMemorySession session, InMemoryTable table) {
+        return InMemoryDriver.columnDefinitions(Collections.emptyList(), session.getCodecRegistry());
+    }
+
+    /**
+     * @return True if its conditions (if any) are met (checked for every
+     *      statement of a batch before any is applied)
+     */
+    boolean check(InMemorySession session, InMemoryTable table, Values values) {
+        return true;
+    }
+
+    abstract Result apply(InMemorySession session, InMemoryTable table, Values values);
+
+    boolean isConditional() {
+        return false;
+    }
+
+    final Result execute(InMemorySession session, Values values) {
+        final InMemoryTable table = this.table(session);
+        if (table != null) {
+            this.resolve(table);
+        }
+        if (!this.check(session, table, values)) {
+            return applied(session, false);
+        }
+        final Result result = this.apply(session, table, values);
+        return this.isConditional() ? applied(session, true) : result;
+    }
+
+    static Result empty(InMemorySession session) {
+        return new Result(InMemoryDriver.columnDefinitions(Collections.emptyList(), session.getCodecRegistry()),
+            Collections.emptyList(), true);
+    }
+
+    static Result applied(InMemorySession session, boolean applied) {
+        final ColumnDefinitions columns = InMemoryDriver.columnDefinitions(
+            Collections.singletonList(InMemoryDriver.definition(null, null, "[applied]", DataType.cboolean())),
+            session.getCodecRegistry());
+        final ByteBuffer value = TypeCodec.cboolean().serialize(applied, InMemoryDriver.PROTOCOL_VERSION);
+        return new Result(columns, Collections.singletonList(
+            InMemoryDriver.row(columns, Collections.singletonList(value))), applied);
+    }
+
+    static void resolve(Term term, String name, DataType type) {
+        if (term instanceof Bind) {
+            ((Bind)term).name = name;
+            ((Bind)term).type = type;
+        } else if (term instanceof TermList) {
+            for (Term t : ((TermList)term).terms) {
+                resolve(t, name, type);
+            }
+        }
+    }
+
+    static void resolve(InMemoryTable table, List<Relation> relations) {
+        for (Relation relation : relations) {
+            final Column c = table.column(relation.column);
+            resolve(relation.term, relation.isIn() ? "in(" + c.name + ")" : c.name, relation.termType(c));
+        }
+    }
+
+    static Map<Column,List<Relation>> byColumn(InMemoryTable table, List<Relation> relations) {
+        final Map<Column,List<Relation>> map = new LinkedHashMap<>();
+        for (Relation relation : relations) {
+            map.computeIfAbsent(table.column(relation.column), k -> new ArrayList<>()).add(relation);
+        }
+        return map;
+    }
+
+    /**
+     * @return The values of the key columns restricted by = or IN (or null if
+     *      any is not), as every combination
+     */
+    static List<List<Object>> keys(InMemorySession session, Values values, List<Column> keyColumns,
+            Map<Column,List<Relation>> restrictions) {
+
+        List<List<Object>> keys = Collections.singletonList(Collections.emptyList());
+        for (Column c : keyColumns) {
+            final List<Relation> rs = restrictions.get(c);
+            final Relation r = rs != null && rs.size() == 1 ? rs.get(0) : null;
+            if (r == null || !(r.op.equals("=") || r.isIn())) {
+                return null;
+            }
+            final Object v = r.value(session, values, c);
+            final List<?> vs = r.isIn() ? (List<?>)v : Collections.singletonList(v);
+            final List<List<Object>> next = new ArrayList<>(keys.size() * vs.size());
+            for (List<Object> key : keys) {
+                for (Object e : vs) {
+                    if (e == null) {
+                        throw new InvalidQueryException("Invalid null value for " + c.kind + " column " + c.name);
+                    }
+                    final List<Object> k = new ArrayList<>(key);
+                    k.add(e);
+                    next.add(k);
+                }
+            }
+            keys = next;
+        }
+        return keys;
+    }
+
+    static List<Object> key(StoredRow row, List<Column> keyColumns) {
+        final List<Object> key = new ArrayList<>(keyColumns.size());
+        for (Column c : keyColumns) {
+            key.add(row.values[c.index]);
+        }
+        return key;
+    }
+
+    static boolean matches(InMemorySession session, Values values, Map<Column,List<Relation>> relations,
+            StoredRow row, boolean conditions) {
+
+        for (Map.Entry<Column,List<Relation>> entry : relations.entrySet()) {
+            final Object current = row != null ? row.values[entry.getKey().index] : null;
+            for (Relation relation : entry.getValue()) {
+                if (!relation.matches(session, values, entry.getKey(), current, conditions)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The rows of a table targeted by the primary key (partition key and
+     * every clustering column) restricted by = or IN.
+     */
+    static List<List<Object>[]> rowKeys(InMemorySession session, Values values, InMemoryTable table,
+            Map<Column,List<Relation>> restrictions, String command) {
+
+        for (Column c : restrictions.keySet()) {
+            if (!c.isPrimaryKey()) {
+                throw new InvalidQueryException("Non PRIMARY KEY columns found in where clause: " + c.name);
+            }
+        }
+
+        final List<List<Object>> partitionKeys = keys(session, values, table.partitionKey, restrictions);
+        final List<List<Object>> clusteringKeys = keys(session, values, table.clusteringColumns, restrictions);
+        if (partitionKeys == null || clusteringKeys == null) {
+            throw new InvalidQueryException("Some primary key parts are missing or not restricted by = or IN in " + command);
+        }
+
+        final List<List<Object>[]> keys = new ArrayList<>();
+        for (List<Object> pk : partitionKeys) {
+            for (List<Object> ck : clusteringKeys) {
+                @SuppressWarnings("unchecked")
+                final List<Object>[] key = new List[] { pk, ck };
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    static StoredRow row(InMemoryTable table, List<Object>[] key) {
+        final NavigableMap<List<Object>,StoredRow> partition = table.partition(key[0], false);
+        final StoredRow row = partition != null ? partition.get(key[1]) : null;
+        return row != null && row.exists(table) ? row : null;
+    }
+
+    static StoredRow getOrCreate(InMemoryTable table, List<Object>[] key) {
+        final NavigableMap<List<Object>,StoredRow> partition = table.partition(key[0], true);
+        StoredRow row = partition.get(key[1]);
+        if (row == null) {
+            row = new StoredRow(table.columns.size());
+            for (Column c : table.partitionKey) {
+                row.values[c.index] = key[0].get(c.position);
+            }
+            for (Column c : table.clusteringColumns) {
+                row.values[c.index] = key[1].get(c.position);
+            }
+            partition.put(key[1], row);
+        }
+        return row;
+    }
+
+    static void removeIfNotExists(InMemoryTable table, List<Object>[] key) {
+        final NavigableMap<List<Object>,StoredRow> partition = table.partition(key[0], false);
+        if (partition != null) {
+            final StoredRow row = partition.get(key[1]);
+            if (row != null && !row.exists(table)) {
+                partition.remove(key[1]);
+            }
+            table.removeIfEmpty(key[0]);
+        }
+    }
+
+    /**
+     * IF EXISTS, IF NOT EXISTS or IF conditions of a write to a single row.
+     */
+    static abstract class ConditionalWrite extends InMemoryStatement {
+
+        final String tableName;
+        final List<Relation> where = new ArrayList<>();
+        final List<Relation> conditions = new ArrayList<>();
+        boolean ifExists;
+        boolean ifNotExists;
+
+        ConditionalWrite(String tableName) {
+            this.tableName = tableName;
+        }
+
+        @Override
+        InMemoryTable table(InMemorySession session) {
+            return session.table(this.tableName);
+        }
+
+        @Override
+        boolean isConditional() {
+            return this.ifExists || this.ifNotExists || !this.conditions.isEmpty();
+        }
+
+        abstract List<List<Object>[]> rowKeys(InMemorySession session, InMemoryTable table, Values values);
+
+        @Override
+        boolean check(InMemorySession session, InMemoryTable table, Values values) {
+            if (!this.isConditional()) {
+                return true;
+            }
+            final List<List<Object>[]> keys = this.rowKeys(session, table, values);
+            if (keys.size() != 1) {
+                throw new InvalidQueryException("IN on the primary key is not supported with conditional writes");
+            }
+            final StoredRow row = row(table, keys.get(0));
+            if (this.ifExists) {
+                return row != null;
+            }
+            if (this.ifNotExists) {
+                return row == null;
+            }
+            return matches(session, values, byColumn(table, this.conditions), row, true);
+        }
+
+    }
+
+    static class Select extends InMemoryStatement {
+
+        final String tableName;
+        final List<String> columns = new ArrayList<>();
+        final List<Relation> where = new ArrayList<>();
+        final Map<String,Boolean> orderBy = new LinkedHashMap<>();
+        Term limit;
+        boolean allowFiltering;
+
+        Select(String tableName) {
+            this.tableName = tableName;
+        }
+
+        @Override
+        InMemoryTable table(InMemorySession session) {
+            return session.table(this.tableName);
+        }
+
+        @Override
+        void resolve(InMemoryTable table) {
+            resolve(table, this.where);
+            resolve(this.limit, "[limit]", DataType.cint());
+        }
+
+        private List<Column> selected(InMemoryTable table) {
+            final List<Column> selected = new ArrayList<>();
+            if (this.columns.isEmpty()) {
+                // as cassandra, the primary key then the other columns by name
+                selected.addAll(table.partitionKey);
+                selected.addAll(table.clusteringColumns);
+                table.regularColumns.stream()
+                    .sorted((a, b) -> a.name.compareTo(b.name))
+                    .forEach(selected::add);
+            } else {
+                for (String name : this.columns) {
+                    selected.add(table.column(name));
+                }
+            }
+            return selected;
+        }
+
+        @Override
+        ColumnDefinitions resultColumns(InMemorySession session, InMemoryTable table) {
+            final List<ColumnDefinitions.Definition> definitions = new ArrayList<>();
+            for (Column c : this.selected(table)) {
+                definitions.add(InMemoryDriver.definition(table.keyspace, table.name, c.name, c.type));
+            }
+            return InMemoryDriver.columnDefinitions(definitions, session.getCodecRegistry());
+        }
+
+        @Override
+        Result apply(InMemorySession session, InMemoryTable table, Values values) {
+            final Map<Column,List<Relation>> restrictions = byColumn(table, this.where);
+            final List<List<Object>> partitionKeys = keys(session, values, table.partitionKey, restrictions);
+
+            if (!this.allowFiltering) {
+                final boolean filtering = restrictions.keySet().stream()
+                    .anyMatch(c -> c.kind == Kind.REGULAR || (partitionKeys == null && c.isPrimaryKey()));
+                if (filtering) {
+                    throw new InvalidQueryException("Cannot execute this query as it might involve data filtering"
+                        + " and thus may have unpredictable performance. If you want to execute this query despite"
+                        + " the performance unpredictability, use ALLOW FILTERING");
+                }
+            }
+
+            boolean reversed = false;
+            if (!this.orderBy.isEmpty()) {
+                if (partitionKeys == null) {
+                    throw new InvalidQueryException("ORDER BY is only supported when the partition key is restricted by an EQ or an IN.");
+                }
+                final Map.Entry<String,Boolean> first = this.orderBy.entrySet().iterator().next();
+                final Column c = table.column(first.getKey());
+                if (c.kind != Kind.CLUSTERING) {
+                    throw new InvalidQueryException("Order by is currently only supported on the clustered columns of the PRIMARY KEY, got " + c.name);
+                }
+                reversed = first.getValue() != c.descending;
+            }
+
+            final Collection<NavigableMap<List<Object>,StoredRow>> partitions;
+            if (partitionKeys != null) {
+                partitions = new ArrayList<>();
+                partitionKeys.stream()
+                    .sorted(table.partitions.comparator())
+                    .distinct()
+                    .map(k -> table.partition(k, false))
+                    .filter(p -> p != null)
+                    .forEach(partitions::add);
+            } else {
+                partitions = table.partitions.values();
+            }
+
+            final Object limitValue = this.limit != null ? this.limit.value(values, session.getCodecRegistry(), DataType.cint()) : null;
+            final int max = limitValue instanceof Integer ? (Integer)limitValue : Integer.MAX_VALUE;
+            if (max <= 0) {
+                throw new InvalidQueryException("LIMIT must be strictly positive");
+            }
+
+            final List<StoredRow> matched = new ArrayList<>();
+            for (NavigableMap<List<Object>,StoredRow> partition : partitions) {
+                final Iterator<StoredRow> it = (reversed ? partition.descendingMap() : partition).values().iterator();
+                while (it.hasNext()) {
+                    final StoredRow row = it.next();
+                    if (row.exists(table) && matches(session, values, restrictions, row, false)) {
+                        matched.add(row);
+                    }
+                }
+            }
+
+            // rows of several partitions (an IN) are ordered by clustering
+            if (!this.orderBy.isEmpty() && partitions.size() > 1) {
+                final boolean descending = reversed;
+                matched.sort((a, b) -> {
+                    final int c = compareClustering(table, a, b);
+                    return descending ? -c : c;
+                });
+            }
+
+            final List<Column> selected = this.selected(table);
+            final ColumnDefinitions columns = this.resultColumns(session, table);
+            final List<TypeCodec<Object>> codecs = new ArrayList<>(selected.size());
+            for (Column c : selected) {
+                codecs.add(session.getCodecRegistry().codecFor(c.type));
+            }
+
+            final List<Row> rows = new ArrayList<>(Math.min(matched.size(), max));
+            for (StoredRow row : matched) {
+                if (rows.size() >= max) {
+                    break;
+                }
+                final List<ByteBuffer> data = new ArrayList<>(selected.size());
+                for (int i = 0; i < selected.size(); i++) {
+                    final Object v = row.values[selected.get(i).index];
+                    data.add(v != null ? codecs.get(i).serialize(v, InMemoryDriver.PROTOCOL_VERSION) : null);
+                }
+                rows.add(InMemoryDriver.row(columns, data));
+            }
+
+            return new Result(columns, rows, true);
+        }
+
+        static private int compareClustering(InMemoryTable table, StoredRow a, StoredRow b) {
+            for (Column c : table.clusteringColumns) {
+                final int cmp = InMemoryTable.compare(c.type, a.values[c.index], b.values[c.index]);
+                if (cmp != 0) {
+                    return c.descending ? -cmp : cmp;
+                }
+            }
+            return 0;
+        }
+
+    }
+
+    static class Insert extends ConditionalWrite {
+
+        final List<String> columns = new ArrayList<>();
+        final List<Term> terms = new ArrayList<>();
+
+        Insert(String tableName) {
+            super(tableName);
+        }
+
+        @Override
+        void resolve(InMemoryTable table) {
+            if (this.columns.size() != this.terms.size()) {
+                throw new InvalidQueryException("Unmatched column names/values");
+            }
+            for (int i = 0; i < this.columns.size(); i++) {
+                final Column c = table.column(this.columns.get(i));
+                resolve(this.terms.get(i), c.name, c.type);
+            }
+        }
+
+        @Override
+        List<List<Object>[]> rowKeys(InMemorySession session, InMemoryTable table, Values values) {
+            return Collections.singletonList(key(table, this.values(session, table, values)));
+        }
+
+        static private List<Object>[] key(InMemoryTable table, Object[] v) {
+            @SuppressWarnings("unchecked")
+            final List<Object>[] key = new List[] { new ArrayList<>(), new ArrayList<>() };
+            for (Column c : table.partitionKey) {
+                key[0].add(v[c.index]);
+            }
+            for (Column c : table.clusteringColumns) {
+                key[1].add(v[c.index]);
+            }
+            return key;
+        }
+
+        private Object[] values(InMemorySession session, InMemoryTable table, Values values) {
+            final Object[] v = new Object[table.columns.size()];
+            Arrays.fill(v, UNSET);
+            for (int i = 0; i < this.columns.size(); i++) {
+                final Column c = table.column(this.columns.get(i));
+                v[c.index] = this.terms.get(i).value(values, session.getCodecRegistry(), c.type);
+            }
+            for (Column c : table.columns) {
+                if (c.isPrimaryKey() && (v[c.index] == null || v[c.index] == UNSET)) {
+                    throw new InvalidQueryException("Invalid null value in condition for column " + c.name);
+                }
+            }
+            return v;
+        }
+
+        @Override
+        Result apply(InMemorySession session, InMemoryTable table, Values values) {
+            final Object[] v = this.values(session, table, values);
+            final StoredRow row = getOrCreate(table, key(table, v));
+            for (Column c : table.regularColumns) {
+                if (v[c.index] != UNSET) {
+                    row.values[c.index] = v[c.index];
+                }
+            }
+            row.live = true;
+            return empty(session);
+        }
+
+    }
+
+    static class Update extends ConditionalWrite {
+
+        final List<String> columns = new ArrayList<>();
+        final List<Term> terms = new ArrayList<>();
+
+        Update(String tableName) {
+            super(tableName);
+        }
+
+        @Override
+        void resolve(InMemoryTable table) {
+            for (int i = 0; i < this.columns.size(); i++) {
+                final Column c = table.column(this.columns.get(i));
+                if (c.isPrimaryKey()) {
+                    throw new InvalidQueryException("PRIMARY KEY part " + c.name + " found in SET part");
+                }
+                resolve(this.terms.get(i), c.name, c.type);
+            }
+            resolve(table, this.where);
+            resolve(table, this.conditions);
+        }
+
+        @Override
+        List<List<Object>[]> rowKeys(InMemorySession session, InMemoryTable table, Values values) {
+            return InMemoryStatement.rowKeys(session, values, table, byColumn(table, this.where), "UPDATE");
+        }
+
+        @Override
+        Result apply(InMemorySession session, InMemoryTable table, Values values) {
+            final Object[] v = new Object[this.columns.size()];
+            for (int i = 0; i < this.columns.size(); i++) {
+                v[i] = this.terms.get(i).value(values, session.getCodecRegistry(), table.column(this.columns.get(i)).type);
+            }
+            for (List<Object>[] key : this.rowKeys(session, table, values)) {
+                final StoredRow row = getOrCreate(table, key);
+                for (int i = 0; i < this.columns.size(); i++) {
+                    if (v[i] != UNSET) {
+                        row.values[table.column(this.columns.get(i)).index] = v[i];
+                    }
+                }
+                removeIfNotExists(table, key);
+            }
+            return empty(session);
+        }
+
+    }
+
+    static class Delete extends ConditionalWrite {
+
+        final List<String> columns = new ArrayList<>();
+
+        Delete(String tableName) {
+            super(tableName);
+        }
+
+        @Override
+        void resolve(InMemoryTable table) {
+            for (String column : this.columns) {
+                if (table.column(column).isPrimaryKey()) {
+                    throw new InvalidQueryException("Invalid identifier " + column + " for deletion (should not be a PRIMARY KEY part)");
+                }
+            }
+            resolve(table, this.where);
+            resolve(table, this.conditions);
+        }
+
+        @Override
+        List<List<Object>[]> rowKeys(InMemorySession session, InMemoryTable table, Values values) {
+            return InMemoryStatement.rowKeys(session, values, table, byColumn(table, this.where), "DELETE");
+        }
+
+        @Override
+        Result apply(InMemorySession session, InMemoryTable table, Values values) {
+            final Map<Column,List<Relation>> restrictions = byColumn(table, this.where);
+
+            // whole rows of a partition (optionally a range of its rows)
+            if (this.columns.isEmpty() && !this.isConditional()) {
+                for (Column c : restrictions.keySet()) {
+                    if (!c.isPrimaryKey()) {
+                        throw new InvalidQueryException("Non PRIMARY KEY columns found in where clause: " + c.name);
+                    }
+                }
+                final List<List<Object>> partitionKeys = keys(session, values, table.partitionKey, restrictions);
+                if (partitionKeys == null) {
+                    throw new InvalidQueryException("Some partition key parts are missing or not restricted by = or IN in DELETE");
+                }
+                for (List<Object> pk : partitionKeys) {
+                    final NavigableMap<List<Object>,StoredRow> partition = table.partition(pk, false);
+                    if (partition != null) {
+                        partition.values().removeIf(row -> matches(session, values, restrictions, row, false));
+                        table.removeIfEmpty(pk);
+                    }
+                }
+                return empty(session);
+            }
+
+            for (List<Object>[] key : this.rowKeys(session, table, values)) {
+                if (this.columns.isEmpty()) {
+                    final NavigableMap<List<Object>,StoredRow> partition = table.partition(key[0], false);
+                    if (partition != null) {
+                        partition.remove(key[1]);
+                        table.removeIfEmpty(key[0]);
+                    }
+                } else {
+                    final StoredRow row = row(table, key);
+                    if (row != null) {
+                        for (String column : this.columns) {
+                            row.values[table.column(column).index] = null;
+                        }
+                        removeIfNotExists(table, key);
+                    }
+                }
+            }
+            return empty(session);
+        }
+
+    }
+
+    static class CreateTable extends InMemoryStatement {
+
+        final String tableName;
+        final List<String> columnNames = new ArrayList<>();
+        final List<DataType> columnTypes = new ArrayList<>();
+        final List<String> partitionKey = new ArrayList<>();
+        final List<String> clusteringColumns = new ArrayList<>();
+        final Map<String,Boolean> descending = new LinkedHashMap<>();
+        boolean ifNotExists;
+
+        CreateTable(String tableName) {
+            this.tableName = tableName;
+        }
+
+        @Override
+        InMemoryTable table(InMemorySession session) {
+            return null;
+        }
+
+        @Override
+        void resolve(InMemoryTable table) {
+            // nothing to resolve
+        }
+
+        @Override
+        Result apply(InMemorySession session, InMemoryTable table, Values values) {
+            final List<Column> columns = new ArrayList<>(this.columnNames.size());
+            for (int i = 0; i < this.columnNames.size(); i++) {
+                columns.add(new Column(this.columnNames.get(i), this.columnTypes.get(i), i));
+            }
+            final String name = InMemorySession.unqualified(this.tableName);
+            final InMemoryTable created = new InMemoryTable(session.getLoggedKeyspace(), name, columns,
+                this.partitionKey, this.clusteringColumns, this.descending);
+            if (!session.createTable(created) && !this.ifNotExists) {
+                throw new AlreadyExistsException(session.getLoggedKeyspace(), name);
+            }
+            return empty(session);
+        }
+
+    }
+
+    /**
+     * DROP TABLE, TRUNCATE and USE (CREATE KEYSPACE and the like are accepted
+     * and ignored).
+     */
+    static class Schema extends InMemoryStatement {
+
+        final String command;
+        final String name;
+        final boolean ifExists;
+
+        Schema(String command, String name, boolean ifExists) {
+            this.command = command;
+            this.name = name;
+            this.ifExists = ifExists;
+        }
+
+        @Override
+        InMemoryTable table(InMemorySession session) {
+            return null;
+        }
+
+        @Override
+        void resolve(InMemoryTable table) {
+            // nothing to resolve
+        }
+
+        @Override
+        Result apply(InMemorySession session, InMemoryTable table, Values values) {
+            switch (this.command) {
+                case "DROP TABLE":
+                    if (!session.dropTable(this.name) && !this.ifExists) {
+                        throw new InvalidQueryException("unconfigured table " + this.name);
+                    }
+                    break;
+                case "TRUNCATE":
+                    session.table(this.name).partitions.clear();
+                    break;
+                case "USE":
+                    session.use(this.name);
+                    break;
+                default:
+                    break;
+            }
+            return empty(session);
+        }
+
+    }
+
+}
@@ -0,0 +1,186 @@
+package com.fizzed.cassandra.testkit;
+
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.exceptions.InvalidQueryException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * The schema and rows of a table: partitions sorted by partition key (rather
+ * than by token) and each partition's rows sorted by clustering key (in the
+ * clustering order of the table).
+ */
+class InMemoryTable {
+
+    static enum Kind {
+        PARTITION_KEY,
+        CLUSTERING,
+        REGULAR
+    }
+
+    static class Column {
+
+        final String name;
+        final DataType type;
+        final int index;
+        Kind kind;
+        int position;
+        boolean descending;
+
+        Column(String name, DataType type, int index) {
+            this.name = name;
+            this.type = type;
+            this.index = index;
+            this.kind = Kind.REGULAR;
+        }
+
+        boolean isPrimaryKey() {
+            return this.kind != Kind.REGULAR;
+        }
+
+    }
+
+    static class StoredRow {
+
+        final Object[] values;
+        // set by an insert, a row only updated exists while any column is set
+        boolean live;
+
+        StoredRow(int columns) {
+            this.values = new Object[columns];
+        }
+
+        boolean exists(InMemoryTable table) {
+            if (this.live) {
+                return true;
+            }
+            for (Column column : table.regularColumns) {
+                if (this.values[column.index] != null) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+    }
+
+    final String keyspace;
+    final String name;
+    final List<Column> columns;
+    final Map<String,Column> columnsByName;
+    final List<Column> partitionKey;
+    final List<Column> clusteringColumns;
+    final List<Column> regularColumns;
+    final NavigableMap<List<Object>,NavigableMap<List<Object>,StoredRow>> partitions;
+    private final Comparator<List<Object>> clusteringComparator;
+
+    InMemoryTable(String keyspace, String name, List<Column> columns, List<String> partitionKey,
+            List<String> clusteringColumns, Map<String,Boolean> descending) {
+
+        this.keyspace = keyspace;
+        this.name = name;
+        this.columns = Collections.unmodifiableList(columns);
+        this.columnsByName = new LinkedHashMap<>();
+        for (Column column : columns) {
+            this.columnsByName.put(column.name, column);
+        }
+
+        this.partitionKey = this.keyColumns(partitionKey, Kind.PARTITION_KEY);
+        this.clusteringColumns = this.keyColumns(clusteringColumns, Kind.CLUSTERING);
+        this.regularColumns = new ArrayList<>();
+        for (Column column : columns) {
+            if (column.kind == Kind.REGULAR) {
+                this.regularColumns.add(column);
+            }
+            if (column.kind == Kind.CLUSTERING) {
+                column.descending = Boolean.TRUE.equals(descending.get(column.name));
+            }
+        }
+
+        if (this.partitionKey.isEmpty()) {
+            throw new InvalidQueryException("No PRIMARY KEY specified for table " + name);
+        }
+
+        this.partitions = new TreeMap<>(keyComparator(this.partitionKey));
+        this.clusteringComparator = keyComparator(this.clusteringColumns);
+    }
+
+    private List<Column> keyColumns(List<String> names, Kind kind) {
+        final List<Column> keys = new ArrayList<>(names.size());
+        for (String n : names) {
+            final Column column = this.column(n);
+            column.kind = kind;
+            column.position = keys.size();
+            keys.add(column);
+        }
+        return Collections.unmodifiableList(keys);
+    }
+
+    Column column(String columnName) {
+        final Column column = this.columnsByName.get(columnName);
+        if (column == null) {
+            throw new InvalidQueryException("Undefined column name " + columnName + " in table " + this.name);
+        }
+        return column;
+    }
+
+    NavigableMap<List<Object>,StoredRow> partition(List<Object> key, boolean create) {
+        NavigableMap<List<Object>,StoredRow> rows = this.partitions.get(key);
+        if (rows == null && create) {
+            rows = new TreeMap<>(this.clusteringComparator);
+            this.partitions.put(key, rows);
+        }
+        return rows;
+    }
+
+    void removeIfEmpty(List<Object> key) {
+        final NavigableMap<List<Object>,StoredRow> rows = this.partitions.get(key);
+        if (rows != null && rows.isEmpty()) {
+            this.partitions.remove(key);
+        }
+    }
+
+    static private Comparator<List<Object>> keyComparator(List<Column> keys) {
+        return (a, b) -> {
+            for (int i = 0; i < keys.size(); i++) {
+                final Column column = keys.get(i);
+                final int c = compare(column.type, a.get(i), b.get(i));
+                if (c != 0) {
+                    return column.descending ? -c : c;
+                }
+            }
+            return 0;
+        };
+    }
+
+    /**
+     * Compares two values of a type, as cassandra would order them (close
+     * enough, e.g. blobs are compared as signed bytes).
+     */
+    @SuppressWarnings("unchecked")
+    static int compare(DataType type, Object a, Object b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        if (type.getName() == DataType.Name.TIMEUUID) {
+            final int c = Long.compare(((UUID)a).timestamp(), ((UUID)b).timestamp());
+            return c != 0 ? c : ((UUID)a).compareTo((UUID)b);
+        }
+        if (a instanceof ByteBuffer) {
+            return ((ByteBuffer)a).compareTo((ByteBuffer)b);
+        }
+        if (a instanceof Comparable) {
+            return ((Comparable<Object>)a).compareTo(b);
+        }
+        return a.toString().compareTo(b.toString());
+    }
+
+}
@@ -0,0 +1,308 @@
+package com.fizzed.cassandra.testkit;
+
+import com.datastax.driver.core.PagingState;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.SimpleStatement;
+import com.datastax.driver.core.exceptions.InvalidQueryException;
+import com.datastax.driver.core.exceptions.SyntaxError;
+import com.fizzed.cassandra.orm.Cassandra;
+import com.fizzed.cassandra.orm.PagedList;
+import static java.util.Arrays.asList;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import javax.persistence.EntityExistsException;
+import javax.persistence.OptimisticLockException;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.Test;
+
+public class InMemorySessionTest {
+
+    private InMemorySession session;
+    private Cassandra cassandra;
+
+    @Before
+    public void before() {
+        this.session = new InMemorySession("cassandra_plus_dev");
+
+        this.session.execute(
+            "CREATE TABLE query_test (\n" +
+            "  id uuid,\n" +
+            "  vc varchar,\n" +
+            "  ts timestamp,\n" +
+            "  primary key ((id))\n" +
+            ");");
+
+        this.session.execute(
+            "CREATE TABLE events (\n" +
+            "  account text,\n" +
+            "  seq int,\n" +
+            "  name text,\n" +
+            "  PRIMARY KEY (account, seq)\n" +
+            ") WITH CLUSTERING ORDER BY (seq DESC);");
+
+        this.cassandra = new Cassandra(this.session);
+    }
+
+    private void insertEvents(String account, int count) {
+        for (int i = 0; i < count; i++) {
+            this.cassandra.insert("events")
+                .val("account", account)
+                .val("seq", i)
+                .val("name", "e" + i)
+                .execute();
+        }
+    }
+
+    static private List<Integer> seqs(List<Row> rows) {
+        return rows.stream().map(r -> r.getInt("seq")).collect(Collectors.toList());
+    }
+
+    @Test
+    public void crud() {
+        final UUID id = UUID.randomUUID();
+        final long executed = this.session.getStatementsExecuted();
+
+        assertThat(this.cassandra.select("query_test").where().eq("id", id).findOne(), is(nullValue()));
+
+        this.cassandra.insert("query_test")
+            .val("id", id)
+            .val("vc", "a")
+            .execute();
+
+        Row row = this.cassandra.select("query_test").where().eq("id", id).findOne();
+        assertThat(row.getUUID("id"), is(id));
+        assertThat(row.getString("vc"), is("a"));
+        assertThat(row.getTimestamp("ts"), is(nullValue()));
+        // select * is the primary key then the other columns by name
+        assertThat(row.getColumnDefinitions().getName(1), is("ts"));
+
+        this.cassandra.update("query_test")
+            .val("vc", "b")
+            .where()
+            .eq("id", id)
+            .execute();
+
+        row = this.cassandra.select("query_test").columns("vc").where().eq("id", id).findOne();
+        assertThat(row.getString("vc"), is("b"));
+
+        this.cassandra.delete("query_test").where().eq("id", id).execute();
+
+        assertThat(this.cassandra.select("query_test").where().eq("id", id).findOne(), is(nullValue()));
+        assertThat(this.session.getStatementsExecuted() - executed, is(7L));
+    }
+
+    @Test
+    public void inAndRanges() {
+        this.insertEvents("a", 10);
+        this.insertEvents("b", 3);
+
+        // clustering order of the table
+        assertThat(seqs(this.cassandra.select("events").where().eq("account", "a").lt("seq", 3).findList()),
+            contains(2, 1, 0));
+
+        assertThat(seqs(this.cassandra.select("events").where()
+                .eq("account", "a").ge("seq", 4).le("seq", 6).orderBy("seq ASC").findList()),
+            contains(4, 5, 6));
+
+        assertThat(seqs(this.cassandra.select("events").where()
+                .eq("account", "a").in("seq", asList(7, 1, 3)).findList()),
+            contains(7, 3, 1));
+
+        // partitions in key order
+        final List<Row> rows = this.cassandra.select("events").where()
+            .in("account", asList("b", "a")).eq("seq", 2).findList();
+        assertThat(rows, hasSize(2));
+        assertThat(rows.get(0).getString("account"), is("a"));
+
+        // regular columns need ALLOW FILTERING
+        try {
+            this.cassandra.select("events").where().eq("name", "e1").findList();
+            fail();
+        }
+        catch (InvalidQueryException e) {
+            // expected
+        }
+
+        assertThat(this.cassandra.select("events").where().eq("name", "e1")
+            .setAllowFiltering(true).findList(), hasSize(2));
+    }
+
+    @Test
+    public void conditional() {
+        final UUID id = UUID.randomUUID();
+        final Date ts1 = new Date(1000L);
+        final Date ts2 = new Date(2000L);
+
+        this.cassandra.upsert("query_test")
+            .primaryKeys(asList("id"))
+            .optimisticLock("ts", null)
+            .val("id", id)
+            .val("vc", "a")
+            .val("ts", ts1)
+            .execute();
+
+        try {
+            this.cassandra.upsert("query_test")
+                .primaryKeys(asList("id"))
+                .optimisticLock("ts", null)
+                .val("id", id)
+                .val("vc", "b")
+                .val("ts", ts2)
+                .execute();
+            fail();
+        }
+        catch (EntityExistsException e) {
+            // expected
+        }
+
+        this.cassandra.upsert("query_test")
+            .primaryKeys(asList("id"))
+            .optimisticLock("ts", ts1)
+            .val("id", id)
+            .val("vc", "b")
+            .val("ts", ts2)
+            .execute();
+
+        try {
+            this.cassandra.upsert("query_test")
+                .primaryKeys(asList("id"))
+                .optimisticLock("ts", ts1)
+                .val("id", id)
+                .val("vc", "c")
+                .val("ts", ts2)
+                .execute();
+            fail();
+        }
+        catch (OptimisticLockException e) {
+            // expected
+        }
+
+        final Row row = this.cassandra.select("query_test").where().eq("id", id).findOne();
+        assertThat(row.getString("vc"), is("b"));
+        assertThat(row.getTimestamp("ts"), is(ts2));
+    }
+
+    @Test
+    public void paging() {
+        this.insertEvents("a", 25);
+
+        PagedList<Row> page = this.cassandra.select("events").where().eq("account", "a")
+            .setFetchSize(10)
+            .findPagedList();
+
+        final List<Row> all = new ArrayList<>(page.getValues());
+        while (page.getNext() != null) {
+            page = this.cassandra.select("events").where().eq("account", "a")
+                .setFetchSize(10)
+                .setPagingState(page.getNext())
+                .findPagedList();
+            all.addAll(page.getValues());
+        }
+
+        assertThat(all, hasSize(25));
+        assertThat(all.get(0).getInt("seq"), is(24));
+        assertThat(all.get(24).getInt("seq"), is(0));
+
+        // iterating fetches every page
+        final ResultSet rs = this.session.execute(new SimpleStatement("SELECT * FROM events WHERE account = 'a'")
+            .setFetchSize(7));
+        assertThat(rs.getAvailableWithoutFetching(), is(7));
+        final PagingState pagingState = rs.getExecutionInfo().getPagingState();
+        assertThat(pagingState, is(not(nullValue())));
+        assertThat(rs.all(), hasSize(25));
+        assertThat(rs.getAllExecutionInfo(), hasSize(4));
+    }
+
+    @Test
+    public void prepared() {
+        final PreparedStatement ps = this.session.prepare(
+            "SELECT seq FROM events WHERE account=? AND seq IN ? LIMIT ?");
+
+        assertThat(ps.getVariables().getName(0), is("account"));
+        assertThat(ps.getVariables().getName(1), is("in(seq)"));
+        assertThat(ps.getVariables().getName(2), is("[limit]"));
+
+        this.insertEvents("a", 5);
+
+        final List<Row> rows = this.session.execute(ps.bind("a", asList(1, 2, 3), 2)).all();
+        assertThat(seqs(rows), contains(3, 2));
+
+        try {
+            this.session.prepare("SELECT * FROM nope WHERE id=?");
+            fail();
+        }
+        catch (InvalidQueryException e) {
+            // expected
+        }
+
+        try {
+            this.session.prepare("SELECT token(id) FROM query_test");
+            fail();
+        }
+        catch (SyntaxError e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void batch() {
+        this.cassandra.batch()
+            .add(this.cassandra.insert("events").val("account", "a").val("seq", 1).val("name", "x"))
+            .add(this.cassandra.insert("events").val("account", "a").val("seq", 2).val("name", "y"))
+            .execute();
+
+        assertThat(this.cassandra.select("events").where().eq("account", "a").findList(), hasSize(2));
+    }
+
+    @Test
+    public void latency() throws Exception {
+        this.session.setLatencyMillis(50L);
+
+        final List<CompletableFuture<?>> futures = new ArrayList<>();
+        final long start = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            futures.add(this.cassandra.insert("events")
+                .val("account", "a")
+                .val("seq", i)
+                .executeAsync());
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get();
+        final long elapsedMillis = (System.nanoTime() - start) / 1000000L;
+
+        // pipelined, not 20 x 50ms
+        assertThat(elapsedMillis, lessThan(500L));
+        assertThat(this.cassandra.select("events").where().eq("account", "a").findList(), hasSize(20));
+    }
+
+    @Test
+    public void overhead() {
+        // the orm's own cost (build, bind, map) with nothing on the wire
+        final int count = 2000;
+        final long executed = this.session.getStatementsExecuted();
+        final long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            final UUID id = UUID.randomUUID();
+            this.cassandra.insert("query_test").val("id", id).val("vc", "a").execute();
+            this.cassandra.select("query_test").where().eq("id", id).findOne();
+        }
+        final long elapsedMillis = (System.nanoTime() - start) / 1000000L;
+
+        assertThat(this.session.getStatementsExecuted() - executed, is(2L * count));
+        assertThat(elapsedMillis, lessThan(10000L));
+    }
+
+}